@@ -1,65 +1,177 @@
 package client;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import exception.ResponseException;
 import requests.*;
 import results.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Calls the server's HTTP API, either blocking or through the *Async methods, which return
+ * futures that complete exceptionally with a {@link ResponseException}.
+ * <p>
+ * Requests ask for HTTP/2, which multiplexes them over one connection; against a server that
+ * only speaks HTTP/1.1, the client keeps connections alive and reuses them from its pool.
+ * Blocking calls read bodies as streams straight through a shared Gson. The *Async methods take
+ * the body whole first, so parsing it never blocks a thread of the client's executor.
+ */
 public class ServerFacade {
-//test
-    private String serverURL;
-    private HttpClient client = HttpClient.newHttpClient();
+
+    //Gson is thread safe, so one instance serves every request
+    private static final Gson GSON = new Gson();
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final String serverURL;
+    private final HttpClient client;
 
     public ServerFacade(String serverURL) {
+        this(serverURL, newClient());
+    }
+
+    /**
+     * @param client shared by tools that drive many facades, so they share its connections
+     */
+    public ServerFacade(String serverURL, HttpClient client) {
         this.serverURL = serverURL;
+        this.client = client;
+    }
+
+    public static HttpClient newClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
     }
 
     public record RequestRecord(String method, String path, String authToken, Object body){};
 
     public RegisterResult register(RegisterRequest request) throws ResponseException {
-        return requestProcess(new RequestRecord("POST", "/user", "", request), RegisterResult.class);
+        return requestProcess(registerRecord(request), RegisterResult.class);
+    }
+
+    public CompletableFuture<RegisterResult> registerAsync(RegisterRequest request) {
+        return requestAsync(registerRecord(request), RegisterResult.class);
     }
 
     public LoginResult login(LoginRequest request) throws ResponseException {
-        return requestProcess(new RequestRecord("POST", "/session", "", request), LoginResult.class);
+        return requestProcess(loginRecord(request), LoginResult.class);
+    }
+
+    public CompletableFuture<LoginResult> loginAsync(LoginRequest request) {
+        return requestAsync(loginRecord(request), LoginResult.class);
     }
 
     public void logout(LogoutRequest request) throws ResponseException {
-        requestProcess(new RequestRecord("DELETE", "/session", request.authToken(), null), null);
+        requestProcess(logoutRecord(request), null);
+    }
+
+    public CompletableFuture<Void> logoutAsync(LogoutRequest request) {
+        return requestAsync(logoutRecord(request), Void.class);
     }
 
     public CreateGameResult createGame(CreateGameRequest request) throws ResponseException {
-        return requestProcess(new RequestRecord("POST", "/game", request.authToken(), request), CreateGameResult.class);
+        return requestProcess(createGameRecord(request), CreateGameResult.class);
+    }
+
+    public CompletableFuture<CreateGameResult> createGameAsync(CreateGameRequest request) {
+        return requestAsync(createGameRecord(request), CreateGameResult.class);
     }
 
     public ListGamesResult listGames(ListGamesRequest request) throws ResponseException {
-        return requestProcess(new RequestRecord("GET", "/game", request.authToken(), null), ListGamesResult.class);
+        return requestProcess(listGamesRecord(request), ListGamesResult.class);
+    }
+
+    public CompletableFuture<ListGamesResult> listGamesAsync(ListGamesRequest request) {
+        return requestAsync(listGamesRecord(request), ListGamesResult.class);
     }
 
     public void joinGame(JoinGameRequest request) throws ResponseException {
-        requestProcess(new RequestRecord("PUT", "/game", request.authToken(), request), null);
+        requestProcess(joinGameRecord(request), null);
+    }
+
+    public CompletableFuture<Void> joinGameAsync(JoinGameRequest request) {
+        return requestAsync(joinGameRecord(request), Void.class);
     }
 
     public void clear() throws ResponseException {
-        requestProcess(new RequestRecord("DELETE", "/db", "", null), null);
+        requestProcess(clearRecord(), null);
+    }
+
+    public CompletableFuture<Void> clearAsync() {
+        return requestAsync(clearRecord(), Void.class);
+    }
+
+    private static RequestRecord registerRecord(RegisterRequest request) {
+        return new RequestRecord("POST", "/user", "", request);
+    }
+
+    private static RequestRecord loginRecord(LoginRequest request) {
+        return new RequestRecord("POST", "/session", "", request);
+    }
+
+    private static RequestRecord logoutRecord(LogoutRequest request) {
+        return new RequestRecord("DELETE", "/session", request.authToken(), null);
+    }
+
+    private static RequestRecord createGameRecord(CreateGameRequest request) {
+        return new RequestRecord("POST", "/game", request.authToken(), request);
+    }
+
+    private static RequestRecord listGamesRecord(ListGamesRequest request) {
+        return new RequestRecord("GET", "/game", request.authToken(), null);
+    }
+
+    private static RequestRecord joinGameRecord(JoinGameRequest request) {
+        return new RequestRecord("PUT", "/game", request.authToken(), request);
+    }
+
+    private static RequestRecord clearRecord() {
+        return new RequestRecord("DELETE", "/db", "", null);
     }
 
     private <T> T requestProcess(RequestRecord req, Class<T> response) throws ResponseException {
         HttpRequest httpRequest = buildRequest(req);
-        HttpResponse<String> httpResponse = sendRequest(httpRequest);
+        HttpResponse<InputStream> httpResponse = sendRequest(httpRequest);
         return handleResponse(httpResponse, response);
     }
 
+    private <T> CompletableFuture<T> requestAsync(RequestRecord req, Class<T> response) {
+        return client.sendAsync(buildRequest(req), HttpResponse.BodyHandlers.ofByteArray())
+                .handle((httpResponse, ex) -> {
+                    try {
+                        if (ex != null) {
+                            throw sendFailure(ex instanceof CompletionException ? ex.getCause() : ex);
+                        }
+                        Reader reader = new InputStreamReader(new ByteArrayInputStream(httpResponse.body()),
+                                StandardCharsets.UTF_8);
+                        return parseBody(httpResponse.statusCode(), reader, response);
+                    } catch (ResponseException responseException) {
+                        throw new CompletionException(responseException);
+                    }
+                });
+    }
 
     private HttpRequest buildRequest(RequestRecord req) {
         HttpRequest.Builder builder = HttpRequest.newBuilder().uri(URI.create(serverURL + req.path));
         builder.setHeader("Authorization", req.authToken);
         if (req.body != null) {
-            builder.method(req.method, HttpRequest.BodyPublishers.ofString(new Gson().toJson(req.body)));
+            byte[] json = GSON.toJson(req.body).getBytes(StandardCharsets.UTF_8);
+            builder.method(req.method, HttpRequest.BodyPublishers.ofByteArray(json));
             builder.setHeader("Content-Type", "application/json");
         } else {
             builder.method(req.method, HttpRequest.BodyPublishers.noBody());
@@ -67,26 +179,52 @@ public class ServerFacade {
         return builder.build();
     }
 
-    private HttpResponse<String> sendRequest(HttpRequest request) throws ResponseException {
+    private HttpResponse<InputStream> sendRequest(HttpRequest request) throws ResponseException {
         try {
-            return client.send(request, HttpResponse.BodyHandlers.ofString());
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
         } catch (Exception ex) {
-            throw new ResponseException(" So sorry, we are currently having issues with sending messages to the CGI server."
-                    + "\n " + ex.getMessage(), 0);
+            throw sendFailure(ex);
         }
     }
 
-    private <T> T handleResponse(HttpResponse<String> response, Class<T> responseClass) throws ResponseException {
-        if (response.statusCode() != 200) {
-            String jsonBody = response.body();
-            if (jsonBody != null) {
-                throw new ResponseException(new Gson().fromJson(jsonBody, ErrorResult.class).message(), 0);
+    private static ResponseException sendFailure(Throwable ex) {
+        return new ResponseException(" So sorry, we are currently having issues with sending messages to the CGI server."
+                + "\n " + ex.getMessage(), 0);
+    }
+
+    /**
+     * Parses the body as it arrives, then reads it to the end, which lets the connection go back
+     * to the pool instead of being closed
+     */
+    private <T> T handleResponse(HttpResponse<InputStream> response, Class<T> responseClass) throws ResponseException {
+        try (InputStream body = response.body()) {
+            try {
+                return parseBody(response.statusCode(), new InputStreamReader(body, StandardCharsets.UTF_8), responseClass);
+            } finally {
+                body.transferTo(OutputStream.nullOutputStream());
             }
-            throw new ResponseException(" Failed to get error message", 0);
+        } catch (IOException ex) {
+            throw readFailure(ex);
         }
-        if (responseClass != null) {
-            return new Gson().fromJson(response.body(), responseClass);
+    }
+
+    private static <T> T parseBody(int statusCode, Reader reader, Class<T> responseClass) throws ResponseException {
+        try {
+            if (statusCode != 200) {
+                ErrorResult error = GSON.fromJson(reader, ErrorResult.class);
+                if (error != null) {
+                    throw new ResponseException(error.message(), 0);
+                }
+                throw new ResponseException(" Failed to get error message", 0);
+            }
+            return responseClass == null || responseClass == Void.class ? null : GSON.fromJson(reader, responseClass);
+        } catch (JsonParseException ex) {
+            throw readFailure(ex);
         }
-        return null;
+    }
+
+    private static ResponseException readFailure(Exception ex) {
+        return new ResponseException(" Failed to read the response from the CGI server."
+                + "\n " + ex.getMessage(), 0);
     }
 }
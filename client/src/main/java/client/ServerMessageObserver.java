@@ -1,7 +1,15 @@
 package client;
 
+import com.google.gson.Gson;
 import websocket.messages.ServerMessage;
 
 public interface ServerMessageObserver {
     public void notify(ServerMessage.ServerMessageType type, String message);
+
+    /**
+     * Called with messages that arrive already decoded, such as binary frames
+     */
+    public default void notify(ServerMessage message) {
+        notify(message.getServerMessageType(), new Gson().toJson(message));
+    }
 }
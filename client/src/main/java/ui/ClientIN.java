@@ -2,14 +2,21 @@ package ui;
 
 import chess.ChessGame;
 import client.ServerFacade;
+import client.ServerMessageObserver;
+import com.google.gson.Gson;
 import exception.ResponseException;
 import model.GameData;
 import requests.*;
 import results.*;
+import websocket.WebSocketFacade;
+import websocket.commands.UserGameCommand;
+import websocket.messages.LobbyMessage;
+import websocket.messages.ServerMessage;
+
 import java.util.ArrayList;
 import java.util.Scanner;
 
-public class ClientIN {
+public class ClientIN implements ServerMessageObserver {
 
     private String authToken;
     private ArrayList<GameData> gameList;
@@ -17,10 +24,36 @@ public class ClientIN {
     private GameData currentGame;
     private ChessGame.TeamColor playColor;
     private int joinGameID;
+    private String serverURL;
+    //Kept current by the server while signed in, so listing the games needn't ask for them
+    private final LobbyModel lobby = new LobbyModel();
+    private WebSocketFacade lobbySocket;
 
 
-    public ClientIN(ServerFacade serverFacade) {
+    public ClientIN(ServerFacade serverFacade, String serverURL) {
         this.serverFacade = serverFacade;
+        this.serverURL = serverURL;
+    }
+
+    /**
+     * Subscribes to lobby changes. Until the server's first snapshot arrives, listing the games
+     * still asks the server for them.
+     */
+    public void subscribeLobby() {
+        lobby.reset();
+        lobbySocket = new WebSocketFacade(serverURL, this);
+        try {
+            lobbySocket.sendToServer(new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE_LOBBY, authToken, null));
+        } catch (ResponseException ex) {
+            //Not connected yet; the socket subscribes once it reconnects
+        }
+    }
+
+    @Override
+    public void notify(ServerMessage.ServerMessageType type, String message) {
+        if (type == ServerMessage.ServerMessageType.LOBBY) {
+            lobby.apply(new Gson().fromJson(message, LobbyMessage.class));
+        }
     }
 
     public void updateAuthToken(String authToken) {
@@ -53,12 +86,16 @@ public class ClientIN {
             }
             return "Error: Failed to create the game (" + gameName + ")";
         } else if (input.equals("5") || input.equalsIgnoreCase("L") || input.equalsIgnoreCase("List")) {
-            ListGamesRequest request = new ListGamesRequest(authToken);
-            ListGamesResult result = serverFacade.listGames(request);
-            if (result.games() == null) {
-                return "Error: List games command returned no games";
+            if (lobby.isLoaded()) {
+                gameList = lobby.getGames();
+            } else {
+                ListGamesRequest request = new ListGamesRequest(authToken);
+                ListGamesResult result = serverFacade.listGames(request);
+                if (result.games() == null) {
+                    return "Error: List games command returned no games";
+                }
+                gameList = (ArrayList<GameData>) result.games();
             }
-            gameList = (ArrayList<GameData>) result.games();
             if (gameList.isEmpty()) {
                 return "Message: No current games";
             }
@@ -88,7 +125,10 @@ public class ClientIN {
             } else {
                 return "Error: Please enter a correct color option. Please try again";
             }
-            JoinGameRequest request = new JoinGameRequest(authToken, playerColor, gameID);
+            System.out.println(" Please enter \"Bot\" to play against the computer, or press enter to play another person");
+            System.out.println(State.printPrompt(State.UserState.IN));
+            boolean botOpponent = scan.nextLine().trim().equalsIgnoreCase("Bot");
+            JoinGameRequest request = new JoinGameRequest(authToken, playerColor, gameID, botOpponent);
             serverFacade.joinGame(request);
             playColor = playerColor;
             joinGameID = gameID;
@@ -116,6 +156,10 @@ public class ClientIN {
         LogoutRequest request = new LogoutRequest(authToken);
         serverFacade.logout(request);
         authToken = null;
+        if (lobbySocket != null) {
+            lobbySocket.close();
+            lobbySocket = null;
+        }
         return "success";
     }
 
@@ -125,6 +169,9 @@ public class ClientIN {
         for (int i = 0; i < gameList.size(); i++) {
             GameData game = gameList.get(i);
             list.append(" " + (i + 1) + ") "+ game.gameName());
+            if (lobby.isFinished(game.gameID())) {
+                list.append(" [FINISHED]");
+            }
             list.append("\n   White User: " + (game.whiteUsername() == null ? "[AVAILABLE]" : game.whiteUsername()));
             list.append("\n   Black User: " + (game.blackUsername() == null ? "[AVAILABLE]" : game.blackUsername()));
             list.append("\n\n");
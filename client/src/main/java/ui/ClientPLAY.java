@@ -4,11 +4,13 @@ import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.InvalidMoveException;
 import client.ServerMessageObserver;
 import exception.ResponseException;
 import model.GameData;
 import websocket.WebSocketFacade;
 import websocket.commands.*;
+import websocket.messages.MovesMessage;
 
 import java.util.Scanner;
 
@@ -19,6 +21,12 @@ public class ClientPLAY {
     private ChessGame.TeamColor playColor;
     private boolean isObserver;
     private final DrawBoard drawBoard;
+    //Computed once per game received, for highlights and checking moves before they're sent
+    private LegalMoveMap legalMoves;
+    //The server's last state while a move is shown before the server has confirmed it
+    private GameData confirmedGame;
+    private LegalMoveMap confirmedMoves;
+    private ChessMove pendingMove;
     private String authToken;
     private String serverURL;
     private ServerMessageObserver serverMessageObserver;
@@ -43,10 +51,94 @@ public class ClientPLAY {
 
     public void setGameInfo(GameData game) {
         gameData = game;
+        legalMoves = game.game() == null ? null : new LegalMoveMap(game.game());
+        pendingMove = null;
     }
 
     public void setGame(ChessGame game) {
-        gameData = new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
+        setGameInfo(new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game));
+    }
+
+    public GameData getGameInfo() {
+        return gameData;
+    }
+
+    /**
+     * Takes the game from a LOAD_GAME. A move shown before the server confirmed it is kept if the
+     * server reached the same position, and replaced by the server's state otherwise.
+     *
+     * @return whether the board on screen is out of date and should be drawn again
+     */
+    public boolean receiveGame(GameData game) {
+        boolean confirmed = pendingMove != null && game.game() != null && game.game().equals(gameData.game());
+        if (confirmed) {
+            //Same position, so the legal moves worked out when the move was shown still hold
+            gameData = game;
+            pendingMove = null;
+            return false;
+        }
+        setGameInfo(game);
+        return true;
+    }
+
+    /**
+     * Catches up on the moves missed while the connection was down. A move shown before it dropped
+     * may never have reached the server, so it's taken back and the server's moves played instead.
+     *
+     * @return whether the board on screen is out of date and should be drawn again
+     */
+    public boolean receiveMoves(MovesMessage moves) {
+        boolean tookBack = rollBack();
+        ChessGame game = gameData.game();
+        if (moves.getMoves().isEmpty() && game.isGameOver() == moves.isGameOver()) {
+            return tookBack;
+        }
+        game = game.copy();
+        //Already checked by the server, so they're played without working out their legality again
+        for (ChessMove move : moves.getMoves()) {
+            game.makeCheckedMove(move, false);
+        }
+        game.setIsGameOver(moves.isGameOver());
+        setGame(game);
+        return true;
+    }
+
+    /**
+     * Plays a move on a copy of the game, which is shown until the server confirms or rejects it.
+     * The server's state is kept to go back to.
+     *
+     * @throws ResponseException if the move is illegal, so it needn't be sent
+     */
+    public void showPendingMove(ChessMove move) throws ResponseException {
+        ChessGame afterMove = gameData.game().copy();
+        try {
+            afterMove.makeMove(move);
+        } catch (InvalidMoveException e) {
+            throw new ResponseException("Error: Invalid Move", 0);
+        }
+        confirmedGame = gameData;
+        confirmedMoves = legalMoves;
+        setGame(afterMove);
+        pendingMove = move;
+    }
+
+    /**
+     * Puts back the server's last state after it rejected the move being shown
+     *
+     * @return whether there was a move to take back
+     */
+    public boolean rollBack() {
+        if (pendingMove == null) {
+            return false;
+        }
+        gameData = confirmedGame;
+        legalMoves = confirmedMoves;
+        pendingMove = null;
+        return true;
+    }
+
+    public LegalMoveMap getLegalMoves() {
+        return legalMoves;
     }
 
     public void updateAuthToken(String authToken) {
@@ -63,6 +155,7 @@ public class ClientPLAY {
             UserGameCommand leaveCommand = new
                     UserGameCommand(UserGameCommand.CommandType.LEAVE, authToken, gameData.gameID());
             webSocketFacade.sendToServer(leaveCommand);
+            webSocketFacade.close();
             return "leave";
         } else if (input.equals("3")) {
             System.out.println(" Would you like your chess pieces to look like the chess piece icons, or use a text letter?");
@@ -100,12 +193,21 @@ public class ClientPLAY {
             } catch (ResponseException e) {
                 return "invalid input";
             }
-            drawBoard.drawBoard(gameData.game(), playColor, highlightPos);
+            drawBoard.drawBoard(gameData.game(), playColor, highlightPos, legalMoves);
             return "";
         } else if (input.equals("6") || input.equalsIgnoreCase("D") || input.equalsIgnoreCase("Draw")) {
             drawBoard.drawBoard(gameData.game(), playColor, null);
             return "";
         } else if (!isObserver && input.equals("7") || input.equalsIgnoreCase("M") || input.equalsIgnoreCase("Move")) {
+            //Checked here the way the server would, to save a round trip for a move it would reject
+            ChessGame game = gameData.game();
+            if (game.isGameOver()) {
+                return "Error: The game is over, you can't make any more moves";
+            } else if (game.getTeamTurn() != playColor) {
+                return "Error: Not your turn";
+            } else if (pendingMove != null) {
+                return "Error: Your last move hasn't been confirmed yet";
+            }
             System.out.println(" Please enter the location of the piece you would like to move"
                     + "\n" +   "   (For example, to move the pawn from a2 to a4, put 'a' then '2')");
             ChessPosition startPos;
@@ -116,13 +218,29 @@ public class ClientPLAY {
                 System.out.println(" Please enter the location of where you would like to move the piece to"
                         + "\n" +   "   (For example, to move the pawn from a2 to a4, put 'a' then '4')");
                 endPos = getChessPosition(scan);
+                if (game.getBoard().getPiece(startPos) == null) {
+                    return "Error: There is no piece at that position";
+                } else if (!legalMoves.isLegal(startPos, endPos)) {
+                    return "Error: Invalid Move";
+                }
                 promotion = getPromotion(scan, startPos, endPos);
             } catch (ResponseException e) {
                 return "invalid input";
             }
             ChessMove newMove = new ChessMove(startPos, endPos, promotion);
+            try {
+                showPendingMove(newMove);
+            } catch (ResponseException e) {
+                return e.getMessage();
+            }
             MakeMoveCommand moveCommand = new MakeMoveCommand(authToken, gameData.gameID(), newMove);
-            webSocketFacade.sendToServer(moveCommand);
+            try {
+                webSocketFacade.sendToServer(moveCommand);
+            } catch (ResponseException e) {
+                rollBack();
+                throw e;
+            }
+            drawBoard.drawBoard(gameData.game(), playColor, null, legalMoves);
             return "";
 
         } else if (!isObserver && input.equals("8") || input.equalsIgnoreCase("R") || input.equalsIgnoreCase("Resign")) {
@@ -136,6 +254,19 @@ public class ClientPLAY {
             } else {
                 return "Message: You have cancelled the resign";
             }
+        } else if (isObserver && input.equals("7") || !isObserver && input.equals("9")
+                || input.equalsIgnoreCase("V") || input.equalsIgnoreCase("Replay")) {
+            System.out.println(" Which move would you like to see the board after? (0 for the start of the game)");
+            System.out.println(State.printPrompt(State.UserState.PLAY));
+            int ply;
+            try {
+                ply = Integer.parseInt(scan.nextLine().trim());
+            } catch (NumberFormatException ex) {
+                return "invalid input";
+            }
+            //The server seeks to it from its nearest snapshot, and the board is drawn when it answers
+            webSocketFacade.sendToServer(new PlyRangeCommand(authToken, gameData.gameID(), ply, ply));
+            return "";
         } else {
             return "invalid input";
         }
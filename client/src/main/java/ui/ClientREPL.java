@@ -8,7 +8,9 @@ import exception.ResponseException;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MovesMessage;
 import websocket.messages.NotificationMessage;
+import websocket.messages.ReplayMessage;
 import websocket.messages.ServerMessage;
 import java.util.Scanner;
 
@@ -24,8 +26,10 @@ public class ClientREPL implements ServerMessageObserver {
     public ClientREPL(String serverURL) {
         serverFacade = new ServerFacade(serverURL);
         clientOUT = new ClientOUT(serverFacade);
-        clientIN = new ClientIN(serverFacade);
+        clientIN = new ClientIN(serverFacade, serverURL);
         drawBoard = new DrawBoard();
+        //Keeps the board pinned at the top of the terminal and redraws only what changed
+        drawBoard.setIncremental(Boolean.getBoolean("chess.liveBoard"));
         clientPLAY = new ClientPLAY(serverURL, drawBoard, this);
     }
 
@@ -81,6 +85,7 @@ public class ClientREPL implements ServerMessageObserver {
             state = State.UserState.IN;
             String authToken = result.substring(10);
             clientIN.updateAuthToken(authToken);
+            clientIN.subscribeLobby();
             clientPLAY.updateAuthToken(authToken);
             System.out.println("\n You have successfully signed into the CGI");
             System.out.println(help());
@@ -122,9 +127,11 @@ public class ClientREPL implements ServerMessageObserver {
         } else if (result.startsWith("leave")) {
             state = State.UserState.IN;
             clientIN.resetGame();
+            drawBoard.reset();
             System.out.println("\n You have successfully left the game");
             System.out.println(help());
         } else if (result.startsWith("quit")) {
+            drawBoard.reset();
             state = State.UserState.OUT;
         }
     }
@@ -136,21 +143,47 @@ public class ClientREPL implements ServerMessageObserver {
     }
 
     public void notify(ServerMessage.ServerMessageType type, String message) {
-        System.out.println();
         if (type == ServerMessage.ServerMessageType.ERROR) {
-            ErrorMessage errorMessage = new Gson().fromJson(message, ErrorMessage.class);
-            printError(errorMessage.getErrorMessage());
+            notify(new Gson().fromJson(message, ErrorMessage.class));
         } else if (type == ServerMessage.ServerMessageType.NOTIFICATION) {
-            NotificationMessage notificationMessage = new Gson().fromJson(message, NotificationMessage.class);
-            printMessage(notificationMessage.getMessage());
+            notify(new Gson().fromJson(message, NotificationMessage.class));
+        } else if (type == ServerMessage.ServerMessageType.MOVES) {
+            notify(new Gson().fromJson(message, MovesMessage.class));
+        } else if (type == ServerMessage.ServerMessageType.REPLAY) {
+            notify(new Gson().fromJson(message, ReplayMessage.class));
         } else {
-            LoadGameMessage lgMessage = new Gson().fromJson(message, LoadGameMessage.class);
-            clientPLAY.setGameInfo(lgMessage.getGame());
-            try {
-                drawBoard.drawBoard(lgMessage.getGame().game(), clientIN.getColor(), null);
-            } catch (ResponseException ex) {
-                printError(ex.getMessage());
+            notify(new Gson().fromJson(message, LoadGameMessage.class));
+        }
+    }
+
+    @Override
+    public void notify(ServerMessage message) {
+        System.out.println();
+        try {
+            if (message instanceof ErrorMessage errorMessage) {
+                printError(errorMessage.getErrorMessage());
+                //A move already shown on the board was rejected, so show the server's state again
+                if (clientPLAY.rollBack()) {
+                    drawBoard.drawBoard(clientPLAY.getGameInfo().game(), clientIN.getColor(), null);
+                }
+            } else if (message instanceof NotificationMessage notificationMessage) {
+                printMessage(notificationMessage.getMessage());
+            } else if (message instanceof LoadGameMessage lgMessage) {
+                if (clientPLAY.receiveGame(lgMessage.getGame())) {
+                    drawBoard.drawBoard(lgMessage.getGame().game(), clientIN.getColor(), null);
+                }
+            } else if (message instanceof MovesMessage movesMessage) {
+                if (clientPLAY.receiveMoves(movesMessage)) {
+                    drawBoard.drawBoard(clientPLAY.getGameInfo().game(), clientIN.getColor(), null);
+                }
+            } else if (message instanceof ReplayMessage replayMessage) {
+                //Only a look back, so the game being followed stays as it is
+                drawBoard.drawBoard(replayMessage.getGame(), clientIN.getColor(), null);
+                printMessage("The board after move " + replayMessage.getFromPly() + " of " + replayMessage.getPlies()
+                        + ". Enter \"6\" to draw the current board again");
             }
+        } catch (ResponseException ex) {
+            printError(ex.getMessage());
         }
         System.out.println(State.printPrompt(state));
     }
@@ -205,7 +238,10 @@ public class ClientREPL implements ServerMessageObserver {
                     output += "\n" + " - Enter \"7\", \"M\", or \"Move\" to move a chess piece"
                             + "\n" + "         (You will need to supply the row and column of the piece you want to move,"
                             + "\n" + "           and the row and column of where you want to move the piece to)"
-                            + "\n" + " - Enter \"8\", \"R\", or \"Resign\" to resign the game";
+                            + "\n" + " - Enter \"8\", \"R\", or \"Resign\" to resign the game"
+                            + "\n" + " - Enter \"9\", \"V\", or \"Replay\" to see the board as it was after an earlier move";
+                } else {
+                    output += "\n" + " - Enter \"7\", \"V\", or \"Replay\" to see the board as it was after an earlier move";
                 }
                 return output;
             }
@@ -1,36 +1,114 @@
 package ui;
 
 import chess.ChessGame;
-import chess.ChessMove;
 import chess.ChessPiece;
 import chess.ChessPosition;
 import exception.ResponseException;
 
-import java.util.ArrayList;
+import java.io.PrintStream;
+import java.util.Arrays;
 
+/**
+ * Draws the board as a frame of cells, composed into one buffer and written with a single flush.
+ * In incremental mode the board is pinned to the top of the screen, and later frames only rewrite
+ * the cells that changed since the last one, using cursor positioning.
+ */
 public class DrawBoard {
 
+    //Rows and columns of a frame, including the border
+    private static final int FRAME_SIZE = 10;
+    //Enough for a whole frame with every colour code, so the buffer never grows
+    private static final int FRAME_CAPACITY = 4096;
+    //Columns a cell takes with text pieces; piece glyphs vary in width between terminals
+    private static final int TEXT_CELL_WIDTH = 3;
+
+    /**
+     * One square of the frame. A null foreground leaves the current text color alone, which is
+     * fine for cells that are only spaces.
+     */
+    private record Cell(String background, String foreground, String text) {
+    }
+
+    private final PrintStream out;
     private boolean chessPieceFont = true;
     private int colorFormat = 0;
     private final static int COLOR_OPTIONS = 2;
     private final String[] headers = new String[]{" ", "a", "b", "c", "d", "e", "f", "g", "h", " "};
+    private boolean incremental;
+    //The frame on screen in incremental mode, or null if the next one should be drawn in full
+    private Cell[][] lastFrame;
+
+    public DrawBoard() {
+        this(System.out);
+    }
+
+    public DrawBoard(PrintStream out) {
+        this.out = out;
+    }
 
     public void drawBoard(ChessGame game, ChessGame.TeamColor color, ChessPosition highlightPos) throws ResponseException {
-        if (color == ChessGame.TeamColor.BLACK) {
-            drawBlack(game, highlightPos);
+        drawBoard(game, color, highlightPos, highlightPos == null ? null : new LegalMoveMap(game));
+    }
+
+    /**
+     * @param legalMoves the game's moves, computed when it arrived, which the highlight is read from
+     */
+    public void drawBoard(ChessGame game, ChessGame.TeamColor color, ChessPosition highlightPos,
+                          LegalMoveMap legalMoves) throws ResponseException {
+        Cell[][] frame = buildFrame(game, color, getHighlightMask(game, highlightPos, legalMoves));
+        StringBuilder output = new StringBuilder(FRAME_CAPACITY);
+        if (!incremental) {
+            appendFrame(output, frame);
+        } else if (lastFrame == null) {
+            //Pin the board to the top of the screen and let everything else scroll below it
+            output.append(EscapeSequences.ERASE_SCREEN);
+            appendFrame(output, frame);
+            output.append(EscapeSequences.setScrollRegion(FRAME_SIZE + 1));
+            output.append(EscapeSequences.moveCursorToLocation(1, FRAME_SIZE + 1));
         } else {
-            drawWhite(game, highlightPos);
+            appendChanges(output, frame);
         }
+        lastFrame = incremental ? frame : null;
+        out.print(output);
+        out.flush();
     }
 
     public void setPieceFont(boolean wantChessPieceFont) {
         chessPieceFont = wantChessPieceFont;
+        //Cells change width, so the next frame can't be patched onto this one
+        lastFrame = null;
     }
 
     public void setColorFormat(int format) {
         colorFormat = format;
     }
 
+    /**
+     * Turns incremental drawing on or off. Turning it off, or calling {@link #reset()}, gives the
+     * screen back to normal scrolling.
+     */
+    public void setIncremental(boolean incremental) {
+        if (!incremental) {
+            reset();
+        }
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Forgets the frame on screen, so the next board is drawn in full
+     */
+    public void reset() {
+        if (lastFrame != null) {
+            out.print(EscapeSequences.RESET_SCROLL_REGION + EscapeSequences.ERASE_SCREEN);
+            out.flush();
+            lastFrame = null;
+        }
+    }
+
     public void printColorOptions() {
         ChessPiece[][] testBoard = new ChessPiece[2][2];
         testBoard[0][0] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
@@ -40,119 +118,125 @@ public class DrawBoard {
 
         String[] testHeaders = new String[] {" ", "a", "b", " "};
 
+        StringBuilder output = new StringBuilder(FRAME_CAPACITY);
         int originalFormat = colorFormat;
         for (int i = 0; i < COLOR_OPTIONS; i++) {
             colorFormat = i;
-            System.out.println(" Option " + (i+1) + ")");
-
-            System.out.print(getBorderColor() + getBorderText());
-            for (int col = 0; col < testHeaders.length; col++) {
-                System.out.print(emptySpace() + testHeaders[col] + " ");
-            }
-            System.out.println(resetAll());
+            output.append(" Option ").append(i + 1).append(")\n");
 
-            for (int row = 0; row < testBoard.length; row++) {
-                System.out.print(getBorderColor() + getBorderText());
-                System.out.print(emptySpace() + (row + 1) + " ");
-                System.out.print(resetAll());
-
-                for (int col = 0; col < testBoard.length; col++) {
-                    System.out.print(printPiece(testBoard[row][col], (row + col) % 2 == 1, false));
+            Cell[][] frame = new Cell[testHeaders.length][testHeaders.length];
+            for (int line = 0; line < frame.length; line++) {
+                for (int col = 0; col < frame.length; col++) {
+                    if (line == 0 || line == frame.length - 1) {
+                        frame[line][col] = borderCell(testHeaders[col]);
+                    } else if (col == 0 || col == frame.length - 1) {
+                        frame[line][col] = borderCell(String.valueOf(line));
+                    } else {
+                        frame[line][col] = pieceCell(testBoard[line - 1][col - 1], (line + col) % 2 == 1, false);
+                    }
                 }
-
-                System.out.print(getBorderColor() + getBorderText());
-                System.out.print(emptySpace() + (row + 1) + " ");
-                System.out.println(resetAll());
             }
-
-            System.out.print(getBorderColor() + getBorderText());
-            for (int col = 0; col < testHeaders.length; col++) {
-                System.out.print(emptySpace() + testHeaders[col] + " ");
-            }
-            System.out.println(resetAll());
+            appendFrame(output, frame);
         }
         colorFormat = originalFormat;
+        out.print(output);
+        out.flush();
     }
 
-    private void drawWhite(ChessGame game, ChessPosition highlightPos) throws ResponseException {
-        ArrayList<ChessMove> highlightMoves = getHighlightMoves(game, highlightPos);
-        System.out.println(printCols(ChessGame.TeamColor.WHITE));
-        for (int row = 8; row >= 1; row--) {
-            System.out.print(printRow(row));
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition checkPos = new ChessPosition(row, col);
-                ChessPiece piece = game.getBoard().getPiece(checkPos);
-                printSquare(checkPos, highlightMoves, piece);
+    private Cell[][] buildFrame(ChessGame game, ChessGame.TeamColor color, long highlightMask) {
+        boolean white = color != ChessGame.TeamColor.BLACK;
+        Cell[][] frame = new Cell[FRAME_SIZE][FRAME_SIZE];
+        for (int line = 0; line < FRAME_SIZE; line++) {
+            //White sees row 8 at the top and column a on the left, black the reverse
+            int row = white ? FRAME_SIZE - 1 - line : line;
+            for (int col = 0; col < FRAME_SIZE; col++) {
+                int boardCol = white ? col : FRAME_SIZE - 1 - col;
+                if (line == 0 || line == FRAME_SIZE - 1) {
+                    frame[line][col] = borderCell(headers[boardCol]);
+                } else if (col == 0 || col == FRAME_SIZE - 1) {
+                    frame[line][col] = borderCell(String.valueOf(row));
+                } else {
+                    ChessPosition checkPos = new ChessPosition(row, boardCol);
+                    frame[line][col] = squareCell(checkPos, highlightMask, game.getBoard().getPiece(checkPos));
+                }
             }
-            System.out.println(printRow(row));
         }
-        System.out.println(printCols(ChessGame.TeamColor.WHITE));
+        return frame;
     }
 
-    private void drawBlack(ChessGame game, ChessPosition highlightPos) throws ResponseException {
-        ArrayList<ChessMove> highlightMoves = getHighlightMoves(game, highlightPos);
-        System.out.println(printCols(ChessGame.TeamColor.BLACK));
-        for (int row = 1; row <= 8; row++) {
-            System.out.print(printRow(row));
-            for (int col = 8; col >= 1; col--) {
-                ChessPosition checkPos = new ChessPosition(row, col);
-                ChessPiece piece = game.getBoard().getPiece(checkPos);
-                printSquare(checkPos, highlightMoves, piece);
-            }
-            System.out.println(printRow(row));
+    private void appendFrame(StringBuilder output, Cell[][] frame) {
+        for (Cell[] line : frame) {
+            appendCells(output, line, 0, line.length);
+            output.append('\n');
         }
-        System.out.println(printCols(ChessGame.TeamColor.BLACK));
     }
 
-    private ArrayList<ChessMove> getHighlightMoves(ChessGame game, ChessPosition highlightPos) throws ResponseException {
-        if (highlightPos == null) {
-            return new ArrayList<>();
-        } else {
-            if (game.getBoard().getPiece(highlightPos) == null) {
-                throw new ResponseException("Error: No piece at that spot", 0);
+    /**
+     * Writes the cells that differ from the last frame in place, then puts the cursor back
+     */
+    private void appendChanges(StringBuilder output, Cell[][] frame) {
+        output.append(EscapeSequences.SAVE_CURSOR);
+        for (int line = 0; line < FRAME_SIZE; line++) {
+            if (chessPieceFont) {
+                //Without a known cell width, a changed line is rewritten from its first column
+                if (!Arrays.equals(frame[line], lastFrame[line])) {
+                    output.append(EscapeSequences.moveCursorToLocation(1, line + 1));
+                    appendCells(output, frame[line], 0, FRAME_SIZE);
+                }
+                continue;
             }
-            ArrayList<ChessMove> validMoves = (ArrayList<ChessMove>) game.validMoves(highlightPos);
-            if (validMoves == null) {
-                validMoves = new ArrayList<>();
+            for (int col = 0; col < FRAME_SIZE; col++) {
+                if (!frame[line][col].equals(lastFrame[line][col])) {
+                    output.append(EscapeSequences.moveCursorToLocation(col * TEXT_CELL_WIDTH + 1, line + 1));
+                    appendCells(output, frame[line], col, col + 1);
+                }
             }
-            validMoves.add(new ChessMove(highlightPos, highlightPos, null));
-            return validMoves;
         }
+        output.append(EscapeSequences.RESTORE_CURSOR);
     }
 
-    private void printSquare(ChessPosition checkPos, ArrayList<ChessMove> highlightMoves, ChessPiece piece) {
-        boolean shouldHighlight = false;
-        for (int spot = 0; spot < highlightMoves.size(); spot++) {
-            if (highlightMoves.get(spot).getEndPosition().equals(checkPos)) {
-                highlightMoves.remove(spot);
-                shouldHighlight = true;
-                break;
+    /**
+     * Appends a run of cells, only writing a color code when it differs from the cell before
+     */
+    private void appendCells(StringBuilder output, Cell[] cells, int from, int to) {
+        String background = null;
+        String foreground = null;
+        for (int i = from; i < to; i++) {
+            Cell cell = cells[i];
+            if (!cell.background().equals(background)) {
+                background = cell.background();
+                output.append(background);
+            }
+            if (cell.foreground() != null && !cell.foreground().equals(foreground)) {
+                foreground = cell.foreground();
+                output.append(foreground);
             }
+            output.append(cell.text());
         }
-        boolean isLightSquare = (checkPos.getRow() + checkPos.getColumn()) % 2 == 1;
-        System.out.print(printPiece(piece, isLightSquare, shouldHighlight));
+        output.append(resetAll());
     }
 
-    private String printCols(ChessGame.TeamColor color) {
-        String cols = "";
-        cols += getBorderColor() + getBorderText();
-        if (color == ChessGame.TeamColor.WHITE) {
-            for (int i = 0; i < headers.length; i++) {
-                cols += emptySpace() + headers[i] + " ";
-            }
-        } else {
-            for (int i = headers.length - 1; i >= 0; i--) {
-                cols += emptySpace() + headers[i] + " ";
-            }
+    /**
+     * @return the piece's square and every square it can move to
+     */
+    private long getHighlightMask(ChessGame game, ChessPosition highlightPos, LegalMoveMap legalMoves) throws ResponseException {
+        if (highlightPos == null) {
+            return 0;
         }
-        return cols += resetAll();
+        if (game.getBoard().getPiece(highlightPos) == null) {
+            throw new ResponseException("Error: No piece at that spot", 0);
+        }
+        return legalMoves.targets(highlightPos) | LegalMoveMap.bit(highlightPos);
+    }
+
+    private Cell squareCell(ChessPosition checkPos, long highlightMask, ChessPiece piece) {
+        boolean shouldHighlight = (highlightMask & LegalMoveMap.bit(checkPos)) != 0;
+        boolean isLightSquare = (checkPos.getRow() + checkPos.getColumn()) % 2 == 1;
+        return pieceCell(piece, isLightSquare, shouldHighlight);
     }
 
-    private String printRow(int row) {
-        String rows = "";
-        rows += getBorderColor() + getBorderText();
-        rows += emptySpace() + row + " ";
-        return rows += resetAll();
+    private Cell borderCell(String label) {
+        return new Cell(getBorderColor(), getBorderText(), emptySpace() + label + " ");
     }
 
     private String emptySpace() {
@@ -211,20 +295,13 @@ public class DrawBoard {
         }
     }
 
-    private String printPiece(ChessPiece piece, boolean isLightSquare, boolean shouldHighlight) {
-        String printOut = "";
-        if (!shouldHighlight) {
-            printOut += getBGColor(isLightSquare);
-        } else {
-            printOut += getHighlightBG(isLightSquare);
-        }
+    private Cell pieceCell(ChessPiece piece, boolean isLightSquare, boolean shouldHighlight) {
+        String background = shouldHighlight ? getHighlightBG(isLightSquare) : getBGColor(isLightSquare);
         if (piece == null) {
-            printOut += emptySpace() + "  ";
-        } else {
-            printOut += getTextColor(piece.getTeamColor() == ChessGame.TeamColor.WHITE);
-            printOut += emptySpace() + getPiece(piece.getPieceType()) + " ";
+            return new Cell(background, null, emptySpace() + "  ");
         }
-        return printOut += resetAll();
+        return new Cell(background, getTextColor(piece.getTeamColor() == ChessGame.TeamColor.WHITE),
+                emptySpace() + getPiece(piece.getPieceType()) + " ");
     }
 
     private String getPiece(ChessPiece.PieceType piece) {
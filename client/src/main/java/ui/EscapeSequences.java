@@ -10,6 +10,9 @@ public class EscapeSequences {
 
     public static final String ERASE_SCREEN = UNICODE_ESCAPE + "[H" + UNICODE_ESCAPE + "[2J";
     public static final String ERASE_LINE = UNICODE_ESCAPE + "[2K";
+    public static final String SAVE_CURSOR = UNICODE_ESCAPE + "7";
+    public static final String RESTORE_CURSOR = UNICODE_ESCAPE + "8";
+    public static final String RESET_SCROLL_REGION = UNICODE_ESCAPE + "[r";
 
     public static final String SET_TEXT_BOLD = UNICODE_ESCAPE + "[1m";
     public static final String SET_TEXT_FAINT = UNICODE_ESCAPE + "[2m";
@@ -70,4 +73,6 @@ public class EscapeSequences {
     public static final String EMPTY = "\u2003";
 
     public static String moveCursorToLocation(int x, int y) { return UNICODE_ESCAPE + "[" + y + ";" + x + "H"; }
+
+    public static String setScrollRegion(int top) { return UNICODE_ESCAPE + "[" + top + "r"; }
 }
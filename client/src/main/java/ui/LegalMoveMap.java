@@ -0,0 +1,54 @@
+package ui;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+
+import java.util.Collection;
+
+/**
+ * Every piece's legal moves in one position, as a 64-bit mask of target squares per origin
+ * square. It is built once when a game arrives, so highlighting and checking a move before it
+ * is sent are bit tests instead of new calls to validMoves.
+ */
+public class LegalMoveMap {
+
+    private final long[] targets = new long[64];
+
+    public LegalMoveMap(ChessGame game) {
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition origin = new ChessPosition(row, col);
+                if (game.getBoard().getPiece(origin) == null) {
+                    continue;
+                }
+                Collection<ChessMove> moves = game.validMoves(origin);
+                if (moves == null) {
+                    continue;
+                }
+                for (ChessMove move : moves) {
+                    targets[square(origin)] |= bit(move.getEndPosition());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a mask with a bit set for each square the piece at origin can move to
+     */
+    public long targets(ChessPosition origin) {
+        return targets[square(origin)];
+    }
+
+    public boolean isLegal(ChessPosition origin, ChessPosition target) {
+        return (targets(origin) & bit(target)) != 0;
+    }
+
+    public static long bit(ChessPosition position) {
+        return 1L << square(position);
+    }
+
+    private static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+}
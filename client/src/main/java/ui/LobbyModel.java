@@ -0,0 +1,80 @@
+package ui;
+
+import chess.ChessGame;
+import model.GameData;
+import websocket.messages.LobbyMessage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The client's copy of the list of games, kept up to date by the server's lobby messages instead
+ * of asking for the list again. Changes only ever set a field, so one the snapshot already
+ * includes does no harm when it arrives after it.
+ */
+public class LobbyModel {
+
+    private final TreeMap<Integer, GameData> games = new TreeMap<>();
+    //Games that finished after the snapshot, which only holds games still being played
+    private final Set<Integer> finished = new HashSet<>();
+    private boolean loaded;
+
+    public synchronized void apply(LobbyMessage message) {
+        if (message.getEvent() == LobbyMessage.Event.SNAPSHOT) {
+            games.clear();
+            for (GameData game : message.getGames()) {
+                games.put(game.gameID(), game);
+            }
+            loaded = true;
+            return;
+        }
+        int gameID = message.getGameID();
+        GameData game = games.get(gameID);
+        switch (message.getEvent()) {
+            case GAME_CREATED -> games.putIfAbsent(gameID, new GameData(gameID, null, null, message.getGameName(), null));
+            case SEAT_TAKEN -> setSeat(game, message.getColor(), message.getUsername());
+            case SEAT_FREED -> setSeat(game, message.getColor(), null);
+            case GAME_FINISHED -> finished.add(gameID);
+            default -> {
+            }
+        }
+    }
+
+    private void setSeat(GameData game, ChessGame.TeamColor color, String username) {
+        if (game == null) {
+            return;
+        }
+        games.put(game.gameID(), color == ChessGame.TeamColor.WHITE
+                ? new GameData(game.gameID(), username, game.blackUsername(), game.gameName(), null)
+                : new GameData(game.gameID(), game.whiteUsername(), username, game.gameName(), null));
+    }
+
+    /**
+     * @return whether a snapshot has arrived, so the model can stand in for listing the games
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the games in the order they were created
+     */
+    public synchronized ArrayList<GameData> getGames() {
+        return new ArrayList<>(games.values());
+    }
+
+    public synchronized boolean isFinished(int gameID) {
+        return finished.contains(gameID);
+    }
+
+    /**
+     * Forgets everything, for a new subscription
+     */
+    public synchronized void reset() {
+        games.clear();
+        finished.clear();
+        loaded = false;
+    }
+}
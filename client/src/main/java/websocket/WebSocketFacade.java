@@ -1,47 +1,264 @@
 package websocket;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import client.ServerMessageObserver;
 import exception.ResponseException;
 import jakarta.websocket.*;
+import org.glassfish.tyrus.ext.extension.deflate.PerMessageDeflateExtension;
+import websocket.commands.ResumeCommand;
 import websocket.commands.UserGameCommand;
 import websocket.messages.*;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A client's WebSocket connection to the server. If the connection drops it keeps trying to
+ * reconnect, backing off exponentially with jitter so a restarted server isn't hit by every
+ * client at once, and then resumes the game it was in from the last move it saw and its lobby
+ * subscription.
+ */
 public class WebSocketFacade extends Endpoint {
-    private Session session;
+    private static final long RECONNECT_BASE_MILLIS = 250;
+    private static final long RECONNECT_MAX_MILLIS = 15_000;
+    private static final ScheduledExecutorService RECONNECTS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ws-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Session session;
     private ServerMessageObserver messageObserver;
+    private boolean batching;
+    private boolean binary;
+    private URI socketURI;
+    private ClientEndpointConfig endpointConfig;
+    private volatile boolean closed;
+    private int reconnectAttempts;
+    //The game this connection is in, which a new connection resumes
+    private volatile String resumeAuthToken;
+    private volatile Integer resumeGameID;
+    //Moves seen in that game, or -1 before its state has arrived
+    private volatile int plies = -1;
+    //Who subscribed this connection to the lobby, so a new connection subscribes again
+    private volatile String lobbyAuthToken;
 
     public WebSocketFacade(String url, ServerMessageObserver serverMessageObserver) {
-        try {
-            url = url.replace("http", "ws");
-            URI socketURI = new URI(url + "/ws");
-            messageObserver = serverMessageObserver;
+        this(url, serverMessageObserver, false);
+    }
 
+    /**
+     * @param batching ask the server to coalesce its messages into JSON array frames, which also
+     *                 lets {@link #sendToServer(List)} send several commands in one frame
+     */
+    public WebSocketFacade(String url, ServerMessageObserver serverMessageObserver, boolean batching) {
+        this(url, serverMessageObserver, batching, false);
+    }
+
+    /**
+     * @param binary use the compact {@link BinaryCodec} framing instead of JSON. Binary sessions
+     *               aren't batched, so this takes precedence over batching
+     */
+    public WebSocketFacade(String url, ServerMessageObserver serverMessageObserver, boolean batching, boolean binary) {
+        messageObserver = serverMessageObserver;
+        this.batching = batching && !binary;
+        this.binary = binary;
+        url = url.replace("http", "ws");
+        String path = "/ws";
+        if (binary) {
+            path += "?protocol=binary";
+        } else if (batching) {
+            path += "?batch=true";
+        }
+        socketURI = URI.create(url + path);
+        //Offer permessage-deflate; the server only compresses messages big enough to be worth it
+        endpointConfig = ClientEndpointConfig.Builder.create()
+                .extensions(List.of(new PerMessageDeflateExtension()))
+                .build();
+        if (!openSession()) {
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * @return whether the connection was made
+     */
+    private boolean openSession() {
+        try {
             WebSocketContainer wsContainer = ContainerProvider.getWebSocketContainer();
-            this.session = wsContainer.connectToServer(this, socketURI);
+            Session newSession = wsContainer.connectToServer(this, endpointConfig, socketURI);
 
-            this.session.addMessageHandler(new MessageHandler.Whole<String>() {
+            newSession.addMessageHandler(new MessageHandler.Whole<String>() {
                 @Override
                 public void onMessage(String message) {
-                    ServerMessage serverMessage = new Gson().fromJson(message, ServerMessage.class);
-                    messageObserver.notify(serverMessage.getServerMessageType(), message);
+                    //Batched frames hold several server messages as a JSON array
+                    if (message.startsWith("[")) {
+                        for (JsonElement element : JsonParser.parseString(message).getAsJsonArray()) {
+                            notifyObserver(element.getAsJsonObject(), element.toString());
+                        }
+                    } else {
+                        notifyObserver(JsonParser.parseString(message).getAsJsonObject(), message);
+                    }
+                }
+            });
+            newSession.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+                @Override
+                public void onMessage(ByteBuffer message) {
+                    try {
+                        byte[] data = new byte[message.remaining()];
+                        message.get(data);
+                        ServerMessage serverMessage = BinaryCodec.decodeMessage(data, 0, data.length);
+                        if (serverMessage instanceof LoadGameMessage loadGame) {
+                            plies = loadGame.getPly();
+                        } else if (serverMessage instanceof MovesMessage moves) {
+                            plies = moves.getFromPly() + moves.getMoves().size();
+                        }
+                        messageObserver.notify(serverMessage);
+                    } catch (IOException ex) {
+                        messageObserver.notify(new ErrorMessage("Could not read the server's message"));
+                    }
                 }
             });
+            session = newSession;
+            return true;
         } catch (Exception ex) {
+            return false;
+        }
+    }
 
+    private void notifyObserver(JsonObject json, String message) {
+        ServerMessage.ServerMessageType type = ServerMessage.ServerMessageType.valueOf(
+                json.get("serverMessageType").getAsString());
+        if (type == ServerMessage.ServerMessageType.LOAD_GAME && json.has("ply")) {
+            plies = json.get("ply").getAsInt();
+        } else if (type == ServerMessage.ServerMessageType.MOVES) {
+            plies = json.get("fromPly").getAsInt() + json.getAsJsonArray("moves").size();
         }
+        messageObserver.notify(type, message);
     }
 
     @Override
     public void onOpen(Session session, EndpointConfig endpointConfig) {}
 
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        if (closed || session != this.session) {
+            return;
+        }
+        messageObserver.notify(new NotificationMessage("Lost the connection to the server, reconnecting..."));
+        scheduleReconnect();
+    }
+
+    /**
+     * Tries again after a random delay between half and all of a cap that doubles with every
+     * failed attempt
+     */
+    private synchronized void scheduleReconnect() {
+        long cap = Math.min(RECONNECT_MAX_MILLIS, RECONNECT_BASE_MILLIS << Math.min(reconnectAttempts, 16));
+        reconnectAttempts++;
+        long delay = cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+        RECONNECTS.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        if (closed) {
+            return;
+        }
+        if (!openSession()) {
+            scheduleReconnect();
+            return;
+        }
+        synchronized (this) {
+            reconnectAttempts = 0;
+        }
+        Integer gameID = resumeGameID;
+        String lobbyToken = lobbyAuthToken;
+        if (gameID == null && lobbyToken == null) {
+            return;
+        }
+        try {
+            if (lobbyToken != null) {
+                //The server sends a fresh snapshot, since changes made while we were away weren't kept
+                sendToServer(new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE_LOBBY, lobbyToken, null));
+            }
+            if (gameID != null) {
+                //Without the game's state yet there's nothing to resume from, so connect from scratch
+                sendToServer(plies < 0 ? new UserGameCommand(UserGameCommand.CommandType.CONNECT, resumeAuthToken, gameID)
+                        : new ResumeCommand(resumeAuthToken, gameID, plies));
+            }
+            messageObserver.notify(new NotificationMessage("Reconnected to the server"));
+        } catch (ResponseException ex) {
+            //The new connection dropped too, and its onClose has already scheduled another attempt
+        }
+    }
+
+    /**
+     * Remembers which game and lobby subscription a command puts this connection in, to pick them
+     * up again after reconnecting
+     */
+    private void track(UserGameCommand command) {
+        switch (command.getCommandType()) {
+            case CONNECT -> {
+                resumeAuthToken = command.getAuthToken();
+                resumeGameID = command.getGameID();
+                plies = -1;
+            }
+            case LEAVE -> resumeGameID = null;
+            case SUBSCRIBE_LOBBY -> lobbyAuthToken = command.getAuthToken();
+            case UNSUBSCRIBE_LOBBY -> lobbyAuthToken = null;
+            default -> {
+            }
+        }
+    }
+
     public void sendToServer(UserGameCommand command) throws ResponseException {
+        track(command);
         try {
+            if (binary) {
+                this.session.getBasicRemote().sendBinary(ByteBuffer.wrap(BinaryCodec.encodeCommand(command)));
+                return;
+            }
             this.session.getBasicRemote().sendText(new Gson().toJson(command));
         } catch (Exception ex) {
             throw new ResponseException("Failed to execute the In Game Command", 0);
         }
     }
+
+    public void sendToServer(List<? extends UserGameCommand> commands) throws ResponseException {
+        if (!batching) {
+            for (UserGameCommand command : commands) {
+                sendToServer(command);
+            }
+            return;
+        }
+        commands.forEach(this::track);
+        try {
+            this.session.getBasicRemote().sendText(new Gson().toJson(commands));
+        } catch (Exception ex) {
+            throw new ResponseException("Failed to execute the In Game Command", 0);
+        }
+    }
+
+    /**
+     * Hangs up for good, without reconnecting
+     */
+    public void close() throws ResponseException {
+        closed = true;
+        try {
+            if (session != null) {
+                session.close();
+            }
+        } catch (IOException ex) {
+            throw new ResponseException("Failed to close the connection", 0);
+        }
+    }
 }
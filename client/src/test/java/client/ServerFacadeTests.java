@@ -7,6 +7,11 @@ import requests.*;
 import results.*;
 import server.Server;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 
 public class ServerFacadeTests {
 
@@ -231,4 +236,27 @@ public class ServerFacadeTests {
         });
         goodRegister();
     }
+
+    @Test
+    public void goodAsyncRequests() {
+        String authToken = getAuthToken("goodAsync");
+        List<CompletableFuture<CreateGameResult>> creates = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            creates.add(serverFacade.createGameAsync(new CreateGameRequest(authToken, "Async Game" + i)));
+        }
+        for (CompletableFuture<CreateGameResult> create : creates) {
+            Assertions.assertTrue(create.join().gameID() > 0);
+        }
+        ListGamesResult games = serverFacade.listGamesAsync(new ListGamesRequest(authToken)).join();
+        Assertions.assertEquals(20, games.games().size());
+        Assertions.assertNull(serverFacade.logoutAsync(new LogoutRequest(authToken)).join());
+    }
+
+    @Test
+    public void badAuthAsync() {
+        CompletionException ex = Assertions.assertThrows(CompletionException.class, () -> {
+            serverFacade.listGamesAsync(new ListGamesRequest("1234")).join();
+        });
+        Assertions.assertInstanceOf(ResponseException.class, ex.getCause());
+    }
 }
@@ -0,0 +1,82 @@
+package ui;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import exception.ResponseException;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import websocket.messages.MovesMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+public class ClientPLAYTests {
+
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+    private ClientPLAY clientPLAY;
+
+    @BeforeEach
+    public void setup() {
+        clientPLAY = new ClientPLAY("http://localhost:0", new DrawBoard(new PrintStream(new ByteArrayOutputStream())), null);
+        clientPLAY.setGameInfo(new GameData(1, "white", "black", "game", new ChessGame()));
+    }
+
+    @Test
+    public void confirmedMoveKeepsShownBoard() throws Exception {
+        clientPLAY.showPendingMove(E4);
+        ChessGame shown = clientPLAY.getGameInfo().game();
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, shown.getTeamTurn());
+        Assertions.assertTrue(clientPLAY.getLegalMoves().isLegal(new ChessPosition(7, 5), new ChessPosition(5, 5)));
+
+        ChessGame server = new ChessGame();
+        server.makeMove(E4);
+        Assertions.assertFalse(clientPLAY.receiveGame(new GameData(1, "white", "black", "game", server)));
+        Assertions.assertSame(server, clientPLAY.getGameInfo().game());
+        Assertions.assertFalse(clientPLAY.rollBack());
+    }
+
+    @Test
+    public void differentServerStateReplacesShownBoard() throws Exception {
+        clientPLAY.showPendingMove(E4);
+        ChessGame server = new ChessGame();
+        Assertions.assertTrue(clientPLAY.receiveGame(new GameData(1, "white", "black", "game", server)));
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, clientPLAY.getGameInfo().game().getTeamTurn());
+        Assertions.assertTrue(clientPLAY.getLegalMoves().isLegal(new ChessPosition(2, 5), new ChessPosition(4, 5)));
+    }
+
+    @Test
+    public void missedMovesReplaceShownMove() throws Exception {
+        ChessMove d4 = new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null);
+        ChessMove d5 = new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null);
+        clientPLAY.showPendingMove(E4);
+        Assertions.assertTrue(clientPLAY.receiveMoves(new MovesMessage(1, 0, List.of(d4, d5), false)));
+
+        ChessGame expected = new ChessGame();
+        expected.makeMove(d4);
+        expected.makeMove(d5);
+        Assertions.assertEquals(expected, clientPLAY.getGameInfo().game());
+        Assertions.assertFalse(clientPLAY.rollBack());
+        Assertions.assertTrue(clientPLAY.getLegalMoves().isLegal(new ChessPosition(2, 5), new ChessPosition(4, 5)));
+        //Nothing missed and nothing shown leaves the board as it is
+        Assertions.assertFalse(clientPLAY.receiveMoves(new MovesMessage(1, 2, List.of(), false)));
+    }
+
+    @Test
+    public void rejectedMoveRollsBack() throws Exception {
+        ChessGame start = clientPLAY.getGameInfo().game();
+        clientPLAY.showPendingMove(E4);
+        Assertions.assertTrue(clientPLAY.rollBack());
+        Assertions.assertSame(start, clientPLAY.getGameInfo().game());
+        Assertions.assertTrue(clientPLAY.getLegalMoves().isLegal(new ChessPosition(2, 5), new ChessPosition(4, 5)));
+
+        ResponseException ex = Assertions.assertThrows(ResponseException.class, () -> clientPLAY.showPendingMove(
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(5, 5), null)));
+        Assertions.assertEquals("Error: Invalid Move", ex.getMessage());
+        Assertions.assertSame(start, clientPLAY.getGameInfo().game());
+    }
+}
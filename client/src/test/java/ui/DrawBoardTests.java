@@ -0,0 +1,106 @@
+package ui;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import exception.ResponseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+public class DrawBoardTests {
+
+    private ByteArrayOutputStream bytes;
+    private DrawBoard drawBoard;
+
+    @BeforeEach
+    public void setup() {
+        bytes = new ByteArrayOutputStream();
+        drawBoard = new DrawBoard(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        drawBoard.setPieceFont(false);
+    }
+
+    @Test
+    public void fullFrameHasEveryLine() throws Exception {
+        drawBoard.drawBoard(new ChessGame(), ChessGame.TeamColor.WHITE, null);
+        String[] lines = strip(takeOutput()).split("\n");
+        Assertions.assertEquals(10, lines.length);
+        Assertions.assertEquals("    a  b  c  d  e  f  g  h    ", lines[0]);
+        Assertions.assertEquals(" 8  R  N  B  Q  K  B  N  R  8 ", lines[1]);
+        Assertions.assertEquals(" 1  R  N  B  Q  K  B  N  R  1 ", lines[8]);
+
+        drawBoard.drawBoard(new ChessGame(), ChessGame.TeamColor.BLACK, null);
+        lines = strip(takeOutput()).split("\n");
+        Assertions.assertEquals("    h  g  f  e  d  c  b  a    ", lines[0]);
+        Assertions.assertEquals(" 1  R  N  B  K  Q  B  N  R  1 ", lines[1]);
+    }
+
+    @Test
+    public void highlightComesFromLegalMoveMap() throws Exception {
+        ChessGame game = new ChessGame();
+        drawBoard.drawBoard(game, ChessGame.TeamColor.WHITE, new ChessPosition(1, 2), new LegalMoveMap(game));
+        String[] lines = takeOutput().split("\n");
+        //The knight's square, a3 and c3 are highlighted
+        Assertions.assertEquals(1, highlights(lines[8]));
+        Assertions.assertEquals(2, highlights(lines[6]));
+        Assertions.assertEquals(0, highlights(lines[7]));
+        Assertions.assertThrows(ResponseException.class,
+                () -> drawBoard.drawBoard(game, ChessGame.TeamColor.WHITE, new ChessPosition(4, 4), new LegalMoveMap(game)));
+    }
+
+    @Test
+    public void incrementalFrameOnlyWritesChangedSquares() throws Exception {
+        ChessGame game = new ChessGame();
+        drawBoard.setIncremental(true);
+        drawBoard.drawBoard(game, ChessGame.TeamColor.WHITE, null);
+        String first = takeOutput();
+        Assertions.assertTrue(first.startsWith(EscapeSequences.ERASE_SCREEN));
+        Assertions.assertTrue(first.contains(EscapeSequences.setScrollRegion(11)));
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        drawBoard.drawBoard(game, ChessGame.TeamColor.WHITE, null);
+        String update = takeOutput();
+        Assertions.assertTrue(update.startsWith(EscapeSequences.SAVE_CURSOR));
+        Assertions.assertTrue(update.endsWith(EscapeSequences.RESTORE_CURSOR));
+        //Below the header line, e4 is on the sixth line of the screen and e2 on the eighth
+        Assertions.assertTrue(update.contains(EscapeSequences.moveCursorToLocation(16, 6)));
+        Assertions.assertTrue(update.contains(EscapeSequences.moveCursorToLocation(16, 8)));
+        Assertions.assertEquals(2, update.split("H", -1).length - 1);
+
+        drawBoard.drawBoard(game, ChessGame.TeamColor.WHITE, null);
+        Assertions.assertEquals(EscapeSequences.SAVE_CURSOR + EscapeSequences.RESTORE_CURSOR, takeOutput());
+    }
+
+    @Test
+    public void fontChangeRedrawsInFull() throws Exception {
+        drawBoard.setIncremental(true);
+        drawBoard.drawBoard(new ChessGame(), ChessGame.TeamColor.WHITE, null);
+        takeOutput();
+        drawBoard.setPieceFont(true);
+        drawBoard.drawBoard(new ChessGame(), ChessGame.TeamColor.WHITE, null);
+        Assertions.assertTrue(takeOutput().contains(EscapeSequences.ERASE_SCREEN));
+
+        drawBoard.setIncremental(false);
+        Assertions.assertTrue(takeOutput().contains(EscapeSequences.RESET_SCROLL_REGION));
+    }
+
+    private String takeOutput() {
+        String output = bytes.toString(StandardCharsets.UTF_8);
+        bytes.reset();
+        return output;
+    }
+
+    private static int highlights(String line) {
+        return line.split(Pattern.quote(EscapeSequences.SET_BG_COLOR_YELLOW), -1).length
+                + line.split(Pattern.quote(EscapeSequences.SET_BG_COLOR_ORANGE), -1).length - 2;
+    }
+
+    private static String strip(String output) {
+        return output.replaceAll("\u001b\\[[0-9;]*m", "");
+    }
+}
@@ -0,0 +1,52 @@
+package ui;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class LegalMoveMapTests {
+
+    @Test
+    public void masksMatchValidMoves() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        LegalMoveMap legalMoves = new LegalMoveMap(game);
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition origin = new ChessPosition(row, col);
+                Set<ChessPosition> expected = new HashSet<>();
+                if (game.getBoard().getPiece(origin) != null) {
+                    for (ChessMove move : game.validMoves(origin)) {
+                        expected.add(move.getEndPosition());
+                    }
+                }
+                Set<ChessPosition> actual = new HashSet<>();
+                for (int targetRow = 1; targetRow <= 8; targetRow++) {
+                    for (int targetCol = 1; targetCol <= 8; targetCol++) {
+                        ChessPosition target = new ChessPosition(targetRow, targetCol);
+                        if (legalMoves.isLegal(origin, target)) {
+                            actual.add(target);
+                        }
+                    }
+                }
+                Assertions.assertEquals(expected, actual, row + "," + col);
+            }
+        }
+    }
+
+    @Test
+    public void blackPiecesAreMappedOnWhitesTurn() {
+        LegalMoveMap legalMoves = new LegalMoveMap(new ChessGame());
+        Assertions.assertTrue(legalMoves.isLegal(new ChessPosition(8, 2), new ChessPosition(6, 3)));
+        Assertions.assertFalse(legalMoves.isLegal(new ChessPosition(8, 1), new ChessPosition(6, 1)));
+        Assertions.assertEquals(0, legalMoves.targets(new ChessPosition(4, 4)));
+        Assertions.assertEquals(LegalMoveMap.bit(new ChessPosition(3, 5)) | LegalMoveMap.bit(new ChessPosition(4, 5)),
+                legalMoves.targets(new ChessPosition(2, 5)));
+    }
+}
@@ -0,0 +1,36 @@
+package ui;
+
+import chess.ChessGame;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.messages.LobbyMessage;
+
+import java.util.List;
+
+public class LobbyModelTests {
+
+    @Test
+    public void changesApplyToSnapshot() {
+        LobbyModel lobby = new LobbyModel();
+        Assertions.assertFalse(lobby.isLoaded());
+        lobby.apply(LobbyMessage.snapshot(List.of(new GameData(101, "white", null, "first", null))));
+        Assertions.assertTrue(lobby.isLoaded());
+
+        lobby.apply(LobbyMessage.gameCreated(102, "second"));
+        lobby.apply(LobbyMessage.seatTaken(102, ChessGame.TeamColor.BLACK, "black"));
+        lobby.apply(LobbyMessage.seatFreed(101, ChessGame.TeamColor.WHITE));
+        lobby.apply(LobbyMessage.gameFinished(101));
+        //A change the snapshot already had, arriving after it
+        lobby.apply(LobbyMessage.gameCreated(102, "second"));
+
+        Assertions.assertEquals(List.of(new GameData(101, null, null, "first", null),
+                new GameData(102, null, "black", "second", null)), lobby.getGames());
+        Assertions.assertTrue(lobby.isFinished(101));
+        Assertions.assertFalse(lobby.isFinished(102));
+
+        lobby.reset();
+        Assertions.assertFalse(lobby.isLoaded());
+        Assertions.assertTrue(lobby.getGames().isEmpty());
+    }
+}
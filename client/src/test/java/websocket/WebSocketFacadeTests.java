@@ -0,0 +1,223 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import client.ServerFacade;
+import client.ServerMessageObserver;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.*;
+import requests.CreateGameRequest;
+import requests.JoinGameRequest;
+import requests.RegisterRequest;
+import server.Server;
+import server.ServerConfig;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.ResumeCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.LobbyMessage;
+import websocket.messages.MovesMessage;
+import websocket.messages.ServerMessage;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class WebSocketFacadeTests {
+
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+    private static Server server;
+    private static String serverURL;
+    private static ServerFacade serverFacade;
+
+    private final Queue white = new Queue();
+    private final Queue black = new Queue();
+    private String whiteToken;
+    private String blackToken;
+    private int gameID;
+
+    private static class Queue implements ServerMessageObserver {
+        private final BlockingQueue<ServerMessage> messages = new LinkedBlockingQueue<>();
+
+        @Override
+        public void notify(ServerMessage.ServerMessageType type, String message) {
+            Class<? extends ServerMessage> messageClass = switch (type) {
+                case LOAD_GAME -> LoadGameMessage.class;
+                case MOVES -> MovesMessage.class;
+                case LOBBY -> LobbyMessage.class;
+                default -> ServerMessage.class;
+            };
+            messages.add(new Gson().fromJson(message, messageClass));
+        }
+
+        <T extends ServerMessage> T next(Class<T> messageClass) throws InterruptedException {
+            while (true) {
+                ServerMessage message = messages.poll(10, TimeUnit.SECONDS);
+                Assertions.assertNotNull(message, "Timed out waiting for " + messageClass.getSimpleName());
+                if (messageClass.isInstance(message)) {
+                    return messageClass.cast(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * A plain WebSocket that keeps the server's frames as they came, to see how messages were batched
+     */
+    private static class RawSocket extends Endpoint {
+
+        final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        final Session session;
+
+        RawSocket(String path) throws Exception {
+            session = ContainerProvider.getWebSocketContainer().connectToServer(this,
+                    ClientEndpointConfig.Builder.create().build(), URI.create(serverURL.replace("http", "ws") + path));
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, frames::add);
+        }
+
+        JsonElement next() throws InterruptedException {
+            String frame = frames.poll(10, TimeUnit.SECONDS);
+            Assertions.assertNotNull(frame, "Timed out waiting for a frame");
+            return JsonParser.parseString(frame);
+        }
+    }
+
+    @BeforeAll
+    public static void init() {
+        ServerConfig defaults = ServerConfig.fromSystemProperties();
+        //A batch window long enough that replies to commands sent together always share a frame
+        server = new Server(new ServerConfig(defaults.useVirtualThreads(), defaults.hashThreads(),
+                defaults.hashQueueLimit(), defaults.bcryptWorkFactor(), 200, defaults.compressionThreshold(),
+                defaults.botThreads(), defaults.botQueueLimit(), defaults.botThinkMillis(), defaults.openingBookPath(),
+                defaults.tablebasePath(), defaults.useMemoryDatabase()));
+        serverURL = "http://localhost:" + server.run(0);
+        serverFacade = new ServerFacade(serverURL);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    public void setup() throws Exception {
+        serverFacade.clear();
+        whiteToken = serverFacade.register(new RegisterRequest("white", "password", "w@mail")).authToken();
+        blackToken = serverFacade.register(new RegisterRequest("black", "password", "b@mail")).authToken();
+        gameID = serverFacade.createGame(new CreateGameRequest(whiteToken, "resume")).gameID();
+        serverFacade.joinGame(new JoinGameRequest(whiteToken, ChessGame.TeamColor.WHITE, gameID));
+        serverFacade.joinGame(new JoinGameRequest(blackToken, ChessGame.TeamColor.BLACK, gameID));
+    }
+
+    @Test
+    public void resumeSendsOnlyMissedMoves() throws Exception {
+        WebSocketFacade whiteSocket = new WebSocketFacade(serverURL, white);
+        whiteSocket.sendToServer(new UserGameCommand(UserGameCommand.CommandType.CONNECT, whiteToken, gameID));
+        Assertions.assertEquals(0, white.next(LoadGameMessage.class).getPly());
+        whiteSocket.sendToServer(new MakeMoveCommand(whiteToken, gameID, E4));
+        Assertions.assertEquals(1, white.next(LoadGameMessage.class).getPly());
+
+        //Binary, so the moves go through the codec as well
+        WebSocketFacade blackSocket = new WebSocketFacade(serverURL, black, false, true);
+        blackSocket.sendToServer(new ResumeCommand(blackToken, gameID, 0));
+        MovesMessage moves = black.next(MovesMessage.class);
+        Assertions.assertEquals(0, moves.getFromPly());
+        Assertions.assertEquals(List.of(E4), moves.getMoves());
+        Assertions.assertFalse(moves.isGameOver());
+
+        //More moves than the game has means the client has the wrong game
+        blackSocket.sendToServer(new ResumeCommand(blackToken, gameID, 5));
+        Assertions.assertEquals(1, black.next(LoadGameMessage.class).getPly());
+
+        whiteSocket.close();
+        blackSocket.close();
+    }
+
+    @Test
+    public void batchingIsNegotiated() throws Exception {
+        String connect = new Gson().toJson(List.of(
+                new UserGameCommand(UserGameCommand.CommandType.CONNECT, whiteToken, gameID),
+                new UserGameCommand(UserGameCommand.CommandType.CONNECT, blackToken, gameID)));
+
+        //Without ?batch=true the two commands in the array still both run, but each reply is its own frame
+        RawSocket plain = new RawSocket("/ws");
+        plain.session.getBasicRemote().sendText(connect);
+        for (int i = 0; i < 2; i++) {
+            JsonElement frame = plain.next();
+            Assertions.assertTrue(frame.isJsonObject(), frame.toString());
+            Assertions.assertEquals("LOAD_GAME", frame.getAsJsonObject().get("serverMessageType").getAsString());
+        }
+        plain.session.close();
+
+        //With it, both replies arrive within the window and go out together as one array
+        RawSocket batched = new RawSocket("/ws?batch=true");
+        batched.session.getBasicRemote().sendText(connect);
+        JsonElement frame = batched.next();
+        Assertions.assertTrue(frame.isJsonArray(), frame.toString());
+        Assertions.assertEquals(2, frame.getAsJsonArray().size());
+        for (JsonElement message : frame.getAsJsonArray()) {
+            Assertions.assertEquals("LOAD_GAME", message.getAsJsonObject().get("serverMessageType").getAsString());
+        }
+        batched.session.close();
+    }
+
+    @Test
+    public void batchedCommandsGoOutInOneFrame() throws Exception {
+        WebSocketFacade whiteSocket = new WebSocketFacade(serverURL, white, true);
+        whiteSocket.sendToServer(List.of(new UserGameCommand(UserGameCommand.CommandType.CONNECT, whiteToken, gameID),
+                new MakeMoveCommand(whiteToken, gameID, E4)));
+        //The facade splits the server's array frame back into its messages, in order
+        Assertions.assertEquals(0, white.next(LoadGameMessage.class).getPly());
+        Assertions.assertEquals(1, white.next(LoadGameMessage.class).getPly());
+        whiteSocket.close();
+    }
+
+    @Test
+    public void lobbySubscriptionGetsChanges() throws Exception {
+        WebSocketFacade lobbySocket = new WebSocketFacade(serverURL, white);
+        lobbySocket.sendToServer(new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE_LOBBY, whiteToken, null));
+        LobbyMessage snapshot = white.next(LobbyMessage.class);
+        Assertions.assertEquals(LobbyMessage.Event.SNAPSHOT, snapshot.getEvent());
+        Assertions.assertEquals(1, snapshot.getGames().size());
+        Assertions.assertEquals("black", snapshot.getGames().getFirst().blackUsername());
+
+        int newGameID = serverFacade.createGame(new CreateGameRequest(blackToken, "second")).gameID();
+        LobbyMessage created = white.next(LobbyMessage.class);
+        Assertions.assertEquals(LobbyMessage.Event.GAME_CREATED, created.getEvent());
+        Assertions.assertEquals(newGameID, created.getGameID());
+
+        serverFacade.joinGame(new JoinGameRequest(blackToken, ChessGame.TeamColor.WHITE, newGameID));
+        LobbyMessage seat = white.next(LobbyMessage.class);
+        Assertions.assertEquals(LobbyMessage.Event.SEAT_TAKEN, seat.getEvent());
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, seat.getColor());
+        Assertions.assertEquals("black", seat.getUsername());
+
+        //A player leaving frees the seat for everyone watching the lobby
+        WebSocketFacade blackSocket = new WebSocketFacade(serverURL, black);
+        blackSocket.sendToServer(new UserGameCommand(UserGameCommand.CommandType.CONNECT, blackToken, gameID));
+        black.next(LoadGameMessage.class);
+        blackSocket.sendToServer(new UserGameCommand(UserGameCommand.CommandType.LEAVE, blackToken, gameID));
+        LobbyMessage freed = white.next(LobbyMessage.class);
+        Assertions.assertEquals(LobbyMessage.Event.SEAT_FREED, freed.getEvent());
+        Assertions.assertEquals(gameID, freed.getGameID());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, freed.getColor());
+
+        lobbySocket.close();
+        blackSocket.close();
+    }
+}
@@ -0,0 +1,86 @@
+package loadtest;
+
+import client.ServerMessageObserver;
+import com.google.gson.Gson;
+import exception.ResponseException;
+import websocket.WebSocketFacade;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.LobbyMessage;
+import websocket.messages.MovesMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ReplayMessage;
+import websocket.messages.ServerMessage;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A virtual client's WebSocket connection, which queues the server's messages so the client
+ * can wait for the one a command should produce
+ */
+class GameSocket implements ServerMessageObserver, AutoCloseable {
+
+    private static final Gson GSON = new Gson();
+
+    private final BlockingQueue<ServerMessage> messages = new LinkedBlockingQueue<>();
+    private final WebSocketFacade facade;
+
+    GameSocket(String serverURL, boolean batching) {
+        facade = new WebSocketFacade(serverURL, this, batching);
+    }
+
+    @Override
+    public void notify(ServerMessage.ServerMessageType type, String message) {
+        messages.add(switch (type) {
+            case LOAD_GAME -> GSON.fromJson(message, LoadGameMessage.class);
+            case ERROR -> GSON.fromJson(message, ErrorMessage.class);
+            case NOTIFICATION -> GSON.fromJson(message, NotificationMessage.class);
+            case MOVES -> GSON.fromJson(message, MovesMessage.class);
+            case LOBBY -> GSON.fromJson(message, LobbyMessage.class);
+            case REPLAY -> GSON.fromJson(message, ReplayMessage.class);
+        });
+    }
+
+    void send(UserGameCommand command) throws ResponseException {
+        facade.sendToServer(command);
+    }
+
+    /**
+     * Waits for the next game state, skipping notifications
+     *
+     * @return the game, or null if nothing came within the timeout
+     * @throws ResponseException if the server sent an error instead
+     */
+    LoadGameMessage awaitGame(long timeoutMillis) throws ResponseException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            ServerMessage message = messages.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (message == null) {
+                return null;
+            } else if (message instanceof ErrorMessage error) {
+                throw new ResponseException(error.getErrorMessage(), 0);
+            } else if (message instanceof LoadGameMessage game) {
+                return game;
+            }
+        }
+    }
+
+    /**
+     * Like {@link #awaitGame(long)}, but not hearing back in time is an error
+     */
+    LoadGameMessage requireGame(long timeoutMillis) throws ResponseException, InterruptedException {
+        LoadGameMessage game = awaitGame(timeoutMillis);
+        if (game == null) {
+            throw new ResponseException("Timed out waiting for the game", 0);
+        }
+        return game;
+    }
+
+    @Override
+    public void close() throws ResponseException {
+        facade.close();
+    }
+}
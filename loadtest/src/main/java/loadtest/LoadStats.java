@@ -0,0 +1,70 @@
+package loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and errors for each kind of operation the virtual clients run
+ */
+public class LoadStats {
+
+    /**
+     * @param latency how long the successful runs took
+     * @param errors  runs that failed or timed out
+     */
+    public record Operation(LatencyHistogram latency, LongAdder errors) {
+
+        public long getCount() {
+            return latency.getCount() + errors.sum();
+        }
+    }
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final LongAdder observerUpdates = new LongAdder();
+
+    public void record(String operation, long nanos, boolean success) {
+        Operation stats = getOperation(operation);
+        if (success) {
+            stats.latency().recordNanos(nanos);
+        } else {
+            stats.errors().increment();
+        }
+    }
+
+    public Operation getOperation(String operation) {
+        return operations.computeIfAbsent(operation, name -> new Operation(new LatencyHistogram(), new LongAdder()));
+    }
+
+    public void addObserverUpdate() {
+        observerUpdates.increment();
+    }
+
+    public long getObserverUpdates() {
+        return observerUpdates.sum();
+    }
+
+    public void printReport(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        out.printf("%-12s %9s %8s %8s %10s %9s %9s %9s %9s%n", "operation", "count", "errors", "error %", "ops/sec",
+                "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long total = 0;
+        long totalErrors = 0;
+        for (Map.Entry<String, Operation> entry : new TreeMap<>(operations).entrySet()) {
+            Operation stats = entry.getValue();
+            LatencyHistogram latency = stats.latency();
+            long count = stats.getCount();
+            long errors = stats.errors().sum();
+            total += count;
+            totalErrors += errors;
+            out.printf("%-12s %9d %8d %7.2f%% %10.1f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), count, errors,
+                    100.0 * errors / Math.max(1, count), count / seconds, latency.percentile(50) / 1000.0,
+                    latency.percentile(99) / 1000.0, latency.percentile(99.9) / 1000.0, latency.getMax() / 1000.0);
+        }
+        out.printf("%-12s %9d %8d %7.2f%% %10.1f%n", "total", total, totalErrors, 100.0 * totalErrors / Math.max(1, total),
+                total / seconds);
+        out.printf("%d game updates reached observers in %.1fs%n", getObserverUpdates(), seconds);
+    }
+}
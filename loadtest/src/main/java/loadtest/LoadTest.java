@@ -0,0 +1,120 @@
+package loadtest;
+
+import client.ServerFacade;
+import server.Server;
+import server.ServerConfig;
+
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Runs many virtual players and observers against a server at once and reports the throughput,
+ * latency percentiles and error rate of every operation. Without --url it starts its own server
+ * with the memory DAOs, configured from the usual -Dchess.* properties.
+ * <p>
+ * Usage: {@code LoadTest [--url URL] [--clients N] [--duration SECONDS] [--ramp SECONDS]
+ * [--mix play=40,observe=30,lobby=20,account=10] [--moves PLIES] [--observe-moves N]
+ * [--timeout MILLIS] [--bcrypt COST] [--batch]}
+ */
+public final class LoadTest {
+
+    //Slots for games observers can pick from
+    private static final int RECENT_GAMES = 1024;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestConfig defaults = LoadTestConfig.defaults();
+        String url = defaults.serverURL();
+        int clients = defaults.clients();
+        int duration = defaults.durationSeconds();
+        int ramp = defaults.rampSeconds();
+        Scenario.Mix mix = defaults.mix();
+        int moves = defaults.maxPlies();
+        int observeMoves = defaults.observeMoves();
+        long timeout = defaults.timeoutMillis();
+        int bcrypt = defaults.bcryptWorkFactor();
+        boolean batching = defaults.batching();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url" -> url = args[++i];
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--duration" -> duration = Integer.parseInt(args[++i]);
+                case "--ramp" -> ramp = Integer.parseInt(args[++i]);
+                case "--mix" -> mix = Scenario.Mix.parse(args[++i]);
+                case "--moves" -> moves = Integer.parseInt(args[++i]);
+                case "--observe-moves" -> observeMoves = Integer.parseInt(args[++i]);
+                case "--timeout" -> timeout = Long.parseLong(args[++i]);
+                case "--bcrypt" -> bcrypt = Integer.parseInt(args[++i]);
+                case "--batch" -> batching = true;
+                default -> {
+                    System.out.println("Usage: LoadTest [--url URL] [--clients N] [--duration SECONDS] [--ramp SECONDS]"
+                            + " [--mix " + Scenario.DEFAULT_MIX + "] [--moves PLIES] [--observe-moves N]"
+                            + " [--timeout MILLIS] [--bcrypt COST] [--batch]");
+                    return;
+                }
+            }
+        }
+        run(new LoadTestConfig(url, clients, duration, ramp, mix, moves, observeMoves, timeout, bcrypt, batching),
+                System.out);
+        //Javalin's WebSocket ping thread isn't a daemon and outlives the server's stop()
+        System.exit(0);
+    }
+
+    /**
+     * Runs the load and prints the report
+     *
+     * @return the stats the report was made from
+     */
+    public static LoadStats run(LoadTestConfig config, PrintStream out) throws InterruptedException {
+        Server server = null;
+        String serverURL = config.serverURL();
+        if (serverURL == null) {
+            server = new Server(inProcessConfig(config));
+            serverURL = "http://localhost:" + server.run(0);
+        }
+        out.printf("%d clients for %ds against %s, mix %s%n", config.clients(), config.durationSeconds(), serverURL,
+                config.mix().weights());
+
+        LoadStats stats = new LoadStats();
+        //One facade for every client, so they all share its pooled connections
+        ServerFacade facade = new ServerFacade(serverURL, ServerFacade.newClient());
+        AtomicIntegerArray recentGames = new AtomicIntegerArray(RECENT_GAMES);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+        long rampNanos = TimeUnit.SECONDS.toNanos(config.rampSeconds());
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < config.clients(); i++) {
+                if (rampNanos > 0) {
+                    long startAt = start + rampNanos * i / config.clients();
+                    TimeUnit.NANOSECONDS.sleep(startAt - System.nanoTime());
+                }
+                clients.execute(new VirtualClient(config, serverURL, facade, stats, recentGames, deadline, i));
+            }
+            clients.shutdown();
+            //Past the deadline a client still finishes its pass, which waits on at most a few replies
+            long grace = TimeUnit.MILLISECONDS.toNanos(config.timeoutMillis() * 4);
+            if (!clients.awaitTermination(deadline + grace - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                clients.shutdownNow();
+            }
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+        stats.printReport(out, System.nanoTime() - start);
+        return stats;
+    }
+
+    private static ServerConfig inProcessConfig(LoadTestConfig config) {
+        ServerConfig base = ServerConfig.fromSystemProperties();
+        return new ServerConfig(base.useVirtualThreads(), base.hashThreads(), base.hashQueueLimit(),
+                config.bcryptWorkFactor() > 0 ? config.bcryptWorkFactor() : base.bcryptWorkFactor(),
+                base.batchWindowMillis(), base.compressionThreshold(), base.botThreads(), base.botQueueLimit(),
+                base.botThinkMillis(), base.openingBookPath(), base.tablebasePath(), true);
+    }
+}
@@ -0,0 +1,23 @@
+package loadtest;
+
+/**
+ * @param serverURL       server to load, or null to start one in this process with memory DAOs
+ * @param clients         virtual clients running at once
+ * @param durationSeconds how long clients keep starting new scenarios
+ * @param rampSeconds     time over which the clients are started, evenly spaced
+ * @param mix             how often each scenario is picked
+ * @param maxPlies        most moves a played game gets before both players leave
+ * @param observeMoves    moves an observer watches before it leaves
+ * @param timeoutMillis   longest wait for the server's reply to a WebSocket command
+ * @param bcryptWorkFactor BCrypt cost for the in-process server, or 0 for the server's default
+ * @param batching        connect with ?batch=true, so the server coalesces each client's messages
+ */
+public record LoadTestConfig(String serverURL, int clients, int durationSeconds, int rampSeconds, Scenario.Mix mix,
+                             int maxPlies, int observeMoves, long timeoutMillis, int bcryptWorkFactor,
+                             boolean batching) {
+
+    public static LoadTestConfig defaults() {
+        return new LoadTestConfig(null, 100, 30, 0, Scenario.Mix.parse(Scenario.DEFAULT_MIX), 40, 10, 10_000, 0,
+                false);
+    }
+}
@@ -0,0 +1,61 @@
+package loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * What a virtual client does on one pass through its loop
+ */
+public enum Scenario {
+    //Register, log out, log back in, list the games and log out
+    ACCOUNT,
+    //Register, create a game, list the games and join the new one
+    LOBBY,
+    //Two players start a game and play random legal moves against each other
+    PLAY,
+    //Connect to a game being played and watch its moves
+    OBSERVE;
+
+    public static final String DEFAULT_MIX = "play=40,observe=30,lobby=20,account=10";
+
+    /**
+     * Chooses scenarios at random in proportion to their weights
+     */
+    public record Mix(Map<Scenario, Integer> weights) {
+
+        /**
+         * @param spec comma separated scenario=weight pairs, such as {@value DEFAULT_MIX}
+         */
+        public static Mix parse(String spec) {
+            Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split("=");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected scenario=weight, got " + part);
+                }
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Negative weight for " + pair[0]);
+                }
+                weights.put(Scenario.valueOf(pair[0].trim().toUpperCase()), weight);
+            }
+            if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+                throw new IllegalArgumentException("The scenario mix needs a positive weight");
+            }
+            return new Mix(weights);
+        }
+
+        public Scenario pick(Random random) {
+            int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+            int roll = random.nextInt(total);
+            for (Map.Entry<Scenario, Integer> entry : weights.entrySet()) {
+                roll -= entry.getValue();
+                if (roll < 0) {
+                    return entry.getKey();
+                }
+            }
+            throw new IllegalStateException("Weights changed while picking");
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package loadtest;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import client.ServerFacade;
+import requests.*;
+import results.*;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One simulated user, running scenarios picked from the mix until the deadline. Every request
+ * is timed under its operation's name; a failed one is counted as an error and ends the pass.
+ */
+class VirtualClient implements Runnable {
+
+    private static final String PASSWORD = "load-test";
+    //Usernames have to be unique, including against earlier runs on the same server
+    private static final String RUN = Long.toString(System.currentTimeMillis(), 36);
+    private static final AtomicLong NAMES = new AtomicLong();
+
+    private interface Step<T> {
+        T run() throws Exception;
+    }
+
+    private final LoadTestConfig config;
+    private final String serverURL;
+    private final ServerFacade facade;
+    private final LoadStats stats;
+    //Games started recently, for observers to pick from; 0 is an empty slot
+    private final AtomicIntegerArray recentGames;
+    private final long deadlineNanos;
+    private final Random random;
+
+    VirtualClient(LoadTestConfig config, String serverURL, ServerFacade facade, LoadStats stats,
+                  AtomicIntegerArray recentGames, long deadlineNanos, long seed) {
+        this.config = config;
+        this.serverURL = serverURL;
+        this.facade = facade;
+        this.stats = stats;
+        this.recentGames = recentGames;
+        this.deadlineNanos = deadlineNanos;
+        random = new Random(seed);
+    }
+
+    @Override
+    public void run() {
+        while (System.nanoTime() < deadlineNanos) {
+            try {
+                switch (config.mix().pick(random)) {
+                    case ACCOUNT -> account();
+                    case LOBBY -> lobby();
+                    case PLAY -> play();
+                    case OBSERVE -> observe();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                //Already counted as an error by the step that failed
+            }
+        }
+    }
+
+    private void account() throws Exception {
+        String username = newUsername();
+        String authToken = register(username);
+        logout(authToken);
+        LoginResult login = timed("login", () -> facade.login(new LoginRequest(username, PASSWORD)));
+        timed("listGames", () -> facade.listGames(new ListGamesRequest(login.authToken())));
+        logout(login.authToken());
+    }
+
+    private void lobby() throws Exception {
+        String authToken = register(newUsername());
+        int gameID = createGame(authToken);
+        timed("listGames", () -> facade.listGames(new ListGamesRequest(authToken)));
+        join(authToken, random.nextBoolean() ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK, gameID);
+        logout(authToken);
+    }
+
+    private void play() throws Exception {
+        String white = register(newUsername());
+        String black = register(newUsername());
+        int gameID = createGame(white);
+        join(white, ChessGame.TeamColor.WHITE, gameID);
+        join(black, ChessGame.TeamColor.BLACK, gameID);
+        try (GameSocket whiteSocket = connect(white, gameID); GameSocket blackSocket = connect(black, gameID)) {
+            recentGames.set(random.nextInt(recentGames.length()), gameID);
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < config.maxPlies() && System.nanoTime() < deadlineNanos; ply++) {
+                List<ChessMove> moves = legalMoves(game);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                ChessMove move = moves.get(random.nextInt(moves.size()));
+                boolean whiteMoves = game.getTeamTurn() == ChessGame.TeamColor.WHITE;
+                GameSocket mover = whiteMoves ? whiteSocket : blackSocket;
+                String moverToken = whiteMoves ? white : black;
+                timed("move", () -> {
+                    mover.send(new MakeMoveCommand(moverToken, gameID, move));
+                    return mover.requireGame(config.timeoutMillis());
+                });
+                //The opponent sees the move before answering it, so its update isn't mistaken for the next one
+                (whiteMoves ? blackSocket : whiteSocket).requireGame(config.timeoutMillis());
+                game.makeMove(move);
+            }
+            whiteSocket.send(new UserGameCommand(UserGameCommand.CommandType.LEAVE, white, gameID));
+            blackSocket.send(new UserGameCommand(UserGameCommand.CommandType.LEAVE, black, gameID));
+        }
+    }
+
+    private void observe() throws Exception {
+        String authToken = register(newUsername());
+        int gameID = recentGames.get(random.nextInt(recentGames.length()));
+        if (gameID == 0) {
+            //Nothing being played yet, so watch whatever game the server lists
+            ListGamesResult games = timed("listGames", () -> facade.listGames(new ListGamesRequest(authToken)));
+            if (games.games().isEmpty()) {
+                return;
+            }
+            gameID = games.games().iterator().next().gameID();
+        }
+        int watchedID = gameID;
+        try (GameSocket socket = connect(authToken, watchedID)) {
+            for (int i = 0; i < config.observeMoves() && System.nanoTime() < deadlineNanos; i++) {
+                if (socket.awaitGame(config.timeoutMillis()) == null) {
+                    break;
+                }
+                stats.addObserverUpdate();
+            }
+            socket.send(new UserGameCommand(UserGameCommand.CommandType.LEAVE, authToken, watchedID));
+        }
+    }
+
+    private String register(String username) throws Exception {
+        RegisterResult result = timed("register",
+                () -> facade.register(new RegisterRequest(username, PASSWORD, username + "@load.test")));
+        return result.authToken();
+    }
+
+    private void logout(String authToken) throws Exception {
+        timed("logout", () -> {
+            facade.logout(new LogoutRequest(authToken));
+            return null;
+        });
+    }
+
+    private int createGame(String authToken) throws Exception {
+        return timed("createGame", () -> facade.createGame(new CreateGameRequest(authToken, "load " + RUN))).gameID();
+    }
+
+    private void join(String authToken, ChessGame.TeamColor color, int gameID) throws Exception {
+        timed("joinGame", () -> {
+            facade.joinGame(new JoinGameRequest(authToken, color, gameID));
+            return null;
+        });
+    }
+
+    /**
+     * Opens a WebSocket and connects to the game, timed until its state arrives
+     */
+    private GameSocket connect(String authToken, int gameID) throws Exception {
+        return timed("connect", () -> {
+            GameSocket socket = new GameSocket(serverURL, config.batching());
+            try {
+                socket.send(new UserGameCommand(UserGameCommand.CommandType.CONNECT, authToken, gameID));
+                socket.requireGame(config.timeoutMillis());
+                return socket;
+            } catch (Exception ex) {
+                socket.close();
+                throw ex;
+            }
+        });
+    }
+
+    private <T> T timed(String operation, Step<T> step) throws Exception {
+        long start = System.nanoTime();
+        try {
+            T result = step.run();
+            stats.record(operation, System.nanoTime() - start, true);
+            return result;
+        } catch (InterruptedException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            stats.record(operation, System.nanoTime() - start, false);
+            throw ex;
+        }
+    }
+
+    private static String newUsername() {
+        return "load-" + RUN + "-" + NAMES.incrementAndGet();
+    }
+
+    private static List<ChessMove> legalMoves(ChessGame game) {
+        List<ChessMove> moves = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition square = new ChessPosition(row, col);
+                ChessPiece piece = game.getBoard().getPiece(square);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    moves.addAll(game.validMoves(square));
+                }
+            }
+        }
+        return moves;
+    }
+}
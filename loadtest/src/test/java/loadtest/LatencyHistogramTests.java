@@ -0,0 +1,36 @@
+package loadtest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long value : new long[]{0, 1, 63, 64, 65, 127, 128, 1_000, 123_456, 10_000_000_000L, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            Assertions.assertTrue(LatencyHistogram.highestValue(index) >= value, String.valueOf(value));
+            if (index > 0) {
+                Assertions.assertTrue(LatencyHistogram.highestValue(index - 1) < value, String.valueOf(value));
+            }
+        }
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+        Assertions.assertEquals(100_000, histogram.getCount());
+        assertNear(50_000, histogram.percentile(50));
+        assertNear(99_000, histogram.percentile(99));
+        assertNear(99_900, histogram.percentile(99.9));
+        Assertions.assertEquals(100_000, histogram.percentile(100));
+        Assertions.assertEquals(0, new LatencyHistogram().percentile(99));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assertions.assertTrue(Math.abs(actual - expected) <= expected * 0.04, expected + " vs " + actual);
+    }
+}
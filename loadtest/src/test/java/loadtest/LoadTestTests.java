@@ -0,0 +1,50 @@
+package loadtest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class LoadTestTests {
+
+    @Test
+    public void shortRunAgainstInProcessServer() throws Exception {
+        LoadTestConfig config = new LoadTestConfig(null, 6, 3, 0,
+                Scenario.Mix.parse("play=2,observe=1,lobby=1,account=1"), 6, 2, 5_000, 4, false);
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        LoadStats stats = LoadTest.run(config, new PrintStream(report, true, StandardCharsets.UTF_8));
+
+        for (String operation : new String[]{"register", "createGame", "joinGame", "connect", "move"}) {
+            LoadStats.Operation operationStats = stats.getOperation(operation);
+            Assertions.assertTrue(operationStats.latency().getCount() > 0, operation);
+            Assertions.assertEquals(0, operationStats.errors().sum(), operation);
+        }
+        String text = report.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(text.contains("p999 ms"));
+        Assertions.assertTrue(text.contains("move"));
+    }
+
+    @Test
+    public void shortBatchedRun() throws Exception {
+        LoadTestConfig config = new LoadTestConfig(null, 4, 2, 0, Scenario.Mix.parse("play=2,observe=1"), 6, 2,
+                5_000, 4, true);
+        LoadStats stats = LoadTest.run(config, new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+
+        for (String operation : new String[]{"connect", "move"}) {
+            LoadStats.Operation operationStats = stats.getOperation(operation);
+            Assertions.assertTrue(operationStats.latency().getCount() > 0, operation);
+            Assertions.assertEquals(0, operationStats.errors().sum(), operation);
+        }
+    }
+
+    @Test
+    public void mixParsing() {
+        Scenario.Mix mix = Scenario.Mix.parse("play=1, observe=0");
+        Assertions.assertEquals(Scenario.PLAY, mix.pick(new Random(1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Scenario.Mix.parse("observe=0"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Scenario.Mix.parse("dance=3"));
+    }
+}
@@ -0,0 +1,255 @@
+package analysis;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.engine.Engine;
+import chess.engine.Position;
+import chess.engine.Search;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.Tablebase;
+import chess.engine.TranspositionTable;
+import dataaccess.AnalysisDAO;
+import dataaccess.DataAccessException;
+import dataaccess.GameDAO;
+import exception.ResponseException;
+import model.GameData;
+import model.PlyAnalysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Batch job that annotates finished games. Games are read from the {@link GameDAO} one at a
+ * time in gameID order, replayed move by move through {@link ChessGame}, and every position
+ * they passed through is searched on a ForkJoin pool. Each game's results are written to the
+ * {@link AnalysisDAO} as one row per position.
+ * <p>
+ * After every batch of games the job saves a checkpoint, so a run that is stopped picks up where
+ * it left off. The checkpoint never passes a game that wasn't over yet, so games still being
+ * played are looked at again on the next run; finished games past it that already have their
+ * analysis saved are skipped rather than searched again.
+ */
+public class AnalysisJob {
+
+    public static final String DEFAULT_JOB_NAME = "default";
+    public static final int DEFAULT_DEPTH = 5;
+
+    private static final int BATCH_GAMES = 16;
+    private static final int POSITIONS_PER_TASK = 2;
+    //Mates count as this many centipawns when working out how much a move lost
+    private static final int LOSS_CLAMP = 2000;
+
+    /**
+     * @param games        games analysed so far in this run
+     * @param positions    positions searched so far in this run
+     * @param lastGameID   checkpoint saved after the latest batch, the highest gameID with no
+     *                     unfinished game at or below it
+     * @param elapsedNanos time since the run started
+     */
+    public record Progress(int games, long positions, int lastGameID, long elapsedNanos) {
+
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+        }
+
+        public double positionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : positions * 1e9 / elapsedNanos;
+        }
+    }
+
+    private record ReplayedGame(int gameID, Position[] positions) {
+    }
+
+    private final GameDAO gameDAO;
+    private final AnalysisDAO analysisDAO;
+    private final ForkJoinPool pool;
+    private final SearchLimits limits;
+    private final String jobName;
+    //Pool threads are long lived, so each keeps one engine and its table for the whole run
+    private final ThreadLocal<Engine> engines;
+
+    public AnalysisJob(GameDAO gameDAO, AnalysisDAO analysisDAO, ForkJoinPool pool, SearchLimits limits, String jobName) {
+        this(gameDAO, analysisDAO, pool, limits, jobName, null);
+    }
+
+    /**
+     * @param tablebase endgame tables that give exact results for positions with few pieces, or null
+     */
+    public AnalysisJob(GameDAO gameDAO, AnalysisDAO analysisDAO, ForkJoinPool pool, SearchLimits limits, String jobName,
+                       Tablebase tablebase) {
+        this.gameDAO = gameDAO;
+        this.analysisDAO = analysisDAO;
+        this.pool = pool;
+        this.limits = limits;
+        this.jobName = jobName;
+        engines = ThreadLocal.withInitial(() -> new Engine(
+                new TranspositionTable(8, TranspositionTable.Replacement.DEPTH_PREFERRED), 1, null, tablebase));
+    }
+
+    /**
+     * Analyses every finished game after the job's checkpoint that hasn't been analysed yet.
+     *
+     * @param onProgress called after each batch of games is saved
+     */
+    public Progress run(Consumer<Progress> onProgress) throws ResponseException {
+        return run(onProgress, false);
+    }
+
+    /**
+     * @param onProgress called after each batch of games is saved
+     * @param reanalyse  search games again even if their analysis is already saved, e.g. after
+     *                   the checkpoint is reset
+     */
+    public Progress run(Consumer<Progress> onProgress, boolean reanalyse) throws ResponseException {
+        long start = System.nanoTime();
+        int checkpoint = analysisDAO.getCheckpoint(jobName);
+        List<Integer> gameIDs = new ArrayList<>();
+        for (GameData game : gameDAO.listGames()) {
+            if (game.gameID() > checkpoint) {
+                gameIDs.add(game.gameID());
+            }
+        }
+        gameIDs.sort(null);
+
+        Progress progress = new Progress(0, 0, checkpoint, 0);
+        boolean unfinishedSeen = false;
+        for (int batchStart = 0; batchStart < gameIDs.size(); batchStart += BATCH_GAMES) {
+            List<Integer> batch = gameIDs.subList(batchStart, Math.min(batchStart + BATCH_GAMES, gameIDs.size()));
+            List<ReplayedGame> replayed = new ArrayList<>();
+            int positionCount = 0;
+            for (int gameID : batch) {
+                GameData gameData = loadGame(gameID);
+                if (gameData != null && gameData.game() != null && !gameData.game().isGameOver()) {
+                    unfinishedSeen = true;
+                    continue;
+                }
+                if (!unfinishedSeen) {
+                    checkpoint = gameID;
+                }
+                //Analysed on an earlier run that couldn't move the checkpoint past it
+                if (gameData == null || (!reanalyse && !analysisDAO.getAnalysis(gameID).isEmpty())) {
+                    continue;
+                }
+                ReplayedGame game = replayGame(gameData);
+                if (game != null) {
+                    replayed.add(game);
+                    positionCount += game.positions().length;
+                }
+            }
+
+            //Search the whole batch as one task, so short games don't leave workers idle
+            Position[] positions = new Position[positionCount];
+            int next = 0;
+            for (ReplayedGame game : replayed) {
+                System.arraycopy(game.positions(), 0, positions, next, game.positions().length);
+                next += game.positions().length;
+            }
+            SearchResult[] results = new SearchResult[positionCount];
+            pool.invoke(new EvaluateTask(positions, results, 0, positionCount));
+
+            next = 0;
+            for (ReplayedGame game : replayed) {
+                analysisDAO.saveAnalysis(game.gameID(), annotate(game.positions(), results, next));
+                next += game.positions().length;
+            }
+            analysisDAO.saveCheckpoint(jobName, checkpoint);
+            progress = new Progress(progress.games() + replayed.size(), progress.positions() + positionCount,
+                    checkpoint, System.nanoTime() - start);
+            onProgress.accept(progress);
+        }
+        return progress;
+    }
+
+    private GameData loadGame(int gameID) throws ResponseException {
+        try {
+            return gameDAO.getGame(gameID);
+        } catch (DataAccessException ex) {
+            //Deleted since the list was read
+            return null;
+        }
+    }
+
+    private static ReplayedGame replayGame(GameData gameData) {
+        ChessGame game = gameData.game();
+        if (game == null || game.getMoveHistory().isEmpty()) {
+            return null;
+        }
+        Position[] positions = replay(game.getMoveHistory());
+        return positions == null ? null : new ReplayedGame(gameData.gameID(), positions);
+    }
+
+    /**
+     * @return every position the moves pass through, starting position included, or null if
+     * one of the moves isn't legal
+     */
+    static Position[] replay(List<ChessMove> moves) {
+        ChessGame replay = new ChessGame();
+        Position[] positions = new Position[moves.size() + 1];
+        positions[0] = Position.fromGame(replay);
+        for (int i = 0; i < moves.size(); i++) {
+            try {
+                replay.makeMove(moves.get(i));
+            } catch (InvalidMoveException ex) {
+                return null;
+            }
+            positions[i + 1] = Position.fromGame(replay);
+        }
+        return positions;
+    }
+
+    private static List<PlyAnalysis> annotate(Position[] positions, SearchResult[] results, int offset) {
+        List<PlyAnalysis> plies = new ArrayList<>(positions.length);
+        for (int ply = 0; ply < positions.length; ply++) {
+            SearchResult result = results[offset + ply];
+            int score = Math.max(-Search.MATE, Math.min(Search.MATE, result.score()));
+            int whiteScore = positions[ply].sideToMove() == Position.WHITE ? score : -score;
+            int loss = 0;
+            if (ply + 1 < positions.length) {
+                //Scores are from the side to move, which flips after the move is played
+                int before = clampForLoss(result.score());
+                int after = -clampForLoss(results[offset + ply + 1].score());
+                loss = Math.max(0, before - after);
+            }
+            plies.add(new PlyAnalysis(ply, whiteScore, result.move(), loss, PlyAnalysis.Judgement.of(loss)));
+        }
+        return plies;
+    }
+
+    private static int clampForLoss(int score) {
+        return Math.max(-LOSS_CLAMP, Math.min(LOSS_CLAMP, score));
+    }
+
+    private class EvaluateTask extends RecursiveAction {
+
+        private final Position[] positions;
+        private final SearchResult[] results;
+        private final int start;
+        private final int end;
+
+        EvaluateTask(Position[] positions, SearchResult[] results, int start, int end) {
+            this.positions = positions;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= POSITIONS_PER_TASK) {
+                Engine engine = engines.get();
+                for (int i = start; i < end; i++) {
+                    results[i] = engine.chooseMove(positions[i], limits);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new EvaluateTask(positions, results, start, middle),
+                    new EvaluateTask(positions, results, middle, end));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package analysis;
+
+import chess.engine.SearchLimits;
+import chess.engine.Tablebase;
+import dataaccess.AnalysisDAO;
+import dataaccess.GameDAO;
+import dataaccess.MemoryAnalysisDAO;
+import dataaccess.MemoryGameDAO;
+import dataaccess.sql.SQLAnalysisDAO;
+import dataaccess.sql.SQLGameDAO;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs {@link AnalysisJob} from the command line against the database in db.properties, with
+ * no server needed. Options: {@code --depth N}, {@code --threads N}, {@code --job NAME},
+ * {@code --tablebases DIR} for exact endgame results, and {@code --restart} to forget the
+ * checkpoint and analyse every game again.
+ */
+public class AnalysisMain {
+
+    public static void main(String[] args) throws Exception {
+        int depth = AnalysisJob.DEFAULT_DEPTH;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String jobName = AnalysisJob.DEFAULT_JOB_NAME;
+        boolean restart = false;
+        Tablebase tablebase = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--job" -> jobName = args[++i];
+                case "--tablebases" -> tablebase = Tablebase.open(Path.of(args[++i]));
+                case "--restart" -> restart = true;
+                default -> {
+                    System.out.println("Usage: AnalysisMain [--depth N] [--threads N] [--job NAME] [--tablebases DIR] [--restart]");
+                    return;
+                }
+            }
+        }
+
+        GameDAO gameDAO;
+        AnalysisDAO analysisDAO;
+        try {
+            gameDAO = new SQLGameDAO();
+            analysisDAO = new SQLAnalysisDAO();
+        } catch (Exception ex) {
+            //Without MySQL there are no stored games, but the run still shows the job works
+            System.out.println("Failed to open the database (" + ex.getMessage() + "), using memory DAOs");
+            gameDAO = new MemoryGameDAO();
+            analysisDAO = new MemoryAnalysisDAO();
+        }
+        if (restart) {
+            analysisDAO.saveCheckpoint(jobName, 0);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        AnalysisJob job = new AnalysisJob(gameDAO, analysisDAO, pool, SearchLimits.depth(depth), jobName,
+                tablebase);
+        AnalysisJob.Progress result = job.run(progress -> System.out.printf(
+                "%d games, %d positions, up to game %d, %.1f games/s, %.0f positions/s%n", progress.games(),
+                progress.positions(), progress.lastGameID(), progress.gamesPerSecond(), progress.positionsPerSecond()),
+                restart);
+        pool.shutdown();
+        System.out.printf("Done: %d games and %d positions in %.1fs%n", result.games(), result.positions(),
+                result.elapsedNanos() / 1e9);
+    }
+}
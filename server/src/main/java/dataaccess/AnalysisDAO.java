@@ -0,0 +1,14 @@
+package dataaccess;
+
+import exception.ResponseException;
+import model.PlyAnalysis;
+
+import java.util.List;
+
+public interface AnalysisDAO {
+    void saveAnalysis(int gameID, List<PlyAnalysis> plies) throws ResponseException;
+    List<PlyAnalysis> getAnalysis(int gameID) throws ResponseException;
+    int getCheckpoint(String jobName) throws ResponseException;
+    void saveCheckpoint(String jobName, int lastGameID) throws ResponseException;
+    void clearAnalysis() throws ResponseException;
+}
@@ -9,6 +9,14 @@ public interface GameDAO {
     int createGame(String gameName) throws ResponseException;
     GameData getGame(int gameID) throws DataAccessException, ResponseException;
     Collection<GameData> listGames() throws ResponseException;
+    /**
+     * Lists the games that aren't over, without their boards
+     */
+    Collection<GameData> listOpenGames() throws ResponseException;
     void updateGame(GameData gameData) throws DataAccessException, ResponseException;
+    /**
+     * Saves several games at once, each under a new gameID in place of the one it has
+     */
+    void importGames(Collection<GameData> games) throws ResponseException;
     void clearGames() throws ResponseException;
 }
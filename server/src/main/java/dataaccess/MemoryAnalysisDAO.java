@@ -0,0 +1,38 @@
+package dataaccess;
+
+import model.PlyAnalysis;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class MemoryAnalysisDAO implements AnalysisDAO {
+
+    ConcurrentHashMap<Integer, List<PlyAnalysis>> analyses;
+    ConcurrentHashMap<String, Integer> checkpoints;
+
+    public MemoryAnalysisDAO() {
+        analyses = new ConcurrentHashMap<>();
+        checkpoints = new ConcurrentHashMap<>();
+    }
+
+    public void saveAnalysis(int gameID, List<PlyAnalysis> plies) {
+        analyses.put(gameID, List.copyOf(plies));
+    }
+
+    public List<PlyAnalysis> getAnalysis(int gameID) {
+        return analyses.getOrDefault(gameID, List.of());
+    }
+
+    public int getCheckpoint(String jobName) {
+        return checkpoints.getOrDefault(jobName, 0);
+    }
+
+    public void saveCheckpoint(String jobName, int lastGameID) {
+        checkpoints.put(jobName, lastGameID);
+    }
+
+    public void clearAnalysis() {
+        analyses.clear();
+        checkpoints.clear();
+    }
+}
@@ -2,14 +2,14 @@ package dataaccess;
 
 import model.AuthData;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MemoryAuthDAO implements AuthDAO {
 
-    HashMap<String, AuthData> auths;
+    ConcurrentHashMap<String, AuthData> auths;
 
     public MemoryAuthDAO() {
-        auths = new HashMap<>();
+        auths = new ConcurrentHashMap<>();
     }
 
     public void createAuth(String username, String authToken) {
@@ -18,7 +18,7 @@ public class MemoryAuthDAO implements AuthDAO {
     }
 
     public AuthData getAuth(String authToken) throws DataAccessException {
-        AuthData auth = auths.get(authToken);
+        AuthData auth = authToken == null ? null : auths.get(authToken);
         if (auth == null) {
             throw new DataAccessException("Unauthorized");
         }
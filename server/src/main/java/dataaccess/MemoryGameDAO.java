@@ -5,22 +5,24 @@ import model.GameData;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MemoryGameDAO implements GameDAO {
 
-    HashMap<Integer, GameData> games;
-    int nextGameID;
+    ConcurrentHashMap<Integer, GameData> games;
+    AtomicInteger nextGameID;
 
     public MemoryGameDAO() {
-        games = new HashMap<>();
-        nextGameID = 101;
+        games = new ConcurrentHashMap<>();
+        nextGameID = new AtomicInteger(101);
     }
 
     public int createGame(String gameName) {
-        GameData newGame = new GameData(nextGameID, null, null, gameName, new ChessGame());
-        games.put(nextGameID, newGame);
-        return nextGameID++;
+        int gameID = nextGameID.getAndIncrement();
+        GameData newGame = new GameData(gameID, null, null, gameName, new ChessGame());
+        games.put(gameID, newGame);
+        return gameID;
     }
 
     public GameData getGame(int gameID) throws DataAccessException {
@@ -39,6 +41,16 @@ public class MemoryGameDAO implements GameDAO {
         return gameList;
     }
 
+    public Collection<GameData> listOpenGames() {
+        Collection<GameData> gameList = new ArrayList<>();
+        for (GameData gameData : games.values()) {
+            if (gameData.game() == null || !gameData.game().isGameOver()) {
+                gameList.add(new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), null));
+            }
+        }
+        return gameList;
+    }
+
     public void updateGame(GameData gameData) throws DataAccessException {
         GameData oldGame = games.get(gameData.gameID());
         if(oldGame == null) {
@@ -47,6 +59,14 @@ public class MemoryGameDAO implements GameDAO {
         games.put(gameData.gameID(), gameData);
     }
 
+    public void importGames(Collection<GameData> gameList) {
+        for (GameData gameData : gameList) {
+            int gameID = nextGameID.getAndIncrement();
+            games.put(gameID, new GameData(gameID, gameData.whiteUsername(), gameData.blackUsername(),
+                    gameData.gameName(), gameData.game()));
+        }
+    }
+
     public void clearGames() {
         games.clear();
     }
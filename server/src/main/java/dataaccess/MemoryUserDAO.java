@@ -2,13 +2,13 @@ package dataaccess;
 
 import model.UserData;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MemoryUserDAO implements UserDAO {
-    HashMap<String, UserData> users;
+    ConcurrentHashMap<String, UserData> users;
 
     public MemoryUserDAO() {
-        users = new HashMap<>();
+        users = new ConcurrentHashMap<>();
     }
 
     public void createUser(String username, String password, String email) {
@@ -17,7 +17,7 @@ public class MemoryUserDAO implements UserDAO {
     }
 
     public UserData getUser(String username) throws DataAccessException {
-        UserData user = users.get(username);
+        UserData user = username == null ? null : users.get(username);
         if (user == null) {
             throw new DataAccessException("No such user");
         }
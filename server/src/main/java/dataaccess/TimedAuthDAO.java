@@ -0,0 +1,67 @@
+package dataaccess;
+
+import exception.ResponseException;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import model.AuthData;
+
+/**
+ * Wraps another AuthDAO and records how long each call takes
+ */
+public class TimedAuthDAO implements AuthDAO {
+
+    private final AuthDAO authDAO;
+    private final Histogram createAuthTimer;
+    private final Histogram getAuthTimer;
+    private final Histogram deleteAuthTimer;
+    private final Histogram clearAuthsTimer;
+
+    public TimedAuthDAO(AuthDAO authDAO, MetricsRegistry metrics) {
+        this.authDAO = authDAO;
+        createAuthTimer = timer(metrics, "auth", "createAuth");
+        getAuthTimer = timer(metrics, "auth", "getAuth");
+        deleteAuthTimer = timer(metrics, "auth", "deleteAuth");
+        clearAuthsTimer = timer(metrics, "auth", "clearAuths");
+    }
+
+    static Histogram timer(MetricsRegistry metrics, String dao, String method) {
+        return metrics.timer("dao_call_duration_seconds", "Time spent in each data access call",
+                "dao", dao, "method", method);
+    }
+
+    public void createAuth(String username, String authToken) throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            authDAO.createAuth(username, authToken);
+        } finally {
+            createAuthTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public AuthData getAuth(String authToken) throws DataAccessException, ResponseException {
+        long start = System.nanoTime();
+        try {
+            return authDAO.getAuth(authToken);
+        } finally {
+            getAuthTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public void deleteAuth(String authToken) throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            authDAO.deleteAuth(authToken);
+        } finally {
+            deleteAuthTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public void clearAuths() throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            authDAO.clearAuths();
+        } finally {
+            clearAuthsTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dataaccess;
+
+import exception.ResponseException;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import model.GameData;
+
+import java.util.Collection;
+
+/**
+ * Wraps another GameDAO and records how long each call takes
+ */
+public class TimedGameDAO implements GameDAO {
+
+    private final GameDAO gameDAO;
+    private final Histogram createGameTimer;
+    private final Histogram getGameTimer;
+    private final Histogram listGamesTimer;
+    private final Histogram listOpenGamesTimer;
+    private final Histogram updateGameTimer;
+    private final Histogram importGamesTimer;
+    private final Histogram clearGamesTimer;
+
+    public TimedGameDAO(GameDAO gameDAO, MetricsRegistry metrics) {
+        this.gameDAO = gameDAO;
+        createGameTimer = TimedAuthDAO.timer(metrics, "game", "createGame");
+        getGameTimer = TimedAuthDAO.timer(metrics, "game", "getGame");
+        listGamesTimer = TimedAuthDAO.timer(metrics, "game", "listGames");
+        listOpenGamesTimer = TimedAuthDAO.timer(metrics, "game", "listOpenGames");
+        updateGameTimer = TimedAuthDAO.timer(metrics, "game", "updateGame");
+        importGamesTimer = TimedAuthDAO.timer(metrics, "game", "importGames");
+        clearGamesTimer = TimedAuthDAO.timer(metrics, "game", "clearGames");
+    }
+
+    public int createGame(String gameName) throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            return gameDAO.createGame(gameName);
+        } finally {
+            createGameTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public GameData getGame(int gameID) throws DataAccessException, ResponseException {
+        long start = System.nanoTime();
+        try {
+            return gameDAO.getGame(gameID);
+        } finally {
+            getGameTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public Collection<GameData> listGames() throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            return gameDAO.listGames();
+        } finally {
+            listGamesTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public Collection<GameData> listOpenGames() throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            return gameDAO.listOpenGames();
+        } finally {
+            listOpenGamesTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public void updateGame(GameData gameData) throws DataAccessException, ResponseException {
+        long start = System.nanoTime();
+        try {
+            gameDAO.updateGame(gameData);
+        } finally {
+            updateGameTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public void importGames(Collection<GameData> games) throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            gameDAO.importGames(games);
+        } finally {
+            importGamesTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public void clearGames() throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            gameDAO.clearGames();
+        } finally {
+            clearGamesTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package dataaccess;
+
+import exception.ResponseException;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import model.UserData;
+
+/**
+ * Wraps another UserDAO and records how long each call takes
+ */
+public class TimedUserDAO implements UserDAO {
+
+    private final UserDAO userDAO;
+    private final Histogram createUserTimer;
+    private final Histogram getUserTimer;
+    private final Histogram clearUsersTimer;
+
+    public TimedUserDAO(UserDAO userDAO, MetricsRegistry metrics) {
+        this.userDAO = userDAO;
+        createUserTimer = TimedAuthDAO.timer(metrics, "user", "createUser");
+        getUserTimer = TimedAuthDAO.timer(metrics, "user", "getUser");
+        clearUsersTimer = TimedAuthDAO.timer(metrics, "user", "clearUsers");
+    }
+
+    public void createUser(String username, String password, String email) throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            userDAO.createUser(username, password, email);
+        } finally {
+            createUserTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public UserData getUser(String username) throws DataAccessException, ResponseException {
+        long start = System.nanoTime();
+        try {
+            return userDAO.getUser(username);
+        } finally {
+            getUserTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public void clearUsers() throws ResponseException {
+        long start = System.nanoTime();
+        try {
+            userDAO.clearUsers();
+        } finally {
+            clearUsersTimer.observeNanos(System.nanoTime() - start);
+        }
+    }
+}
@@ -5,8 +5,10 @@ import dataaccess.DataAccessException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DatabaseManager {
     private static String databaseName;
@@ -14,6 +16,12 @@ public class DatabaseManager {
     private static String dbPassword;
     private static String connectionUrl;
 
+    //Connection statistics for the /metrics endpoint. Every DAO call opens its own connection,
+    //so these show how often we connect and how long each connect takes.
+    private static final LongAdder CONNECTIONS_OPENED = new LongAdder();
+    private static final LongAdder CONNECTION_FAILURES = new LongAdder();
+    private static final LongAdder CONNECT_NANOS = new LongAdder();
+
     /*
      * Load the database information for the db.properties file.
      */
@@ -47,16 +55,33 @@ public class DatabaseManager {
      * </code>
      */
     static Connection getConnection() throws DataAccessException {
+        long start = System.nanoTime();
         try {
             //do not wrap the following line with a try-with-resources
             var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
             conn.setCatalog(databaseName);
+            CONNECTIONS_OPENED.increment();
             return conn;
         } catch (SQLException ex) {
+            CONNECTION_FAILURES.increment();
             throw new DataAccessException("failed to get connection", ex);
+        } finally {
+            CONNECT_NANOS.add(System.nanoTime() - start);
         }
     }
 
+    public static long getConnectionsOpened() {
+        return CONNECTIONS_OPENED.sum();
+    }
+
+    public static long getConnectionFailures() {
+        return CONNECTION_FAILURES.sum();
+    }
+
+    public static long getConnectNanos() {
+        return CONNECT_NANOS.sum();
+    }
+
     private static void loadPropertiesFromResources() {
         try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
             if (propStream == null) {
@@ -77,7 +102,8 @@ public class DatabaseManager {
 
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
-        connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+        //Lets the driver send a batch of inserts as multi-row statements instead of one at a time
+        connectionUrl = String.format("jdbc:mysql://%s:%d?rewriteBatchedStatements=true", host, port);
     }
 
     private final static String CREATE_AUTH_STATEMENT = """
@@ -95,10 +121,18 @@ public class DatabaseManager {
             blackUsername VARCHAR(256) DEFAULT NULL,
             gameName VARCHAR(256) NOT NULL,
             game TEXT NOT NULL,
+            finished BOOLEAN NOT NULL DEFAULT FALSE,
             PRIMARY KEY (gameID)
         )
         """;
 
+    //For game tables made before games had a finished flag
+    private final static String ADD_GAME_FINISHED_STATEMENT =
+        "ALTER TABLE game ADD COLUMN finished BOOLEAN NOT NULL DEFAULT FALSE";
+
+    private final static String FILL_GAME_FINISHED_STATEMENT =
+        "UPDATE game SET finished = TRUE WHERE JSON_EXTRACT(game, '$.isGameOver') = CAST('true' AS JSON)";
+
     private final static String CREATE_USER_STATEMENT = """
         CREATE TABLE IF NOT EXISTS user (
             username VARCHAR(256) NOT NULL,
@@ -108,6 +142,26 @@ public class DatabaseManager {
         )
         """;
 
+    private final static String CREATE_ANALYSIS_STATEMENT = """
+        CREATE TABLE IF NOT EXISTS analysis (
+            gameID INT NOT NULL,
+            ply SMALLINT NOT NULL,
+            score SMALLINT NOT NULL,
+            bestMove INT NOT NULL,
+            loss SMALLINT NOT NULL,
+            judgement TINYINT NOT NULL,
+            PRIMARY KEY (gameID, ply)
+        )
+        """;
+
+    private final static String CREATE_ANALYSIS_CHECKPOINT_STATEMENT = """
+        CREATE TABLE IF NOT EXISTS analysis_checkpoint (
+            jobName VARCHAR(64) NOT NULL,
+            lastGameID INT NOT NULL,
+            PRIMARY KEY (jobName)
+        )
+        """;
+
     public static void configureDatabase() throws DataAccessException, SQLException {
         createDatabase();
         try (Connection conn = DatabaseManager.getConnection()) {
@@ -120,6 +174,26 @@ public class DatabaseManager {
             try (PreparedStatement gamePS = conn.prepareStatement(CREATE_GAME_STATEMENT)) {
                 gamePS.executeUpdate();
             }
+            if (!hasColumn(conn, "game", "finished")) {
+                try (PreparedStatement addPS = conn.prepareStatement(ADD_GAME_FINISHED_STATEMENT)) {
+                    addPS.executeUpdate();
+                }
+                try (PreparedStatement fillPS = conn.prepareStatement(FILL_GAME_FINISHED_STATEMENT)) {
+                    fillPS.executeUpdate();
+                }
+            }
+            try (PreparedStatement analysisPS = conn.prepareStatement(CREATE_ANALYSIS_STATEMENT)) {
+                analysisPS.executeUpdate();
+            }
+            try (PreparedStatement checkpointPS = conn.prepareStatement(CREATE_ANALYSIS_CHECKPOINT_STATEMENT)) {
+                checkpointPS.executeUpdate();
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (ResultSet columns = conn.getMetaData().getColumns(databaseName, null, table, column)) {
+            return columns.next();
         }
     }
 }
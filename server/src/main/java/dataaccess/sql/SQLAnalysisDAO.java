@@ -0,0 +1,125 @@
+package dataaccess.sql;
+
+import dataaccess.AnalysisDAO;
+import dataaccess.DataAccessException;
+import exception.ResponseException;
+import model.PlyAnalysis;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps one small fixed-width row per analysed position, so even a large archive of games
+ * stays cheap to store and to read back as an evaluation graph.
+ */
+public class SQLAnalysisDAO implements AnalysisDAO {
+
+    private static final PlyAnalysis.Judgement[] JUDGEMENTS = PlyAnalysis.Judgement.values();
+
+    public SQLAnalysisDAO() throws DataAccessException, SQLException {
+        DatabaseManager.configureDatabase();
+    }
+
+    public void saveAnalysis(int gameID, List<PlyAnalysis> plies) throws ResponseException {
+        String deleteStatement = "DELETE FROM analysis WHERE gameID=?";
+        String insertStatement = "INSERT INTO analysis (gameID, ply, score, bestMove, loss, judgement) VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            //Swap the game's rows in one transaction so a crash can't leave half an analysis behind
+            conn.setAutoCommit(false);
+            try (PreparedStatement deletePS = conn.prepareStatement(deleteStatement);
+                 PreparedStatement insertPS = conn.prepareStatement(insertStatement)) {
+                deletePS.setInt(1, gameID);
+                deletePS.executeUpdate();
+                for (PlyAnalysis ply : plies) {
+                    insertPS.setInt(1, gameID);
+                    insertPS.setInt(2, ply.ply());
+                    insertPS.setInt(3, ply.score());
+                    insertPS.setInt(4, ply.bestMove());
+                    insertPS.setInt(5, ply.loss());
+                    insertPS.setInt(6, ply.judgement().ordinal());
+                    insertPS.addBatch();
+                }
+                insertPS.executeBatch();
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw new ResponseException("SQL Exception (" + ex.getMessage() + ")", 500);
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Cannot connect to the Database", 500);
+        }
+    }
+
+    public List<PlyAnalysis> getAnalysis(int gameID) throws ResponseException {
+        String statement = "SELECT ply, score, bestMove, loss, judgement FROM analysis WHERE gameID=? ORDER BY ply";
+        List<PlyAnalysis> plies = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                ps.setInt(1, gameID);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        plies.add(new PlyAnalysis(rs.getInt("ply"), rs.getInt("score"), rs.getInt("bestMove"),
+                                rs.getInt("loss"), JUDGEMENTS[rs.getInt("judgement")]));
+                    }
+                    return plies;
+                }
+            }
+        } catch (SQLException ex) {
+            throw new ResponseException("SQL Exception (" + ex.getMessage() + ")", 500);
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Cannot connect to the Database", 500);
+        }
+    }
+
+    public int getCheckpoint(String jobName) throws ResponseException {
+        String statement = "SELECT lastGameID FROM analysis_checkpoint WHERE jobName=?";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                ps.setString(1, jobName);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt("lastGameID") : 0;
+                }
+            }
+        } catch (SQLException ex) {
+            throw new ResponseException("SQL Exception (" + ex.getMessage() + ")", 500);
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Cannot connect to the Database", 500);
+        }
+    }
+
+    public void saveCheckpoint(String jobName, int lastGameID) throws ResponseException {
+        String statement = "INSERT INTO analysis_checkpoint (jobName, lastGameID) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE lastGameID=VALUES(lastGameID)";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                ps.setString(1, jobName);
+                ps.setInt(2, lastGameID);
+                ps.executeUpdate();
+            }
+        } catch (SQLException ex) {
+            throw new ResponseException("SQL Exception (" + ex.getMessage() + ")", 500);
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Cannot connect to the Database", 500);
+        }
+    }
+
+    public void clearAnalysis() throws ResponseException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement analysisPS = conn.prepareStatement("TRUNCATE analysis");
+                 PreparedStatement checkpointPS = conn.prepareStatement("TRUNCATE analysis_checkpoint")) {
+                analysisPS.executeUpdate();
+                checkpointPS.executeUpdate();
+            }
+        } catch (SQLException ex) {
+            throw new ResponseException("SQL Exception (" + ex.getMessage() + ")", 500);
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Cannot connect to the Database", 500);
+        }
+    }
+}
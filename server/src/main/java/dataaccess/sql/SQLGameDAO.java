@@ -64,8 +64,15 @@ public class SQLGameDAO implements GameDAO {
     }
 
     public Collection<GameData> listGames() throws ResponseException {
+        return listGames("SELECT gameID, whiteUsername, blackUsername, gameName FROM game");
+    }
+
+    public Collection<GameData> listOpenGames() throws ResponseException {
+        return listGames("SELECT gameID, whiteUsername, blackUsername, gameName FROM game WHERE NOT finished");
+    }
+
+    private Collection<GameData> listGames(String statement) throws ResponseException {
         ArrayList<GameData> gameList = new ArrayList<>();
-        String statement = "SELECT gameID, whiteUsername, blackUsername, gameName FROM game";
         try (Connection conn = DatabaseManager.getConnection()) {
             try (PreparedStatement ps = conn.prepareStatement(statement)) {
                 try (ResultSet allGames = ps.executeQuery()) {
@@ -87,13 +94,14 @@ public class SQLGameDAO implements GameDAO {
     }
 
     public void updateGame(GameData gameData) throws DataAccessException, ResponseException {
-        String statement = "UPDATE game SET whiteUsername=?, blackUsername=?, game=? WHERE gameID=?";
+        String statement = "UPDATE game SET whiteUsername=?, blackUsername=?, game=?, finished=? WHERE gameID=?";
         try (Connection conn = DatabaseManager.getConnection()) {
             try (PreparedStatement ps = conn.prepareStatement(statement)) {
                 ps.setString(1, gameData.whiteUsername());
                 ps.setString(2, gameData.blackUsername());
                 ps.setString(3, new Gson().toJson(gameData.game()));
-                ps.setInt(4, gameData.gameID());
+                ps.setBoolean(4, isFinished(gameData));
+                ps.setInt(5, gameData.gameID());
                 ps.executeUpdate();
             }
         } catch (SQLException ex) {
@@ -101,6 +109,34 @@ public class SQLGameDAO implements GameDAO {
         }
     }
 
+    public void importGames(Collection<GameData> games) throws ResponseException {
+        String statement = "INSERT INTO game (whiteUsername, blackUsername, gameName, game, finished) VALUES (?, ?, ?, ?, ?)";
+        Gson gson = new Gson();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            //One round trip and one commit for the whole batch, and none of it saved if any row fails
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                for (GameData gameData : games) {
+                    ps.setString(1, gameData.whiteUsername());
+                    ps.setString(2, gameData.blackUsername());
+                    ps.setString(3, gameData.gameName());
+                    ps.setString(4, gson.toJson(gameData.game()));
+                    ps.setBoolean(5, isFinished(gameData));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw new ResponseException("SQL Exception (" + ex.getMessage() + ")", 500);
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Cannot connect to the Database", 500);
+        }
+    }
+
     public void clearGames() throws ResponseException{
         String statement = "TRUNCATE game";
         try (Connection conn = DatabaseManager.getConnection()) {
@@ -113,4 +149,9 @@ public class SQLGameDAO implements GameDAO {
             throw new ResponseException(" Cannot connect to the Database", 500);
         }
     }
+
+    //Kept in its own column so the lobby can leave finished games out without reading every board
+    private static boolean isFinished(GameData gameData) {
+        return gameData.game() != null && gameData.game().isGameOver();
+    }
 }
@@ -3,13 +3,19 @@ package handler;
 import com.google.gson.Gson;
 import exception.ResponseException;
 import io.javalin.http.Context;
+import metrics.MetricsRegistry;
 import requests.*;
 import results.CreateGameResult;
+import results.GamePositionResult;
+import results.ImportGamesResult;
 import results.ListGamesResult;
 import results.LoginResult;
 import results.RegisterResult;
 import service.*;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class Handler {
@@ -17,11 +23,40 @@ public class Handler {
     private ClearService clearService;
     private GameService gameService;
     private UserService userService;
+    private MetricsRegistry metrics;
 
-    public Handler(ClearService clearService, GameService gameService, UserService userService) {
+    private static final String START_TIME = "startTime";
+
+    public Handler(ClearService clearService, GameService gameService, UserService userService, MetricsRegistry metrics) {
         this.clearService = clearService;
         this.gameService = gameService;
         this.userService = userService;
+        this.metrics = metrics;
+    }
+
+    public void startTimerHandler(Context ctx) {
+        ctx.attribute(START_TIME, System.nanoTime());
+    }
+
+    public void stopTimerHandler(Context ctx) {
+        Long start = ctx.attribute(START_TIME);
+        if (start == null) {
+            return;
+        }
+        //Static files and unknown paths all share one route label so they can't blow up the series count
+        String route = ctx.endpointHandlerPath();
+        if (!route.startsWith("/")) {
+            route = "other";
+        }
+        metrics.timer("http_request_duration_seconds", "Time spent handling each HTTP request",
+                "method", ctx.method().name(), "route", route, "status", String.valueOf(ctx.statusCode()))
+                .observeNanos(System.nanoTime() - start);
+    }
+
+    public void metricsHandler(Context ctx) {
+        ctx.status(200);
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+        ctx.result(metrics.scrape());
     }
 
     public void exceptionHandler(ResponseException ex, Context ctx) {
@@ -46,7 +81,8 @@ public class Handler {
     public void joinGameHandler(Context ctx) throws ResponseException {
         String authToken = ctx.header("Authorization");
         JoinGameRequest joinGameRequest = new Gson().fromJson(ctx.body(), JoinGameRequest.class);
-        joinGameRequest = new JoinGameRequest(authToken, joinGameRequest.playerColor(), joinGameRequest.gameID());
+        joinGameRequest = new JoinGameRequest(authToken, joinGameRequest.playerColor(), joinGameRequest.gameID(),
+                joinGameRequest.botOpponent());
 
         gameService.joinGame(joinGameRequest);
         successHandler(ctx, "{}");
@@ -60,6 +96,47 @@ public class Handler {
         successHandler(ctx, new Gson().toJson(listGamesResult));
     }
 
+    public void gamePositionHandler(Context ctx) throws ResponseException {
+        String authToken = ctx.header("Authorization");
+        GamePositionRequest gamePositionRequest;
+        try {
+            String ply = ctx.queryParam("ply");
+            gamePositionRequest = new GamePositionRequest(authToken, Integer.parseInt(ctx.queryParam("gameID")),
+                    ply == null ? null : Integer.valueOf(ply));
+        } catch (NumberFormatException ex) {
+            throw new ResponseException("Bad request", 400);
+        }
+
+        GamePositionResult gamePositionResult = gameService.getPosition(gamePositionRequest);
+        successHandler(ctx, new Gson().toJson(gamePositionResult));
+    }
+
+    public void exportGameHandler(Context ctx) throws ResponseException {
+        String authToken = ctx.header("Authorization");
+        int gameID;
+        try {
+            gameID = Integer.parseInt(ctx.queryParam("gameID"));
+        } catch (NumberFormatException ex) {
+            throw new ResponseException("Bad request", 400);
+        }
+        ExportGameRequest exportGameRequest = new ExportGameRequest(authToken, gameID, ctx.queryParam("format"));
+
+        String export = gameService.exportGame(exportGameRequest);
+        ctx.status(200);
+        ctx.contentType("fen".equals(exportGameRequest.format()) ? "text/plain; charset=utf-8"
+                : "application/x-chess-pgn; charset=utf-8");
+        ctx.result(export);
+    }
+
+    public void importGamesHandler(Context ctx) throws ResponseException {
+        String authToken = ctx.header("Authorization");
+        //Read straight off the request so an archive of any size streams through
+        Reader pgn = new InputStreamReader(ctx.bodyInputStream(), StandardCharsets.UTF_8);
+
+        ImportGamesResult importGamesResult = gameService.importGames(authToken, pgn);
+        successHandler(ctx, new Gson().toJson(importGamesResult));
+    }
+
     public void loginHandler(Context ctx) throws ResponseException {
         LoginRequest loginRequest = new Gson().fromJson(ctx.body(), LoginRequest.class);
 
@@ -0,0 +1,118 @@
+package logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Structured logging for the server's hot paths. Every line carries an event name plus the
+ * gameID and username it belongs to, written as key=value pairs.
+ * <p>
+ * The calling thread only checks the level and drops the event on a queue; formatting and the
+ * actual write to slf4j happen on a single background thread, so request threads never wait on
+ * the console. When the level is disabled nothing is built at all. If the queue ever fills up,
+ * new events are dropped (and counted) rather than blocking the caller.
+ */
+public class AsyncLogger {
+
+    private enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+
+    private record LogEvent(Logger logger, Level level, String event, Integer gameID, String username,
+                            String detail, Throwable error) {
+    }
+
+    private static final int QUEUE_SIZE = 8192;
+    private static final BlockingQueue<LogEvent> QUEUE = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static final LongAdder DROPPED = new LongAdder();
+
+    static {
+        Thread writer = new Thread(AsyncLogger::writeEvents, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private final Logger logger;
+
+    private AsyncLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    public static AsyncLogger getLogger(Class<?> type) {
+        return new AsyncLogger(LoggerFactory.getLogger(type));
+    }
+
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    public void debug(String event, Integer gameID, String username, String detail) {
+        if (logger.isDebugEnabled()) {
+            enqueue(new LogEvent(logger, Level.DEBUG, event, gameID, username, detail, null));
+        }
+    }
+
+    public void info(String event, Integer gameID, String username, String detail) {
+        if (logger.isInfoEnabled()) {
+            enqueue(new LogEvent(logger, Level.INFO, event, gameID, username, detail, null));
+        }
+    }
+
+    public void warn(String event, Integer gameID, String username, String detail) {
+        if (logger.isWarnEnabled()) {
+            enqueue(new LogEvent(logger, Level.WARN, event, gameID, username, detail, null));
+        }
+    }
+
+    public void error(String event, Integer gameID, String username, String detail, Throwable error) {
+        if (logger.isErrorEnabled()) {
+            enqueue(new LogEvent(logger, Level.ERROR, event, gameID, username, detail, error));
+        }
+    }
+
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    private static void enqueue(LogEvent logEvent) {
+        if (!QUEUE.offer(logEvent)) {
+            DROPPED.increment();
+        }
+    }
+
+    private static void writeEvents() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            LogEvent logEvent;
+            try {
+                logEvent = QUEUE.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            line.setLength(0);
+            line.append("event=").append(logEvent.event());
+            line.append(" gameID=").append(logEvent.gameID() == null ? "-" : logEvent.gameID());
+            line.append(" user=").append(logEvent.username() == null ? "-" : logEvent.username());
+            if (logEvent.detail() != null) {
+                line.append(" msg=\"").append(logEvent.detail()).append('"');
+            }
+            write(logEvent, line.toString());
+        }
+    }
+
+    private static void write(LogEvent logEvent, String line) {
+        switch (logEvent.level()) {
+            case DEBUG -> logEvent.logger().debug(line);
+            case INFO -> logEvent.logger().info(line);
+            case WARN -> logEvent.logger().warn(line);
+            case ERROR -> logEvent.logger().error(line, logEvent.error());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations into fixed buckets, the way Prometheus histograms do. Each bucket
+ * holds the observations less than or equal to its upper bound (and greater than the
+ * bound before it); the exporter turns them into cumulative counts.
+ */
+public class Histogram {
+
+    //Request latencies in seconds, from half a millisecond up to 10 seconds
+    public static final double[] LATENCY_BUCKETS =
+            {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    //Message fan-out sizes, from a single recipient up to a very crowded game
+    public static final double[] SIZE_BUCKETS = {0, 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+
+    private final double[] bounds;
+    private final LongAdder[] bucketCounts;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    public Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        //The extra bucket on the end is +Inf
+        bucketCounts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    public void observe(double value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        bucketCounts[bucket].increment();
+        count.increment();
+        sum.add(value);
+    }
+
+    public void observeNanos(long nanos) {
+        observe(nanos / 1_000_000_000.0);
+    }
+
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    public long[] getBucketCounts() {
+        long[] counts = new long[bucketCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucketCounts[i].sum();
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,128 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds every metric the server records and writes them out in the Prometheus text format
+ * for the /metrics endpoint. Metrics are looked up by name plus label pairs, so the same
+ * call with the same labels always returns the same counter or histogram.
+ */
+public class MetricsRegistry {
+
+    private record Family(String name, String help, String type, Map<String, Object> series) {
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    /**
+     * @param labels alternating label names and values, for example "method", "GET"
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").series().computeIfAbsent(formatLabels(labels), key -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return (Histogram) family(name, help, "histogram").series()
+                .computeIfAbsent(formatLabels(labels), key -> new Histogram(buckets));
+    }
+
+    public Histogram timer(String name, String help, String... labels) {
+        return histogram(name, help, Histogram.LATENCY_BUCKETS, labels);
+    }
+
+    /**
+     * Registers a value that is read every time the metrics are scraped, like a queue size
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series().put(formatLabels(labels), value);
+    }
+
+    /**
+     * Registers a running total that some other class already keeps track of
+     */
+    public void counterFunction(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "counter").series().put(formatLabels(labels), value);
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type, new ConcurrentHashMap<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type());
+        }
+        return family;
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type()).append('\n');
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series()).entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof Histogram histogram) {
+                    writeHistogram(out, family.name(), labels, histogram);
+                } else if (metric instanceof Counter counter) {
+                    writeSample(out, family.name(), labels, counter.get());
+                } else {
+                    writeSample(out, family.name(), labels, ((DoubleSupplier) metric).getAsDouble());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getBucketCounts();
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i < bounds.length ? formatNumber(bounds[i]) : "+Inf";
+            out.append(name).append("_bucket{").append(separator).append("le=\"").append(bound).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        writeSample(out, name + "_sum", labels, histogram.getSum());
+        writeSample(out, name + "_count", labels, histogram.getCount());
+    }
+
+    private void writeSample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(formatNumber(value)).append('\n');
+    }
+
+    private String formatNumber(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must come in name/value pairs");
+        }
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                formatted.append(',');
+            }
+            formatted.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return formatted.toString();
+    }
+
+    private String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
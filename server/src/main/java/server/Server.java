@@ -1,19 +1,39 @@
 package server;
 
+import chess.engine.OpeningBook;
+import chess.engine.OpeningBookBuilder;
+import chess.engine.Tablebase;
 import dataaccess.*;
+import dataaccess.sql.DatabaseManager;
 import dataaccess.sql.SQLAuthDAO;
 import dataaccess.sql.SQLGameDAO;
 import dataaccess.sql.SQLUserDAO;
 import exception.ResponseException;
 import handler.Handler;
+import metrics.MetricsRegistry;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.WebSocketExtensionRegistry;
+import org.eclipse.jetty.websocket.core.server.WebSocketServerComponents;
 import websocket.ConnectionManager;
+import websocket.DeflateExtension;
 import websocket.WebSocketHandler;
 import io.javalin.Javalin;
+import logging.AsyncLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import service.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class Server {
 
+    private static final Logger LOG = LoggerFactory.getLogger(Server.class);
+
     private final Javalin javalin;
+    private final ServerConfig serverConfig;
+    private ServletContextHandler servletContextHandler;
 
     private AuthDAO authDAO;
     private GameDAO gameDAO;
@@ -22,43 +42,80 @@ public class Server {
     private ClearService clearService;
     private GameService gameService;
     private UserService userService;
+    private PasswordHasher passwordHasher;
+    private BotPlayer botPlayer;
+    private MetricsRegistry metrics;
 
     private Handler handler;
     private ConnectionManager connectionManager;
     private WebSocketHandler websocketHandler;
 
     public Server() {
-        try {
-            //First try to create SQL Based DAOs
-            authDAO = new SQLAuthDAO();
-            gameDAO = new SQLGameDAO();
-            userDAO = new SQLUserDAO();
-            System.out.println("Server is using SQL databases");
-        } catch (Exception ex) {
-            //Memory Based DAOs if MySQL ones failed
-            System.out.println("Failed to create SQL DAO: " + ex.getMessage());
-            authDAO = new MemoryAuthDAO();
-            gameDAO = new MemoryGameDAO();
-            userDAO = new MemoryUserDAO();
-            System.out.println("Server is using Memory databases");
+        this(ServerConfig.fromSystemProperties());
+    }
+
+    public Server(ServerConfig serverConfig) {
+        this.serverConfig = serverConfig;
+        metrics = new MetricsRegistry();
+        if (serverConfig.useMemoryDatabase()) {
+            useMemoryDAOs();
+        } else {
+            try {
+                //First try to create SQL Based DAOs
+                authDAO = new SQLAuthDAO();
+                gameDAO = new SQLGameDAO();
+                userDAO = new SQLUserDAO();
+                registerDatabaseMetrics();
+                LOG.info("Server is using SQL databases");
+            } catch (Exception ex) {
+                //Memory Based DAOs if MySQL ones failed
+                LOG.warn("Failed to create SQL DAO: {}", ex.getMessage());
+                useMemoryDAOs();
+            }
         }
+        if (serverConfig.useVirtualThreads()) {
+            LOG.info("Server is using virtual threads");
+        }
+        authDAO = new TimedAuthDAO(authDAO, metrics);
+        gameDAO = new TimedGameDAO(gameDAO, metrics);
+        userDAO = new TimedUserDAO(userDAO, metrics);
 
         //Create Services
         clearService = new ClearService(authDAO, gameDAO, userDAO);
-        gameService = new GameService(authDAO, gameDAO);
-        userService = new UserService(authDAO, userDAO);
+        connectionManager = new ConnectionManager(metrics, serverConfig.batchWindowMillis());
+        GameLocks gameLocks = new GameLocks();
+        gameService = new GameService(authDAO, gameDAO, connectionManager::publishLobby, gameLocks);
+        passwordHasher = new PasswordHasher(serverConfig.hashThreads(), serverConfig.hashQueueLimit(),
+                serverConfig.bcryptWorkFactor());
+        userService = new UserService(authDAO, userDAO, passwordHasher);
+        registerHasherMetrics();
+        OpeningBook openingBook = loadOpeningBook();
+        botPlayer = new BotPlayer(serverConfig.botThreads(), serverConfig.botQueueLimit(), serverConfig.botThinkMillis(),
+                openingBook, loadTablebase());
+        registerBotMetrics();
+        metrics.counterFunction("log_events_dropped_total", "Log lines dropped because the async log queue was full",
+                AsyncLogger::getDroppedCount);
 
-        handler = new Handler(clearService, gameService, userService);
-        connectionManager = new ConnectionManager();
-        websocketHandler = new WebSocketHandler(authDAO, gameDAO, connectionManager);
+        handler = new Handler(clearService, gameService, userService, metrics);
+        websocketHandler = new WebSocketHandler(authDAO, gameDAO, connectionManager, metrics, botPlayer,
+                openingBook, gameLocks);
 
-        javalin = Javalin.create(config -> config.staticFiles.add("web"))
+        javalin = Javalin.create(config -> {
+                    config.staticFiles.add("web");
+                    //Blocking DAO, BCrypt and WebSocket send calls park a virtual thread instead of holding a pool thread
+                    config.useVirtualThreads = serverConfig.useVirtualThreads();
+                    config.jetty.modifyServletContextHandler(contextHandler -> servletContextHandler = contextHandler);
+                })
                 // Register your endpoints and exception handlers here.
                 .ws("/ws", ws -> {
                     ws.onConnect(websocketHandler);
                     ws.onClose(websocketHandler);
                     ws.onMessage(websocketHandler);
+                    ws.onBinaryMessage(websocketHandler);
                 })
+                .before(context -> {handler.startTimerHandler(context);})
+                .after(context -> {handler.stopTimerHandler(context);})
+                .get("/metrics", context -> {handler.metricsHandler(context);})
                 .delete("/db", context -> {handler.clearHandler(context);})
                 .delete("/session", context -> {handler.logoutHandler(context);})
                 .get("/game", context -> {handler.listGamesHandler(context);})
@@ -66,16 +123,129 @@ public class Server {
                 .post("/session", context -> {handler.loginHandler(context);})
                 .post("/game", context -> {handler.createGameHandler(context);})
                 .put("/game", context -> {handler.joinGameHandler(context);})
+                .get("/game/position", context -> {handler.gamePositionHandler(context);})
+                .get("/game/export", context -> {handler.exportGameHandler(context);})
+                .post("/game/import", context -> {handler.importGamesHandler(context);})
                 .exception(ResponseException.class, (e, context) -> {handler.exceptionHandler(e, context);})
         ;
     }
 
+    private void useMemoryDAOs() {
+        authDAO = new MemoryAuthDAO();
+        gameDAO = new MemoryGameDAO();
+        userDAO = new MemoryUserDAO();
+        LOG.info("Server is using Memory databases");
+    }
+
+    /**
+     * Maps the opening book, building it first if the file doesn't exist yet. The server works
+     * the same without a book, only slower in the opening, so any failure just turns it off.
+     */
+    private OpeningBook loadOpeningBook() {
+        if (serverConfig.openingBookPath().isEmpty()) {
+            return null;
+        }
+        Path file = Path.of(serverConfig.openingBookPath());
+        try {
+            if (!Files.exists(file)) {
+                int positions = OpeningBookBuilder.build(file, OpeningBookBuilder.DEFAULT_FULL_PLIES);
+                LOG.info("Built opening book with {} positions at {}", positions, file);
+            }
+            OpeningBook book = OpeningBook.open(file);
+            LOG.info("Server is using the opening book at {}", file);
+            return book;
+        } catch (Exception ex) {
+            LOG.warn("Failed to load opening book: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens the endgame tables, which are built ahead of time with TablebaseGenerator since that
+     * takes too long to do on startup. The bot plays without them if they can't be opened.
+     */
+    private Tablebase loadTablebase() {
+        if (serverConfig.tablebasePath().isEmpty()) {
+            return null;
+        }
+        try {
+            Tablebase tablebase = Tablebase.open(Path.of(serverConfig.tablebasePath()));
+            LOG.info("Server is using {} endgame tables from {}", tablebase.getTableCount(), serverConfig.tablebasePath());
+            metrics.counterFunction("tablebase_probes_total", "Endgame tablebase lookups", tablebase::getProbes);
+            metrics.counterFunction("tablebase_hits_total", "Endgame tablebase lookups that found a result",
+                    tablebase::getHits);
+            metrics.counterFunction("tablebase_regions_mapped_total", "Tablebase file regions memory-mapped",
+                    tablebase::getRegionsMapped);
+            return tablebase;
+        } catch (Exception ex) {
+            LOG.warn("Failed to open endgame tables: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private void registerDatabaseMetrics() {
+        metrics.counterFunction("db_connections_opened_total", "MySQL connections opened",
+                DatabaseManager::getConnectionsOpened);
+        metrics.counterFunction("db_connection_failures_total", "MySQL connections that failed to open",
+                DatabaseManager::getConnectionFailures);
+        metrics.counterFunction("db_connect_seconds_total", "Time spent opening MySQL connections",
+                () -> DatabaseManager.getConnectNanos() / 1_000_000_000.0);
+    }
+
+    private void registerHasherMetrics() {
+        for (PasswordHasher.Operation operation : PasswordHasher.Operation.values()) {
+            String name = operation.name();
+            metrics.counterFunction("password_hash_operations_total", "BCrypt operations completed",
+                    () -> passwordHasher.getStats(operation).count(), "operation", name);
+            metrics.counterFunction("password_hash_seconds_total", "Time from submitting a BCrypt operation to its result",
+                    () -> passwordHasher.getStats(operation).totalNanos() / 1_000_000_000.0, "operation", name);
+            metrics.gauge("password_hash_max_seconds", "Slowest BCrypt operation so far",
+                    () -> passwordHasher.getStats(operation).maxNanos() / 1_000_000_000.0, "operation", name);
+        }
+        metrics.counterFunction("password_hash_rejected_total", "BCrypt operations turned away with a 503",
+                passwordHasher::getRejectedCount);
+        metrics.gauge("password_hash_queue_size", "BCrypt operations waiting for a worker", passwordHasher::getQueueSize);
+    }
+
+    private void registerBotMetrics() {
+        metrics.counterFunction("bot_moves_total", "Moves played by the server's bot", botPlayer::getMovesPlayed);
+        metrics.counterFunction("bot_think_seconds_total", "Time the bot spent searching for its moves",
+                () -> botPlayer.getThinkNanos() / 1_000_000_000.0);
+        metrics.gauge("bot_think_max_seconds", "Longest the bot has searched for one move",
+                () -> botPlayer.getMaxThinkNanos() / 1_000_000_000.0);
+        metrics.counterFunction("bot_requests_rejected_total", "Bot moves put off because every bot worker was busy",
+                botPlayer::getRejectedCount);
+        metrics.gauge("bot_queue_size", "Bot moves waiting for a worker", botPlayer::getQueueSize);
+    }
+
     public int run(int desiredPort) {
         javalin.start(desiredPort);
+        configureCompression();
         return javalin.port();
     }
 
+    /**
+     * Swaps Jetty's permessage-deflate for one that leaves small messages alone. Jetty only builds
+     * its extension registry when the context starts, so this runs right after start and before
+     * any client has had a chance to connect.
+     */
+    private void configureCompression() {
+        WebSocketComponents components = WebSocketServerComponents
+                .getWebSocketComponents(servletContextHandler.getServletContext());
+        WebSocketExtensionRegistry extensions = components.getExtensionRegistry();
+        extensions.unregister(DeflateExtension.NAME);
+        if (serverConfig.compressionThreshold() < 0) {
+            LOG.info("WebSocket compression is off");
+            return;
+        }
+        DeflateExtension.configure(components, serverConfig.compressionThreshold(), metrics);
+        extensions.register(DeflateExtension.NAME, DeflateExtension.class);
+    }
+
     public void stop() {
         javalin.stop();
+        passwordHasher.shutdown();
+        botPlayer.shutdown();
+        connectionManager.shutdown();
     }
 }
@@ -0,0 +1,59 @@
+package server;
+
+import service.BotPlayer;
+import service.PasswordHasher;
+import websocket.DeflateExtension;
+
+import java.nio.file.Path;
+
+/**
+ * Runtime options for the chess server. Every option can be set from the command line
+ * with a system property (for example -Dchess.virtualThreads=true).
+ *
+ * @param useVirtualThreads run HTTP routes and WebSocket events on virtual threads instead of
+ *                          Jetty's bounded platform thread pool
+ * @param hashThreads       number of worker threads used for BCrypt hashing
+ * @param hashQueueLimit    how many hashing requests may wait for a worker before new ones get a 503
+ * @param bcryptWorkFactor  the BCrypt cost (log2 of the number of rounds) used for new passwords
+ * @param batchWindowMillis how long messages to a batching WebSocket session are held so they can share a frame
+ * @param compressionThreshold smallest WebSocket message in bytes that permessage-deflate compresses, or a
+ *                             negative number to turn WebSocket compression off
+ * @param botThreads        most bot searches that run at once, and so the most cores bot games can use
+ * @param botQueueLimit     how many bot moves may wait for a worker before new ones are put off
+ * @param botThinkMillis    how long the bot thinks about each move
+ * @param openingBookPath   opening book file, built there on startup if missing, or empty to run without one
+ * @param tablebasePath     directory of endgame tablebase files for the bot, or empty to run without them
+ * @param useMemoryDatabase keep everything in memory without trying MySQL first, as load tests do
+ */
+public record ServerConfig(boolean useVirtualThreads, int hashThreads, int hashQueueLimit, int bcryptWorkFactor,
+                           int batchWindowMillis, int compressionThreshold, int botThreads, int botQueueLimit,
+                           int botThinkMillis, String openingBookPath,
+                           String tablebasePath, boolean useMemoryDatabase) {
+
+    public static final int DEFAULT_BATCH_WINDOW_MILLIS = 5;
+    public static final String DEFAULT_OPENING_BOOK_FILE = "chess-opening-book.bin";
+
+    public static ServerConfig defaults() {
+        return new ServerConfig(false, Runtime.getRuntime().availableProcessors(),
+                PasswordHasher.DEFAULT_QUEUE_LIMIT, PasswordHasher.DEFAULT_WORK_FACTOR, DEFAULT_BATCH_WINDOW_MILLIS,
+                DeflateExtension.DEFAULT_THRESHOLD, BotPlayer.defaultThreads(), BotPlayer.DEFAULT_QUEUE_LIMIT,
+                BotPlayer.DEFAULT_THINK_MILLIS,
+                Path.of(System.getProperty("java.io.tmpdir"), DEFAULT_OPENING_BOOK_FILE).toString(), "", false);
+    }
+
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig defaults = defaults();
+        return new ServerConfig(Boolean.getBoolean("chess.virtualThreads"),
+                Integer.getInteger("chess.hashThreads", defaults.hashThreads()),
+                Integer.getInteger("chess.hashQueueLimit", defaults.hashQueueLimit()),
+                Integer.getInteger("chess.bcryptWorkFactor", defaults.bcryptWorkFactor()),
+                Integer.getInteger("chess.batchWindowMillis", defaults.batchWindowMillis()),
+                Integer.getInteger("chess.compressionThreshold", defaults.compressionThreshold()),
+                Integer.getInteger("chess.botThreads", defaults.botThreads()),
+                Integer.getInteger("chess.botQueueLimit", defaults.botQueueLimit()),
+                Integer.getInteger("chess.botThinkMillis", defaults.botThinkMillis()),
+                System.getProperty("chess.openingBook", defaults.openingBookPath()),
+                System.getProperty("chess.tablebases", defaults.tablebasePath()),
+                Boolean.getBoolean("chess.memoryDatabase"));
+    }
+}
@@ -0,0 +1,164 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.engine.Engine;
+import chess.engine.OpeningBook;
+import chess.engine.Position;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.Tablebase;
+import chess.engine.TranspositionTable;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The server's computer opponent. Searches for the bot's replies run on a small bounded pool of
+ * low priority worker threads, each with its own {@link Engine}, and every search stops at the
+ * think time budget. Together these cap how much CPU bot games can take, so they can't slow down
+ * moves between people. When every worker is busy and the queue is full, the request is retried
+ * after one think time instead of being dropped.
+ */
+public class BotPlayer {
+
+    public static final String USERNAME = "ChessBot";
+    public static final int DEFAULT_QUEUE_LIMIT = 32;
+    public static final int DEFAULT_THINK_MILLIS = 500;
+    public static final int TABLE_MEGABYTES = 8;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService retryScheduler;
+    private final ThreadLocal<Engine> engines;
+    private final long thinkMillis;
+    //Games with a search queued or running, so a repeated trigger can't make the bot move twice
+    private final Set<Integer> pendingGames = ConcurrentHashMap.newKeySet();
+    private final LongAdder movesPlayed = new LongAdder();
+    private final LongAdder thinkNanos = new LongAdder();
+    private final LongAccumulator maxThinkNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder rejected = new LongAdder();
+
+    public BotPlayer() {
+        this(defaultThreads(), DEFAULT_QUEUE_LIMIT, DEFAULT_THINK_MILLIS, null, null);
+    }
+
+    public BotPlayer(int threads, int queueLimit, long thinkMillis) {
+        this(threads, queueLimit, thinkMillis, null, null);
+    }
+
+    /**
+     * @param threads     most searches that may run at once, which is also the most cores bots can use
+     * @param queueLimit  how many bot moves may wait for a worker before new ones are retried later
+     * @param thinkMillis how long the bot searches for each move
+     * @param book        opening book the bot plays from without searching, or null
+     * @param tablebase   endgame tables the bot plays from, and searches with, or null
+     */
+    public BotPlayer(int threads, int queueLimit, long thinkMillis, OpeningBook book, Tablebase tablebase) {
+        this.thinkMillis = thinkMillis;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "bot-player-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bot-player-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        engines = ThreadLocal.withInitial(() -> new Engine(
+                new TranspositionTable(TABLE_MEGABYTES, TranspositionTable.Replacement.DEPTH_PREFERRED), 1, book, tablebase));
+    }
+
+    /**
+     * Bots get a quarter of the cores, leaving the rest for handling players
+     */
+    public static int defaultThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    }
+
+    public static boolean isBot(String username) {
+        return USERNAME.equals(username);
+    }
+
+    /**
+     * Starts the bot thinking about its reply in a game. The position is copied before this
+     * returns, so the caller is free to keep using the game.
+     *
+     * @param onMove called on a bot worker thread with the move the bot wants to play
+     * @return false if the bot is already working on a move for this game
+     */
+    public boolean requestMove(int gameID, ChessGame game, Consumer<ChessMove> onMove) {
+        if (!pendingGames.add(gameID)) {
+            return false;
+        }
+        submit(gameID, Position.fromGame(game), onMove);
+        return true;
+    }
+
+    private void submit(int gameID, Position position, Consumer<ChessMove> onMove) {
+        try {
+            executor.execute(() -> think(gameID, position, onMove));
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            if (executor.isShutdown()) {
+                pendingGames.remove(gameID);
+                return;
+            }
+            retryScheduler.schedule(() -> submit(gameID, position, onMove), thinkMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void think(int gameID, Position position, Consumer<ChessMove> onMove) {
+        ChessMove move;
+        try {
+            SearchResult result = engines.get().chooseMove(position, SearchLimits.time(thinkMillis));
+            thinkNanos.add(result.elapsedNanos());
+            maxThinkNanos.accumulate(result.elapsedNanos());
+            move = result.chessMove();
+        } finally {
+            //Cleared before the move is played, since playing it can trigger the next request
+            pendingGames.remove(gameID);
+        }
+        if (move != null) {
+            movesPlayed.increment();
+            onMove.accept(move);
+        }
+    }
+
+    public long getMovesPlayed() {
+        return movesPlayed.sum();
+    }
+
+    public long getThinkNanos() {
+        return thinkNanos.sum();
+    }
+
+    public long getMaxThinkNanos() {
+        return maxThinkNanos.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        executor.shutdown();
+    }
+}
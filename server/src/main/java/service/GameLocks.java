@@ -0,0 +1,30 @@
+package service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serialises the writes to each game. Everything that loads a game, checks it and saves it back
+ * (moves, the bot's replies, resigning, leaving and joining) holds the game's lock while it does,
+ * and loads the game only after taking it, so one writer can't save over another's change.
+ * Games share a fixed set of locks, so there's nothing to clean up when a game ends.
+ * <p>
+ * These are ReentrantLocks rather than monitors because moves are broadcast while the lock is
+ * held: a virtual thread blocked on a send inside {@code synchronized} pins its carrier thread,
+ * and with few cores that stalls every other request.
+ */
+public class GameLocks {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public GameLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock forGame(int gameID) {
+        return locks[Math.floorMod(gameID, STRIPES)];
+    }
+}
@@ -1,6 +1,11 @@
 package service;
 
 import chess.ChessGame;
+import chess.InvalidMoveException;
+import chess.notation.Fen;
+import chess.notation.Pgn;
+import chess.notation.PgnGame;
+import chess.notation.PgnReader;
 import dataaccess.AuthDAO;
 import dataaccess.DataAccessException;
 import dataaccess.GameDAO;
@@ -9,17 +14,45 @@ import model.AuthData;
 import model.GameData;
 import requests.*;
 import results.*;
+import websocket.messages.LobbyMessage;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class GameService {
 
+    //Games saved per batch insert, which is also as many as an import holds in memory at once
+    public static final int IMPORT_BATCH_SIZE = 500;
+    private static final int MAX_IMPORT_ERRORS = 20;
+    private static final int MAX_GAME_NAME_LENGTH = 256;
+
     private AuthDAO authDAO;
     private GameDAO gameDAO;
+    private Consumer<LobbyMessage> lobby;
+    private GameLocks gameLocks;
 
     public GameService(AuthDAO authDAO, GameDAO gameDAO) {
+        this(authDAO, gameDAO, lobbyMessage -> {});
+    }
+
+    public GameService(AuthDAO authDAO, GameDAO gameDAO, Consumer<LobbyMessage> lobby) {
+        this(authDAO, gameDAO, lobby, new GameLocks());
+    }
+
+    /**
+     * @param lobby     told about every game created and seat taken, to pass on to lobby subscribers
+     * @param gameLocks the locks the WebSocket handler saves moves under, so a join can't undo a move
+     */
+    public GameService(AuthDAO authDAO, GameDAO gameDAO, Consumer<LobbyMessage> lobby, GameLocks gameLocks) {
         this.authDAO = authDAO;
         this.gameDAO = gameDAO;
+        this.lobby = lobby;
+        this.gameLocks = gameLocks;
     }
 
     public CreateGameResult createGame(CreateGameRequest createGameRequest) throws ResponseException {
@@ -31,6 +64,7 @@ public class GameService {
 
         try {
             int gameID = gameDAO.createGame(createGameRequest.gameName());
+            lobby.accept(LobbyMessage.gameCreated(gameID, createGameRequest.gameName()));
             return new CreateGameResult(gameID);
         } catch (Exception ex) {
             throw new ResponseException(ex.getMessage(), 500);
@@ -41,27 +75,45 @@ public class GameService {
         String username = validateAuth(joinGameRequest.authToken());
 
         try {
-            GameData gameData = gameDAO.getGame(joinGameRequest.gameID());
-            if (gameData == null) {
-                throw new DataAccessException("Invalid gameID");
-            }
-            String whiteName = gameData.whiteUsername();
-            String blackName = gameData.blackUsername();
-            if (joinGameRequest.playerColor() == ChessGame.TeamColor.WHITE) {
-                if (whiteName != null && !whiteName.equals(username)) {
-                    throw new ResponseException("Already taken", 403);
+            ReentrantLock gameLock = gameLocks.forGame(joinGameRequest.gameID());
+            gameLock.lock();
+            try {
+                GameData gameData = gameDAO.getGame(joinGameRequest.gameID());
+                if (gameData == null) {
+                    throw new DataAccessException("Invalid gameID");
                 }
-                whiteName = username;
-            } else if (joinGameRequest.playerColor() == ChessGame.TeamColor.BLACK){
-                if (blackName != null && !blackName.equals(username)) {
-                    throw new ResponseException("Already taken", 403);
+                //Finished games, imported ones included, have nothing left to play
+                if (gameData.game() != null && gameData.game().isGameOver()) {
+                    throw new ResponseException("Game is over", 403);
                 }
-                blackName = username;
-            }
-            else {
-                throw new ResponseException("Bad request", 400);
+                String whiteName = gameData.whiteUsername();
+                String blackName = gameData.blackUsername();
+                if (joinGameRequest.playerColor() == ChessGame.TeamColor.WHITE) {
+                    if (whiteName != null && !whiteName.equals(username)) {
+                        throw new ResponseException("Already taken", 403);
+                    }
+                    whiteName = username;
+                    if (joinGameRequest.botOpponent()) {
+                        blackName = seatBot(blackName);
+                    }
+                } else if (joinGameRequest.playerColor() == ChessGame.TeamColor.BLACK){
+                    if (blackName != null && !blackName.equals(username)) {
+                        throw new ResponseException("Already taken", 403);
+                    }
+                    blackName = username;
+                    if (joinGameRequest.botOpponent()) {
+                        whiteName = seatBot(whiteName);
+                    }
+                }
+                else {
+                    throw new ResponseException("Bad request", 400);
+                }
+                gameDAO.updateGame(new GameData(gameData.gameID(),whiteName,blackName,gameData.gameName(),gameData.game()));
+                publishSeat(gameData.gameID(), ChessGame.TeamColor.WHITE, gameData.whiteUsername(), whiteName);
+                publishSeat(gameData.gameID(), ChessGame.TeamColor.BLACK, gameData.blackUsername(), blackName);
+            } finally {
+                gameLock.unlock();
             }
-            gameDAO.updateGame(new GameData(gameData.gameID(),whiteName,blackName,gameData.gameName(),gameData.game()));
         } catch (DataAccessException ex) {
             if (ex.getMessage().contains("cannot connect")) {
                 throw new ResponseException(ex.getMessage(), 500);
@@ -74,6 +126,19 @@ public class GameService {
         }
     }
 
+    private void publishSeat(int gameID, ChessGame.TeamColor color, String oldName, String newName) {
+        if (newName != null && !newName.equals(oldName)) {
+            lobby.accept(LobbyMessage.seatTaken(gameID, color, newName));
+        }
+    }
+
+    private String seatBot(String currentName) throws ResponseException {
+        if (currentName != null && !BotPlayer.isBot(currentName)) {
+            throw new ResponseException("Already taken", 403);
+        }
+        return BotPlayer.USERNAME;
+    }
+
     public ListGamesResult listGames(ListGamesRequest listGamesRequest) throws ResponseException {
         validateAuth(listGamesRequest.authToken());
 
@@ -85,6 +150,102 @@ public class GameService {
         }
     }
 
+    /**
+     * @return the game at any ply, found from its nearest snapshot rather than by replaying it
+     */
+    public GamePositionResult getPosition(GamePositionRequest gamePositionRequest) throws ResponseException {
+        validateAuth(gamePositionRequest.authToken());
+
+        ChessGame game;
+        try {
+            game = gameDAO.getGame(gamePositionRequest.gameID()).game();
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Bad request", 400);
+        }
+        int ply = gamePositionRequest.ply() == null ? game.getPly() : gamePositionRequest.ply();
+        if (ply < 0 || ply > game.getPly()) {
+            throw new ResponseException("Bad request", 400);
+        }
+        return new GamePositionResult(gamePositionRequest.gameID(), ply, game.getPly(), game.atPly(ply));
+    }
+
+    /**
+     * @return the game as PGN, or its current position as FEN
+     */
+    public String exportGame(ExportGameRequest exportGameRequest) throws ResponseException {
+        validateAuth(exportGameRequest.authToken());
+        String format = exportGameRequest.format() == null ? "pgn" : exportGameRequest.format();
+        if (!format.equals("pgn") && !format.equals("fen")) {
+            throw new ResponseException("Bad request", 400);
+        }
+
+        GameData gameData;
+        try {
+            gameData = gameDAO.getGame(exportGameRequest.gameID());
+        } catch (DataAccessException ex) {
+            throw new ResponseException("Bad request", 400);
+        }
+        try {
+            return format.equals("fen") ? Fen.encode(gameData.game()) : Pgn.export(gameData);
+        } catch (IllegalStateException ex) {
+            throw new ResponseException(ex.getMessage(), 500);
+        }
+    }
+
+    /**
+     * Reads a PGN archive game by game and saves the ones that play through cleanly, a batch at a
+     * time, so the archive is never held in memory. Imported games are finished records, so
+     * their players go in the game's name rather than its seats. They aren't announced to lobby
+     * subscribers, as they're records of games played elsewhere rather than games looking for
+     * players. Batches saved before a read or database error stay saved.
+     */
+    public ImportGamesResult importGames(String authToken, Reader pgn) throws ResponseException {
+        validateAuth(authToken);
+
+        int imported = 0;
+        int skipped = 0;
+        List<String> errors = new ArrayList<>();
+        List<GameData> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        try (PgnReader reader = new PgnReader(pgn)) {
+            PgnGame pgnGame;
+            while ((pgnGame = reader.next()) != null) {
+                try {
+                    ChessGame game = Pgn.replay(pgnGame);
+                    batch.add(new GameData(0, null, null, importedGameName(pgnGame), game));
+                } catch (InvalidMoveException | RuntimeException ex) {
+                    //One bad game is skipped rather than failing the rest of the archive
+                    skipped++;
+                    if (errors.size() < MAX_IMPORT_ERRORS) {
+                        errors.add("Game " + reader.getGamesRead() + ": " + ex.getMessage());
+                    }
+                }
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    gameDAO.importGames(batch);
+                    imported += batch.size();
+                    batch.clear();
+                }
+            }
+        } catch (IOException ex) {
+            throw new ResponseException("Failed to read the PGN (" + ex.getMessage() + ")", 400);
+        }
+        if (!batch.isEmpty()) {
+            gameDAO.importGames(batch);
+            imported += batch.size();
+        }
+        return new ImportGamesResult(imported, skipped, errors);
+    }
+
+    private static String importedGameName(PgnGame pgnGame) {
+        String white = pgnGame.tags().getOrDefault("White", "?");
+        String black = pgnGame.tags().getOrDefault("Black", "?");
+        String event = pgnGame.tag("Event");
+        StringBuilder name = new StringBuilder(64).append(white).append(" vs ").append(black);
+        if (event != null && !event.isEmpty() && !event.equals("?")) {
+            name.append(" (").append(event).append(')');
+        }
+        return name.length() > MAX_GAME_NAME_LENGTH ? name.substring(0, MAX_GAME_NAME_LENGTH) : name.toString();
+    }
+
     public String validateAuth(String authToken) throws ResponseException {
         try {
             AuthData auth = authDAO.getAuth(authToken);
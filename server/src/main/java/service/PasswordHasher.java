@@ -0,0 +1,119 @@
+package service;
+
+import exception.ResponseException;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs BCrypt hashing and checking on its own bounded pool of worker threads, so a burst of
+ * logins can't take over the threads that handle moves and game lists. When every worker is
+ * busy and the queue is full, new requests are turned away with a 503 instead of piling up.
+ */
+public class PasswordHasher {
+
+    public static final int DEFAULT_WORK_FACTOR = 10;
+    public static final int DEFAULT_QUEUE_LIMIT = 64;
+
+    public enum Operation {
+        HASH,
+        CHECK
+    }
+
+    public record OperationStats(long count, long totalNanos, long maxNanos) {
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int workFactor;
+    private final LongAdder[] counts = new LongAdder[Operation.values().length];
+    private final LongAdder[] totalNanos = new LongAdder[Operation.values().length];
+    private final LongAccumulator[] maxNanos = new LongAccumulator[Operation.values().length];
+    private final LongAdder rejected = new LongAdder();
+
+    public PasswordHasher() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_LIMIT, DEFAULT_WORK_FACTOR);
+    }
+
+    public PasswordHasher(int threads, int queueLimit, int workFactor) {
+        this.workFactor = workFactor;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        //Let idle workers die off so unused hashers don't keep threads around
+        executor.allowCoreThreadTimeOut(true);
+        for (Operation operation : Operation.values()) {
+            counts[operation.ordinal()] = new LongAdder();
+            totalNanos[operation.ordinal()] = new LongAdder();
+            maxNanos[operation.ordinal()] = new LongAccumulator(Long::max, 0);
+        }
+    }
+
+    public String hash(String clearTextPassword) throws ResponseException {
+        return run(Operation.HASH, () -> BCrypt.hashpw(clearTextPassword, BCrypt.gensalt(workFactor)));
+    }
+
+    public boolean check(String clearTextPassword, String hashedPassword) throws ResponseException {
+        return run(Operation.CHECK, () -> {
+            try {
+                return BCrypt.checkpw(clearTextPassword, hashedPassword);
+            } catch (IllegalArgumentException ex) {
+                //The stored password isn't a BCrypt hash, so nothing can match it
+                return false;
+            }
+        });
+    }
+
+    //Package-private so tests can fill the workers and queue with tasks of their own
+    <T> T run(Operation operation, Callable<T> task) throws ResponseException {
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new ResponseException("Server is busy, please try again", 503);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseException("Interrupted while checking the password", 500);
+        } catch (ExecutionException ex) {
+            throw new ResponseException(ex.getCause().getMessage(), 500);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            counts[operation.ordinal()].increment();
+            totalNanos[operation.ordinal()].add(elapsed);
+            maxNanos[operation.ordinal()].accumulate(elapsed);
+        }
+    }
+
+    public OperationStats getStats(Operation operation) {
+        int i = operation.ordinal();
+        return new OperationStats(counts[i].sum(), totalNanos[i].sum(), maxNanos[i].get());
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getWorkFactor() {
+        return workFactor;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
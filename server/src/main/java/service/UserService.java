@@ -5,7 +5,6 @@ import dataaccess.DataAccessException;
 import dataaccess.UserDAO;
 import exception.ResponseException;
 import model.UserData;
-import org.mindrot.jbcrypt.BCrypt;
 import requests.*;
 import results.*;
 
@@ -15,16 +14,25 @@ public class UserService {
 
     private AuthDAO authDAO;
     private UserDAO userDAO;
+    private PasswordHasher passwordHasher;
 
     public UserService(AuthDAO authDAO, UserDAO userDAO) {
+        this(authDAO, userDAO, new PasswordHasher());
+    }
+
+    public UserService(AuthDAO authDAO, UserDAO userDAO, PasswordHasher passwordHasher) {
         this.authDAO = authDAO;
         this.userDAO = userDAO;
+        this.passwordHasher = passwordHasher;
     }
 
     public RegisterResult register(RegisterRequest registerRequest) throws ResponseException {
         if (registerRequest.password()==null || registerRequest.username()==null || registerRequest.email()==null) {
             throw new ResponseException("Bad request", 400);
         }
+        if (BotPlayer.isBot(registerRequest.username())) {
+            throw new ResponseException("Already taken", 403);
+        }
 
         try {
             userDAO.getUser(registerRequest.username());
@@ -39,6 +47,8 @@ public class UserService {
                 String authToken = generateAuthToken();
                 authDAO.createAuth(registerRequest.username(), authToken);
                 return new RegisterResult(authToken, registerRequest.username());
+            } catch (ResponseException rex) {
+                throw rex;
             } catch (Exception ex) {
                 throw new ResponseException(ex.getMessage(), 500);
             }
@@ -61,6 +71,8 @@ public class UserService {
                 throw new ResponseException("Unauthorized", 401);
             }
             throw new ResponseException(ex.getMessage(), 500);
+        } catch (ResponseException rex) {
+            throw rex;
         } catch (Exception ex) {
             throw new ResponseException(ex.getMessage(), 500);
         }
@@ -89,13 +101,17 @@ public class UserService {
         return UUID.randomUUID().toString();
     }
 
-    public String hashPassword(String clearTextPassword) {
-        return BCrypt.hashpw(clearTextPassword, BCrypt.gensalt());
+    public String hashPassword(String clearTextPassword) throws ResponseException {
+        return passwordHasher.hash(clearTextPassword);
     }
 
-    public void comparePasswords(String userPassword, String dataBasePassword) throws DataAccessException {
-        if (!userPassword.equals(dataBasePassword) && !BCrypt.checkpw(userPassword, dataBasePassword)) {
+    public void comparePasswords(String userPassword, String dataBasePassword) throws DataAccessException, ResponseException {
+        if (!passwordHasher.check(userPassword, dataBasePassword)) {
             throw new DataAccessException("Unauthorized");
         }
     }
+
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
 }
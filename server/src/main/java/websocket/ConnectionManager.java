@@ -2,29 +2,164 @@ package websocket;
 
 import com.google.gson.Gson;
 import exception.ResponseException;
+import logging.AsyncLogger;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
 import org.eclipse.jetty.websocket.api.Session;
+import websocket.messages.LobbyMessage;
 import websocket.messages.ServerMessage;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ConnectionManager {
 
-    private ConcurrentHashMap<Integer, ArrayList<Connection>> connectionMap;
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(ConnectionManager.class);
 
-    public ConnectionManager() {
+    //Lists are copied on write, since every broadcast walks one while players connect and leave at any time
+    private ConcurrentHashMap<Integer, CopyOnWriteArrayList<Connection>> connectionMap;
+    private ConcurrentHashMap<Session, SessionOutbox> outboxes;
+    private Set<Session> binarySessions;
+    private ConcurrentHashMap<Session, LobbyFeed> lobbyFeeds;
+    //Held while a lobby change is queued for every subscriber, so they all get changes in the same order.
+    //Nothing is sent while it's held
+    private final Object lobbyLock = new Object();
+    private ScheduledExecutorService flushScheduler;
+    private long batchWindowMillis;
+    private MetricsRegistry metrics;
+
+    public ConnectionManager(MetricsRegistry metrics, long batchWindowMillis) {
         connectionMap = new ConcurrentHashMap<>();
+        outboxes = new ConcurrentHashMap<>();
+        binarySessions = ConcurrentHashMap.newKeySet();
+        lobbyFeeds = new ConcurrentHashMap<>();
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-batch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchWindowMillis = batchWindowMillis;
+        this.metrics = metrics;
+        metrics.gauge("ws_active_games", "Games with at least one connected session", this::getActiveGameCount);
+        metrics.gauge("ws_active_sessions", "Sessions connected to a game", this::getActiveSessionCount);
+        metrics.gauge("ws_lobby_sessions", "Sessions subscribed to lobby updates", lobbyFeeds::size);
+    }
+
+    /**
+     * Turns on batching for a session that asked for it when it connected. From then on every
+     * message to that session goes through its outbox instead of straight to the socket.
+     */
+    public void enableBatching(Session session) {
+        outboxes.put(session, new SessionOutbox(session, flushScheduler, batchWindowMillis,
+                metrics.histogram("ws_batch_size", "Server messages sent together in one batched frame",
+                        Histogram.SIZE_BUCKETS)));
+    }
+
+    /**
+     * Switches a session that connected with ?protocol=binary over to {@link BinaryCodec} frames.
+     * Binary frames are already small, so these sessions skip the batching outbox.
+     */
+    public void enableBinary(Session session) {
+        binarySessions.add(session);
+    }
+
+    public void closeSession(Session session) {
+        outboxes.remove(session);
+        binarySessions.remove(session);
+        lobbyFeeds.remove(session);
+    }
+
+    /**
+     * Subscribes a session to lobby changes and sends it the snapshot they apply to. The session
+     * starts collecting changes before the games are read, and they're sent after the snapshot,
+     * so none is missed; one the snapshot already includes only sets a field to what it already is.
+     *
+     * @param snapshot reads every game
+     */
+    public void subscribeLobby(Session session, Callable<LobbyMessage> snapshot) throws ResponseException {
+        LobbyFeed feed = new LobbyFeed(session);
+        synchronized (lobbyLock) {
+            lobbyFeeds.put(session, feed);
+        }
+        LobbyMessage lobbyMessage;
+        try {
+            lobbyMessage = snapshot.call();
+        } catch (Exception ex) {
+            lobbyFeeds.remove(session, feed);
+            if (ex instanceof ResponseException rex) {
+                throw rex;
+            }
+            throw new ResponseException(ex.getMessage(), 500);
+        }
+        feed.start(new OutgoingMessage(lobbyMessage));
+    }
+
+    public void unsubscribeLobby(Session session) {
+        lobbyFeeds.remove(session);
+    }
+
+    /**
+     * Sends a lobby change to every subscribed session. A session that can't be reached is
+     * dropped rather than failing the request that changed the lobby. Subscribers another thread
+     * is already sending to are left to it, so one slow client doesn't hold up every change.
+     */
+    public void publishLobby(LobbyMessage lobbyMessage) {
+        OutgoingMessage outgoing = new OutgoingMessage(lobbyMessage);
+        ArrayList<LobbyFeed> feeds = new ArrayList<>(lobbyFeeds.size());
+        synchronized (lobbyLock) {
+            for (LobbyFeed feed : lobbyFeeds.values()) {
+                if (!feed.session.isOpen()) {
+                    lobbyFeeds.remove(feed.session, feed);
+                    continue;
+                }
+                feed.add(outgoing);
+                feeds.add(feed);
+            }
+        }
+        for (LobbyFeed feed : feeds) {
+            feed.drain();
+        }
+        int recipients = feeds.size();
+        metrics.histogram("ws_broadcast_recipients", "Number of sessions each server message was delivered to",
+                Histogram.SIZE_BUCKETS, "delivery", "LOBBY", "type", lobbyMessage.getServerMessageType().name())
+                .observe(recipients);
+    }
+
+    public void shutdown() {
+        flushScheduler.shutdown();
+    }
+
+    public int getActiveGameCount() {
+        int games = 0;
+        for (CopyOnWriteArrayList<Connection> connectionList : connectionMap.values()) {
+            if (!connectionList.isEmpty()) {
+                games++;
+            }
+        }
+        return games;
+    }
+
+    public int getActiveSessionCount() {
+        int sessions = 0;
+        for (CopyOnWriteArrayList<Connection> connectionList : connectionMap.values()) {
+            sessions += connectionList.size();
+        }
+        return sessions;
     }
 
     public void add(int gameID, Session session, String username) throws ResponseException {
         try {
             Connection newConnection = new Connection(session, username);
-            ArrayList<Connection> connectionList = connectionMap.get(gameID);
-            if (connectionList == null) {
-                connectionList = new ArrayList<>();
-            }
-            connectionList.add(newConnection);
-            connectionMap.put(gameID, connectionList);
+            connectionMap.computeIfAbsent(gameID, id -> new CopyOnWriteArrayList<>()).add(newConnection);
         } catch (Exception ex) {
             throw new ResponseException(ex.getMessage(), 500);
         }
@@ -32,9 +167,7 @@ public class ConnectionManager {
 
     public void remove(int gameID, Connection connection) throws ResponseException {
         try {
-            ArrayList<Connection> connectionList = connectionMap.get(gameID);
-            connectionList.remove(connection);
-            connectionMap.put(gameID, connectionList);
+            connectionMap.get(gameID).remove(connection);
         } catch (Exception ex) {
             throw new ResponseException(ex.getMessage(), 500);
         }
@@ -47,12 +180,15 @@ public class ConnectionManager {
     }
 
     public void messageDelivery(MessageType messageType, int gameID, Session rootClient, ServerMessage serverMessage) throws ResponseException {
-        ArrayList<Connection> connectionList = connectionMap.get(gameID);
+        CopyOnWriteArrayList<Connection> connectionList = connectionMap.get(gameID);
         ArrayList<Connection> removeList = new ArrayList<>();
+        int recipients = 0;
+        OutgoingMessage outgoing = new OutgoingMessage(serverMessage);
         switch (messageType) {
             case ROOT: {
-                sendMessage(rootClient, serverMessage);
-                return;
+                sendMessage(rootClient, outgoing);
+                recipients = 1;
+                break;
             } case NOT_ROOT: {
                 for (Connection connection : connectionList) {
                     if (!connection.session().isOpen()) {
@@ -60,42 +196,151 @@ public class ConnectionManager {
                         continue;
                     }
                     if (!rootClient.equals(connection.session())) {
-                        sendMessage(connection.session(), serverMessage);
+                        sendMessage(connection.session(), outgoing);
+                        recipients++;
                     }
                 }
                 removeFromList(gameID, removeList);
-                return;
+                break;
             } case EVERYONE: {
                 for (Connection connection : connectionList) {
                     if (!connection.session().isOpen()) {
                         removeList.add(connection);
                         continue;
                     }
-                    sendMessage(connection.session(), serverMessage);
+                    sendMessage(connection.session(), outgoing);
+                    recipients++;
                 }
                 removeFromList(gameID, removeList);
-                return;
+                break;
             }
         }
+        metrics.histogram("ws_broadcast_recipients", "Number of sessions each server message was delivered to",
+                Histogram.SIZE_BUCKETS, "delivery", messageType.name(),
+                "type", serverMessage.getServerMessageType().name()).observe(recipients);
     }
 
     private void removeFromList(int gameID, ArrayList<Connection> removeList) {
         try {
-            ArrayList<Connection> connectionList = connectionMap.get(gameID);
+            CopyOnWriteArrayList<Connection> connectionList = connectionMap.get(gameID);
             for (Connection connection : removeList) {
                 connectionList.remove(connection);
+                LOG.debug("ws_closed_session_removed", gameID, connection.username(), null);
             }
-            connectionMap.put(gameID, connectionList);
         } catch (Exception ex) {
-            System.out.println("Failed to remove connection from list");
+            LOG.warn("ws_remove_failed", gameID, null, ex.getMessage());
         }
     }
 
-    private void sendMessage(Session session, ServerMessage serverMessage) throws ResponseException {
+    private void sendMessage(Session session, OutgoingMessage outgoing) throws ResponseException {
         try {
-            session.getRemote().sendString(new Gson().toJson(serverMessage));
+            int bytesSent;
+            byte[] binary = binarySessions.contains(session) ? outgoing.binary() : null;
+            if (binary != null) {
+                session.getRemote().sendBytes(ByteBuffer.wrap(binary));
+                bytesSent = binary.length;
+            } else {
+                String json = outgoing.json();
+                SessionOutbox outbox = outboxes.get(session);
+                if (outbox != null) {
+                    outbox.add(json);
+                } else {
+                    session.getRemote().sendString(json);
+                }
+                bytesSent = outgoing.jsonLength();
+            }
+            metrics.counter("ws_bytes_sent_total", "Bytes of server messages sent over WebSockets",
+                    "type", outgoing.message.getServerMessageType().name(),
+                    "protocol", binary != null ? "binary" : "json").add(bytesSent);
         } catch (Exception ex) {
             throw new ResponseException(ex.getMessage(), 500);
         }
     }
+
+    /**
+     * The lobby messages queued for one subscriber. Whichever thread finds it idle sends
+     * everything queued, so a subscriber's messages go out one at a time and in order.
+     */
+    private class LobbyFeed {
+        private final Session session;
+        private final ConcurrentLinkedDeque<OutgoingMessage> queue = new ConcurrentLinkedDeque<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        //Changes wait behind the snapshot until it has been read
+        private volatile boolean started;
+
+        LobbyFeed(Session session) {
+            this.session = session;
+        }
+
+        void add(OutgoingMessage outgoing) {
+            queue.add(outgoing);
+        }
+
+        void start(OutgoingMessage snapshot) {
+            queue.addFirst(snapshot);
+            started = true;
+            drain();
+        }
+
+        void drain() {
+            //Checked again after letting go, in case a message was queued just as the last sender finished
+            while (started && !queue.isEmpty() && sending.compareAndSet(false, true)) {
+                try {
+                    OutgoingMessage outgoing;
+                    while ((outgoing = queue.poll()) != null) {
+                        try {
+                            sendMessage(session, outgoing);
+                        } catch (ResponseException ex) {
+                            LOG.warn("ws_lobby_send_failed", null, null, ex.getMessage());
+                        }
+                    }
+                } finally {
+                    sending.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * A server message on its way to a game's sessions. Each encoding is built the first time a
+     * session needs it, so a broadcast serializes the message once per protocol instead of once
+     * per recipient. A lobby change is sent by whichever threads drain its subscribers, so the
+     * encodings are built under the message's lock.
+     */
+    private static class OutgoingMessage {
+        private final ServerMessage message;
+        private String json;
+        private int jsonLength = -1;
+        private byte[] binary;
+        private boolean binaryEncoded;
+
+        OutgoingMessage(ServerMessage message) {
+            this.message = message;
+        }
+
+        synchronized String json() {
+            if (json == null) {
+                json = new Gson().toJson(message);
+            }
+            return json;
+        }
+
+        synchronized int jsonLength() {
+            if (jsonLength < 0) {
+                jsonLength = json().getBytes(StandardCharsets.UTF_8).length;
+            }
+            return jsonLength;
+        }
+
+        /**
+         * @return the binary frame, or null if this message type only has a JSON form
+         */
+        synchronized byte[] binary() {
+            if (!binaryEncoded) {
+                binary = BinaryCodec.encodeMessage(message);
+                binaryEncoded = true;
+            }
+            return binary;
+        }
+    }
 }
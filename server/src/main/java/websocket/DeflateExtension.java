@@ -0,0 +1,347 @@
+package websocket;
+
+import metrics.Counter;
+import metrics.MetricsRegistry;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.*;
+import org.eclipse.jetty.websocket.core.exception.BadPayloadException;
+import org.eclipse.jetty.websocket.core.exception.MessageTooLargeException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * permessage-deflate (RFC 7692) that only compresses messages of at least the configured size.
+ * Jetty's own extension deflates every frame, which costs more than it saves on short
+ * notifications, so this one replaces it in the extension registry. LOAD_GAME frames full of
+ * repeated piece names still get compressed.
+ * <p>
+ * The server doesn't keep its compression window between messages (server_no_context_takeover),
+ * so a send can borrow any idle Deflater from a pool the server's sessions share and hand it back
+ * afterwards. That gives up a little ratio across messages in exchange for deflate memory that
+ * grows with the sends in progress rather than with the number of observers. Incoming messages
+ * are inflated with a window kept for the whole session, because clients such as Tyrus keep
+ * theirs, so each session that receives compressed messages does hold an Inflater.
+ * <p>
+ * Jetty builds extensions with a no-argument constructor, so each server hands its threshold and
+ * counters over through {@link #configure(WebSocketComponents, int, MetricsRegistry)}, which keeps
+ * them with that server's WebSocket components rather than anywhere shared across servers.
+ */
+public class DeflateExtension extends AbstractExtension {
+
+    public static final String NAME = "permessage-deflate";
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+    private static final int MIN_WINDOW_BITS = 8;
+    private static final int MAX_WINDOW_BITS = 15;
+
+    private Settings settings;
+    //Longest message that can be compressed within the window the client allowed the server
+    private int maxCompressedLength = Integer.MAX_VALUE;
+    private Inflater inflater;
+    private boolean outgoingFragmented;
+    //Incoming frames have their own lock, so a session's sends don't wait on it while a command is handled
+    private final Object incomingLock = new Object();
+    private ByteArrayOutputStream incomingMessage;
+    private byte incomingOpCode;
+
+    /**
+     * What every deflate session on one server shares
+     *
+     * @param threshold smallest message in bytes that gets compressed
+     */
+    public record Settings(int threshold, Counter rawBytes, Counter compressedBytes, Counter skippedMessages,
+                           DeflaterPool deflaters) {
+
+        public static Settings defaults() {
+            return new Settings(DEFAULT_THRESHOLD, new Counter(), new Counter(), new Counter(), new DeflaterPool());
+        }
+    }
+
+    /**
+     * Idle Deflaters, reset and ready for the next message. Each holds a few hundred KB of native
+     * memory, so only a handful are kept and any beyond that are freed when they come back.
+     */
+    public static class DeflaterPool {
+
+        private static final int MAX_IDLE = 16;
+
+        private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        Deflater take() {
+            Deflater deflater = idle.poll();
+            if (deflater == null) {
+                return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            }
+            idleCount.decrementAndGet();
+            return deflater;
+        }
+
+        void give(Deflater deflater) {
+            deflater.reset();
+            if (idleCount.incrementAndGet() > MAX_IDLE) {
+                idleCount.decrementAndGet();
+                deflater.end();
+                return;
+            }
+            idle.offer(deflater);
+        }
+
+        int idleCount() {
+            return idleCount.get();
+        }
+    }
+
+    /**
+     * Sets the threshold and counters for the extensions the components build. Call it before
+     * registering this extension with the components' registry.
+     */
+    public static void configure(WebSocketComponents components, int threshold, MetricsRegistry metrics) {
+        components.addBean(new Settings(threshold,
+                metrics.counter("ws_compression_raw_bytes_total",
+                        "Bytes of outgoing WebSocket messages before permessage-deflate"),
+                metrics.counter("ws_compression_compressed_bytes_total",
+                        "Bytes those same messages took on the wire after permessage-deflate"),
+                metrics.counter("ws_compression_skipped_total",
+                        "Outgoing messages on deflate sessions sent uncompressed for being under the threshold"
+                                + " or over the client's window"),
+                new DeflaterPool()));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isRsv1User() {
+        return true;
+    }
+
+    /**
+     * Answers the client's offer, always with server_no_context_takeover. The JDK's Deflater can't
+     * shrink its window, so a server_max_window_bits limit is kept by only compressing messages that
+     * fit in that window: with no context carried over, nothing can refer back further than that.
+     * Incoming messages are inflated with the full window, so client_max_window_bits needs no answer.
+     *
+     * @throws IllegalArgumentException for an offer RFC 7692 says to decline, with an unknown parameter
+     * or a bad value. Jetty gives extensions no way to decline, so like Jetty's own extension this
+     * turns the upgrade away instead.
+     */
+    @Override
+    public void init(ExtensionConfig offered, WebSocketComponents components) {
+        ExtensionConfig negotiated = new ExtensionConfig(NAME);
+        negotiated.setParameter("server_no_context_takeover");
+        maxCompressedLength = Integer.MAX_VALUE;
+        for (String key : offered.getParameterKeys()) {
+            String value = offered.getParameter(key, null);
+            switch (key) {
+                case "server_no_context_takeover", "client_no_context_takeover" -> {
+                    if (value != null) {
+                        throw new IllegalArgumentException(key + " doesn't take a value");
+                    }
+                }
+                case "server_max_window_bits" -> {
+                    int windowBits = parseWindowBits(key, value);
+                    negotiated.setParameter(key, windowBits);
+                    if (windowBits < MAX_WINDOW_BITS) {
+                        maxCompressedLength = 1 << windowBits;
+                    }
+                }
+                case "client_max_window_bits" -> {
+                    if (value != null) {
+                        parseWindowBits(key, value);
+                    }
+                }
+                default -> {
+                    //Parameters starting with @ are Jetty's own settings, not part of the offer
+                    if (!key.startsWith("@")) {
+                        throw new IllegalArgumentException("Unknown permessage-deflate parameter " + key);
+                    }
+                }
+            }
+        }
+        Settings configured = components.getBean(Settings.class);
+        settings = configured != null ? configured : Settings.defaults();
+        super.init(negotiated, components);
+    }
+
+    @Override
+    public synchronized void sendFrame(Frame frame, Callback callback, boolean batch) {
+        byte opCode = frame.getOpCode();
+        if (opCode == OpCode.CONTINUATION) {
+            //Continuations belong to a message that was started uncompressed
+            outgoingFragmented = !frame.isFin();
+            nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+        if (!frame.isDataFrame()) {
+            nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+        if (!frame.isFin()) {
+            outgoingFragmented = true;
+            nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+        if (outgoingFragmented || !frame.hasPayload() || frame.getPayloadLength() < settings.threshold()
+                || frame.getPayloadLength() > maxCompressedLength) {
+            settings.skippedMessages().increment();
+            nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+        int rawLength = frame.getPayloadLength();
+        ByteBuffer compressed = deflate(frame.getPayload().slice());
+        settings.rawBytes().add(rawLength);
+        settings.compressedBytes().add(compressed.remaining());
+        Frame compressedFrame = Frame.copyWithoutPayload(frame).setPayload(compressed).setRsv1(true);
+        nextOutgoingFrame(compressedFrame, callback, batch);
+    }
+
+    @Override
+    public void onFrame(Frame frame, Callback callback) {
+        //The frame is handled further up without any lock held, as the command in it may send to other
+        //sessions, whose sends would otherwise wait on a lock held by a command waiting on this one's
+        Frame next;
+        try {
+            next = inflateFrame(frame);
+        } catch (BadPayloadException | MessageTooLargeException ex) {
+            callback.failed(ex);
+            return;
+        }
+        if (next == null) {
+            callback.succeeded();
+        } else {
+            nextIncomingFrame(next, callback);
+        }
+    }
+
+    /**
+     * @return the frame to pass on, or null if it's part of a compressed message that hasn't all arrived
+     */
+    private Frame inflateFrame(Frame frame) {
+        synchronized (incomingLock) {
+            byte opCode = frame.getOpCode();
+            if (frame.isControlFrame() || (incomingMessage == null && !frame.isRsv1())) {
+                return frame;
+            }
+            if (incomingMessage == null) {
+                incomingMessage = new ByteArrayOutputStream(Math.max(frame.getPayloadLength(), 64));
+                incomingOpCode = opCode;
+            } else if (opCode != OpCode.CONTINUATION) {
+                throw new BadPayloadException("Expected a continuation of the compressed message");
+            }
+            appendPayload(incomingMessage, frame.getPayload());
+            if (!frame.isFin()) {
+                return null;
+            }
+            byte[] compressed = incomingMessage.toByteArray();
+            incomingMessage = null;
+            try {
+                return new Frame(incomingOpCode, true, inflate(compressed, maxMessageSize(incomingOpCode)));
+            } catch (DataFormatException ex) {
+                throw new BadPayloadException(ex);
+            }
+        }
+    }
+
+    ByteBuffer deflate(ByteBuffer payload) {
+        Deflater deflater = settings.deflaters().take();
+        byte[] output = new byte[Math.max(64, payload.remaining() / 2)];
+        int length = 0;
+        try {
+            deflater.setInput(payload);
+            while (true) {
+                length += deflater.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+                if (length < output.length) {
+                    break;
+                }
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+        } finally {
+            settings.deflaters().give(deflater);
+        }
+        //A sync flush always ends with the empty block 00 00 FF FF, which the RFC says to drop
+        if (length >= TAIL.length) {
+            length -= TAIL.length;
+        }
+        return ByteBuffer.wrap(output, 0, length);
+    }
+
+    ByteBuffer inflate(byte[] compressed, long maxSize) throws DataFormatException {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        byte[] input = Arrays.copyOf(compressed, compressed.length + TAIL.length);
+        System.arraycopy(TAIL, 0, input, compressed.length, TAIL.length);
+        inflater.setInput(input);
+        byte[] output = new byte[Math.max(256, compressed.length * 4)];
+        int length = 0;
+        while (true) {
+            if (length == output.length) {
+                if (maxSize > 0 && output.length >= maxSize) {
+                    throw new MessageTooLargeException("Inflated message is larger than " + maxSize + " bytes");
+                }
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            int inflatedBytes = inflater.inflate(output, length, output.length - length);
+            length += inflatedBytes;
+            //No progress with room left in the buffer means the input is used up
+            if (inflatedBytes == 0 || inflater.finished()) {
+                break;
+            }
+        }
+        if (maxSize > 0 && length > maxSize) {
+            throw new MessageTooLargeException("Inflated message is larger than " + maxSize + " bytes");
+        }
+        return ByteBuffer.wrap(output, 0, length);
+    }
+
+    private static int parseWindowBits(String key, String value) {
+        try {
+            int windowBits = Integer.parseInt(value);
+            if (windowBits >= MIN_WINDOW_BITS && windowBits <= MAX_WINDOW_BITS) {
+                return windowBits;
+            }
+        } catch (NumberFormatException ex) {
+            //Handled with the out of range values below
+        }
+        throw new IllegalArgumentException(key + " has to be " + MIN_WINDOW_BITS + " to " + MAX_WINDOW_BITS
+                + ", not " + value);
+    }
+
+    private long maxMessageSize(byte opCode) {
+        CoreSession session = getCoreSession();
+        if (session == null) {
+            return -1;
+        }
+        return opCode == OpCode.BINARY ? session.getMaxBinaryMessageSize() : session.getMaxTextMessageSize();
+    }
+
+    private static void appendPayload(ByteArrayOutputStream message, ByteBuffer payload) {
+        if (payload == null) {
+            return;
+        }
+        ByteBuffer slice = payload.slice();
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        message.writeBytes(bytes);
+    }
+
+    @Override
+    public void close() {
+        synchronized (incomingLock) {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
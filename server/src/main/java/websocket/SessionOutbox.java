@@ -0,0 +1,79 @@
+package websocket;
+
+import logging.AsyncLogger;
+import metrics.Histogram;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the server messages headed to one batching session and sends them together.
+ * The first message to arrive starts a short window; everything queued before the window
+ * closes goes out in a single frame as a JSON array, so a busy observer gets one frame
+ * instead of a LOAD_GAME and a handful of notifications back to back.
+ */
+public class SessionOutbox {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(SessionOutbox.class);
+
+    private final Session session;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final Histogram batchSizes;
+    private final ArrayList<String> pending = new ArrayList<>();
+    private boolean flushScheduled;
+
+    public SessionOutbox(Session session, ScheduledExecutorService scheduler, long windowMillis, Histogram batchSizes) {
+        this.session = session;
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.batchSizes = batchSizes;
+    }
+
+    public synchronized void add(String json) {
+        pending.add(json);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty() || !session.isOpen()) {
+            pending.clear();
+            return;
+        }
+        String frame;
+        if (pending.size() == 1) {
+            frame = pending.getFirst();
+        } else {
+            int length = pending.size() + 1;
+            for (String json : pending) {
+                length += json.length();
+            }
+            StringBuilder batch = new StringBuilder(length);
+            batch.append('[');
+            for (int i = 0; i < pending.size(); i++) {
+                if (i > 0) {
+                    batch.append(',');
+                }
+                batch.append(pending.get(i));
+            }
+            frame = batch.append(']').toString();
+        }
+        batchSizes.observe(pending.size());
+        pending.clear();
+        //The async send only queues the frame with Jetty, so holding the lock here keeps frames in order
+        //without making the scheduler thread wait on a slow client
+        session.getRemote().sendString(frame, new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable ex) {
+                LOG.warn("ws_batch_send_failed", null, null, ex.getMessage());
+            }
+        });
+    }
+}
@@ -2,76 +2,213 @@ package websocket;
 
 import chess.ChessGame;
 import chess.ChessMove;
-import chess.InvalidMoveException;
+import chess.engine.GameStatus;
+import chess.engine.Move;
+import chess.engine.MoveResult;
+import chess.engine.OpeningBook;
+import chess.engine.Position;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import dataaccess.AuthDAO;
 import dataaccess.DataAccessException;
 import dataaccess.GameDAO;
 import exception.ResponseException;
 import io.javalin.websocket.*;
+import logging.AsyncLogger;
+import metrics.MetricsRegistry;
 import model.AuthData;
 import model.GameData;
 import org.eclipse.jetty.websocket.api.Session;
 import org.jetbrains.annotations.NotNull;
+import service.BotPlayer;
+import service.GameLocks;
 import websocket.commands.*;
 import websocket.messages.*;
 
-public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsCloseHandler {
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsBinaryMessageHandler, WsCloseHandler {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(WebSocketHandler.class);
 
     private AuthDAO authDAO;
     private GameDAO gameDAO;
     private ConnectionManager connectionManager;
+    private MetricsRegistry metrics;
+    private BotPlayer botPlayer;
+    private OpeningBook openingBook;
+    private GameLocks gameLocks;
 
-    public WebSocketHandler(AuthDAO authDAO, GameDAO gameDAO, ConnectionManager connectionManager) {
+    /**
+     * @param openingBook precomputed opening positions used to check moves and game status
+     *                    without working them out, or null to always work them out
+     * @param gameLocks   held while a move, resignation or leave is checked and saved and while a
+     *                    resuming session catches up, shared with the game service so joins take
+     *                    the same locks
+     */
+    public WebSocketHandler(AuthDAO authDAO, GameDAO gameDAO, ConnectionManager connectionManager, MetricsRegistry metrics,
+                            BotPlayer botPlayer, OpeningBook openingBook, GameLocks gameLocks) {
         this.authDAO = authDAO;
         this.gameDAO = gameDAO;
         this.connectionManager = connectionManager;
+        this.metrics = metrics;
+        this.botPlayer = botPlayer;
+        this.openingBook = openingBook;
+        this.gameLocks = gameLocks;
     }
 
     @Override
     public void handleConnect(WsConnectContext ctx) {
-        System.out.println("Websocket connected");
+        LOG.debug("ws_connect", null, null, ctx.sessionId());
         ctx.enableAutomaticPings();
+        if ("binary".equals(ctx.queryParam("protocol"))) {
+            connectionManager.enableBinary(ctx.session);
+        } else if ("true".equals(ctx.queryParam("batch"))) {
+            connectionManager.enableBatching(ctx.session);
+        }
     }
 
     @Override
     public void handleMessage(@NotNull WsMessageContext ctx) {
+        JsonElement frame;
+        try {
+            frame = JsonParser.parseString(ctx.message());
+        } catch (JsonParseException ex) {
+            rejectCommand(ex.getMessage(), ctx.session);
+            return;
+        }
+        //A batching client can send several commands in one frame as a JSON array
+        if (frame.isJsonArray()) {
+            for (JsonElement commandJson : frame.getAsJsonArray()) {
+                handleCommand(commandJson, ctx.session);
+            }
+        } else {
+            handleCommand(frame, ctx.session);
+        }
+    }
+
+    @Override
+    public void handleBinaryMessage(@NotNull WsBinaryMessageContext ctx) {
+        UserGameCommand command;
+        try {
+            command = BinaryCodec.decodeCommand(ctx.data(), ctx.offset(), ctx.length());
+        } catch (IOException ex) {
+            rejectCommand("Error: malformed binary command", ctx.session);
+            return;
+        }
+        handleCommand(command, ctx.session);
+    }
+
+    private void handleCommand(JsonElement commandJson, Session session) {
+        UserGameCommand command;
         try {
-            UserGameCommand userGameCommand = new Gson().fromJson(ctx.message(), UserGameCommand.class);
+            command = new Gson().fromJson(commandJson, UserGameCommand.class);
+            if (command.getCommandType() == UserGameCommand.CommandType.MAKE_MOVE) {
+                command = new Gson().fromJson(commandJson, MakeMoveCommand.class);
+            } else if (command.getCommandType() == UserGameCommand.CommandType.RESUME) {
+                command = new Gson().fromJson(commandJson, ResumeCommand.class);
+            } else if (command.getCommandType() == UserGameCommand.CommandType.GET_PLIES) {
+                command = new Gson().fromJson(commandJson, PlyRangeCommand.class);
+            }
+        } catch (JsonParseException ex) {
+            rejectCommand(ex.getMessage(), session);
+            return;
+        }
+        handleCommand(command, session);
+    }
+
+    public void handleCommand(UserGameCommand userGameCommand, Session session) {
+        long start = System.nanoTime();
+        String command = "UNKNOWN";
+        String outcome = "error";
+        Integer gameID = null;
+        String username = null;
+        try {
+            if (userGameCommand.getCommandType() != null) {
+                command = userGameCommand.getCommandType().name();
+            }
+            gameID = userGameCommand.getGameID();
             if (userGameCommand.getAuthToken() == null || authDAO.getAuth(userGameCommand.getAuthToken()) == null) {
                 throw new Exception("Unauthorized");
             }
+            if (userGameCommand.getCommandType() == UserGameCommand.CommandType.SUBSCRIBE_LOBBY
+                    || userGameCommand.getCommandType() == UserGameCommand.CommandType.UNSUBSCRIBE_LOBBY) {
+                //The lobby isn't any one game, so there's no game to look up
+                handleLobbyCommand(session, userGameCommand);
+                outcome = "ok";
+                return;
+            }
             if (userGameCommand.getGameID() == null || gameDAO.getGame(userGameCommand.getGameID()) == null) {
                 throw new Exception("Invalid Game");
             }
             AuthData auth = authDAO.getAuth(userGameCommand.getAuthToken());
             GameData game = gameDAO.getGame(userGameCommand.getGameID());
+            username = auth.username();
+            LOG.debug("ws_command", gameID, username, command);
             switch (userGameCommand.getCommandType()) {
                 case CONNECT: {
-                    handleConnectCommand(auth, game, ctx.session, userGameCommand);
-                    return;
+                    handleConnectCommand(auth, game, session, userGameCommand);
+                    break;
                 } case LEAVE: {
-                    handleLeaveCommand(auth, game, ctx.session, userGameCommand);
-                    return;
+                    handleLeaveCommand(auth, game, session, userGameCommand);
+                    break;
                 } case MAKE_MOVE: {
-                    handleMakeMoveCommand(auth, game, ctx.session, new Gson().fromJson(ctx.message(), MakeMoveCommand.class));
-                    return;
+                    handleMakeMoveCommand(auth, game, session, (MakeMoveCommand) userGameCommand);
+                    break;
                 } case RESIGN: {
-                    handleResignCommand(auth, game, ctx.session, userGameCommand);
-                    return;
+                    handleResignCommand(auth, game, session, userGameCommand);
+                    break;
+                } case RESUME: {
+                    handleResumeCommand(auth, game, session, (ResumeCommand) userGameCommand);
+                    break;
+                } case GET_PLIES: {
+                    handlePlyRangeCommand(game, session, (PlyRangeCommand) userGameCommand);
+                    break;
                 }
             }
+            outcome = "ok";
         } catch (Exception ex) {
-            System.out.println("Handle Message Error: " + ex.getMessage());
-            ErrorMessage newError = new ErrorMessage(ex.getMessage());
-            try {
-                connectionManager.messageDelivery(ConnectionManager.MessageType.ROOT, 1, ctx.session, newError);
-            } catch (Exception mex) {
-                System.out.println("Failed to send Error message to client");
-            }
+            sendCommandError(ex.getMessage(), gameID, username, session);
+        } finally {
+            metrics.counter("ws_commands_total", "WebSocket commands received", "command", command, "outcome", outcome)
+                    .increment();
+            metrics.timer("ws_command_duration_seconds", "Time spent handling each WebSocket command", "command", command)
+                    .observeNanos(System.nanoTime() - start);
         }
     }
 
+    private void rejectCommand(String message, Session session) {
+        metrics.counter("ws_commands_total", "WebSocket commands received", "command", "UNKNOWN", "outcome", "error")
+                .increment();
+        sendCommandError(message, null, null, session);
+    }
+
+    private void sendCommandError(String message, Integer gameID, String username, Session session) {
+        LOG.info("ws_command_rejected", gameID, username, message);
+        ErrorMessage newError = new ErrorMessage(message);
+        try {
+            connectionManager.messageDelivery(ConnectionManager.MessageType.ROOT, 1, session, newError);
+        } catch (Exception mex) {
+            LOG.warn("ws_error_send_failed", gameID, username, mex.getMessage());
+        }
+    }
+
+    /**
+     * Starts or stops pushing lobby changes to a session. A new subscriber is sent every game
+     * that isn't over first, which the changes then apply to.
+     */
+    public void handleLobbyCommand(Session session, UserGameCommand lobbyCommand) throws ResponseException {
+        if (lobbyCommand.getCommandType() == UserGameCommand.CommandType.UNSUBSCRIBE_LOBBY) {
+            connectionManager.unsubscribeLobby(session);
+            return;
+        }
+        connectionManager.subscribeLobby(session, () -> LobbyMessage.snapshot(List.copyOf(gameDAO.listOpenGames())));
+    }
+
     public void handleConnectCommand(AuthData auth, GameData game, Session session, UserGameCommand connectCommand) throws ResponseException {
         connectionManager.add(connectCommand.getGameID(), session, auth.username());
         String message = auth.username() + " has joined the game as ";
@@ -87,139 +224,272 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         NotificationMessage notification = new NotificationMessage(message);
         connectionManager.messageDelivery(ConnectionManager.MessageType.ROOT, 1, session, loadMessage);
         connectionManager.messageDelivery(ConnectionManager.MessageType.NOT_ROOT, connectCommand.getGameID(), session, notification);
+        //A bot playing White has been waiting for someone to show up before opening
+        requestBotMove(game);
+    }
+
+    /**
+     * Rejoins a client that lost its connection. It already has the game up to the ply it sent, so
+     * it only gets the moves made since, and the others in the game aren't told it ever left.
+     * A client claiming more moves than were made has the wrong game and is sent all of it.
+     */
+    public void handleResumeCommand(AuthData auth, GameData game, Session session, ResumeCommand resumeCommand) throws ResponseException {
+        //Joining the game and reading it under the lock means a move is either in the catch-up or
+        //broadcast to this session after it, never neither
+        ReentrantLock gameLock = gameLocks.forGame(game.gameID());
+        gameLock.lock();
+        try {
+            connectionManager.add(game.gameID(), session, auth.username());
+            game = reloadGame(game.gameID());
+            List<ChessMove> history = game.game().getMoveHistory();
+            int lastPly = resumeCommand.getLastPly();
+            ServerMessage catchUp;
+            if (lastPly >= 0 && lastPly <= game.game().getPly()) {
+                catchUp = new MovesMessage(game.gameID(), lastPly, List.copyOf(history.subList(lastPly, history.size())),
+                        game.game().isGameOver());
+            } else {
+                catchUp = new LoadGameMessage(game);
+            }
+            connectionManager.messageDelivery(ConnectionManager.MessageType.ROOT, game.gameID(), session, catchUp);
+        } finally {
+            gameLock.unlock();
+        }
+    }
+
+    /**
+     * Sends the board at one ply and the moves up to another, seeking to the first from the game's
+     * nearest snapshot. Anyone can ask, players and observers alike, without being in the game.
+     */
+    public void handlePlyRangeCommand(GameData game, Session session, PlyRangeCommand plyRangeCommand) throws ResponseException {
+        ChessGame chessGame = game.game();
+        int fromPly = plyRangeCommand.getFromPly();
+        int toPly = plyRangeCommand.getToPly();
+        if (fromPly < 0 || toPly < fromPly || toPly > chessGame.getPly()) {
+            throw new ResponseException("The game has " + chessGame.getPly() + " moves, so there's no ply "
+                    + fromPly + " to " + toPly, 0);
+        }
+        ReplayMessage replay = new ReplayMessage(game.gameID(), fromPly, chessGame.getPly(), chessGame.atPly(fromPly),
+                List.copyOf(chessGame.getMoveHistory().subList(fromPly, toPly)));
+        connectionManager.messageDelivery(ConnectionManager.MessageType.ROOT, 1, session, replay);
     }
 
     public void handleLeaveCommand(AuthData auth, GameData game, Session session, UserGameCommand leaveCommand) throws ResponseException {
         connectionManager.remove(leaveCommand.getGameID(), new Connection(session, auth.username()));
+        ReentrantLock gameLock = gameLocks.forGame(game.gameID());
+        gameLock.lock();
         try {
+            //Writing back the game loaded before the lock would undo any move made since
+            game = reloadGame(game.gameID());
+            //Lobby changes go out under the lock too, so a seat freed here can't arrive after someone takes it
             if (auth.username().equals(game.whiteUsername())) {
                 gameDAO.updateGame(new GameData(game.gameID(), null, game.blackUsername(), game.gameName(), game.game()));
+                connectionManager.publishLobby(LobbyMessage.seatFreed(game.gameID(), ChessGame.TeamColor.WHITE));
             } else if (auth.username().equals(game.blackUsername())) {
                 gameDAO.updateGame(new GameData(game.gameID(), game.whiteUsername(), null, game.gameName(), game.game()));
+                connectionManager.publishLobby(LobbyMessage.seatFreed(game.gameID(), ChessGame.TeamColor.BLACK));
             }
         } catch (DataAccessException ex) {
             throw new ResponseException(ex.getMessage(), 0);
+        } finally {
+            gameLock.unlock();
         }
         NotificationMessage notification = new NotificationMessage(auth.username() + " has left the game");
         connectionManager.messageDelivery(ConnectionManager.MessageType.NOT_ROOT, game.gameID(), session, notification);
     }
 
     public void handleMakeMoveCommand(AuthData auth, GameData game, Session session, MakeMoveCommand makeMoveCommand) throws ResponseException {
+        applyMove(game.gameID(), auth.username(), makeMoveCommand.getMove(), session);
+    }
+
+    /**
+     * Checks a move, saves it and tells everyone in the game about it. Players' moves and the
+     * bot's both come through here.
+     *
+     * The game is loaded again under its lock, as the one the command was checked against may be
+     * stale by now, e.g. when the bot moves while a player resigns.
+     *
+     * @param session the mover's session, or null for the bot, which has none to leave out of the
+     *                move notification
+     */
+    public void applyMove(int gameID, String username, ChessMove userMove, Session session) throws ResponseException {
+        //Moves are sent out under the lock too, so everyone gets them in the order they were saved
+        ReentrantLock gameLock = gameLocks.forGame(gameID);
+        gameLock.lock();
+        try {
+            playMove(reloadGame(gameID), username, userMove, session);
+        } finally {
+            gameLock.unlock();
+        }
+    }
+
+    private void playMove(GameData game, String username, ChessMove userMove, Session session) throws ResponseException {
         ChessGame chessGame = game.game();
-        ChessMove userMove = makeMoveCommand.getMove();
         if (chessGame.isGameOver()) {
             throw new ResponseException("The game is over, you can't make any more moves", 0);
         }
         if (chessGame.getBoard().getPiece(userMove.getStartPosition()) == null) {
             throw new ResponseException("There is no piece at that position", 0);
         }
-        if (!chessGame.validMoves(userMove.getStartPosition()).contains(userMove)) {
-            throw new ResponseException("Invalid Move", 0);
-        }
-        ChessGame.TeamColor playerColor = null;
-        ChessGame.TeamColor opponentColor = null;
-        String opponentName = "";
-        if (auth.username().equals(game.whiteUsername())) {
-            playerColor = ChessGame.TeamColor.WHITE;
-            opponentColor = ChessGame.TeamColor.BLACK;
-            if (game.blackUsername() != null) {
-                opponentName = game.blackUsername();
-            } else {
-                opponentName = "the black player";
-            }
-        } else if (auth.username().equals(game.blackUsername())) {
-            playerColor = ChessGame.TeamColor.BLACK;
-            opponentColor = ChessGame.TeamColor.WHITE;
-            if (game.whiteUsername() != null) {
-                opponentName = game.whiteUsername();
-            } else {
-                opponentName = "the white player";
-            }
+        String opponentName;
+        if (username.equals(game.whiteUsername())) {
+            opponentName = game.blackUsername() != null ? game.blackUsername() : "the black player";
+        } else if (username.equals(game.blackUsername())) {
+            opponentName = game.whiteUsername() != null ? game.whiteUsername() : "the white player";
         } else {
             throw new ResponseException("Observers can't make a move", 0);
         }
+        ChessGame.TeamColor playerColor = username.equals(game.whiteUsername()) ? ChessGame.TeamColor.WHITE
+                : ChessGame.TeamColor.BLACK;
         if (playerColor != chessGame.getTeamTurn()) {
             throw new ResponseException("Not your turn", 0);
         }
+
+        //One legal move list, from the book when it has the position, checks the move and names it
+        Position position = Position.fromGame(chessGame);
+        OpeningBook.Entry bookEntry = openingBook == null ? null : openingBook.lookup(position);
+        int[] legalMoves = bookEntry != null ? bookEntry.legalMoves() : new int[Position.MAX_MOVES];
+        int legalCount = bookEntry != null ? legalMoves.length : position.generateLegalMoves(legalMoves);
+        int move = findMove(userMove, legalMoves, legalCount);
+        if (move == Move.NONE) {
+            throw new ResponseException("Invalid Move", 0);
+        }
+        //With the position after the move in the book too, the move's outcome is known without working it out
+        GameStatus knownStatus = null;
+        if (bookEntry != null) {
+            Position next = position.copy();
+            next.makeMove(move);
+            OpeningBook.Entry nextEntry = openingBook.lookup(next);
+            knownStatus = nextEntry == null ? null : nextEntry.status();
+        }
+        MoveResult result = MoveResult.play(position, move, legalMoves, legalCount, knownStatus);
+
         GameData updatedGame;
         try {
-            chessGame.makeMove(userMove);
+            chessGame.makeCheckedMove(userMove, result.endsGame());
             updatedGame = new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), chessGame);
             gameDAO.updateGame(updatedGame);
-        } catch (InvalidMoveException ex) {
-            throw new ResponseException("Invalid Move", 0);
         } catch (DataAccessException ex) {
             throw new ResponseException("Failed to update the Database with the new move", 0);
         }
 
         LoadGameMessage loadGame = new LoadGameMessage(updatedGame);
-        NotificationMessage moveMessage = new NotificationMessage(compileMoveMessage(auth.username(), userMove));
-        NotificationMessage status = checkGameStatus(chessGame, opponentColor, auth.username(), opponentName);
+        NotificationMessage moveMessage = new NotificationMessage(compileMoveMessage(username, result));
+        NotificationMessage status = describeStatus(result.status(), username, opponentName);
 
         connectionManager.messageDelivery(ConnectionManager.MessageType.EVERYONE, updatedGame.gameID(), session, loadGame);
-        connectionManager.messageDelivery(ConnectionManager.MessageType.NOT_ROOT, updatedGame.gameID(), session, moveMessage);
+        connectionManager.messageDelivery(session != null ? ConnectionManager.MessageType.NOT_ROOT
+                : ConnectionManager.MessageType.EVERYONE, updatedGame.gameID(), session, moveMessage);
         if (status != null) {
             connectionManager.messageDelivery(ConnectionManager.MessageType.EVERYONE, updatedGame.gameID(), session, status);
         }
+        if (chessGame.isGameOver()) {
+            connectionManager.publishLobby(LobbyMessage.gameFinished(updatedGame.gameID()));
+        }
+        requestBotMove(updatedGame);
     }
 
-    public String compileMoveMessage(String playerName, ChessMove userMove) {
-        String moveString = playerName + " has made the move ";
-        moveString += getColString(userMove.getStartPosition().getColumn());
-        moveString += userMove.getStartPosition().getRow();
-        moveString += " to ";
-        moveString += getColString(userMove.getEndPosition().getColumn());
-        moveString += userMove.getEndPosition().getRow();
-        return moveString;
+    /**
+     * Asks the bot for a move if it's sitting in the game and it's its turn. The reply is played
+     * from a bot worker thread once the search finishes.
+     */
+    private void requestBotMove(GameData game) {
+        ChessGame chessGame = game.game();
+        if (chessGame.isGameOver()) {
+            return;
+        }
+        String playerToMove = chessGame.getTeamTurn() == ChessGame.TeamColor.WHITE ? game.whiteUsername()
+                : game.blackUsername();
+        if (BotPlayer.isBot(playerToMove)) {
+            botPlayer.requestMove(game.gameID(), chessGame, move -> playBotMove(game.gameID(), move));
+        }
     }
 
-    public NotificationMessage checkGameStatus(ChessGame chessGame, ChessGame.TeamColor opponentColor,
-                                               String playerName, String opponentName) {
-        if (chessGame.isInCheckmate(opponentColor)) {
-            return new NotificationMessage(playerName + "'s move delivers checkmate to " + opponentName
-                    + ", winning them the game!");
-        } else if (chessGame.isInStalemate(opponentColor)) {
-            return new NotificationMessage(playerName + "'s move puts " + opponentName
-                    + " into stalemate, making the game result in a tie.");
-        } else if (chessGame.isInCheck(opponentColor)) {
-            return new NotificationMessage(playerName + "'s move puts " + opponentName
-                    + " into check. What's their next move going to be?");
-        } else {
-            return null;
+    private void playBotMove(int gameID, ChessMove move) {
+        try {
+            //The game may have moved on while the bot was thinking, so the move is checked against the saved game
+            applyMove(gameID, BotPlayer.USERNAME, move, null);
+        } catch (Exception ex) {
+            LOG.warn("bot_move_failed", gameID, BotPlayer.USERNAME, ex.getMessage());
+        }
+    }
+
+    private GameData reloadGame(int gameID) throws ResponseException {
+        GameData game;
+        try {
+            game = gameDAO.getGame(gameID);
+        } catch (DataAccessException ex) {
+            throw new ResponseException(ex.getMessage(), 0);
         }
+        if (game == null) {
+            throw new ResponseException("Invalid Game", 0);
+        }
+        return game;
+    }
+
+    private static int findMove(ChessMove chessMove, int[] legalMoves, int legalCount) {
+        int from = Move.toSquare(chessMove.getStartPosition());
+        int to = Move.toSquare(chessMove.getEndPosition());
+        int promotion = chessMove.getPromotionPiece() == null ? 0 : Position.typeOf(chessMove.getPromotionPiece());
+        for (int i = 0; i < legalCount; i++) {
+            int legal = legalMoves[i];
+            if (Move.from(legal) == from && Move.to(legal) == to && Move.promotion(legal) == promotion) {
+                return legal;
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * @return e.g. "alice has made the move Nf3 (g1 to f3)"
+     */
+    public String compileMoveMessage(String playerName, MoveResult result) {
+        ChessMove move = result.move();
+        return new StringBuilder(playerName.length() + 40)
+                .append(playerName).append(" has made the move ").append(result.san())
+                .append(" (").append(Move.squareName(Move.toSquare(move.getStartPosition())))
+                .append(" to ").append(Move.squareName(Move.toSquare(move.getEndPosition()))).append(')')
+                .toString();
     }
 
-    public String getColString(int col) {
-        return switch (col) {
-            case 1 -> "a";
-            case 2 -> "b";
-            case 3 -> "c";
-            case 4 -> "d";
-            case 5 -> "e";
-            case 6 -> "f";
-            case 7 -> "g";
-            case 8 -> "h";
-            default -> "?";
+    /**
+     * @return the notification for the state a move left the opponent in, or null if there's nothing to say
+     */
+    public NotificationMessage describeStatus(GameStatus status, String playerName, String opponentName) {
+        return switch (status) {
+            case CHECKMATE -> new NotificationMessage(playerName + "'s move delivers checkmate to " + opponentName
+                    + ", winning them the game!");
+            case STALEMATE -> new NotificationMessage(playerName + "'s move puts " + opponentName
+                    + " into stalemate, making the game result in a tie.");
+            case CHECK -> new NotificationMessage(playerName + "'s move puts " + opponentName
+                    + " into check. What's their next move going to be?");
+            case ONGOING -> null;
         };
     }
 
     public void handleResignCommand(AuthData auth, GameData game, Session session, UserGameCommand resignCommand) {
-        ChessGame chessGame = game.game();
-        if (chessGame.isGameOver()) {
-            sendError("Error: The game is already over", resignCommand.getGameID(), session);
-            return;
-        }
-        if (!auth.username().equals(game.whiteUsername()) && !auth.username().equals(game.blackUsername())) {
-            sendError("Error: Observers can't resign", resignCommand.getGameID(), session);
-            return;
-        }
-        chessGame.setIsGameOver(true);
+        ReentrantLock gameLock = gameLocks.forGame(game.gameID());
+        gameLock.lock();
         try {
+            //A move saved since the command came in would be lost by saving over it with the older game
+            game = reloadGame(game.gameID());
+            ChessGame chessGame = game.game();
+            if (chessGame.isGameOver()) {
+                sendError("Error: The game is already over", resignCommand.getGameID(), session);
+                return;
+            }
+            if (!auth.username().equals(game.whiteUsername()) && !auth.username().equals(game.blackUsername())) {
+                sendError("Error: Observers can't resign", resignCommand.getGameID(), session);
+                return;
+            }
+            chessGame.setIsGameOver(true);
             gameDAO.updateGame(new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), chessGame));
             NotificationMessage resignMessage = new NotificationMessage(auth.username() + " has resigned the game");
             connectionManager.messageDelivery(ConnectionManager.MessageType.EVERYONE, resignCommand.getGameID(), session, resignMessage);
+            connectionManager.publishLobby(LobbyMessage.gameFinished(game.gameID()));
         } catch (Exception ex) {
-            System.out.println("HandleResignCommand Error: " + ex.getMessage());
+            LOG.error("ws_resign_failed", game.gameID(), auth.username(), ex.getMessage(), ex);
+        } finally {
+            gameLock.unlock();
         }
     }
 
@@ -228,12 +498,15 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         try {
             connectionManager.messageDelivery(ConnectionManager.MessageType.ROOT, gameID, session, errorMessage);
         } catch (Exception ex) {
-            System.out.println("Failed to send message (Error: " + message + ")");
+            LOG.warn("ws_error_send_failed", gameID, null, message);
         }
     }
 
     @Override
     public void handleClose(@NotNull WsCloseContext ctx) {
-        System.out.println("Websocket closed");
+        connectionManager.closeSession(ctx.session);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("ws_close", null, null, ctx.sessionId() + " " + ctx.status() + " " + ctx.reason());
+        }
     }
 }
@@ -0,0 +1,99 @@
+package analysis;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.engine.SearchLimits;
+import dataaccess.MemoryAnalysisDAO;
+import dataaccess.MemoryGameDAO;
+import model.GameData;
+import model.PlyAnalysis;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class AnalysisJobTests {
+
+    MemoryGameDAO gameDAO = new MemoryGameDAO();
+    MemoryAnalysisDAO analysisDAO = new MemoryAnalysisDAO();
+    ForkJoinPool pool = new ForkJoinPool(2);
+
+    @Test
+    public void findsBlunderInScholarsMate() throws Exception {
+        int gameID = storeGame(new int[][]{{2, 5, 4, 5}, {7, 5, 5, 5}, {1, 4, 5, 8}, {8, 2, 6, 3}, {1, 6, 4, 3},
+                {8, 7, 6, 6}, {5, 8, 7, 6}});
+        int unfinishedID = gameDAO.createGame("unfinished");
+
+        AnalysisJob job = new AnalysisJob(gameDAO, analysisDAO, pool, SearchLimits.depth(3), "test");
+        List<AnalysisJob.Progress> reports = new ArrayList<>();
+        AnalysisJob.Progress progress = job.run(reports::add);
+
+        Assertions.assertEquals(1, progress.games());
+        Assertions.assertEquals(8, progress.positions());
+        //The unfinished game holds the checkpoint back so the next run looks at it again
+        Assertions.assertEquals(gameID, progress.lastGameID());
+        Assertions.assertTrue(unfinishedID > gameID);
+        Assertions.assertEquals(1, reports.size());
+        List<PlyAnalysis> plies = analysisDAO.getAnalysis(gameID);
+        Assertions.assertEquals(8, plies.size());
+        //Nf6 allows Qxf7 mate
+        Assertions.assertEquals(PlyAnalysis.Judgement.BLUNDER, plies.get(5).judgement());
+        Assertions.assertTrue(plies.get(7).score() > 20000);
+        Assertions.assertEquals(0, plies.get(7).bestMove());
+    }
+
+    @Test
+    public void resumesFromCheckpoint() throws Exception {
+        storeGame(new int[][]{{2, 6, 3, 6}, {7, 5, 5, 5}, {2, 7, 4, 7}, {8, 4, 4, 8}});
+        AnalysisJob job = new AnalysisJob(gameDAO, analysisDAO, pool, SearchLimits.depth(2), "test");
+        Assertions.assertEquals(1, job.run(progress -> {}).games());
+        Assertions.assertEquals(0, job.run(progress -> {}).games());
+
+        int secondID = storeGame(new int[][]{{2, 6, 3, 6}, {7, 5, 5, 5}, {2, 7, 4, 7}, {8, 4, 4, 8}});
+        AnalysisJob.Progress progress = job.run(progress1 -> {});
+        Assertions.assertEquals(1, progress.games());
+        Assertions.assertEquals(secondID, analysisDAO.getCheckpoint("test"));
+    }
+
+    @Test
+    public void analysesGameFinishedAfterRun() throws Exception {
+        int[][] foolsMate = {{2, 6, 3, 6}, {7, 5, 5, 5}, {2, 7, 4, 7}, {8, 4, 4, 8}};
+        int firstID = storeGame(foolsMate);
+        int playingID = gameDAO.createGame("playing");
+        int lastID = storeGame(foolsMate);
+        AnalysisJob job = new AnalysisJob(gameDAO, analysisDAO, pool, SearchLimits.depth(2), "test");
+        AnalysisJob.Progress progress = job.run(progress1 -> {});
+        Assertions.assertEquals(2, progress.games());
+        Assertions.assertEquals(firstID, analysisDAO.getCheckpoint("test"));
+        Assertions.assertTrue(analysisDAO.getAnalysis(playingID).isEmpty());
+
+        //Finishing the game lets the next run analyse it, without searching the game after it again
+        gameDAO.updateGame(new GameData(playingID, "white", "black", "playing", playGame(foolsMate)));
+        progress = job.run(progress1 -> {});
+        Assertions.assertEquals(1, progress.games());
+        Assertions.assertEquals(5, analysisDAO.getAnalysis(playingID).size());
+        Assertions.assertEquals(lastID, analysisDAO.getCheckpoint("test"));
+        Assertions.assertEquals(0, job.run(progress1 -> {}).games());
+
+        analysisDAO.saveCheckpoint("test", 0);
+        Assertions.assertEquals(3, job.run(progress1 -> {}, true).games());
+    }
+
+    private int storeGame(int[][] moves) throws Exception {
+        int gameID = gameDAO.createGame("game");
+        gameDAO.updateGame(new GameData(gameID, "white", "black", "game", playGame(moves)));
+        return gameID;
+    }
+
+    private static ChessGame playGame(int[][] moves) throws Exception {
+        ChessGame game = new ChessGame();
+        for (int[] move : moves) {
+            game.makeMove(new ChessMove(new ChessPosition(move[0], move[1]), new ChessPosition(move[2], move[3]), null));
+        }
+        Assertions.assertTrue(game.isGameOver());
+        return game;
+    }
+}
@@ -77,6 +77,20 @@ public class GameDAOTests {
         });
     }
 
+    @Test
+    public void listOpenGames() {
+        Assertions.assertDoesNotThrow(() -> {
+            int open = gameDAO.createGame("Open Game");
+            int over = gameDAO.createGame("Finished Game");
+            ChessGame finished = new ChessGame();
+            finished.setIsGameOver(true);
+            gameDAO.updateGame(new GameData(over, null, null, "Finished Game", finished));
+            Collection<GameData> gameList = gameDAO.listOpenGames();
+            Assertions.assertEquals(1, gameList.size());
+            Assertions.assertEquals(open, gameList.stream().findFirst().get().gameID());
+        });
+    }
+
     @Test
     public void updateGame() {
         createGame();
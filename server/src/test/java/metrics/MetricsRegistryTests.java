@@ -0,0 +1,58 @@
+package metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricsRegistryTests {
+
+    MetricsRegistry metrics = new MetricsRegistry();
+
+    @Test
+    public void sameLabelsSameCounter() {
+        metrics.counter("requests_total", "Requests", "route", "/game").increment();
+        metrics.counter("requests_total", "Requests", "route", "/game").increment();
+        metrics.counter("requests_total", "Requests", "route", "/user").increment();
+        String scrape = metrics.scrape();
+        Assertions.assertTrue(scrape.contains("# TYPE requests_total counter\n"));
+        Assertions.assertTrue(scrape.contains("requests_total{route=\"/game\"} 2\n"));
+        Assertions.assertTrue(scrape.contains("requests_total{route=\"/user\"} 1\n"));
+    }
+
+    @Test
+    public void histogramBucketsAreCumulative() {
+        Histogram histogram = metrics.histogram("fan_out", "Fan out", new double[]{1, 4});
+        histogram.observe(1);
+        histogram.observe(3);
+        histogram.observe(10);
+        String scrape = metrics.scrape();
+        Assertions.assertTrue(scrape.contains("fan_out_bucket{le=\"1\"} 1\n"));
+        Assertions.assertTrue(scrape.contains("fan_out_bucket{le=\"4\"} 2\n"));
+        Assertions.assertTrue(scrape.contains("fan_out_bucket{le=\"+Inf\"} 3\n"));
+        Assertions.assertTrue(scrape.contains("fan_out_sum 14\n"));
+        Assertions.assertTrue(scrape.contains("fan_out_count 3\n"));
+    }
+
+    @Test
+    public void gaugeReadOnScrape() {
+        int[] sessions = {3};
+        metrics.gauge("sessions", "Sessions", () -> sessions[0]);
+        Assertions.assertTrue(metrics.scrape().contains("sessions 3\n"));
+        sessions[0] = 5;
+        Assertions.assertTrue(metrics.scrape().contains("sessions 5\n"));
+    }
+
+    @Test
+    public void conflictingTypes() {
+        metrics.counter("thing", "Thing");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            metrics.gauge("thing", "Thing", () -> 1);
+        });
+    }
+
+    @Test
+    public void oddLabels() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            metrics.counter("thing", "Thing", "route");
+        });
+    }
+}
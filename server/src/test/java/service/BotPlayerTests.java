@@ -0,0 +1,42 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class BotPlayerTests {
+
+    @Test
+    public void botRepliesWithLegalMove() throws Exception {
+        BotPlayer botPlayer = new BotPlayer(1, 4, 100);
+        ChessGame game = new ChessGame();
+        CompletableFuture<ChessMove> reply = new CompletableFuture<>();
+        Assertions.assertTrue(botPlayer.requestMove(1, game, reply::complete));
+        //The game is already copied, so a second request for it before the reply is ignored
+        Assertions.assertFalse(botPlayer.requestMove(1, game, move -> Assertions.fail("Bot moved twice")));
+
+        ChessMove move = reply.get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(game.validMoves(move.getStartPosition()).contains(move));
+        Assertions.assertEquals(1, botPlayer.getMovesPlayed());
+        botPlayer.shutdown();
+    }
+
+    @Test
+    public void busyBotRetriesInsteadOfDropping() throws Exception {
+        BotPlayer botPlayer = new BotPlayer(1, 1, 100);
+        CompletableFuture<?>[] replies = new CompletableFuture<?>[4];
+        for (int gameID = 0; gameID < replies.length; gameID++) {
+            CompletableFuture<ChessMove> reply = new CompletableFuture<>();
+            replies[gameID] = reply;
+            botPlayer.requestMove(gameID, new ChessGame(), reply::complete);
+        }
+        CompletableFuture.allOf(replies).get(10, TimeUnit.SECONDS);
+        Assertions.assertTrue(botPlayer.getRejectedCount() > 0);
+        Assertions.assertEquals(replies.length, botPlayer.getMovesPlayed());
+        botPlayer.shutdown();
+    }
+}
@@ -6,12 +6,21 @@ import exception.ResponseException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import requests.CreateGameRequest;
+import requests.ExportGameRequest;
+import requests.GamePositionRequest;
 import requests.JoinGameRequest;
 import requests.ListGamesRequest;
 import requests.RegisterRequest;
 import results.CreateGameResult;
+import results.GamePositionResult;
+import results.ImportGamesResult;
 import results.ListGamesResult;
 import results.RegisterResult;
+import websocket.messages.LobbyMessage;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 public class GameServiceTests {
 
@@ -110,6 +119,25 @@ public class GameServiceTests {
         });
     }
 
+    @Test
+    public void botJoinGame() throws ResponseException, DataAccessException {
+        String authToken = registerUser("bot_user");
+        int gameID = createGameID(authToken, "game8");
+        gameService.joinGame(new JoinGameRequest(authToken, ChessGame.TeamColor.BLACK, gameID, true));
+        Assertions.assertEquals("bot_user", gameDAO.getGame(gameID).blackUsername());
+        Assertions.assertEquals(BotPlayer.USERNAME, gameDAO.getGame(gameID).whiteUsername());
+    }
+
+    @Test
+    public void botSeatTakenJoinGame() {
+        Assertions.assertThrows(ResponseException.class, () -> {
+            String authToken1 = registerUser("white_user");
+            int gameID = createGameID(authToken1, "game9");
+            gameService.joinGame(new JoinGameRequest(authToken1, ChessGame.TeamColor.WHITE, gameID));
+            String authToken2 = registerUser("second_user");
+            gameService.joinGame(new JoinGameRequest(authToken2, ChessGame.TeamColor.BLACK, gameID, true));
+        });
+    }
 
     @Test
     public void list0Games() throws ResponseException {
@@ -135,6 +163,108 @@ public class GameServiceTests {
         });
     }
 
+    //Creating and joining tell the lobby, but joining a seat you already have doesn't
+    @Test
+    public void lobbyHearsCreateAndJoin() throws ResponseException {
+        List<LobbyMessage> published = new ArrayList<>();
+        gameService = new GameService(authDAO, gameDAO, published::add);
+        String authToken = registerUser("lobby_user");
+        int gameID = gameService.createGame(new CreateGameRequest(authToken, "lobby")).gameID();
+        gameService.joinGame(new JoinGameRequest(authToken, ChessGame.TeamColor.BLACK, gameID));
+        gameService.joinGame(new JoinGameRequest(authToken, ChessGame.TeamColor.BLACK, gameID));
+
+        Assertions.assertEquals(2, published.size());
+        Assertions.assertEquals(LobbyMessage.Event.GAME_CREATED, published.get(0).getEvent());
+        Assertions.assertEquals("lobby", published.get(0).getGameName());
+        LobbyMessage seat = published.get(1);
+        Assertions.assertEquals(LobbyMessage.Event.SEAT_TAKEN, seat.getEvent());
+        Assertions.assertEquals(gameID, seat.getGameID());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, seat.getColor());
+        Assertions.assertEquals("lobby_user", seat.getUsername());
+    }
+
+    //Good games are saved past the batch size, bad and over-long ones are skipped, and the lobby isn't told about any
+    @Test
+    public void importGames() throws ResponseException {
+        List<LobbyMessage> published = new ArrayList<>();
+        gameService = new GameService(authDAO, gameDAO, published::add);
+        String authToken = registerUser("import_user");
+        StringBuilder pgn = new StringBuilder();
+        for (int i = 0; i < GameService.IMPORT_BATCH_SIZE + 2; i++) {
+            pgn.append("[White \"w").append(i).append("\"]\n[Black \"b\"]\n\n1. f3 e5 2. g4 Qh4# 0-1\n\n");
+        }
+        pgn.append("1. e4 e5 2. Ke3 *\n");
+        for (int ply = 0; ply < 4400; ply++) {
+            pgn.append(new String[]{"Nf3 ", "Nf6 ", "Ng1 ", "Ng8 "}[ply % 4]);
+        }
+        pgn.append("*\n");
+
+        ImportGamesResult result = gameService.importGames(authToken, new StringReader(pgn.toString()));
+        Assertions.assertEquals(GameService.IMPORT_BATCH_SIZE + 2, result.imported());
+        Assertions.assertEquals(2, result.skipped());
+        Assertions.assertTrue(result.errors().getFirst().contains("Ke3"));
+        Assertions.assertTrue(result.errors().get(1).contains("long"));
+        Assertions.assertEquals(GameService.IMPORT_BATCH_SIZE + 2, gameDAO.listGames().size());
+        Assertions.assertTrue(published.isEmpty());
+
+        int gameID = gameDAO.listGames().stream().filter(game -> game.gameName().equals("w0 vs b"))
+                .findFirst().orElseThrow().gameID();
+        String export = gameService.exportGame(new ExportGameRequest(authToken, gameID, "pgn"));
+        Assertions.assertTrue(export.contains("1. f3 e5 2. g4 Qh4# 0-1"));
+        Assertions.assertEquals("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 0 3",
+                gameService.exportGame(new ExportGameRequest(authToken, gameID, "fen")));
+    }
+
+    //An imported game is over, so its empty seats can't be taken
+    @Test
+    public void joinFinishedGame() throws ResponseException, DataAccessException {
+        String authToken = registerUser("finished_user");
+        gameService.importGames(authToken, new StringReader("[White \"w\"]\n[Black \"b\"]\n\n1. f3 e5 2. g4 Qh4# 0-1\n"));
+        int gameID = gameDAO.listGames().iterator().next().gameID();
+        ResponseException ex = Assertions.assertThrows(ResponseException.class, () ->
+                gameService.joinGame(new JoinGameRequest(authToken, ChessGame.TeamColor.WHITE, gameID)));
+        Assertions.assertEquals(403, ex.getStatus());
+        Assertions.assertNull(gameDAO.getGame(gameID).whiteUsername());
+    }
+
+    @Test
+    public void badExportGame() {
+        Assertions.assertThrows(ResponseException.class, () -> {
+            String authToken = registerUser("export_user");
+            int gameID = createGameID(authToken, "game10");
+            gameService.exportGame(new ExportGameRequest(authToken, gameID, "png"));
+        });
+        Assertions.assertThrows(ResponseException.class, () -> {
+            gameService.importGames(null, new StringReader("1. e4 *"));
+        });
+    }
+
+    @Test
+    public void getPosition() throws ResponseException {
+        String authToken = registerUser("position_user");
+        gameService.importGames(authToken, new StringReader("[White \"w\"]\n[Black \"b\"]\n\n1. f3 e5 2. g4 Qh4# 0-1\n"));
+        int gameID = gameDAO.listGames().iterator().next().gameID();
+
+        GamePositionResult current = gameService.getPosition(new GamePositionRequest(authToken, gameID, null));
+        Assertions.assertEquals(4, current.ply());
+        Assertions.assertEquals(4, current.plies());
+
+        GamePositionResult second = gameService.getPosition(new GamePositionRequest(authToken, gameID, 2));
+        Assertions.assertEquals(2, second.ply());
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, second.game().getTeamTurn());
+        Assertions.assertEquals(2, second.game().getMoveHistory().size());
+        Assertions.assertFalse(second.game().isGameOver());
+    }
+
+    @Test
+    public void badGetPosition() {
+        Assertions.assertThrows(ResponseException.class, () -> {
+            String authToken = registerUser("position_user");
+            int gameID = createGameID(authToken, "game11");
+            gameService.getPosition(new GamePositionRequest(authToken, gameID, 1));
+        });
+    }
+
     public String registerUser(String username) throws ResponseException {
         RegisterResult result = userService.register(new RegisterRequest(username, "password", "email"));
         return result.authToken();
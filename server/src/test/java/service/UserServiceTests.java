@@ -10,6 +10,14 @@ import requests.RegisterRequest;
 import results.LoginResult;
 import results.RegisterResult;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 public class UserServiceTests {
 
     AuthDAO authDAO = new MemoryAuthDAO();
@@ -50,6 +58,14 @@ public class UserServiceTests {
         Assertions.assertThrows(ResponseException.class, this::goodRegistration);
     }
 
+    @Test
+    public void botNameRegistration() {
+        ResponseException ex = Assertions.assertThrows(ResponseException.class, () -> {
+            userService.register(new RegisterRequest(BotPlayer.USERNAME, "password", "email"));
+        });
+        Assertions.assertEquals(403, ex.getStatus());
+    }
+
 
     @Test
     public void goodLogin() throws ResponseException, DataAccessException {
@@ -89,6 +105,51 @@ public class UserServiceTests {
         });
     }
 
+    @Test
+    public void plainTextPasswordLogin() throws ResponseException {
+        userDAO.createUser("username", "password", "email");
+        ResponseException ex = Assertions.assertThrows(ResponseException.class, () -> {
+            userService.login(new LoginRequest("username", "password"));
+        });
+        Assertions.assertEquals(401, ex.getStatus());
+    }
+
+    @Test
+    public void busyHasherRegistration() throws Exception {
+        //One worker and a queue of one, both taken up by checks that wait until they're let go
+        PasswordHasher hasher = new PasswordHasher(1, 1, 4);
+        UserService busyService = new UserService(authDAO, userDAO, hasher);
+        CountDownLatch working = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        List<Future<Boolean>> fillers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            fillers.add(clients.submit(() -> hasher.run(PasswordHasher.Operation.CHECK, () -> {
+                working.countDown();
+                return release.await(30, TimeUnit.SECONDS);
+            })));
+        }
+        Assertions.assertTrue(working.await(10, TimeUnit.SECONDS));
+        while (hasher.getQueueSize() < 1) {
+            Thread.sleep(5);
+        }
+
+        ResponseException ex = Assertions.assertThrows(ResponseException.class,
+                () -> busyService.register(new RegisterRequest("user", "password", "email")));
+        Assertions.assertEquals(503, ex.getStatus());
+        Assertions.assertEquals(1, hasher.getRejectedCount());
+        Assertions.assertThrows(DataAccessException.class, () -> userDAO.getUser("user"));
+
+        release.countDown();
+        for (Future<Boolean> filler : fillers) {
+            Assertions.assertTrue(filler.get(10, TimeUnit.SECONDS));
+        }
+        //Once there's room again the same registration goes through
+        Assertions.assertNotNull(busyService.register(new RegisterRequest("user", "password", "email")).authToken());
+        clients.shutdown();
+        hasher.shutdown();
+        Assertions.assertEquals(1, hasher.getStats(PasswordHasher.Operation.HASH).count());
+    }
 
     @Test
     public void goodLogout() throws ResponseException {
@@ -0,0 +1,104 @@
+package websocket;
+
+import com.google.gson.Gson;
+import metrics.MetricsRegistry;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.messages.LobbyMessage;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConnectionManagerTests {
+
+    private final ConnectionManager connectionManager = new ConnectionManager(new MetricsRegistry(), 5);
+
+    @AfterEach
+    public void tearDown() {
+        connectionManager.shutdown();
+    }
+
+    //An open session that records what's sent to it, and stalls in the send while stall is set
+    private static Session stubSession(List<String> sent, AtomicBoolean stall, CountDownLatch stalled,
+                                       CountDownLatch release) {
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 1) {
+                        if (stall.get()) {
+                            stalled.countDown();
+                            release.await();
+                        }
+                        sent.add((String) args[0]);
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "stub session";
+                    default -> null;
+                });
+    }
+
+    private static List<String> events(List<String> sent) {
+        return sent.stream().map(json -> new Gson().fromJson(json, LobbyMessage.class))
+                .map(message -> message.getEvent() + (message.getEvent() == LobbyMessage.Event.SNAPSHOT ? ""
+                        : " " + message.getGameID()))
+                .toList();
+    }
+
+    @Test
+    public void slowSubscriberDoesntHoldUpLobby() throws Exception {
+        List<String> slowSent = new CopyOnWriteArrayList<>();
+        AtomicBoolean stall = new AtomicBoolean();
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Session slow = stubSession(slowSent, stall, stalled, release);
+        List<String> fastSent = new CopyOnWriteArrayList<>();
+        Session fast = stubSession(fastSent, new AtomicBoolean(), new CountDownLatch(1), new CountDownLatch(0));
+        connectionManager.subscribeLobby(slow, () -> LobbyMessage.snapshot(List.of()));
+        connectionManager.subscribeLobby(fast, () -> LobbyMessage.snapshot(List.of()));
+
+        stall.set(true);
+        Thread publisher = new Thread(() -> connectionManager.publishLobby(LobbyMessage.gameCreated(1, "first")));
+        publisher.start();
+        Assertions.assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+        //The first change is stuck sending to the slow client, which mustn't stop anything else
+        List<String> lateSent = new CopyOnWriteArrayList<>();
+        Session late = stubSession(lateSent, new AtomicBoolean(), new CountDownLatch(1), new CountDownLatch(0));
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            connectionManager.publishLobby(LobbyMessage.gameCreated(2, "second"));
+            connectionManager.subscribeLobby(late, () -> LobbyMessage.snapshot(List.of()));
+        });
+        Assertions.assertEquals(List.of("SNAPSHOT", "GAME_CREATED 1", "GAME_CREATED 2"), events(fastSent));
+        Assertions.assertEquals(List.of("SNAPSHOT"), events(lateSent));
+
+        release.countDown();
+        publisher.join(5000);
+        Assertions.assertEquals(List.of("SNAPSHOT", "GAME_CREATED 1", "GAME_CREATED 2"), events(slowSent));
+    }
+
+    @Test
+    public void changeDuringSnapshotArrivesAfterIt() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        Session session = stubSession(sent, new AtomicBoolean(), new CountDownLatch(1), new CountDownLatch(0));
+        connectionManager.subscribeLobby(session, () -> {
+            //A game made while the games are being read
+            connectionManager.publishLobby(LobbyMessage.gameCreated(7, "racing"));
+            return LobbyMessage.snapshot(List.of());
+        });
+        Assertions.assertEquals(List.of("SNAPSHOT", "GAME_CREATED 7"), events(sent));
+    }
+}
@@ -0,0 +1,322 @@
+package websocket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import jakarta.websocket.*;
+import metrics.MetricsRegistry;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.exception.MessageTooLargeException;
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.ext.extension.deflate.PerMessageDeflateExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import server.Server;
+import server.ServerConfig;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Inflater;
+
+public class DeflateExtensionTests {
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<Frame> sent = new ArrayList<>();
+    private final List<Frame> received = new ArrayList<>();
+
+    @AfterEach
+    public void stopServers() {
+        servers.forEach(Server::stop);
+    }
+
+    private int startServer(int compressionThreshold) {
+        ServerConfig defaults = ServerConfig.defaults();
+        Server server = new Server(new ServerConfig(false, 1, defaults.hashQueueLimit(), 4,
+                defaults.batchWindowMillis(), compressionThreshold, 1, defaults.botQueueLimit(),
+                defaults.botThinkMillis(), "", "", true));
+        servers.add(server);
+        return server.run(0);
+    }
+
+    private static long metric(int port, String name) throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        for (String line : response.body().split("\n")) {
+            if (line.startsWith(name + " ")) {
+                return (long) Double.parseDouble(line.substring(name.length() + 1));
+            }
+        }
+        return 0;
+    }
+
+    //An extension between frame lists instead of a connection
+    private DeflateExtension extension(String offer) {
+        return extension(offer, new WebSocketComponents());
+    }
+
+    private DeflateExtension extension(String offer, WebSocketComponents components) {
+        DeflateExtension extension = new DeflateExtension();
+        extension.init(ExtensionConfig.parse(offer), components);
+        extension.setNextOutgoingFrames((frame, callback, batch) -> {
+            sent.add(frame);
+            callback.succeeded();
+        });
+        extension.setNextIncomingFrames((frame, callback) -> {
+            received.add(frame);
+            callback.succeeded();
+        });
+        return extension;
+    }
+
+    private static Frame text(String text) {
+        return new Frame(OpCode.TEXT, text);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        ByteBuffer slice = buffer.slice();
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        return bytes;
+    }
+
+    private static String sampleMessage(int length) {
+        StringBuilder message = new StringBuilder(length);
+        while (message.length() < length) {
+            message.append("{\"pieceType\":\"KNIGHT\",\"teamColor\":\"WHITE\",\"row\":").append(message.length() % 8).append('}');
+        }
+        return message.substring(0, length);
+    }
+
+    private static JsonObject post(int port, String path, String authToken, Object body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .POST(HttpRequest.BodyPublishers.ofString(new Gson().toJson(body)));
+        if (authToken != null) {
+            request.header("Authorization", authToken);
+        }
+        String response = HttpClient.newHttpClient().send(request.build(), HttpResponse.BodyHandlers.ofString()).body();
+        return new Gson().fromJson(response, JsonObject.class);
+    }
+
+    /**
+     * A Tyrus session that offers permessage-deflate, the way the client connects
+     */
+    private static class DeflateClient extends Endpoint {
+
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        final CompletableFuture<CloseReason> closed = new CompletableFuture<>();
+        final Session session;
+
+        DeflateClient(int port) throws Exception {
+            ClientEndpointConfig config = ClientEndpointConfig.Builder.create()
+                    .extensions(List.of(new PerMessageDeflateExtension()))
+                    .build();
+            session = ClientManager.createClient().connectToServer(this, config, URI.create("ws://localhost:" + port + "/ws"));
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, messages::add);
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            closed.complete(closeReason);
+        }
+
+        String next() throws InterruptedException {
+            String message = messages.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(message, "No message from the server");
+            return message;
+        }
+    }
+
+    @Test
+    public void thresholdIsPerServer() throws Exception {
+        int compressing = startServer(1);
+        int skipping = startServer(1 << 20);
+
+        for (int port : new int[]{compressing, skipping}) {
+            DeflateClient client = new DeflateClient(port);
+            client.session.getBasicRemote().sendText("not json");
+            Assertions.assertTrue(client.next().contains("ERROR"));
+            client.session.close();
+        }
+
+        Assertions.assertTrue(metric(compressing, "ws_compression_compressed_bytes_total") > 0);
+        Assertions.assertEquals(0, metric(compressing, "ws_compression_skipped_total"));
+        Assertions.assertEquals(0, metric(skipping, "ws_compression_compressed_bytes_total"));
+        Assertions.assertTrue(metric(skipping, "ws_compression_skipped_total") > 0);
+    }
+
+    @Test
+    public void negotiatesFromOffer() {
+        Assertions.assertEquals(Set.of("server_no_context_takeover"),
+                extension("permessage-deflate; client_max_window_bits").getConfig().getParameterKeys());
+        Assertions.assertEquals(Set.of("server_no_context_takeover"),
+                extension("permessage-deflate; client_no_context_takeover; client_max_window_bits=10")
+                        .getConfig().getParameterKeys());
+
+        DeflateExtension limited = extension("permessage-deflate; server_max_window_bits=10");
+        Assertions.assertEquals("10", limited.getConfig().getParameter("server_max_window_bits", null));
+        //Within the 1024 byte window the message is compressed, and past it it can't be
+        limited.sendFrame(text("a".repeat(1000)), Callback.NOOP, false);
+        limited.sendFrame(text("a".repeat(1025)), Callback.NOOP, false);
+        Assertions.assertTrue(sent.get(0).isRsv1());
+        Assertions.assertFalse(sent.get(1).isRsv1());
+        Assertions.assertEquals(1025, sent.get(1).getPayloadLength());
+    }
+
+    @Test
+    public void declinesBadOffers() {
+        for (String offer : new String[]{"permessage-deflate; x_unknown", "permessage-deflate; server_max_window_bits",
+                "permessage-deflate; server_max_window_bits=16", "permessage-deflate; client_max_window_bits=7",
+                "permessage-deflate; server_no_context_takeover=1"}) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> extension(offer), offer);
+        }
+    }
+
+    @Test
+    public void deflateDropsTailAndInflates() throws Exception {
+        DeflateExtension extension = extension("permessage-deflate");
+        byte[] message = sampleMessage(5000).getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = bytes(extension.deflate(ByteBuffer.wrap(message)));
+        Assertions.assertTrue(compressed.length < message.length / 4);
+        byte[] tail = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+        Assertions.assertFalse(Arrays.equals(tail, Arrays.copyOfRange(compressed, compressed.length - 4, compressed.length)),
+                "The sync flush's empty block should be dropped");
+
+        //Anyone following the RFC puts the tail back and inflates
+        Inflater inflater = new Inflater(true);
+        byte[] withTail = Arrays.copyOf(compressed, compressed.length + 4);
+        System.arraycopy(tail, 0, withTail, compressed.length, tail.length);
+        inflater.setInput(withTail);
+        byte[] inflated = new byte[message.length + 16];
+        Assertions.assertEquals(message.length, inflater.inflate(inflated));
+        Assertions.assertArrayEquals(message, Arrays.copyOf(inflated, message.length));
+
+        //The session's inflater keeps its window, so the same message twice still comes out whole
+        Assertions.assertArrayEquals(message, bytes(extension.inflate(compressed, -1)));
+        byte[] again = bytes(extension.deflate(ByteBuffer.wrap(message)));
+        Assertions.assertArrayEquals(message, bytes(extension.inflate(again, -1)));
+    }
+
+    @Test
+    public void sessionsShareDeflaters() {
+        WebSocketComponents components = new WebSocketComponents();
+        DeflateExtension.configure(components, 1, new MetricsRegistry());
+        DeflateExtension.DeflaterPool pool = components.getBean(DeflateExtension.Settings.class).deflaters();
+        List<DeflateExtension> sessions = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sessions.add(extension("permessage-deflate", components));
+        }
+        for (DeflateExtension session : sessions) {
+            session.sendFrame(text(sampleMessage(1000)), Callback.NOOP, false);
+        }
+        //One send at a time needs one Deflater, however many sessions there are
+        Assertions.assertEquals(50, sent.stream().filter(Frame::isRsv1).count());
+        Assertions.assertEquals(1, pool.idleCount());
+        sessions.forEach(DeflateExtension::close);
+        Assertions.assertEquals(1, pool.idleCount());
+    }
+
+    @Test
+    public void sendsSmallAndFragmentedMessagesUncompressed() {
+        DeflateExtension deflate = extension("permessage-deflate");
+        deflate.sendFrame(text("short"), Callback.NOOP, false);
+        deflate.sendFrame(new Frame(OpCode.TEXT, false, sampleMessage(1000)), Callback.NOOP, false);
+        deflate.sendFrame(new Frame(OpCode.CONTINUATION, true, sampleMessage(1000)), Callback.NOOP, false);
+        deflate.sendFrame(new Frame(OpCode.PING), Callback.NOOP, false);
+        deflate.sendFrame(text(sampleMessage(1000)), Callback.NOOP, false);
+
+        Assertions.assertEquals(5, sent.size());
+        for (Frame frame : sent.subList(0, 4)) {
+            Assertions.assertFalse(frame.isRsv1());
+        }
+        Assertions.assertEquals("short", sent.get(0).getPayloadAsUTF8());
+        Assertions.assertEquals(1000, sent.get(2).getPayloadLength());
+        //Once the fragmented message is over, whole messages get compressed again
+        Assertions.assertTrue(sent.get(4).isRsv1());
+        Assertions.assertTrue(sent.get(4).getPayloadLength() < 1000);
+    }
+
+    @Test
+    public void inflatesFragmentedMessage() throws Exception {
+        DeflateExtension deflate = extension("permessage-deflate");
+        String message = sampleMessage(3000);
+        byte[] compressed = bytes(deflate.deflate(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8))));
+        int half = compressed.length / 2;
+        deflate.onFrame(new Frame(OpCode.TEXT, false, ByteBuffer.wrap(compressed, 0, half)).setRsv1(true), Callback.NOOP);
+        Assertions.assertTrue(received.isEmpty());
+        deflate.onFrame(new Frame(OpCode.CONTINUATION, true, ByteBuffer.wrap(compressed, half, compressed.length - half)),
+                Callback.NOOP);
+        deflate.onFrame(text("plain"), Callback.NOOP);
+
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertEquals(OpCode.TEXT, received.get(0).getOpCode());
+        Assertions.assertFalse(received.get(0).isRsv1());
+        Assertions.assertEquals(message, received.get(0).getPayloadAsUTF8());
+        Assertions.assertEquals("plain", received.get(1).getPayloadAsUTF8());
+    }
+
+    @Test
+    public void inflateStopsAtMaxMessageSize() {
+        DeflateExtension deflate = extension("permessage-deflate");
+        CoreSession.Empty session = new CoreSession.Empty();
+        session.setMaxTextMessageSize(4096);
+        deflate.setCoreSession(session);
+        byte[] compressed = bytes(deflate.deflate(ByteBuffer.wrap(" ".repeat(1 << 20).getBytes(StandardCharsets.UTF_8))));
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        deflate.onFrame(new Frame(OpCode.TEXT, true, ByteBuffer.wrap(compressed)).setRsv1(true),
+                Callback.from(() -> { }, failure::set));
+        Assertions.assertInstanceOf(MessageTooLargeException.class, failure.get());
+        Assertions.assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void tyrusRoundTrip() throws Exception {
+        int port = startServer(DeflateExtension.DEFAULT_THRESHOLD);
+        String authToken = post(port, "/user", null,
+                Map.of("username", "deflate", "password", "password", "email", "email")).get("authToken").getAsString();
+        int gameID = post(port, "/game", authToken, Map.of("gameName", "deflate")).get("gameID").getAsInt();
+
+        DeflateClient client = new DeflateClient(port);
+        Assertions.assertEquals(DeflateExtension.NAME, client.session.getNegotiatedExtensions().getFirst().getName());
+        //Small: the error comes back under the threshold, so uncompressed
+        client.session.getBasicRemote().sendText("{}");
+        Assertions.assertTrue(client.next().contains("ERROR"));
+        Assertions.assertEquals(0, metric(port, "ws_compression_compressed_bytes_total"));
+
+        //Large both ways: a padded CONNECT that Tyrus compresses, answered with a compressed LOAD_GAME
+        String connect = "{\"commandType\":\"CONNECT\",\"authToken\":\"" + authToken + "\",\"gameID\":" + gameID + "}";
+        client.session.getBasicRemote().sendText(" ".repeat(30_000) + connect);
+        Assertions.assertTrue(client.next().contains("LOAD_GAME"));
+        Assertions.assertTrue(metric(port, "ws_compression_compressed_bytes_total") > 0);
+
+        //Over the 64KB max size once inflated, however small it is on the wire. The server can close
+        //before a blocking send returns, so this one is sent asynchronously
+        client.session.getAsyncRemote().sendText(" ".repeat(100_000) + connect);
+        CloseReason closed = client.closed.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(CloseReason.CloseCodes.TOO_BIG, closed.getCloseCode());
+    }
+}
@@ -0,0 +1,190 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryAuthDAO;
+import dataaccess.MemoryGameDAO;
+import metrics.MetricsRegistry;
+import model.GameData;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.BotPlayer;
+import service.GameLocks;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.ResumeCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.LobbyMessage;
+import websocket.messages.MovesMessage;
+import websocket.messages.ServerMessage;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WebSocketHandlerTests {
+
+    private static final Gson GSON = new Gson();
+
+    private final CountDownLatch botWriting = new CountDownLatch(1);
+    private final CountDownLatch botWrote = new CountDownLatch(1);
+    private final GameLocks gameLocks = new GameLocks();
+    private final AtomicInteger resumerReads = new AtomicInteger();
+    private SlowBotGameDAO gameDAO;
+    private BotPlayer botPlayer;
+    private WebSocketHandler handler;
+    private Session session;
+    private int gameID;
+
+    //Hands out copies like the SQL DAO does, and holds the bot's saves open long enough to race them
+    private class SlowBotGameDAO extends MemoryGameDAO {
+
+        @Override
+        public GameData getGame(int gameID) throws DataAccessException {
+            GameData game = copy(super.getGame(gameID));
+            //The resume command's own load gets the game from before the bot's move, then waits for the move to go out
+            if (Thread.currentThread().getName().equals("resumer") && resumerReads.incrementAndGet() == 2) {
+                while (gameLocks.forGame(gameID).isLocked()) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            return game;
+        }
+
+        @Override
+        public void updateGame(GameData gameData) throws DataAccessException {
+            if (!Thread.currentThread().getName().startsWith("bot-player")) {
+                super.updateGame(copy(gameData));
+                return;
+            }
+            botWriting.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            super.updateGame(copy(gameData));
+            botWrote.countDown();
+        }
+
+        private GameData copy(GameData gameData) {
+            return new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(),
+                    gameData.gameName(), GSON.fromJson(GSON.toJson(gameData.game()), ChessGame.class));
+        }
+    }
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MemoryAuthDAO authDAO = new MemoryAuthDAO();
+        authDAO.createAuth("human", "token");
+        gameDAO = new SlowBotGameDAO();
+        gameID = gameDAO.createGame("race");
+        gameDAO.updateGame(new GameData(gameID, "human", BotPlayer.USERNAME, "race", new ChessGame()));
+        botPlayer = new BotPlayer(1, 4, 20);
+        ConnectionManager connectionManager = new ConnectionManager(new MetricsRegistry(), 5);
+        handler = new WebSocketHandler(authDAO, gameDAO, connectionManager, new MetricsRegistry(), botPlayer, null,
+                gameLocks);
+        //A closed session, so broadcasts pass it by and replies to it fail quietly
+        session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> false;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "closed session";
+                    default -> null;
+                });
+        connectionManager.add(gameID, session, "human");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        botPlayer.shutdown();
+    }
+
+    //An open session that records what's sent to it
+    private static Session recordingSession(List<String> sent) {
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 1) {
+                        sent.add((String) args[0]);
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "recording session";
+                    default -> null;
+                });
+    }
+
+    @Test
+    public void resignDuringBotMoveKeepsBoth() throws Exception {
+        ChessMove opening = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        handler.handleCommand(new MakeMoveCommand("token", gameID, opening), session);
+        Assertions.assertTrue(botWriting.await(10, TimeUnit.SECONDS), "The bot never replied");
+
+        //The bot is partway through saving its reply, so the resignation has to wait for it and build on it
+        handler.handleCommand(new UserGameCommand(UserGameCommand.CommandType.RESIGN, "token", gameID), session);
+        Assertions.assertTrue(botWrote.await(10, TimeUnit.SECONDS));
+
+        ChessGame saved = gameDAO.getGame(gameID).game();
+        Assertions.assertTrue(saved.isGameOver(), "The bot's move undid the resignation");
+        Assertions.assertEquals(2, saved.getPly(), "The resignation undid the bot's move");
+    }
+
+    @Test
+    public void resumeDuringBotMoveGetsIt() throws Exception {
+        ChessMove opening = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        handler.handleCommand(new MakeMoveCommand("token", gameID, opening), session);
+        Assertions.assertTrue(botWriting.await(10, TimeUnit.SECONDS), "The bot never replied");
+
+        //The resuming client has seen the first move, and the bot's reply is being saved as it comes back
+        List<String> sent = new CopyOnWriteArrayList<>();
+        Thread resumer = new Thread(() -> handler.handleCommand(new ResumeCommand("token", gameID, 1),
+                recordingSession(sent)), "resumer");
+        resumer.start();
+        resumer.join(10_000);
+        Assertions.assertTrue(botWrote.await(10, TimeUnit.SECONDS));
+
+        List<ChessMove> received = sent.stream().map(json -> GSON.fromJson(json, MovesMessage.class))
+                .filter(message -> message.getServerMessageType() == ServerMessage.ServerMessageType.MOVES)
+                .flatMap(message -> message.getMoves().stream()).toList();
+        Assertions.assertEquals(1, received.size(), "The resumed session missed the bot's move");
+    }
+
+    @Test
+    public void lobbySnapshotLeavesOutFinishedGames() throws Exception {
+        ChessGame over = new ChessGame();
+        over.setIsGameOver(true);
+        gameDAO.importGames(List.of(new GameData(0, "white", "black", "imported", over)));
+        int resigned = gameDAO.createGame("resigned");
+        gameDAO.updateGame(new GameData(resigned, "human", "other", "resigned", over));
+
+        List<String> sent = new CopyOnWriteArrayList<>();
+        handler.handleCommand(new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE_LOBBY, "token", null),
+                recordingSession(sent));
+
+        Assertions.assertEquals(1, sent.size());
+        LobbyMessage snapshot = GSON.fromJson(sent.get(0), LobbyMessage.class);
+        Assertions.assertEquals(LobbyMessage.Event.SNAPSHOT, snapshot.getEvent());
+        Assertions.assertEquals(List.of(gameID), snapshot.getGames().stream().map(GameData::gameID).toList());
+    }
+}
@@ -4,8 +4,12 @@ import chess.extracreditcalculators.CastleCalculator;
 import chess.extracreditcalculators.EnPassantCalculator;
 import chess.movecalculators.AttackKingCalculator;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -16,12 +20,20 @@ import java.util.Objects;
  */
 public class ChessGame {
 
+    //A snapshot is taken before every this many moves, so reaching any ply replays fewer than this
+    public static final int SNAPSHOT_INTERVAL = 16;
+
     private TeamColor teamTurn;
     private ChessBoard board;
     private EnPassantCalculator enPassantCal;
     private CastleCalculator castleCal;
     private boolean isGameOver;
-
+    //Every move made so far as ChessMove.pack ints, so a finished game can be replayed and analysed.
+    //Kept exactly as long as the game so it's stored without padding, and replaced rather than
+    //written to, so copies can share it
+    private int[] history = new int[0];
+    //The state before moves 0, SNAPSHOT_INTERVAL, 2 * SNAPSHOT_INTERVAL..., as Base64 PackedState
+    private ArrayList<String> snapshots = new ArrayList<>();
 
     public ChessGame() {
         teamTurn = TeamColor.WHITE;
@@ -32,6 +44,25 @@ public class ChessGame {
         isGameOver = false;
     }
 
+    /**
+     * @return an independent game in the same state, so moves can be tried without touching this one
+     */
+    public ChessGame copy() {
+        ChessGame copy = new ChessGame();
+        copy.teamTurn = teamTurn;
+        copy.board = board.clone();
+        copy.enPassantCal.setLastMove(enPassantCal.getLastMove());
+        for (TeamColor color : TeamColor.values()) {
+            for (int place = 0; place < 3; place++) {
+                copy.castleCal.setCastleBool(color, place, castleCal.getCastleBool(color, place));
+            }
+        }
+        copy.isGameOver = isGameOver;
+        copy.history = history;
+        copy.snapshots = new ArrayList<>(snapshots);
+        return copy;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -97,7 +128,18 @@ public class ChessGame {
         }
 
         if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            enPassantCal.checkEnPassant(board, startPosition, validMoves);
+            Collection<ChessMove> enPassantMoves = new ArrayList<>();
+            enPassantCal.checkEnPassant(board, startPosition, enPassantMoves);
+            //Both pawns leave the rank, so check the king with the captured pawn removed too
+            for (ChessMove move : enPassantMoves) {
+                ChessGame testGame = new ChessGame();
+                testGame.setBoard(board.clone());
+                testGame.executeMove(move);
+                testGame.getBoard().addPiece(new ChessPosition(startPosition.getRow(), move.getEndPosition().getColumn()), null);
+                if (!testGame.isInCheck(color)) {
+                    validMoves.add(move);
+                }
+            }
         } else if (piece.getPieceType() == ChessPiece.PieceType.KING && !isInCheck(color)) {
             castleCal.checkCastling(board, startPosition, validMoves);
         }
@@ -113,7 +155,6 @@ public class ChessGame {
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
         ChessPosition startPos = move.getStartPosition();
-        ChessPosition endPos = move.getEndPosition();
 
         //No piece at startPosition
         ChessPiece piece = board.getPiece(startPos);
@@ -122,16 +163,47 @@ public class ChessGame {
         }
 
         //No valid moves at startPosition
-        if (validMoves(startPos) == null || !validMoves(startPos).contains(move)) {
+        Collection<ChessMove> validMoves = validMoves(startPos);
+        if (validMoves == null || !validMoves.contains(move)) {
             throw new InvalidMoveException();
         }
 
         //Not the piece at startPosition's turn
-        TeamColor color = piece.getTeamColor();
-        if (color != teamTurn) {
+        if (piece.getTeamColor() != teamTurn) {
             throw new InvalidMoveException();
         }
 
+        playMove(piece, move);
+
+        //Check to see if game is over
+        if (isInCheckmate(teamTurn) || isInStalemate(teamTurn)) {
+            isGameOver = true;
+        }
+    }
+
+    /**
+     * Makes a move that the caller has already checked, such as one found in an opening book,
+     * skipping the legality and game over checks {@link #makeMove} does
+     *
+     * @param move     legal chess move for the team whose turn it is
+     * @param endsGame whether the move checkmates or stalemates the other team
+     */
+    public void makeCheckedMove(ChessMove move, boolean endsGame) {
+        playMove(board.getPiece(move.getStartPosition()), move);
+        if (endsGame) {
+            isGameOver = true;
+        }
+    }
+
+    private void playMove(ChessPiece piece, ChessMove move) {
+        ChessPosition startPos = move.getStartPosition();
+        ChessPosition endPos = move.getEndPosition();
+        TeamColor color = piece.getTeamColor();
+
+        if (history.length % SNAPSHOT_INTERVAL == 0 && snapshots.size() == history.length / SNAPSHOT_INTERVAL) {
+            snapshots.add(Base64.getEncoder().encodeToString(PackedState.pack(this)));
+        }
+
         //Check to see if the Pawn did EnPassant to update the other piece
         if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
             if (enPassantCal.isEnPassantMove(board, move)) {
@@ -178,6 +250,9 @@ public class ChessGame {
 
         executeMove(move);
         enPassantCal.setLastMove(move);
+        int[] longer = Arrays.copyOf(history, history.length + 1);
+        longer[history.length] = move.pack();
+        history = longer;
 
         //Swap team turn
         if (teamTurn == TeamColor.WHITE) {
@@ -185,11 +260,6 @@ public class ChessGame {
         } else {
             teamTurn = TeamColor.WHITE;
         }
-
-        //Check to see if game is over
-        if (isInCheckmate(teamTurn) || isInStalemate(teamTurn)) {
-            isGameOver = true;
-        }
     }
 
     public void executeMove(ChessMove move) {
@@ -292,6 +362,81 @@ public class ChessGame {
         return null;
     }
 
+    /**
+     * @return the last move made, which decides whether en passant is available
+     */
+    public ChessMove getLastMove() {
+        return enPassantCal.getLastMove();
+    }
+
+    public void setLastMove(ChessMove lastMove) {
+        enPassantCal.setLastMove(lastMove);
+    }
+
+    /**
+     * @param place 0 for the A rook, 1 for the King, 2 for the H rook
+     * @return True if that piece hasn't moved, so it can still take part in castling
+     */
+    public boolean getCastleBool(TeamColor color, int place) {
+        return castleCal.getCastleBool(color, place);
+    }
+
+    public void setCastleBool(TeamColor color, int place, boolean canCastle) {
+        castleCal.setCastleBool(color, place, canCastle);
+    }
+
+    /**
+     * @return the moves made through {@link #makeMove}, oldest first. Later moves don't show up
+     * in a list that's already been returned.
+     */
+    public List<ChessMove> getMoveHistory() {
+        int[] moves = history;
+        return new AbstractList<>() {
+            @Override
+            public ChessMove get(int index) {
+                return ChessMove.unpack(moves[index]);
+            }
+
+            @Override
+            public int size() {
+                return moves.length;
+            }
+        };
+    }
+
+    /**
+     * @return how many moves have been made
+     */
+    public int getPly() {
+        return history.length;
+    }
+
+    /**
+     * The game as it stood after its first {@code ply} moves. It starts from the nearest snapshot
+     * at or before that ply, so it never replays more than {@link #SNAPSHOT_INTERVAL} moves
+     * however long the game is.
+     *
+     * @return a new game, with the history up to that ply
+     * @throws IllegalArgumentException if the game hasn't had that many moves
+     */
+    public ChessGame atPly(int ply) {
+        if (ply < 0 || ply > history.length) {
+            throw new IllegalArgumentException("Ply " + ply + " is outside the game's " + history.length + " moves");
+        }
+        if (ply == history.length) {
+            return copy();
+        }
+        int snapshot = ply / SNAPSHOT_INTERVAL;
+        ChessGame game = PackedState.unpack(Base64.getDecoder().decode(snapshots.get(snapshot)), 0);
+        game.history = Arrays.copyOf(history, snapshot * SNAPSHOT_INTERVAL);
+        game.snapshots = new ArrayList<>(snapshots.subList(0, snapshot));
+        for (int i = snapshot * SNAPSHOT_INTERVAL; i < ply; i++) {
+            ChessMove move = ChessMove.unpack(history[i]);
+            game.playMove(game.board.getPiece(move.getStartPosition()), move);
+        }
+        return game;
+    }
+
     public boolean isGameOver() {
         return isGameOver;
     }
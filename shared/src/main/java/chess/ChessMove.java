@@ -10,6 +10,8 @@ import java.util.Objects;
  */
 public class ChessMove {
 
+    private static final ChessPiece.PieceType[] PIECE_TYPES = ChessPiece.PieceType.values();
+
     private ChessPosition startPos;
     private ChessPosition endPos;
     private ChessPiece.PieceType promotion;
@@ -45,6 +47,36 @@ public class ChessMove {
         return promotion;
     }
 
+    /**
+     * @return the move in 15 bits: the start square (0 for a1 to 63 for h8) in bits 0-5, the end
+     * square in bits 6-11 and the promotion piece's ordinal + 1 in bits 12-14. Never 0, since a
+     * move can't start and end on the same square.
+     */
+    public int pack() {
+        int promotionBits = promotion == null ? 0 : promotion.ordinal() + 1;
+        return square(startPos) | square(endPos) << 6 | promotionBits << 12;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the promotion bits don't name a piece type
+     */
+    public static ChessMove unpack(int packed) {
+        int promotionBits = packed >>> 12 & 0x7;
+        if (promotionBits > PIECE_TYPES.length) {
+            throw new IllegalArgumentException("No piece type for promotion bits " + promotionBits);
+        }
+        return new ChessMove(position(packed & 0x3F), position(packed >>> 6 & 0x3F),
+                promotionBits == 0 ? null : PIECE_TYPES[promotionBits - 1]);
+    }
+
+    private static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    private static ChessPosition position(int square) {
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
@@ -0,0 +1,101 @@
+package chess;
+
+/**
+ * A game's state without its history, packed into {@value #BYTES} bytes: one flag byte (turn,
+ * game over and the six castling bits), the board at 4 bits per square, and the last move as 2
+ * bytes (0 when there isn't one). {@link ChessGame} keeps these as its snapshots and the binary
+ * WebSocket protocol sends them.
+ */
+public final class PackedState {
+
+    public static final int BOARD_BYTES = 32;
+    public static final int BYTES = 1 + BOARD_BYTES + 2;
+
+    private static final ChessPiece.PieceType[] PIECE_TYPES = ChessPiece.PieceType.values();
+
+    private PackedState() {
+    }
+
+    public static byte[] pack(ChessGame game) {
+        byte[] packed = new byte[BYTES];
+        int flags = 0;
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            flags |= 1;
+        }
+        if (game.isGameOver()) {
+            flags |= 1 << 1;
+        }
+        for (int place = 0; place < 3; place++) {
+            if (game.getCastleBool(ChessGame.TeamColor.WHITE, place)) {
+                flags |= 1 << (2 + place);
+            }
+            if (game.getCastleBool(ChessGame.TeamColor.BLACK, place)) {
+                flags |= 1 << (5 + place);
+            }
+        }
+        packed[0] = (byte) flags;
+        packBoard(game.getBoard(), packed, 1);
+        int lastMove = game.getLastMove() == null ? 0 : game.getLastMove().pack();
+        packed[BYTES - 2] = (byte) (lastMove >>> 8);
+        packed[BYTES - 1] = (byte) lastMove;
+        return packed;
+    }
+
+    /**
+     * @return a game in the packed state, with no history
+     * @throws IllegalArgumentException if the board or last move isn't one {@link #pack} could have written
+     */
+    public static ChessGame unpack(byte[] packed, int offset) {
+        int flags = packed[offset] & 0xFF;
+        int lastMove = (packed[offset + BYTES - 2] & 0xFF) << 8 | packed[offset + BYTES - 1] & 0xFF;
+
+        ChessGame game = new ChessGame();
+        game.setBoard(unpackBoard(packed, offset + 1));
+        game.setTeamTurn((flags & 1) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+        game.setIsGameOver((flags & 1 << 1) != 0);
+        for (int place = 0; place < 3; place++) {
+            game.setCastleBool(ChessGame.TeamColor.WHITE, place, (flags & 1 << (2 + place)) != 0);
+            game.setCastleBool(ChessGame.TeamColor.BLACK, place, (flags & 1 << (5 + place)) != 0);
+        }
+        game.setLastMove(lastMove == 0 ? null : ChessMove.unpack(lastMove));
+        return game;
+    }
+
+    /**
+     * Packs the board two squares per byte starting from a1. Each square is 0 when empty,
+     * otherwise the piece type's ordinal + 1 with bit 3 set for black pieces.
+     */
+    public static void packBoard(ChessBoard board, byte[] packed, int offset) {
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(new ChessPosition(square / 8 + 1, square % 8 + 1));
+            if (piece == null) {
+                continue;
+            }
+            int nibble = piece.getPieceType().ordinal() + 1;
+            if (piece.getTeamColor() == ChessGame.TeamColor.BLACK) {
+                nibble |= 0x8;
+            }
+            packed[offset + (square >> 1)] |= (byte) (nibble << ((square & 1) * 4));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a square holds a nibble that isn't a piece
+     */
+    public static ChessBoard unpackBoard(byte[] packed, int offset) {
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            int nibble = packed[offset + (square >> 1)] >> ((square & 1) * 4) & 0xF;
+            if (nibble == 0) {
+                continue;
+            }
+            int type = (nibble & 0x7) - 1;
+            if (type < 0 || type >= PIECE_TYPES.length) {
+                throw new IllegalArgumentException("No piece for nibble " + nibble + " on square " + square);
+            }
+            ChessGame.TeamColor color = (nibble & 0x8) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            board.addPiece(new ChessPosition(square / 8 + 1, square % 8 + 1), new ChessPiece(color, PIECE_TYPES[type]));
+        }
+        return board;
+    }
+}
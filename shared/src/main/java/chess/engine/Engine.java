@@ -0,0 +1,114 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+/**
+ * Entry point for bots and hints: finds a good move for whoever's turn it is in a
+ * {@link ChessGame}. An Engine keeps its search tables between calls, so reuse one rather than
+ * making a new one per move, but don't share one between threads.
+ */
+public class Engine implements AutoCloseable {
+
+    private final ParallelSearch search;
+    private final OpeningBook book;
+    private final Tablebase tablebase;
+
+    public Engine() {
+        this(new TranspositionTable());
+    }
+
+    /**
+     * @param table hash table to search with; several engines may share one
+     */
+    public Engine(TranspositionTable table) {
+        this(table, 1);
+    }
+
+    /**
+     * @param threads threads to search each position with; more than one uses
+     *                {@link ParallelSearch}, which keeps its helper threads until {@link #close()}
+     */
+    public Engine(TranspositionTable table, int threads) {
+        this(table, threads, null);
+    }
+
+    /**
+     * @param book opening book to play from before searching, or null to always search
+     */
+    public Engine(TranspositionTable table, int threads, OpeningBook book) {
+        this(table, threads, book, null);
+    }
+
+    /**
+     * @param tablebase endgame tables to play from, and to score positions inside the search, or null
+     */
+    public Engine(TranspositionTable table, int threads, OpeningBook book, Tablebase tablebase) {
+        search = new ParallelSearch(threads, table, tablebase);
+        this.book = book;
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * @param budgetMillis how long to think; the search stops at the deadline and plays the best
+     *                     move from its last finished iteration
+     */
+    public SearchResult bestMove(ChessGame game, long budgetMillis) {
+        return chooseMove(Position.fromGame(game), SearchLimits.time(budgetMillis));
+    }
+
+    /**
+     * Plays a book move when the position is on a known opening line, the tablebase's move when
+     * the position is a covered ending, and searches otherwise. Book and tablebase moves come back
+     * with zero depth and nodes; a book move scores zero and a tablebase move gets its exact score.
+     */
+    public SearchResult chooseMove(Position position, SearchLimits limits) {
+        if (book != null) {
+            OpeningBook.Entry entry = book.lookup(position);
+            int move = entry == null ? Move.NONE : entry.pickBookMove();
+            if (move != Move.NONE) {
+                return new SearchResult(move, 0, 0, 0, 0, new int[]{move});
+            }
+        }
+        if (tablebase != null && position.pieceCount() <= Tablebase.MAX_PIECES) {
+            long start = System.nanoTime();
+            int move = tablebase.bestMove(position);
+            if (move != Move.NONE) {
+                return new SearchResult(move, tablebase.probe(position).score(0), 0, 0, System.nanoTime() - start,
+                        new int[]{move});
+            }
+        }
+        return search(position, limits);
+    }
+
+    public SearchResult search(Position position, SearchLimits limits) {
+        return search.search(position, limits);
+    }
+
+    /**
+     * Stops a search running on another thread; it returns its best move so far
+     */
+    public void stop() {
+        search.stop();
+    }
+
+    public TranspositionTable getTable() {
+        return search.getTable();
+    }
+
+    public OpeningBook getBook() {
+        return book;
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    public int getThreads() {
+        return search.getThreads();
+    }
+
+    @Override
+    public void close() {
+        search.close();
+    }
+}
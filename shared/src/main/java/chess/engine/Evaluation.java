@@ -0,0 +1,129 @@
+package chess.engine;
+
+/**
+ * Material plus piece-square tables. Every piece's value for its square is looked up once when it
+ * lands there and kept as a running total in {@link Position}, so evaluating a position is a few
+ * array reads instead of a board scan. Kings use separate middlegame and endgame tables, blended
+ * by how much non-pawn material is left.
+ * <p>
+ * The tables are written as you'd see the board from White's side, with a8 in the top left.
+ */
+public final class Evaluation {
+
+    public static final int[] PIECE_VALUES = {0, 100, 320, 330, 500, 900, 20000};
+    static final int[] PHASE_WEIGHTS = {0, 0, 1, 1, 2, 4, 0};
+    static final int MAX_PHASE = 24;
+
+    private static final int[] PAWN_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    private static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    private static final int[] ROOK_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+
+    private static final int[] QUEEN_TABLE = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+
+    private static final int[] KING_MIDDLEGAME_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+
+    private static final int[] KING_ENDGAME_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    //Indexed by piece code (type plus 8 for black) and square, with the material value included
+    static final int[] MIDDLEGAME = new int[16 * 64];
+    static final int[] ENDGAME = new int[16 * 64];
+
+    static {
+        int[][] middlegame = {null, PAWN_TABLE, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE, QUEEN_TABLE, KING_MIDDLEGAME_TABLE};
+        int[][] endgame = {null, PAWN_TABLE, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE, QUEEN_TABLE, KING_ENDGAME_TABLE};
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            //Kings are never captured, so their material would only add the same constant to both sides
+            int material = type == Position.KING ? 0 : PIECE_VALUES[type];
+            for (int square = 0; square < 64; square++) {
+                int white = Position.piece(Position.WHITE, type);
+                int black = Position.piece(Position.BLACK, type);
+                MIDDLEGAME[white << 6 | square] = material + middlegame[type][square ^ 56];
+                ENDGAME[white << 6 | square] = material + endgame[type][square ^ 56];
+                MIDDLEGAME[black << 6 | square] = material + middlegame[type][square];
+                ENDGAME[black << 6 | square] = material + endgame[type][square];
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * @return the score in centipawns from the side to move's point of view
+     */
+    public static int evaluate(Position position) {
+        int us = position.sideToMove();
+        int them = us ^ 1;
+        int middlegame = position.middlegameScore(us) - position.middlegameScore(them);
+        int endgame = position.endgameScore(us) - position.endgameScore(them);
+        int phase = Math.min(position.phase(), MAX_PHASE);
+        return (middlegame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+    }
+}
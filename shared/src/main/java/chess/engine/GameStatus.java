@@ -0,0 +1,12 @@
+package chess.engine;
+
+/**
+ * The state the side to move is in. Opening book files store it as its ordinal, so new
+ * states go on the end.
+ */
+public enum GameStatus {
+    ONGOING,
+    CHECK,
+    CHECKMATE,
+    STALEMATE
+}
@@ -0,0 +1,85 @@
+package chess.engine;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+/**
+ * Moves inside the engine are plain ints so move lists are int arrays and searching never
+ * allocates. Bits 0-5 hold the start square, 6-11 the end square, 12-14 the promotion piece
+ * type and 15-16 a flag for double pawn pushes, castling and en passant. Squares count from
+ * a1 = 0 to h8 = 63.
+ */
+public final class Move {
+
+    public static final int NONE = 0;
+
+    public static final int FLAG_NORMAL = 0;
+    public static final int FLAG_DOUBLE_PUSH = 1;
+    public static final int FLAG_CASTLE = 2;
+    public static final int FLAG_EN_PASSANT = 3;
+
+    private Move() {
+    }
+
+    public static int of(int from, int to) {
+        return from | to << 6;
+    }
+
+    public static int of(int from, int to, int promotion, int flag) {
+        return from | to << 6 | promotion << 12 | flag << 15;
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return move >>> 6 & 0x3F;
+    }
+
+    public static int promotion(int move) {
+        return move >>> 12 & 0x7;
+    }
+
+    public static int flag(int move) {
+        return move >>> 15 & 0x3;
+    }
+
+    public static ChessMove toChessMove(int move) {
+        ChessPiece.PieceType promotion = switch (promotion(move)) {
+            case Position.KNIGHT -> ChessPiece.PieceType.KNIGHT;
+            case Position.BISHOP -> ChessPiece.PieceType.BISHOP;
+            case Position.ROOK -> ChessPiece.PieceType.ROOK;
+            case Position.QUEEN -> ChessPiece.PieceType.QUEEN;
+            default -> null;
+        };
+        return new ChessMove(toPosition(from(move)), toPosition(to(move)), promotion);
+    }
+
+    public static ChessPosition toPosition(int square) {
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
+    public static int toSquare(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    /**
+     * @return the move in coordinate notation, like e2e4 or e7e8q
+     */
+    public static String toString(int move) {
+        if (move == NONE) {
+            return "0000";
+        }
+        String text = squareName(from(move)) + squareName(to(move));
+        if (promotion(move) != 0) {
+            text += " pnbrqk".charAt(promotion(move));
+        }
+        return text;
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + square % 8) + (char) ('1' + square / 8);
+    }
+}
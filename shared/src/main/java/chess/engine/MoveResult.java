@@ -0,0 +1,125 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+/**
+ * A move that has been played, worked out once while playing it so everything said about the
+ * move afterwards can be built from this instead of going back to the move generator.
+ *
+ * @param move           the move as the rest of the app knows it
+ * @param san            standard algebraic notation, such as {@code Nbd7}, {@code exd6} or {@code e8=Q#}
+ * @param longAlgebraic  the move with both squares, such as {@code Nb8-d7} or {@code e5xd6}
+ * @param capture        whether a piece was taken, en passant included
+ * @param status         the state the move left the other side in
+ */
+public record MoveResult(ChessMove move, String san, String longAlgebraic, boolean capture,
+                         GameStatus status) {
+
+    private static final String PIECE_LETTERS = " PNBRQK";
+
+    public boolean isCheck() {
+        return status == GameStatus.CHECK || status == GameStatus.CHECKMATE;
+    }
+
+    public boolean isCheckmate() {
+        return status == GameStatus.CHECKMATE;
+    }
+
+    public boolean endsGame() {
+        return status == GameStatus.CHECKMATE || status == GameStatus.STALEMATE;
+    }
+
+    /**
+     * Plays a legal move on a position and describes it
+     *
+     * @param position    the position before the move, which is left with the move made
+     * @param move        a legal move from {@code legalMoves}
+     * @param legalMoves  the legal moves in the position, used to tell apart pieces that could
+     *                    both reach the square
+     * @param legalCount  how many of {@code legalMoves} are filled in
+     * @param knownStatus the other side's state after the move if the caller already knows it,
+     *                    such as from the opening book, or null to work it out
+     */
+    public static MoveResult play(Position position, int move, int[] legalMoves, int legalCount,
+                                  GameStatus knownStatus) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Position.typeOf(position.pieceAt(from));
+        boolean capture = position.pieceAt(to) != Position.EMPTY || Move.flag(move) == Move.FLAG_EN_PASSANT;
+
+        StringBuilder san = new StringBuilder(8);
+        StringBuilder longAlgebraic = new StringBuilder(10);
+        if (Move.flag(move) == Move.FLAG_CASTLE) {
+            san.append(to > from ? "O-O" : "O-O-O");
+            longAlgebraic.append(san);
+        } else {
+            if (type != Position.PAWN) {
+                san.append(PIECE_LETTERS.charAt(type));
+                longAlgebraic.append(PIECE_LETTERS.charAt(type));
+                disambiguate(san, position, move, legalMoves, legalCount);
+            } else if (capture) {
+                san.append((char) ('a' + from % 8));
+            }
+            if (capture) {
+                san.append('x');
+            }
+            san.append(Move.squareName(to));
+            longAlgebraic.append(Move.squareName(from)).append(capture ? 'x' : '-').append(Move.squareName(to));
+            if (Move.promotion(move) != 0) {
+                san.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+                longAlgebraic.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+            }
+        }
+
+        position.makeMove(move);
+        GameStatus status = knownStatus != null ? knownStatus : statusOf(position);
+        if (status == GameStatus.CHECKMATE) {
+            san.append('#');
+            longAlgebraic.append('#');
+        } else if (status == GameStatus.CHECK) {
+            san.append('+');
+            longAlgebraic.append('+');
+        }
+        return new MoveResult(Move.toChessMove(move), san.toString(), longAlgebraic.toString(), capture, status);
+    }
+
+    /**
+     * @return the state of the side to move
+     */
+    public static GameStatus statusOf(Position position) {
+        boolean inCheck = position.inCheck();
+        if (position.generateLegalMoves(new int[Position.MAX_MOVES]) == 0) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        return inCheck ? GameStatus.CHECK : GameStatus.ONGOING;
+    }
+
+    //Adds the file, rank or whole square the piece moved from when another one of the same type could go there too
+    private static void disambiguate(StringBuilder san, Position position, int move, int[] legalMoves, int legalCount) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = position.pieceAt(from);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < legalCount; i++) {
+            int other = Move.from(legalMoves[i]);
+            if (other == from || Move.to(legalMoves[i]) != to || position.pieceAt(other) != piece) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= other % 8 == from % 8;
+            sameRank |= other / 8 == from / 8;
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            san.append((char) ('a' + from % 8));
+        } else if (!sameRank) {
+            san.append((char) ('1' + from / 8));
+        } else {
+            san.append(Move.squareName(from));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Read-only store of precomputed opening positions, memory-mapped from a file written by
+ * {@link OpeningBookBuilder}. For every position it holds the legal moves, whether the side to
+ * move is in check, mated or stalemated, and for positions on known opening lines the book moves
+ * with how often they're played. Lookups are a binary search over the file's index by
+ * {@link Position#key()}, reading straight from the mapping, so they allocate nothing until an
+ * entry is found and are safe from any number of threads.
+ * <p>
+ * File layout, all big-endian: a 16 byte header (magic, version, entry count, plies covered by
+ * the full tree), then one 16 byte index record per position sorted by key (key, offset of its
+ * data, move count, status, book move count), then each position's data: its legal moves as
+ * ints, followed by pairs of book move and weight.
+ */
+public final class OpeningBook {
+
+    static final int MAGIC = 0x43424B31;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int INDEX_BYTES = 16;
+
+    /**
+     * @param legalMoves  every legal move in {@link Move} form
+     * @param status      the state of the side to move
+     * @param bookMoves   moves played here in known openings, empty off the book lines
+     * @param bookWeights how many book lines play each of those moves
+     */
+    public record Entry(int[] legalMoves, GameStatus status, int[] bookMoves, int[] bookWeights) {
+
+        public boolean isLegal(ChessMove move) {
+            return find(move) != Move.NONE;
+        }
+
+        /**
+         * @return the legal move matching a {@link ChessMove}, or {@link Move#NONE} if it isn't legal
+         */
+        public int find(ChessMove move) {
+            int from = Move.toSquare(move.getStartPosition());
+            int to = Move.toSquare(move.getEndPosition());
+            int promotion = move.getPromotionPiece() == null ? 0 : Position.typeOf(move.getPromotionPiece());
+            for (int legal : legalMoves) {
+                if (Move.from(legal) == from && Move.to(legal) == to && Move.promotion(legal) == promotion) {
+                    return legal;
+                }
+            }
+            return Move.NONE;
+        }
+
+        /**
+         * @return the legal moves of the piece on a square, in the form {@link chess.ChessGame#validMoves} gives
+         */
+        public Collection<ChessMove> movesFrom(int square) {
+            Collection<ChessMove> moves = new ArrayList<>();
+            for (int legal : legalMoves) {
+                if (Move.from(legal) == square) {
+                    moves.add(Move.toChessMove(legal));
+                }
+            }
+            return moves;
+        }
+
+        /**
+         * @return a book move picked at random in proportion to its weight, or {@link Move#NONE}
+         */
+        public int pickBookMove() {
+            int total = 0;
+            for (int weight : bookWeights) {
+                total += weight;
+            }
+            if (total == 0) {
+                return Move.NONE;
+            }
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            for (int i = 0; i < bookMoves.length; i++) {
+                pick -= bookWeights[i];
+                if (pick < 0) {
+                    return bookMoves[i];
+                }
+            }
+            return Move.NONE;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int fullPlies;
+
+    private OpeningBook(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book file");
+        }
+        this.buffer = buffer;
+        count = buffer.getInt(8);
+        fullPlies = buffer.getInt(12);
+        if (buffer.capacity() < HEADER_BYTES + (long) count * INDEX_BYTES) {
+            throw new IOException("Opening book file is truncated");
+        }
+    }
+
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new OpeningBook(mapped);
+        }
+    }
+
+    /**
+     * @return the position's entry, or null if the book doesn't have it
+     */
+    public Entry lookup(long key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+        int record = HEADER_BYTES + index * INDEX_BYTES;
+        int offset = buffer.getInt(record + 8);
+        int moveCount = buffer.getShort(record + 12);
+        GameStatus status = GameStatus.values()[buffer.get(record + 14)];
+        int bookCount = buffer.get(record + 15);
+        int[] legalMoves = new int[moveCount];
+        for (int i = 0; i < moveCount; i++) {
+            legalMoves[i] = buffer.getInt(offset + i * 4);
+        }
+        int bookStart = offset + moveCount * 4;
+        int[] bookMoves = new int[bookCount];
+        int[] bookWeights = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            bookMoves[i] = buffer.getInt(bookStart + i * 8);
+            bookWeights[i] = buffer.getInt(bookStart + i * 8 + 4);
+        }
+        return new Entry(legalMoves, status, bookMoves, bookWeights);
+    }
+
+    public Entry lookup(Position position) {
+        return lookup(position.key());
+    }
+
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    private int find(long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = buffer.getLong(HEADER_BYTES + middle * INDEX_BYTES);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return how many plies from the start every position is in the book; book lines go deeper
+     */
+    public int getFullPlies() {
+        return fullPlies;
+    }
+}
@@ -0,0 +1,187 @@
+package chess.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the file {@link OpeningBook} maps. The book holds every position up to a few plies from
+ * the start, which covers any opening, plus every position along a list of well known opening
+ * lines, which also supply the book moves.
+ * <p>
+ * Usage: {@code OpeningBookBuilder <file> [fullPlies]}
+ */
+public final class OpeningBookBuilder {
+
+    public static final int DEFAULT_FULL_PLIES = 3;
+
+    //Main lines of common openings; a move's weight is how many of these play it from that position
+    static final String[] LINES = {
+            "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6 e1g1 f8e7",
+            "e2e4 e7e5 g1f3 b8c6 f1c4 f8c5 c2c3 g8f6 d2d4 e5d4",
+            "e2e4 e7e5 g1f3 b8c6 d2d4 e5d4 f3d4 g8f6 d4c6 b7c6",
+            "e2e4 e7e5 g1f3 g8f6 f3e5 d7d6 e5f3 f6e4 d2d4 d6d5",
+            "e2e4 c7c5 g1f3 d7d6 d2d4 c5d4 f3d4 g8f6 b1c3 a7a6",
+            "e2e4 c7c5 g1f3 b8c6 d2d4 c5d4 f3d4 g8f6 b1c3 e7e5",
+            "e2e4 c7c5 g1f3 e7e6 d2d4 c5d4 f3d4 a7a6 f1d3 g8f6",
+            "e2e4 c7c5 b1c3 b8c6 g2g3 g7g6 f1g2 f8g7 d2d3 d7d6",
+            "e2e4 e7e6 d2d4 d7d5 b1c3 g8f6 c1g5 f8e7 e4e5 f6d7",
+            "e2e4 e7e6 d2d4 d7d5 e4e5 c7c5 c2c3 b8c6 g1f3 d8b6",
+            "e2e4 c7c6 d2d4 d7d5 b1c3 d5e4 c3e4 c8f5 e4g3 f5g6",
+            "e2e4 c7c6 d2d4 d7d5 e4e5 c8f5 g1f3 e7e6 f1e2 c6c5",
+            "e2e4 d7d5 e4d5 d8d5 b1c3 d5a5 d2d4 g8f6 g1f3 c8f5",
+            "d2d4 d7d5 c2c4 e7e6 b1c3 g8f6 c1g5 f8e7 e2e3 e8g8",
+            "d2d4 d7d5 c2c4 c7c6 g1f3 g8f6 b1c3 d5c4 a2a4 c8f5",
+            "d2d4 d7d5 c2c4 d5c4 g1f3 g8f6 e2e3 e7e6 f1c4 c7c5",
+            "d2d4 g8f6 c2c4 g7g6 b1c3 f8g7 e2e4 d7d6 g1f3 e8g8",
+            "d2d4 g8f6 c2c4 e7e6 b1c3 f8b4 e2e3 e8g8 f1d3 d7d5",
+            "d2d4 g8f6 c2c4 e7e6 g1f3 b7b6 g2g3 c8b7 f1g2 f8e7",
+            "d2d4 g8f6 g1f3 e7e6 c1f4 c7c5 e2e3 b8c6 c2c3 d7d5",
+            "c2c4 e7e5 b1c3 g8f6 g1f3 b8c6 g2g3 d7d5 c4d5 f6d5",
+            "c2c4 g8f6 b1c3 e7e6 e2e4 d7d5 e4e5 d5d4 e5f6 d4c3",
+            "g1f3 d7d5 g2g3 g8f6 f1g2 e7e6 e1g1 f8e7 d2d3 e8g8",
+            "g1f3 g8f6 c2c4 g7g6 b1c3 f8g7 e2e4 d7d6 d2d4 e8g8"
+    };
+
+    private static final class BookPosition {
+        final int[] legalMoves;
+        final GameStatus status;
+        final Map<Integer, Integer> bookWeights = new LinkedHashMap<>();
+        int searchedPlies = -1;
+
+        BookPosition(int[] legalMoves, GameStatus status) {
+            this.legalMoves = legalMoves;
+            this.status = status;
+        }
+    }
+
+    private final Map<Long, BookPosition> positions = new HashMap<>();
+
+    private OpeningBookBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: OpeningBookBuilder <file> [fullPlies]");
+            return;
+        }
+        int fullPlies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_FULL_PLIES;
+        long start = System.nanoTime();
+        int entries = build(Path.of(args[0]), fullPlies);
+        System.out.printf("Wrote %d positions to %s in %dms%n", entries, args[0], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes a book to a temporary file next to the target and moves it into place, so a reader
+     * never maps a half written book.
+     *
+     * @return how many positions the book holds
+     */
+    public static int build(Path file, int fullPlies) throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.addTree(Position.startPosition(), fullPlies);
+        for (String line : LINES) {
+            builder.addLine(line);
+        }
+
+        Path absolute = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            builder.write(temporary, fullPlies);
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return builder.positions.size();
+    }
+
+    private BookPosition add(Position position) {
+        return positions.computeIfAbsent(position.key(), key -> {
+            int[] moves = new int[Position.MAX_MOVES];
+            int count = position.generateLegalMoves(moves);
+            GameStatus status;
+            if (count == 0) {
+                status = position.inCheck() ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+            } else {
+                status = position.inCheck() ? GameStatus.CHECK : GameStatus.ONGOING;
+            }
+            return new BookPosition(Arrays.copyOf(moves, count), status);
+        });
+    }
+
+    private void addTree(Position position, int plies) {
+        BookPosition entry = add(position);
+        //Transpositions reach the same position many times; only walk on if this visit goes deeper
+        if (entry.searchedPlies >= plies) {
+            return;
+        }
+        entry.searchedPlies = plies;
+        if (plies == 0) {
+            return;
+        }
+        for (int move : entry.legalMoves) {
+            position.makeMove(move);
+            addTree(position, plies - 1);
+            position.unmakeMove(move);
+        }
+    }
+
+    private void addLine(String line) {
+        Position position = Position.startPosition();
+        for (String moveText : line.split(" ")) {
+            BookPosition entry = add(position);
+            int move = Move.NONE;
+            for (int legal : entry.legalMoves) {
+                if (Move.toString(legal).equals(moveText)) {
+                    move = legal;
+                }
+            }
+            if (move == Move.NONE) {
+                throw new IllegalStateException("Illegal book move " + moveText + " in " + line);
+            }
+            entry.bookWeights.merge(move, 1, Integer::sum);
+            position.makeMove(move);
+        }
+        add(position);
+    }
+
+    private void write(Path file, int fullPlies) throws IOException {
+        List<Long> keys = new ArrayList<>(positions.keySet());
+        keys.sort(null);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(keys.size());
+            out.writeInt(fullPlies);
+            int offset = OpeningBook.HEADER_BYTES + keys.size() * OpeningBook.INDEX_BYTES;
+            for (long key : keys) {
+                BookPosition entry = positions.get(key);
+                out.writeLong(key);
+                out.writeInt(offset);
+                out.writeShort(entry.legalMoves.length);
+                out.writeByte(entry.status.ordinal());
+                out.writeByte(entry.bookWeights.size());
+                offset += entry.legalMoves.length * 4 + entry.bookWeights.size() * 8;
+            }
+            for (long key : keys) {
+                BookPosition entry = positions.get(key);
+                for (int move : entry.legalMoves) {
+                    out.writeInt(move);
+                }
+                for (Map.Entry<Integer, Integer> book : entry.bookWeights.entrySet()) {
+                    out.writeInt(book.getKey());
+                    out.writeInt(book.getValue());
+                }
+            }
+        }
+    }
+}
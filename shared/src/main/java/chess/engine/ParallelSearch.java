@@ -0,0 +1,115 @@
+package chess.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lazy SMP: every thread runs its own {@link Search} over its own copy of the root, and the only
+ * thing they share is the {@link TranspositionTable}. Helpers never report a move; they speed up
+ * the main thread by filling the table with results it would otherwise have to work out itself.
+ * Half the helpers search odd depths first and half even depths, so they spread out over the tree
+ * instead of all racing down the same line.
+ * <p>
+ * Helper threads are started once and kept for the life of the ParallelSearch; the main search
+ * runs on the caller's thread. Like Search, one ParallelSearch should only run one search at a
+ * time.
+ */
+public final class ParallelSearch implements AutoCloseable {
+
+    private final TranspositionTable table;
+    private final Search main;
+    private final Search[] helpers;
+    private final ExecutorService pool;
+
+    /**
+     * @param threads total threads to search with, the caller's included
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        this(threads, table, null);
+    }
+
+    /**
+     * @param tablebase exact results every thread uses for positions with few pieces, or null
+     */
+    public ParallelSearch(int threads, TranspositionTable table, Tablebase tablebase) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search needs at least one thread");
+        }
+        this.table = table;
+        main = new Search(table, tablebase);
+        helpers = new Search[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Search(table, tablebase, i + 1);
+        }
+        pool = helpers.length == 0 ? null
+                : Executors.newFixedThreadPool(helpers.length, Thread.ofPlatform().daemon().name("search-helper-", 1).factory());
+    }
+
+    /**
+     * Searches with every thread until the main thread hits one of the limits. The result is the
+     * main thread's, with nodes counted across all threads.
+     */
+    public SearchResult search(Position position, SearchLimits limits) {
+        long start = System.nanoTime();
+        table.newSearch();
+        main.resetStop();
+        List<Future<SearchResult>> running = new ArrayList<>(helpers.length);
+        for (Search helper : helpers) {
+            helper.resetStop();
+            Position copy = position.copy();
+            running.add(pool.submit(() -> helper.iterate(copy, limits, true)));
+        }
+
+        SearchResult result;
+        try {
+            result = main.iterate(position, limits, false);
+        } finally {
+            for (Search helper : helpers) {
+                helper.stop();
+            }
+        }
+        long nodes = result.nodes();
+        for (Future<SearchResult> helperResult : running) {
+            nodes += awaitNodes(helperResult);
+        }
+        return new SearchResult(result.move(), result.score(), result.depth(), nodes, System.nanoTime() - start,
+                result.principalVariation());
+    }
+
+    private static long awaitNodes(Future<SearchResult> helperResult) {
+        try {
+            return helperResult.get().nodes();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops a search running on another thread; it returns its best move so far
+     */
+    public void stop() {
+        main.stop();
+    }
+
+    public int getThreads() {
+        return helpers.length + 1;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
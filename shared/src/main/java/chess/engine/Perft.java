@@ -0,0 +1,335 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth, which checks a move generator
+ * against published totals and measures how fast it runs. The root's moves are counted as
+ * separate ForkJoin tasks, and a divide lists each one's total so a wrong count can be tracked
+ * down move by move.
+ * <p>
+ * Counting runs on either the engine's {@link Position} or on {@link ChessGame}'s validMoves
+ * and makeMove, so the two generators can be checked against each other. Engine counts can use a
+ * shared lock-free cache of subtree totals keyed by position and depth, which skips the subtrees
+ * that transpositions reach again.
+ * <p>
+ * Usage: {@code Perft [--fen FEN] [--depth N] [--threads 1,2,4] [--hash MB] [--game] [--check]}.
+ * {@code --game} counts with ChessGame, and {@code --check} counts with both and reports the root
+ * moves where they differ.
+ */
+public final class Perft {
+
+    public static final int DEFAULT_DEPTH = 5;
+
+    /**
+     * @param move   the root move in coordinate notation
+     * @param leaves leaf nodes below it
+     */
+    public record Divide(String move, long leaves) {
+    }
+
+    /**
+     * @param divides      each root move's total, in move generation order
+     * @param leaves       total leaf nodes
+     * @param elapsedNanos wall clock time the count took
+     */
+    public record Result(List<Divide> divides, long leaves, long elapsedNanos) {
+
+        public long nodesPerSecond() {
+            return elapsedNanos == 0 ? 0 : leaves * 1_000_000_000L / elapsedNanos;
+        }
+    }
+
+    /**
+     * Subtree totals, two longs per slot: the key mixed with the depth and xored with the data,
+     * then the data. A slot torn by two threads writing at once fails the xor check and reads as
+     * a miss, so no locking is needed.
+     */
+    static final class Cache {
+
+        private final long[] slots;
+        private final int mask;
+
+        Cache(int megabytes) {
+            int count = (int) Long.highestOneBit(Math.max(1, Math.min(1 << 30, (long) megabytes * (1 << 20) / 16)));
+            slots = new long[count * 2];
+            mask = count - 1;
+        }
+
+        long get(long key, int depth) {
+            long mixed = mix(key, depth);
+            int slot = (int) mixed & mask;
+            long data = slots[slot * 2 + 1];
+            return (slots[slot * 2] ^ data) == mixed ? data : -1;
+        }
+
+        void put(long key, int depth, long leaves) {
+            long mixed = mix(key, depth);
+            int slot = (int) mixed & mask;
+            slots[slot * 2] = mixed ^ leaves;
+            slots[slot * 2 + 1] = leaves;
+        }
+
+        private static long mix(long key, int depth) {
+            return key ^ depth * 0x9E37_79B9_7F4A_7C15L;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Cache cache;
+
+    /**
+     * @param cacheMegabytes size of the subtree cache, or 0 for none
+     */
+    public Perft(ForkJoinPool pool, int cacheMegabytes) {
+        this.pool = pool;
+        cache = cacheMegabytes > 0 ? new Cache(cacheMegabytes) : null;
+    }
+
+    public static void main(String[] args) {
+        String fen = Position.START_FEN;
+        int depth = DEFAULT_DEPTH;
+        String[] threadCounts = {String.valueOf(Runtime.getRuntime().availableProcessors())};
+        int megabytes = 0;
+        boolean game = false;
+        boolean check = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fen" -> fen = args[++i];
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--threads" -> threadCounts = args[++i].split(",");
+                case "--hash" -> megabytes = Integer.parseInt(args[++i]);
+                case "--game" -> game = true;
+                case "--check" -> check = true;
+                default -> {
+                    System.out.println("Usage: Perft [--fen FEN] [--depth N] [--threads 1,2,4] [--hash MB] [--game] [--check]");
+                    return;
+                }
+            }
+        }
+        Position position = Position.fromFen(fen);
+        if (check) {
+            compare(position, depth, Integer.parseInt(threadCounts[0].trim()));
+            return;
+        }
+
+        System.out.printf("%s, depth %d, %s, %d cores%n", fen, depth, game ? "ChessGame" : "engine",
+                Runtime.getRuntime().availableProcessors());
+        //An untimed count first, so the first thread count isn't timed while the JIT compiles
+        ForkJoinPool warmupPool = new ForkJoinPool(1);
+        Perft warmup = new Perft(warmupPool, 0);
+        if (game) {
+            warmup.countGame(position.toGame(), Math.min(depth - 1, 3));
+        } else {
+            warmup.count(position, depth);
+        }
+        warmupPool.shutdown();
+
+        long baseline = 0;
+        int baselineThreads = 0;
+        for (String count : threadCounts) {
+            int threads = Integer.parseInt(count.trim());
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            Perft perft = new Perft(pool, game ? 0 : megabytes);
+            Result result = game ? perft.countGame(position.toGame(), depth) : perft.count(position, depth);
+            pool.shutdown();
+            if (baseline == 0) {
+                for (Divide divide : result.divides()) {
+                    System.out.printf("%s: %d%n", divide.move(), divide.leaves());
+                }
+                System.out.printf("%d leaves%n%n", result.leaves());
+                System.out.printf("%8s %10s %14s %8s %10s%n", "threads", "time (ms)", "nodes/sec", "speedup", "efficiency");
+                baseline = result.elapsedNanos();
+                baselineThreads = threads;
+            }
+            double speedup = (double) baseline / Math.max(1, result.elapsedNanos());
+            System.out.printf("%8d %10d %14d %8.2f %9.0f%%%n", threads, result.elapsedNanos() / 1_000_000,
+                    result.nodesPerSecond(), speedup, 100 * speedup * baselineThreads / threads);
+        }
+    }
+
+    private static void compare(Position position, int depth, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Perft perft = new Perft(pool, 0);
+        Result engine = perft.count(position, depth);
+        Result game = perft.countGame(position.toGame(), depth);
+        pool.shutdown();
+        Map<String, Long> gameDivides = new LinkedHashMap<>();
+        for (Divide divide : game.divides()) {
+            gameDivides.put(divide.move(), divide.leaves());
+        }
+        int mismatches = 0;
+        for (Divide divide : engine.divides()) {
+            Long gameLeaves = gameDivides.remove(divide.move());
+            if (gameLeaves == null || gameLeaves != divide.leaves()) {
+                System.out.printf("%s: engine %d, ChessGame %s%n", divide.move(), divide.leaves(), gameLeaves);
+                mismatches++;
+            }
+        }
+        for (Map.Entry<String, Long> extra : gameDivides.entrySet()) {
+            System.out.printf("%s: engine none, ChessGame %d%n", extra.getKey(), extra.getValue());
+            mismatches++;
+        }
+        System.out.printf("engine %d, ChessGame %d leaves, %d root moves differ%n", engine.leaves(), game.leaves(),
+                mismatches);
+    }
+
+    /**
+     * Counts with the engine's move generator. The position is left as it was.
+     */
+    public Result count(Position position, int depth) {
+        long start = System.nanoTime();
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = depth > 0 ? position.generateLegalMoves(moves) : 0;
+        List<RecursiveTask<Long>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Position child = position.copy();
+            child.makeMove(moves[i]);
+            tasks.add(new PositionTask(child, depth - 1));
+        }
+        return finish(tasks, moves, count, depth, start);
+    }
+
+    /**
+     * Counts with {@link ChessGame#validMoves} and {@link ChessGame#makeMove}, which is much
+     * slower and not cached. The game is left as it was.
+     */
+    public Result countGame(ChessGame game, int depth) {
+        long start = System.nanoTime();
+        List<ChessMove> moves = depth > 0 ? legalMoves(game) : List.of();
+        int[] packed = new int[moves.size()];
+        List<RecursiveTask<Long>> tasks = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            packed[i] = pack(moves.get(i));
+            tasks.add(new GameTask(game, moves.get(i), depth - 1));
+        }
+        return finish(tasks, packed, moves.size(), depth, start);
+    }
+
+    private Result finish(List<RecursiveTask<Long>> tasks, int[] moves, int count, int depth, long start) {
+        for (RecursiveTask<Long> task : tasks) {
+            pool.execute(task);
+        }
+        List<Divide> divides = new ArrayList<>(count);
+        long leaves = depth == 0 ? 1 : 0;
+        for (int i = 0; i < count; i++) {
+            long moveLeaves = tasks.get(i).join();
+            divides.add(new Divide(Move.toString(moves[i]), moveLeaves));
+            leaves += moveLeaves;
+        }
+        return new Result(divides, leaves, System.nanoTime() - start);
+    }
+
+    private long countLeaves(Position position, int depth, int[] moves, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (cache != null && depth > 1) {
+            long cached = cache.get(position.key(), depth);
+            if (cached >= 0) {
+                return cached;
+            }
+        }
+        int start = ply * Position.MAX_MOVES;
+        int end = position.generateMoves(moves, start, false);
+        long leaves = 0;
+        for (int i = start; i < end; i++) {
+            if (!position.makeMove(moves[i])) {
+                continue;
+            }
+            leaves += depth == 1 ? 1 : countLeaves(position, depth - 1, moves, ply + 1);
+            position.unmakeMove(moves[i]);
+        }
+        if (cache != null && depth > 1) {
+            cache.put(position.key(), depth, leaves);
+        }
+        return leaves;
+    }
+
+    private static long countGameLeaves(ChessGame game, int depth) throws InvalidMoveException {
+        if (depth == 0) {
+            return 1;
+        }
+        List<ChessMove> moves = legalMoves(game);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long leaves = 0;
+        for (ChessMove move : moves) {
+            ChessGame child = game.copy();
+            child.makeMove(move);
+            leaves += countGameLeaves(child, depth - 1);
+        }
+        return leaves;
+    }
+
+    private static List<ChessMove> legalMoves(ChessGame game) {
+        List<ChessMove> moves = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition square = new ChessPosition(row, col);
+                ChessPiece piece = game.getBoard().getPiece(square);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    moves.addAll(game.validMoves(square));
+                }
+            }
+        }
+        return moves;
+    }
+
+    private static int pack(ChessMove move) {
+        int promotion = move.getPromotionPiece() == null ? 0 : Position.typeOf(move.getPromotionPiece());
+        return Move.of(Move.toSquare(move.getStartPosition()), Move.toSquare(move.getEndPosition()), promotion, 0);
+    }
+
+    private class PositionTask extends RecursiveTask<Long> {
+
+        private final Position position;
+        private final int depth;
+
+        PositionTask(Position position, int depth) {
+            this.position = position;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            return countLeaves(position, depth, new int[(depth + 1) * Position.MAX_MOVES], 0);
+        }
+    }
+
+    private static class GameTask extends RecursiveTask<Long> {
+
+        private final ChessGame game;
+        private final ChessMove move;
+        private final int depth;
+
+        GameTask(ChessGame game, ChessMove move, int depth) {
+            this.game = game;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            ChessGame child = game.copy();
+            try {
+                child.makeMove(move);
+                return countGameLeaves(child, depth);
+            } catch (InvalidMoveException ex) {
+                throw new IllegalStateException("makeMove rejected a move from validMoves", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,779 @@
+package chess.engine;
+
+import chess.*;
+
+/**
+ * The engine's own board: an int per square, incremental Zobrist key and evaluation totals, and
+ * an undo stack so moves are made and taken back in place. Nothing here allocates once the
+ * position exists, which is what lets the search run millions of nodes a second where
+ * {@link ChessGame#validMoves} would clone a board for every candidate move.
+ * <p>
+ * Squares count from a1 = 0 to h8 = 63. A piece is its type (PAWN to KING) plus 8 for black.
+ */
+public final class Position {
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int EMPTY = 0;
+    public static final int PAWN = 1;
+    public static final int KNIGHT = 2;
+    public static final int BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+    public static final int KING = 6;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    /**
+     * More than the number of pseudo-legal moves any position can have
+     */
+    public static final int MAX_MOVES = 256;
+
+    /**
+     * How many moves can be made (game plus search) before the undo stack is full
+     */
+    public static final int MAX_HISTORY = 4096;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    static final int[][] KNIGHT_TARGETS = new int[64][];
+    static final int[][] KING_TARGETS = new int[64][];
+    static final int[][][] PAWN_ATTACKS = new int[2][64][];
+    //Directions 0-3 run along ranks and files, 4-7 along diagonals
+    static final int[][][] RAYS = new int[64][8][];
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] kingSteps = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_TARGETS[square] = targets(square, knightSteps, false);
+            KING_TARGETS[square] = targets(square, kingSteps, false);
+            PAWN_ATTACKS[WHITE][square] = targets(square, new int[][]{{1, -1}, {1, 1}}, false);
+            PAWN_ATTACKS[BLACK][square] = targets(square, new int[][]{{-1, -1}, {-1, 1}}, false);
+            for (int direction = 0; direction < 8; direction++) {
+                RAYS[square][direction] = targets(square, new int[][]{kingSteps[direction]}, true);
+            }
+            CASTLING_MASK[square] = 0xF;
+        }
+        CASTLING_MASK[0] = ~WHITE_QUEENSIDE & 0xF;
+        CASTLING_MASK[7] = ~WHITE_KINGSIDE & 0xF;
+        CASTLING_MASK[4] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & 0xF;
+        CASTLING_MASK[56] = ~BLACK_QUEENSIDE & 0xF;
+        CASTLING_MASK[63] = ~BLACK_KINGSIDE & 0xF;
+        CASTLING_MASK[60] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & 0xF;
+    }
+
+    private static int[] targets(int square, int[][] steps, boolean slide) {
+        int[] found = new int[8];
+        int count = 0;
+        for (int[] step : steps) {
+            int rank = square / 8 + step[0];
+            int file = square % 8 + step[1];
+            while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                found[count++] = rank * 8 + file;
+                if (!slide) {
+                    break;
+                }
+                rank += step[0];
+                file += step[1];
+            }
+        }
+        return java.util.Arrays.copyOf(found, count);
+    }
+
+    private final int[] board = new int[64];
+    private final int[] kingSquare = {-1, -1};
+    private final int[] middlegame = new int[2];
+    private final int[] endgame = new int[2];
+    private int phase;
+    private int pieceCount;
+    private int side;
+    private int castling;
+    private int enPassant = -1;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long key;
+
+    private final long[] keyHistory = new long[MAX_HISTORY];
+    //Captured piece, castling rights, en passant square + 1 and the halfmove clock, packed per move
+    private final int[] undoState = new int[MAX_HISTORY];
+    private int historyPly;
+
+    public static int piece(int color, int type) {
+        return type | color << 3;
+    }
+
+    public static int colorOf(int piece) {
+        return piece >> 3;
+    }
+
+    public static int typeOf(int piece) {
+        return piece & 7;
+    }
+
+    public static Position startPosition() {
+        return fromFen(START_FEN);
+    }
+
+    /**
+     * Builds the engine's view of a game: pieces, whose turn it is, the castling flags, and an en
+     * passant square when the game's last move was a double pawn push.
+     */
+    public static Position fromGame(ChessGame game) {
+        Position position = new Position();
+        ChessBoard chessBoard = game.getBoard();
+        for (int square = 0; square < 64; square++) {
+            ChessPiece chessPiece = chessBoard.getPiece(Move.toPosition(square));
+            if (chessPiece != null) {
+                int color = chessPiece.getTeamColor() == ChessGame.TeamColor.WHITE ? WHITE : BLACK;
+                position.put(square, piece(color, typeOf(chessPiece.getPieceType())));
+            }
+        }
+        position.side = game.getTeamTurn() == ChessGame.TeamColor.WHITE ? WHITE : BLACK;
+        int[] rights = {WHITE_QUEENSIDE, WHITE_KINGSIDE, BLACK_QUEENSIDE, BLACK_KINGSIDE};
+        for (int color = WHITE; color <= BLACK; color++) {
+            ChessGame.TeamColor teamColor = color == WHITE ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            int homeRank = color == WHITE ? 0 : 56;
+            if (!game.getCastleBool(teamColor, 1) || position.board[homeRank + 4] != piece(color, KING)) {
+                continue;
+            }
+            if (game.getCastleBool(teamColor, 0) && position.board[homeRank] == piece(color, ROOK)) {
+                position.castling |= rights[color * 2];
+            }
+            if (game.getCastleBool(teamColor, 2) && position.board[homeRank + 7] == piece(color, ROOK)) {
+                position.castling |= rights[color * 2 + 1];
+            }
+        }
+        ChessMove lastMove = game.getLastMove();
+        if (lastMove != null) {
+            int from = Move.toSquare(lastMove.getStartPosition());
+            int to = Move.toSquare(lastMove.getEndPosition());
+            if (typeOf(position.board[to]) == PAWN && Math.abs(to - from) == 16) {
+                position.enPassant = (from + to) / 2;
+            }
+        }
+        position.finishSetup();
+        return position;
+    }
+
+    /**
+     * The reverse of {@link #fromGame}: a {@link ChessGame} with this position's pieces, turn,
+     * castling flags and, when there's an en passant square, the double push that allowed it
+     */
+    public ChessGame toGame() {
+        ChessGame game = new ChessGame();
+        ChessBoard chessBoard = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            if (board[square] != EMPTY) {
+                ChessGame.TeamColor color = colorOf(board[square]) == WHITE ? ChessGame.TeamColor.WHITE
+                        : ChessGame.TeamColor.BLACK;
+                chessBoard.addPiece(Move.toPosition(square), new ChessPiece(color, pieceType(typeOf(board[square]))));
+            }
+        }
+        game.setBoard(chessBoard);
+        game.setTeamTurn(side == WHITE ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+        int[] rights = {WHITE_QUEENSIDE, WHITE_KINGSIDE, BLACK_QUEENSIDE, BLACK_KINGSIDE};
+        for (int color = WHITE; color <= BLACK; color++) {
+            ChessGame.TeamColor teamColor = color == WHITE ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            boolean queenside = (castling & rights[color * 2]) != 0;
+            boolean kingside = (castling & rights[color * 2 + 1]) != 0;
+            game.setCastleBool(teamColor, 0, queenside);
+            game.setCastleBool(teamColor, 1, queenside || kingside);
+            game.setCastleBool(teamColor, 2, kingside);
+        }
+        if (enPassant >= 0) {
+            int push = side == WHITE ? -8 : 8;
+            game.setLastMove(new ChessMove(Move.toPosition(enPassant - push), Move.toPosition(enPassant + push), null));
+        }
+        return game;
+    }
+
+    public static ChessPiece.PieceType pieceType(int type) {
+        return switch (type) {
+            case PAWN -> ChessPiece.PieceType.PAWN;
+            case KNIGHT -> ChessPiece.PieceType.KNIGHT;
+            case BISHOP -> ChessPiece.PieceType.BISHOP;
+            case ROOK -> ChessPiece.PieceType.ROOK;
+            case QUEEN -> ChessPiece.PieceType.QUEEN;
+            case KING -> ChessPiece.PieceType.KING;
+            default -> null;
+        };
+    }
+
+    public static int typeOf(ChessPiece.PieceType type) {
+        return switch (type) {
+            case PAWN -> PAWN;
+            case KNIGHT -> KNIGHT;
+            case BISHOP -> BISHOP;
+            case ROOK -> ROOK;
+            case QUEEN -> QUEEN;
+            case KING -> KING;
+        };
+    }
+
+    public static Position fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("FEN needs at least 4 fields: " + fen);
+        }
+        Position position = new Position();
+        int rank = 7;
+        int file = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (Character.isDigit(c)) {
+                file += c - '0';
+            } else {
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c)) + 1;
+                if (type == 0 || rank < 0 || file > 7) {
+                    throw new IllegalArgumentException("Bad piece placement in FEN: " + fen);
+                }
+                position.put(rank * 8 + file, piece(Character.isUpperCase(c) ? WHITE : BLACK, type));
+                file++;
+            }
+        }
+        position.side = fields[1].equals("b") ? BLACK : WHITE;
+        for (char c : fields[2].toCharArray()) {
+            switch (c) {
+                case 'K' -> position.castling |= WHITE_KINGSIDE;
+                case 'Q' -> position.castling |= WHITE_QUEENSIDE;
+                case 'k' -> position.castling |= BLACK_KINGSIDE;
+                case 'q' -> position.castling |= BLACK_QUEENSIDE;
+                default -> {
+                }
+            }
+        }
+        if (!fields[3].equals("-")) {
+            position.enPassant = (fields[3].charAt(1) - '1') * 8 + fields[3].charAt(0) - 'a';
+        }
+        if (fields.length > 4) {
+            position.halfmoveClock = Integer.parseInt(fields[4]);
+        }
+        if (fields.length > 5) {
+            position.fullmoveNumber = Integer.parseInt(fields[5]);
+        }
+        position.finishSetup();
+        return position;
+    }
+
+    /**
+     * Empties the board and puts just the given pieces on it, with no castling rights, en passant
+     * square or history. Lets tablebase generation walk millions of positions with one object.
+     */
+    void setPieces(int sideToMove, int[] squares, int[] pieces) {
+        for (int square = 0; square < 64; square++) {
+            if (board[square] != EMPTY) {
+                remove(square);
+            }
+        }
+        kingSquare[WHITE] = -1;
+        kingSquare[BLACK] = -1;
+        key = 0;
+        side = sideToMove;
+        castling = 0;
+        enPassant = -1;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        historyPly = 0;
+        for (int i = 0; i < squares.length; i++) {
+            put(squares[i], pieces[i]);
+        }
+        finishSetup();
+    }
+
+    private void finishSetup() {
+        key ^= Zobrist.CASTLING[castling];
+        if (enPassant >= 0) {
+            key ^= Zobrist.EN_PASSANT_FILE[enPassant & 7];
+        }
+        if (side == BLACK) {
+            key ^= Zobrist.SIDE;
+        }
+    }
+
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = board[rank * 8 + file];
+                if (piece == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = " pnbrqk".charAt(typeOf(piece));
+                fen.append(colorOf(piece) == WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (rank > 0) {
+                fen.append('/');
+            }
+        }
+        fen.append(side == WHITE ? " w " : " b ");
+        if (castling == 0) {
+            fen.append('-');
+        } else {
+            if ((castling & WHITE_KINGSIDE) != 0) {
+                fen.append('K');
+            }
+            if ((castling & WHITE_QUEENSIDE) != 0) {
+                fen.append('Q');
+            }
+            if ((castling & BLACK_KINGSIDE) != 0) {
+                fen.append('k');
+            }
+            if ((castling & BLACK_QUEENSIDE) != 0) {
+                fen.append('q');
+            }
+        }
+        fen.append(' ').append(enPassant < 0 ? "-" : Move.squareName(enPassant));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * @return an independent copy, history included, for another search thread to work on
+     */
+    public Position copy() {
+        Position copy = new Position();
+        System.arraycopy(board, 0, copy.board, 0, 64);
+        System.arraycopy(kingSquare, 0, copy.kingSquare, 0, 2);
+        System.arraycopy(middlegame, 0, copy.middlegame, 0, 2);
+        System.arraycopy(endgame, 0, copy.endgame, 0, 2);
+        System.arraycopy(keyHistory, 0, copy.keyHistory, 0, historyPly);
+        System.arraycopy(undoState, 0, copy.undoState, 0, historyPly);
+        copy.phase = phase;
+        copy.pieceCount = pieceCount;
+        copy.side = side;
+        copy.castling = castling;
+        copy.enPassant = enPassant;
+        copy.halfmoveClock = halfmoveClock;
+        copy.fullmoveNumber = fullmoveNumber;
+        copy.key = key;
+        copy.historyPly = historyPly;
+        return copy;
+    }
+
+    private void put(int square, int piece) {
+        int color = colorOf(piece);
+        board[square] = piece;
+        key ^= Zobrist.piece(piece, square);
+        middlegame[color] += Evaluation.MIDDLEGAME[piece << 6 | square];
+        endgame[color] += Evaluation.ENDGAME[piece << 6 | square];
+        phase += Evaluation.PHASE_WEIGHTS[typeOf(piece)];
+        pieceCount++;
+        if (typeOf(piece) == KING) {
+            kingSquare[color] = square;
+        }
+    }
+
+    private void remove(int square) {
+        int piece = board[square];
+        int color = colorOf(piece);
+        board[square] = EMPTY;
+        key ^= Zobrist.piece(piece, square);
+        middlegame[color] -= Evaluation.MIDDLEGAME[piece << 6 | square];
+        endgame[color] -= Evaluation.ENDGAME[piece << 6 | square];
+        phase -= Evaluation.PHASE_WEIGHTS[typeOf(piece)];
+        pieceCount--;
+    }
+
+    /**
+     * Makes a pseudo-legal move from {@link #generateMoves}. If it would leave the mover's king in
+     * check it is taken straight back.
+     *
+     * @return True if the move was legal and is now on the board
+     */
+    public boolean makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int promotion = Move.promotion(move);
+        int piece = board[from];
+        int captureSquare = flag == Move.FLAG_EN_PASSANT ? to ^ 8 : to;
+        int captured = board[captureSquare];
+
+        keyHistory[historyPly] = key;
+        undoState[historyPly] = captured | castling << 4 | (enPassant + 1) << 8 | Math.min(halfmoveClock, 0xFFFF) << 16;
+        historyPly++;
+
+        if (enPassant >= 0) {
+            key ^= Zobrist.EN_PASSANT_FILE[enPassant & 7];
+        }
+        key ^= Zobrist.CASTLING[castling];
+        if (captured != EMPTY) {
+            remove(captureSquare);
+        }
+        remove(from);
+        put(to, promotion != 0 ? piece(side, promotion) : piece);
+        if (flag == Move.FLAG_CASTLE) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            int rook = board[rookFrom];
+            remove(rookFrom);
+            put(rookTo, rook);
+        }
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        key ^= Zobrist.CASTLING[castling];
+        enPassant = flag == Move.FLAG_DOUBLE_PUSH ? (from + to) >> 1 : -1;
+        if (enPassant >= 0) {
+            key ^= Zobrist.EN_PASSANT_FILE[enPassant & 7];
+        }
+        halfmoveClock = captured != EMPTY || typeOf(piece) == PAWN ? 0 : halfmoveClock + 1;
+        if (side == BLACK) {
+            fullmoveNumber++;
+        }
+        side ^= 1;
+        key ^= Zobrist.SIDE;
+
+        int king = kingSquare[side ^ 1];
+        if (king >= 0 && isAttacked(king, side)) {
+            unmakeMove(move);
+            return false;
+        }
+        return true;
+    }
+
+    public void unmakeMove(int move) {
+        side ^= 1;
+        if (side == BLACK) {
+            fullmoveNumber--;
+        }
+        historyPly--;
+        int state = undoState[historyPly];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+
+        int piece = board[to];
+        remove(to);
+        put(from, Move.promotion(move) != 0 ? piece(side, PAWN) : piece);
+        if (flag == Move.FLAG_CASTLE) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            int rook = board[rookTo];
+            remove(rookTo);
+            put(rookFrom, rook);
+        }
+        int captured = state & 0xF;
+        if (captured != EMPTY) {
+            put(flag == Move.FLAG_EN_PASSANT ? to ^ 8 : to, captured);
+        }
+        castling = state >> 4 & 0xF;
+        enPassant = (state >> 8 & 0x7F) - 1;
+        halfmoveClock = state >>> 16;
+        key = keyHistory[historyPly];
+    }
+
+    /**
+     * Passes the turn without moving, for null-move style searches. Only valid when not in check.
+     */
+    public void makeNullMove() {
+        keyHistory[historyPly] = key;
+        undoState[historyPly] = castling << 4 | (enPassant + 1) << 8 | Math.min(halfmoveClock, 0xFFFF) << 16;
+        historyPly++;
+        if (enPassant >= 0) {
+            key ^= Zobrist.EN_PASSANT_FILE[enPassant & 7];
+            enPassant = -1;
+        }
+        halfmoveClock++;
+        side ^= 1;
+        key ^= Zobrist.SIDE;
+    }
+
+    public void unmakeNullMove() {
+        side ^= 1;
+        historyPly--;
+        int state = undoState[historyPly];
+        enPassant = (state >> 8 & 0x7F) - 1;
+        halfmoveClock = state >>> 16;
+        key = keyHistory[historyPly];
+    }
+
+    /**
+     * @return True if a piece of the given color attacks the square
+     */
+    public boolean isAttacked(int square, int byColor) {
+        int pawn = piece(byColor, PAWN);
+        for (int from : PAWN_ATTACKS[byColor ^ 1][square]) {
+            if (board[from] == pawn) {
+                return true;
+            }
+        }
+        int knight = piece(byColor, KNIGHT);
+        for (int from : KNIGHT_TARGETS[square]) {
+            if (board[from] == knight) {
+                return true;
+            }
+        }
+        int king = piece(byColor, KING);
+        for (int from : KING_TARGETS[square]) {
+            if (board[from] == king) {
+                return true;
+            }
+        }
+        int queen = piece(byColor, QUEEN);
+        int rook = piece(byColor, ROOK);
+        int bishop = piece(byColor, BISHOP);
+        int[][] rays = RAYS[square];
+        for (int direction = 0; direction < 8; direction++) {
+            int slider = direction < 4 ? rook : bishop;
+            for (int from : rays[direction]) {
+                int piece = board[from];
+                if (piece != EMPTY) {
+                    if (piece == slider || piece == queen) {
+                        return true;
+                    }
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean inCheck() {
+        int king = kingSquare[side];
+        return king >= 0 && isAttacked(king, side ^ 1);
+    }
+
+    /**
+     * Writes the side to move's pseudo-legal moves into the array starting at {@code start}.
+     * Castling is only generated when it's fully legal; everything else still needs
+     * {@link #makeMove} to reject moves that leave the king in check.
+     *
+     * @param noisyOnly only captures and promotions, for quiescence search
+     * @return the index after the last move written
+     */
+    public int generateMoves(int[] moves, int start, boolean noisyOnly) {
+        int count = start;
+        int us = side;
+        for (int from = 0; from < 64; from++) {
+            int piece = board[from];
+            if (piece == EMPTY || colorOf(piece) != us) {
+                continue;
+            }
+            switch (typeOf(piece)) {
+                case PAWN -> count = generatePawnMoves(moves, count, from, noisyOnly);
+                case KNIGHT -> count = generateStepMoves(moves, count, from, KNIGHT_TARGETS[from], noisyOnly);
+                case BISHOP -> count = generateSlidingMoves(moves, count, from, 4, 8, noisyOnly);
+                case ROOK -> count = generateSlidingMoves(moves, count, from, 0, 4, noisyOnly);
+                case QUEEN -> count = generateSlidingMoves(moves, count, from, 0, 8, noisyOnly);
+                case KING -> {
+                    count = generateStepMoves(moves, count, from, KING_TARGETS[from], noisyOnly);
+                    if (!noisyOnly) {
+                        count = generateCastling(moves, count);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of legal moves written to the start of the array
+     */
+    public int generateLegalMoves(int[] moves) {
+        int end = generateMoves(moves, 0, false);
+        int legal = 0;
+        for (int i = 0; i < end; i++) {
+            if (makeMove(moves[i])) {
+                unmakeMove(moves[i]);
+                moves[legal++] = moves[i];
+            }
+        }
+        return legal;
+    }
+
+    private int generatePawnMoves(int[] moves, int count, int from, boolean noisyOnly) {
+        int forward = side == WHITE ? 8 : -8;
+        int rank = from >> 3;
+        boolean promoting = rank == (side == WHITE ? 6 : 1);
+        int to = from + forward;
+        if (board[to] == EMPTY) {
+            if (promoting) {
+                count = addPromotions(moves, count, from, to);
+            } else if (!noisyOnly) {
+                moves[count++] = Move.of(from, to);
+                if (rank == (side == WHITE ? 1 : 6) && board[to + forward] == EMPTY) {
+                    moves[count++] = Move.of(from, to + forward, 0, Move.FLAG_DOUBLE_PUSH);
+                }
+            }
+        }
+        for (int target : PAWN_ATTACKS[side][from]) {
+            int victim = board[target];
+            if (victim != EMPTY && colorOf(victim) != side) {
+                if (promoting) {
+                    count = addPromotions(moves, count, from, target);
+                } else {
+                    moves[count++] = Move.of(from, target);
+                }
+            } else if (target == enPassant) {
+                moves[count++] = Move.of(from, target, 0, Move.FLAG_EN_PASSANT);
+            }
+        }
+        return count;
+    }
+
+    private static int addPromotions(int[] moves, int count, int from, int to) {
+        moves[count++] = Move.of(from, to, QUEEN, Move.FLAG_NORMAL);
+        moves[count++] = Move.of(from, to, KNIGHT, Move.FLAG_NORMAL);
+        moves[count++] = Move.of(from, to, ROOK, Move.FLAG_NORMAL);
+        moves[count++] = Move.of(from, to, BISHOP, Move.FLAG_NORMAL);
+        return count;
+    }
+
+    private int generateStepMoves(int[] moves, int count, int from, int[] targets, boolean noisyOnly) {
+        for (int to : targets) {
+            int target = board[to];
+            if (target == EMPTY) {
+                if (!noisyOnly) {
+                    moves[count++] = Move.of(from, to);
+                }
+            } else if (colorOf(target) != side) {
+                moves[count++] = Move.of(from, to);
+            }
+        }
+        return count;
+    }
+
+    private int generateSlidingMoves(int[] moves, int count, int from, int firstDirection, int lastDirection,
+                                     boolean noisyOnly) {
+        int[][] rays = RAYS[from];
+        for (int direction = firstDirection; direction < lastDirection; direction++) {
+            for (int to : rays[direction]) {
+                int target = board[to];
+                if (target == EMPTY) {
+                    if (!noisyOnly) {
+                        moves[count++] = Move.of(from, to);
+                    }
+                    continue;
+                }
+                if (colorOf(target) != side) {
+                    moves[count++] = Move.of(from, to);
+                }
+                break;
+            }
+        }
+        return count;
+    }
+
+    private int generateCastling(int[] moves, int count) {
+        int home = side == WHITE ? 0 : 56;
+        int kingside = side == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = side == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        int them = side ^ 1;
+        if ((castling & (kingside | queenside)) == 0 || isAttacked(home + 4, them)) {
+            return count;
+        }
+        if ((castling & kingside) != 0 && board[home + 5] == EMPTY && board[home + 6] == EMPTY
+                && !isAttacked(home + 5, them) && !isAttacked(home + 6, them)) {
+            moves[count++] = Move.of(home + 4, home + 6, 0, Move.FLAG_CASTLE);
+        }
+        if ((castling & queenside) != 0 && board[home + 1] == EMPTY && board[home + 2] == EMPTY
+                && board[home + 3] == EMPTY && !isAttacked(home + 3, them) && !isAttacked(home + 2, them)) {
+            moves[count++] = Move.of(home + 4, home + 2, 0, Move.FLAG_CASTLE);
+        }
+        return count;
+    }
+
+    /**
+     * @return True if this position already came up with the same side to move since the last
+     * capture or pawn move
+     */
+    public boolean isRepetition() {
+        int oldest = Math.max(0, historyPly - halfmoveClock);
+        for (int i = historyPly - 2; i >= oldest; i -= 2) {
+            if (keyHistory[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the generated move that matches a {@link ChessMove}, so moves coming from the rest of
+     * the app can be played on this board.
+     *
+     * @return the move, or {@link Move#NONE} if it isn't legal here
+     */
+    public int findMove(ChessMove chessMove) {
+        int from = Move.toSquare(chessMove.getStartPosition());
+        int to = Move.toSquare(chessMove.getEndPosition());
+        int promotion = chessMove.getPromotionPiece() == null ? 0 : typeOf(chessMove.getPromotionPiece());
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (Move.from(moves[i]) == from && Move.to(moves[i]) == to && Move.promotion(moves[i]) == promotion) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    /**
+     * @return how many pieces are on the board, kings included
+     */
+    public int pieceCount() {
+        return pieceCount;
+    }
+
+    public int sideToMove() {
+        return side;
+    }
+
+    public int castlingRights() {
+        return castling;
+    }
+
+    public int enPassantSquare() {
+        return enPassant;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public long key() {
+        return key;
+    }
+
+    public int kingSquare(int color) {
+        return kingSquare[color];
+    }
+
+    public int middlegameScore(int color) {
+        return middlegame[color];
+    }
+
+    public int endgameScore(int color) {
+        return endgame[color];
+    }
+
+    public int phase() {
+        return phase;
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
@@ -0,0 +1,410 @@
+package chess.engine;
+
+/**
+ * Single-threaded negamax alpha-beta search with iterative deepening, principal variation
+ * search, check extensions and a captures-only quiescence search at the leaves.
+ * <p>
+ * Moves are tried best-first: the previous iteration's best move, then captures by most
+ * valuable victim / least valuable attacker, then two killer moves per ply, then quiet moves by
+ * history score. All move lists, scores and tables are allocated once per Search, so the search
+ * itself never allocates. A Search is not thread-safe; give each thread its own.
+ * <p>
+ * Results are kept in a {@link TranspositionTable}, which is what lets each iteration start from
+ * the last one's best moves and skip positions reached again by a different move order. The
+ * table may be shared with other Searches, including ones running on other threads.
+ */
+public final class Search {
+
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 128;
+
+    private static final int CHECK_INTERVAL = 2047;
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 24;
+    private static final int KILLER_SCORE = 1 << 22;
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private final int[] moves = new int[MAX_PLY * Position.MAX_MOVES];
+    private final int[] moveScores = new int[MAX_PLY * Position.MAX_MOVES];
+    private final int[] killers = new int[MAX_PLY * 2];
+    private final int[] history = new int[2 * 64 * 64];
+    private final int[] pvTable = new int[MAX_PLY * MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+
+    private final TranspositionTable table;
+    private final Tablebase tablebase;
+    private int helperIndex;
+
+    private Position position;
+    private long nodes;
+    private long deadline;
+    private long nodeLimit;
+    private boolean canStop;
+    private boolean stopped;
+    private volatile boolean stopRequested;
+
+    public Search() {
+        this(new TranspositionTable());
+    }
+
+    public Search(TranspositionTable table) {
+        this(table, null);
+    }
+
+    /**
+     * @param tablebase exact results to use for positions with few pieces, or null
+     */
+    public Search(TranspositionTable table, Tablebase tablebase) {
+        this(table, tablebase, 0);
+    }
+
+    Search(TranspositionTable table, Tablebase tablebase, int helperIndex) {
+        this.table = table;
+        this.tablebase = tablebase;
+        this.helperIndex = helperIndex;
+    }
+
+    /**
+     * Searches the position until one of the limits is hit and returns the best move from the
+     * deepest iteration that finished. The position is left exactly as it was given.
+     */
+    public SearchResult search(Position searchPosition, SearchLimits limits) {
+        table.newSearch();
+        stopRequested = false;
+        return iterate(searchPosition, limits, false);
+    }
+
+    /**
+     * Runs the iterative deepening loop without starting a new table generation or clearing stop
+     * requests, for searches that share a table with others working on the same root.
+     *
+     * @param helper a helper's result is never played, so it may be stopped before it finishes
+     *               its first iteration, and it staggers its iterations against the main thread's
+     */
+    SearchResult iterate(Position searchPosition, SearchLimits limits, boolean helper) {
+        long start = System.nanoTime();
+        position = searchPosition;
+        nodes = 0;
+        deadline = limits.timeMillis() > 0 ? start + limits.timeMillis() * 1_000_000 : 0;
+        nodeLimit = limits.maxNodes();
+        canStop = helper;
+        stopped = false;
+        java.util.Arrays.fill(killers, Move.NONE);
+        ageHistory();
+
+        int maxDepth = limits.maxDepth() > 0 ? Math.min(limits.maxDepth(), MAX_PLY - 1) : MAX_PLY - 1;
+        int bestMove = Move.NONE;
+        int bestScore = 0;
+        int completedDepth = 0;
+        int[] principalVariation = new int[0];
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            if (helper && depth < maxDepth && (depth + helperIndex) % 2 == 0) {
+                //Half the helpers skip every other depth, so they fill the table ahead of the
+                //main thread instead of repeating its exact work
+                continue;
+            }
+            int score = negamax(depth, -INFINITY, INFINITY, 0, bestMove);
+            if (stopped) {
+                break;
+            }
+            completedDepth = depth;
+            bestScore = score;
+            bestMove = pvLength[0] > 0 ? pvTable[0] : Move.NONE;
+            principalVariation = java.util.Arrays.copyOf(pvTable, pvLength[0]);
+            canStop = true;
+            if (bestMove == Move.NONE || Math.abs(score) >= MATE - depth) {
+                //No legal moves, or a forced mate that deeper searches can't improve on
+                break;
+            }
+            //The next iteration usually takes several times as long as this one, so don't start it late
+            if (deadline > 0 && System.nanoTime() - start > (deadline - start) / 2) {
+                break;
+            }
+        }
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, System.nanoTime() - start,
+                principalVariation);
+    }
+
+    /**
+     * Asks a running search to stop as soon as it can. Safe to call from another thread.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Clears an earlier stop request. Done before the search is handed to another thread, so a
+     * stop that arrives before the thread gets going still counts.
+     */
+    void resetStop() {
+        stopRequested = false;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply, int hashMove) {
+        pvLength[ply] = ply;
+        if (ply > 0 && (position.isRepetition() || position.halfmoveClock() >= 100)) {
+            return 0;
+        }
+        boolean inCheck = position.inCheck();
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiescence(alpha, beta, ply);
+        }
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(position);
+        }
+        countNode();
+        if (stopped) {
+            return 0;
+        }
+        if (tablebase != null && ply > 0 && position.pieceCount() <= Tablebase.MAX_PIECES) {
+            Tablebase.Result result = tablebase.probe(position);
+            //A win the fifty move rule would cut short is no better than a draw
+            if (result != null && (result.wdl() == Tablebase.Wdl.DRAW
+                    || result.dtz() + position.halfmoveClock() <= 100)) {
+                return result.score(ply);
+            }
+        }
+
+        long key = position.key();
+        long entry = table.probe(key);
+        if (entry != 0) {
+            if (hashMove == Move.NONE) {
+                hashMove = TranspositionTable.move(entry);
+            }
+            //Only cut off null-window nodes, so the principal variation comes out whole
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        int originalAlpha = alpha;
+
+        int start = ply * Position.MAX_MOVES;
+        int end = position.generateMoves(moves, start, false);
+        scoreMoves(start, end, ply, hashMove);
+        int side = position.sideToMove();
+        int legalMoves = 0;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = start; i < end; i++) {
+            int move = pickNext(i, end);
+            boolean quiet = isQuiet(move);
+            if (!position.makeMove(move)) {
+                continue;
+            }
+            legalMoves++;
+            int score;
+            if (legalMoves == 1) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1, Move.NONE);
+            } else {
+                //Prove the move is no better than the first one with a null window, and only
+                //search it properly if that fails
+                score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1, Move.NONE);
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1, Move.NONE);
+                }
+            }
+            position.unmakeMove(move);
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (score >= beta) {
+                        if (quiet) {
+                            rememberQuietCutoff(move, side, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        if (legalMoves == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                : alpha > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Mate scores count plies from the root, but the same position can be reached at any ply, so
+     * the table keeps them counted from the position itself instead.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        countNode();
+        if (stopped) {
+            return 0;
+        }
+        int standPat = Evaluation.evaluate(position);
+        if (standPat >= beta || ply >= MAX_PLY - 1) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+        int start = ply * Position.MAX_MOVES;
+        int end = position.generateMoves(moves, start, true);
+        scoreMoves(start, end, ply, Move.NONE);
+        int bestScore = standPat;
+        for (int i = start; i < end; i++) {
+            int move = pickNext(i, end);
+            if (!position.makeMove(move)) {
+                continue;
+            }
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            position.unmakeMove(move);
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private void countNode() {
+        nodes++;
+        if ((nodes & CHECK_INTERVAL) == 0 && canStop) {
+            if (stopRequested || (deadline > 0 && System.nanoTime() >= deadline)
+                    || (nodeLimit > 0 && nodes >= nodeLimit)) {
+                stopped = true;
+            }
+        }
+    }
+
+    private boolean isQuiet(int move) {
+        return position.pieceAt(Move.to(move)) == Position.EMPTY && Move.flag(move) != Move.FLAG_EN_PASSANT
+                && Move.promotion(move) == 0;
+    }
+
+    private void scoreMoves(int start, int end, int ply, int hashMove) {
+        int side = position.sideToMove();
+        int killer1 = killers[ply * 2];
+        int killer2 = killers[ply * 2 + 1];
+        for (int i = start; i < end; i++) {
+            int move = moves[i];
+            if (move == hashMove) {
+                moveScores[i] = HASH_MOVE_SCORE;
+                continue;
+            }
+            int victim = Position.typeOf(position.pieceAt(Move.to(move)));
+            if (Move.flag(move) == Move.FLAG_EN_PASSANT) {
+                victim = Position.PAWN;
+            }
+            int promotion = Move.promotion(move);
+            if (victim != Position.EMPTY || promotion != 0) {
+                int attacker = Position.typeOf(position.pieceAt(Move.from(move)));
+                moveScores[i] = CAPTURE_SCORE + Evaluation.PIECE_VALUES[victim] * 8
+                        + Evaluation.PIECE_VALUES[promotion] - attacker;
+            } else if (move == killer1) {
+                moveScores[i] = KILLER_SCORE;
+            } else if (move == killer2) {
+                moveScores[i] = KILLER_SCORE - 1;
+            } else {
+                moveScores[i] = history[side << 12 | Move.from(move) << 6 | Move.to(move)];
+            }
+        }
+    }
+
+    /**
+     * Moves the best scoring remaining move into slot i. Cutoffs usually come early, so this beats
+     * sorting the whole list up front.
+     */
+    private int pickNext(int i, int end) {
+        int best = i;
+        for (int j = i + 1; j < end; j++) {
+            if (moveScores[j] > moveScores[best]) {
+                best = j;
+            }
+        }
+        if (best != i) {
+            int move = moves[i];
+            moves[i] = moves[best];
+            moves[best] = move;
+            int score = moveScores[i];
+            moveScores[i] = moveScores[best];
+            moveScores[best] = score;
+        }
+        return moves[i];
+    }
+
+    private void rememberQuietCutoff(int move, int side, int depth, int ply) {
+        if (killers[ply * 2] != move) {
+            killers[ply * 2 + 1] = killers[ply * 2];
+            killers[ply * 2] = move;
+        }
+        int index = side << 12 | Move.from(move) << 6 | Move.to(move);
+        history[index] += depth * depth;
+        if (history[index] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    private void ageHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        int row = ply * MAX_PLY;
+        int childRow = (ply + 1) * MAX_PLY;
+        pvTable[row + ply] = move;
+        int childLength = ply + 1 < MAX_PLY ? pvLength[ply + 1] : ply + 1;
+        for (int next = ply + 1; next < childLength; next++) {
+            pvTable[row + next] = pvTable[childRow + next];
+        }
+        pvLength[ply] = Math.max(childLength, ply + 1);
+    }
+}
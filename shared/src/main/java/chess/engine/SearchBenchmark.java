@@ -0,0 +1,62 @@
+package chess.engine;
+
+/**
+ * Measures how much {@link ParallelSearch} speeds up a fixed-depth search as threads are added.
+ * Each thread count searches the same positions to the same depth with a freshly cleared table,
+ * and the total time is compared against the single-threaded run.
+ * <p>
+ * Usage: {@code SearchBenchmark [depth] [threads,threads,...] [tableMegabytes]}, by default
+ * depth 8 at 1, 2, 4, 8 and 16 threads with a 64MB table.
+ */
+public final class SearchBenchmark {
+
+    static final String[] SUITE = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP1B1PPP/R2QKB1R w KQ - 0 8",
+            "8/8/4k3/3p4/3P4/4K3/8/8 w - - 0 1"
+    };
+
+    private SearchBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        String[] threadCounts = (args.length > 1 ? args[1] : "1,2,4,8,16").split(",");
+        int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        System.out.printf("Depth %d, %d positions, %dMB table, %d cores%n", depth, SUITE.length, megabytes,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %10s %14s %12s %8s%n", "threads", "time (ms)", "nodes", "nodes/sec", "speedup");
+        TranspositionTable table = new TranspositionTable(megabytes, TranspositionTable.Replacement.DEPTH_PREFERRED);
+        //Let the JIT compile the search first, or the first thread count looks slower than it is
+        try (Engine engine = new Engine(table, 1)) {
+            for (String fen : SUITE) {
+                engine.search(Position.fromFen(fen), SearchLimits.depth(Math.max(1, depth - 1)));
+            }
+        }
+        long baseline = 0;
+        for (String count : threadCounts) {
+            int threads = Integer.parseInt(count.trim());
+            long elapsed = 0;
+            long nodes = 0;
+            try (Engine engine = new Engine(table, threads)) {
+                for (String fen : SUITE) {
+                    table.clear();
+                    SearchResult result = engine.search(Position.fromFen(fen), SearchLimits.depth(depth));
+                    elapsed += result.elapsedNanos();
+                    nodes += result.nodes();
+                }
+            }
+            if (baseline == 0) {
+                baseline = elapsed;
+            }
+            System.out.printf("%8d %10d %14d %12d %8.2f%n", threads, elapsed / 1_000_000, nodes,
+                    nodes * 1_000_000_000L / Math.max(1, elapsed), (double) baseline / elapsed);
+        }
+    }
+}
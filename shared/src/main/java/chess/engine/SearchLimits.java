@@ -0,0 +1,20 @@
+package chess.engine;
+
+/**
+ * When a search should stop. Zero means no limit for that field; the search always finishes at
+ * least depth 1 so there is a move to play.
+ *
+ * @param maxDepth   deepest iteration to start
+ * @param timeMillis wall clock budget for the whole search
+ * @param maxNodes   node budget, mostly useful for repeatable tests and benchmarks
+ */
+public record SearchLimits(int maxDepth, long timeMillis, long maxNodes) {
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(0, timeMillis, 0);
+    }
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, 0, 0);
+    }
+}
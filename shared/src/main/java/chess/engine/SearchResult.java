@@ -0,0 +1,48 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+/**
+ * @param move               best move found, or {@link Move#NONE} if the side to move has no legal moves
+ * @param score              centipawns from the side to move's point of view, or a mate score
+ * @param depth              last iteration that finished
+ * @param nodes              positions searched, quiescence included
+ * @param elapsedNanos       wall clock time the search took
+ * @param principalVariation the expected line starting with {@code move}
+ */
+public record SearchResult(int move, int score, int depth, long nodes, long elapsedNanos, int[] principalVariation) {
+
+    public ChessMove chessMove() {
+        return move == Move.NONE ? null : Move.toChessMove(move);
+    }
+
+    public long nodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    /**
+     * @return moves until mate, negative when the side to move is the one getting mated
+     */
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies / 2);
+    }
+
+    public String principalVariationText() {
+        StringBuilder text = new StringBuilder();
+        for (int pvMove : principalVariation) {
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(Move.toString(pvMove));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,369 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Endgame tablebase: exact win/draw/loss results and distance to zeroing (DTZ, the plies until
+ * the next capture or pawn move in best play) for every position with few enough pieces. Results
+ * come from files written by {@link TablebaseGenerator}, one per material signature such as
+ * {@code KQvK.ctb}, read through memory mappings so nothing is loaded up front.
+ * <p>
+ * Files are mapped a region at a time on first use. The most recently used regions are kept in
+ * an LRU, so a server probing many endings holds a bounded amount of address space; evicted
+ * regions are unmapped by the garbage collector. The files found when the tablebase is opened
+ * are indexed by material key, which is cheap to work out from a position, so positions the
+ * tablebase can't answer are turned away without touching a file.
+ * <p>
+ * File layout, big-endian: a 16 byte header (magic, version, piece count, unused), then one byte
+ * per position. The index of a position is the side to move followed by the squares of the white
+ * king, the black king and the other pieces (white's first, higher piece types first), as base 64
+ * digits. A byte of 0 is a draw, 1-127 a win for the side to move with that DTZ, 128-254 a loss
+ * with DTZ 128 less, and 255 a position that can't occur.
+ * <p>
+ * Castling rights are outside the tables, so positions that still have them aren't probed.
+ * Safe to use from any number of threads.
+ */
+public final class Tablebase {
+
+    public static final String EXTENSION = ".ctb";
+    public static final int MAX_PIECES = 3;
+    public static final int DEFAULT_MAPPED_REGIONS = 256;
+    //Scores for tablebase wins sit just below the mate scores, so a real mate is still preferred
+    public static final int WIN_SCORE = Search.MATE - 2 * Search.MAX_PLY;
+
+    static final int MAGIC = 0x43544231;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int REGION_BYTES = 1 << 16;
+    static final int INVALID = 255;
+    static final int LOSS_OFFSET = 128;
+    //Non-king pieces are counted in four bits each, by colour and type
+    private static final String PIECE_LETTERS = " PNBRQ";
+
+    public enum Wdl {
+        LOSS,
+        DRAW,
+        WIN
+    }
+
+    /**
+     * @param wdl result for the side to move with best play
+     * @param dtz plies to the next capture or pawn move on the way to that result; 0 when the
+     *            side to move is checkmated
+     */
+    public record Result(Wdl wdl, int dtz) {
+
+        /**
+         * @return a search score for the side to move, with nearer wins scoring higher
+         */
+        public int score(int ply) {
+            return switch (wdl) {
+                case WIN -> WIN_SCORE - ply - dtz;
+                case LOSS -> -WIN_SCORE + ply + dtz;
+                case DRAW -> 0;
+            };
+        }
+    }
+
+    private record TableFile(int id, Path path, int pieces, long size) {
+    }
+
+    private record Match(TableFile file, boolean flip) {
+    }
+
+    private static final Result KINGS_ONLY = new Result(Wdl.DRAW, 0);
+
+    private final Map<Long, Match> tables = new HashMap<>();
+    private final int maxRegions;
+    private final LinkedHashMap<Long, ByteBuffer> regions;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder regionsMapped = new LongAdder();
+
+    private Tablebase(int maxRegions) {
+        this.maxRegions = maxRegions;
+        regions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+                return size() > Tablebase.this.maxRegions;
+            }
+        };
+    }
+
+    public static Tablebase open(Path directory) throws IOException {
+        return open(directory, DEFAULT_MAPPED_REGIONS);
+    }
+
+    /**
+     * Indexes every table file in a directory. No table is mapped until a position needs it.
+     *
+     * @param maxRegions most {@value #REGION_BYTES} byte regions kept mapped at once
+     */
+    public static Tablebase open(Path directory, int maxRegions) throws IOException {
+        Tablebase tablebase = new Tablebase(maxRegions);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                long materialKey = parseSignature(name.substring(0, name.length() - EXTENSION.length()));
+                TableFile file = tablebase.readHeader(path, tablebase.tables.size());
+                tablebase.tables.put(materialKey, new Match(file, false));
+                tablebase.tables.putIfAbsent(flipKey(materialKey), new Match(file, true));
+            }
+        }
+        return tablebase;
+    }
+
+    private TableFile readHeader(Path path, int id) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a tablebase file: " + path);
+            }
+            int pieces = header.getInt(8);
+            if (channel.size() != HEADER_BYTES + tableSize(pieces)) {
+                throw new IOException("Tablebase file is truncated: " + path);
+            }
+            return new TableFile(id, path, pieces, channel.size());
+        }
+    }
+
+    /**
+     * @return the exact result for the side to move, or null if no table covers the position
+     */
+    public Result probe(Position position) {
+        if (position.pieceCount() > MAX_PIECES || position.castlingRights() != 0) {
+            return null;
+        }
+        if (position.pieceCount() == 2) {
+            return KINGS_ONLY;
+        }
+        probes.increment();
+        Match match = tables.get(materialKey(position));
+        if (match == null) {
+            return null;
+        }
+        int value = read(match.file(), index(position, match.flip())) & 0xFF;
+        if (value == INVALID) {
+            return null;
+        }
+        hits.increment();
+        return decode(value);
+    }
+
+    public Result probe(ChessGame game) {
+        return probe(Position.fromGame(game));
+    }
+
+    public boolean covers(Position position) {
+        return position.pieceCount() <= MAX_PIECES && position.castlingRights() == 0
+                && (position.pieceCount() == 2 || tables.containsKey(materialKey(position)));
+    }
+
+    /**
+     * Picks the move that keeps the best result: the quickest way to the next capture or pawn
+     * move when winning, any drawing move when drawn, and the longest resistance when lost.
+     *
+     * @return the move, or {@link Move#NONE} if the position isn't covered or has no legal moves
+     */
+    public int bestMove(Position position) {
+        if (!covers(position)) {
+            return Move.NONE;
+        }
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateLegalMoves(moves);
+        int bestMove = Move.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            boolean zeroing = position.pieceAt(Move.to(move)) != Position.EMPTY
+                    || Position.typeOf(position.pieceAt(Move.from(move))) == Position.PAWN;
+            position.makeMove(move);
+            Result reply = probe(position);
+            position.unmakeMove(move);
+            if (reply == null) {
+                continue;
+            }
+            int plies = zeroing ? 1 : reply.dtz() + 1;
+            //The reply is from the opponent's side: their loss is our win
+            int rank = switch (reply.wdl()) {
+                case LOSS -> 1000 - plies;
+                case DRAW -> 0;
+                case WIN -> -1000 + plies;
+            };
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    private byte read(TableFile file, int index) {
+        long offset = HEADER_BYTES + (long) index;
+        int region = (int) (offset / REGION_BYTES);
+        long regionKey = (long) file.id() << 32 | region;
+        ByteBuffer buffer;
+        synchronized (regions) {
+            buffer = regions.get(regionKey);
+            if (buffer == null) {
+                buffer = map(file, region);
+                regions.put(regionKey, buffer);
+            }
+        }
+        return buffer.get((int) (offset - (long) region * REGION_BYTES));
+    }
+
+    private MappedByteBuffer map(TableFile file, int region) {
+        long start = (long) region * REGION_BYTES;
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            regionsMapped.increment();
+            //The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_BYTES, file.size() - start));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to map tablebase file " + file.path(), ex);
+        }
+    }
+
+    static Result decode(int value) {
+        if (value == 0) {
+            return new Result(Wdl.DRAW, 0);
+        }
+        if (value < LOSS_OFFSET) {
+            return new Result(Wdl.WIN, value);
+        }
+        return new Result(Wdl.LOSS, value - LOSS_OFFSET);
+    }
+
+    static long tableSize(int pieces) {
+        return 2L << 6 * pieces;
+    }
+
+    /**
+     * @return the position's non-king pieces counted by colour and type, four bits each
+     */
+    static long materialKey(Position position) {
+        long key = 0;
+        for (int square = 0; square < 64; square++) {
+            int piece = position.pieceAt(square);
+            if (piece != Position.EMPTY && Position.typeOf(piece) != Position.KING) {
+                key += 1L << 4 * piece;
+            }
+        }
+        return key;
+    }
+
+    static long flipKey(long materialKey) {
+        return (materialKey & 0xFFFF_FFFFL) << 32 | materialKey >>> 32;
+    }
+
+    /**
+     * @param signature pieces of each side, kings first, such as {@code KRPvKR}
+     */
+    static long parseSignature(String signature) {
+        String[] sides = signature.split("v");
+        if (sides.length != 2 || !sides[0].startsWith("K") || !sides[1].startsWith("K")) {
+            throw new IllegalArgumentException("Bad material signature: " + signature);
+        }
+        long key = 0;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            for (char letter : sides[color].substring(1).toCharArray()) {
+                int type = PIECE_LETTERS.indexOf(letter);
+                if (type < Position.PAWN) {
+                    throw new IllegalArgumentException("Bad material signature: " + signature);
+                }
+                key += 1L << 4 * Position.piece(color, type);
+            }
+        }
+        return key;
+    }
+
+    static String signature(long materialKey) {
+        StringBuilder signature = new StringBuilder();
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            signature.append(color == Position.WHITE ? "K" : "vK");
+            for (int type = Position.QUEEN; type >= Position.PAWN; type--) {
+                long count = materialKey >>> 4 * Position.piece(color, type) & 0xF;
+                signature.append(String.valueOf(PIECE_LETTERS.charAt(type)).repeat((int) count));
+            }
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @param flip index the position with colours swapped and the board mirrored, for a table
+     *             stored from the other side's point of view
+     */
+    static int index(Position position, boolean flip) {
+        int flipColor = flip ? 1 : 0;
+        int flipSquare = flip ? 56 : 0;
+        int index = position.sideToMove() ^ flipColor;
+        index = index << 6 | position.kingSquare(flipColor) ^ flipSquare;
+        index = index << 6 | position.kingSquare(flipColor ^ 1) ^ flipSquare;
+        //Sort the other pieces by colour, then higher types first, then square
+        int[] order = new int[MAX_PIECES - 2];
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            int piece = position.pieceAt(square ^ flipSquare);
+            if (piece != Position.EMPTY && Position.typeOf(piece) != Position.KING) {
+                int color = Position.colorOf(piece) ^ flipColor;
+                order[count++] = (color << 3 | 7 - Position.typeOf(piece)) << 6 | square;
+            }
+        }
+        Arrays.sort(order, 0, count);
+        for (int i = 0; i < count; i++) {
+            index = index << 6 | order[i] & 63;
+        }
+        return index;
+    }
+
+    /**
+     * @return the pieces a table's index lists, in index order after the side to move
+     */
+    static List<Integer> indexPieces(long materialKey) {
+        List<Integer> pieces = new ArrayList<>();
+        pieces.add(Position.piece(Position.WHITE, Position.KING));
+        pieces.add(Position.piece(Position.BLACK, Position.KING));
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            for (int type = Position.QUEEN; type >= Position.PAWN; type--) {
+                int piece = Position.piece(color, type);
+                for (long count = materialKey >>> 4 * piece & 0xF; count > 0; count--) {
+                    pieces.add(piece);
+                }
+            }
+        }
+        return pieces;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getRegionsMapped() {
+        return regionsMapped.sum();
+    }
+
+    public int getTableCount() {
+        return (int) tables.values().stream().map(Match::file).distinct().count();
+    }
+}
@@ -0,0 +1,294 @@
+package chess.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the files {@link Tablebase} reads by retrograde analysis. Every position of a table is
+ * set up once to record its moves; from then on the work is repeated passes over plain arrays.
+ * Checkmates are losses at DTZ 0, and each pass finds the wins one ply further from a loss and
+ * the losses whose every move now leads to a known win. Whatever is left when a pass finds
+ * nothing new is a draw. Moves that capture or promote lead into other tables, which are built
+ * or loaded first.
+ * <p>
+ * Usage: {@code TablebaseGenerator <directory> [signature...]}, by default every three piece
+ * ending. Tables already in the directory are kept.
+ */
+public final class TablebaseGenerator {
+
+    public static final String[] DEFAULT_SIGNATURES = {"KQvK", "KRvK", "KBvK", "KNvK", "KPvK"};
+
+    private static final byte UNKNOWN = 0;
+    private static final byte WIN = 1;
+    private static final byte LOSS = 2;
+    private static final byte DRAW = 3;
+    private static final byte INVALID = 4;
+    //Successors are stored as the child's index, flagged when the move captures or moves a pawn
+    private static final int ZEROING = 1 << 30;
+    private static final int INDEX_MASK = ZEROING - 1;
+    //Summary of moves into other tables: one wins at once, or one reaches a draw
+    private static final byte LEAVES_TO_LOSS = 1;
+    private static final byte LEAVES_TO_DRAW = 2;
+
+    private final Path directory;
+    private final Map<Long, byte[]> finished = new HashMap<>();
+
+    private TablebaseGenerator(Path directory) {
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: TablebaseGenerator <directory> [signature...]");
+            return;
+        }
+        String[] signatures = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : DEFAULT_SIGNATURES;
+        generate(Path.of(args[0]), signatures);
+    }
+
+    /**
+     * Writes the tables for the given signatures, and any they depend on, that the directory
+     * doesn't have yet.
+     *
+     * @return the signatures of the tables written
+     */
+    public static List<String> generate(Path directory, String... signatures) throws IOException {
+        Files.createDirectories(directory);
+        Set<Long> ordered = new LinkedHashSet<>();
+        for (String signature : signatures) {
+            addWithDependencies(Tablebase.parseSignature(signature), ordered);
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+        List<String> written = new ArrayList<>();
+        for (long materialKey : ordered) {
+            String signature = Tablebase.signature(materialKey);
+            Path file = directory.resolve(signature + Tablebase.EXTENSION);
+            if (Files.exists(file)) {
+                byte[] bytes = Files.readAllBytes(file);
+                generator.finished.put(materialKey, Arrays.copyOfRange(bytes, Tablebase.HEADER_BYTES, bytes.length));
+                continue;
+            }
+            long start = System.nanoTime();
+            byte[] table = generator.build(materialKey);
+            generator.write(file, Tablebase.indexPieces(materialKey).size(), table);
+            generator.finished.put(materialKey, table);
+            written.add(signature);
+            System.out.printf("%s: %d positions in %dms%n", signature, table.length, (System.nanoTime() - start) / 1_000_000);
+        }
+        return written;
+    }
+
+    /**
+     * Adds the tables a capture or promotion can lead to before the table itself
+     */
+    private static void addWithDependencies(long materialKey, Set<Long> ordered) {
+        int pieces = Tablebase.indexPieces(materialKey).size();
+        if (pieces > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException("Tables over " + Tablebase.MAX_PIECES + " pieces aren't supported: "
+                    + Tablebase.signature(materialKey));
+        }
+        if (ordered.contains(materialKey) || ordered.contains(Tablebase.flipKey(materialKey)) || pieces == 2) {
+            return;
+        }
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            for (int type = Position.PAWN; type <= Position.QUEEN; type++) {
+                long one = 1L << 4 * Position.piece(color, type);
+                if ((materialKey >>> 4 * Position.piece(color, type) & 0xF) == 0) {
+                    continue;
+                }
+                addWithDependencies(materialKey - one, ordered);
+                if (type == Position.PAWN) {
+                    for (int promotion = Position.KNIGHT; promotion <= Position.QUEEN; promotion++) {
+                        addWithDependencies(materialKey - one + (1L << 4 * Position.piece(color, promotion)), ordered);
+                    }
+                }
+            }
+        }
+        ordered.add(materialKey);
+    }
+
+    private byte[] build(long materialKey) {
+        List<Integer> pieceList = Tablebase.indexPieces(materialKey);
+        int[] pieces = pieceList.stream().mapToInt(Integer::intValue).toArray();
+        int size = (int) Tablebase.tableSize(pieces.length);
+        byte[] status = new byte[size];
+        short[] dtz = new short[size];
+        byte[] leaves = new byte[size];
+        int[] successorStart = new int[size + 1];
+        int[] successors = new int[size * 8];
+        int successorCount = 0;
+
+        Position position = Position.startPosition();
+        int[] squares = new int[pieces.length];
+        int[] moves = new int[Position.MAX_MOVES];
+        for (int index = 0; index < size; index++) {
+            successorStart[index] = successorCount;
+            int side = decode(index, squares);
+            if (!isValid(squares, pieces)) {
+                status[index] = INVALID;
+                continue;
+            }
+            position.setPieces(side, squares, pieces);
+            if (position.isAttacked(position.kingSquare(side ^ 1), side)) {
+                status[index] = INVALID;
+                continue;
+            }
+            int count = position.generateLegalMoves(moves);
+            if (count == 0) {
+                status[index] = position.inCheck() ? LOSS : DRAW;
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                boolean zeroing = position.pieceAt(Move.to(move)) != Position.EMPTY
+                        || Position.typeOf(position.pieceAt(Move.from(move))) == Position.PAWN;
+                position.makeMove(move);
+                //Only captures and promotions change the material
+                long childKey = zeroing ? Tablebase.materialKey(position) : materialKey;
+                if (childKey == materialKey) {
+                    if (successorCount == successors.length) {
+                        successors = Arrays.copyOf(successors, successors.length * 2);
+                    }
+                    successors[successorCount++] = Tablebase.index(position, false) | (zeroing ? ZEROING : 0);
+                } else {
+                    leaves[index] |= leave(position, childKey);
+                }
+                position.unmakeMove(move);
+            }
+        }
+        successorStart[size] = successorCount;
+
+        //Each pass only reads what earlier passes decided, so every result gets its shortest DTZ
+        byte[] previous = status.clone();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int index = 0; index < size; index++) {
+                if (status[index] != UNKNOWN) {
+                    continue;
+                }
+                int bestWin = (leaves[index] & LEAVES_TO_LOSS) != 0 ? 1 : Integer.MAX_VALUE;
+                boolean allLose = leaves[index] == 0;
+                int longestLoss = 1;
+                for (int i = successorStart[index]; i < successorStart[index + 1]; i++) {
+                    int child = successors[i] & INDEX_MASK;
+                    int plies = (successors[i] & ZEROING) != 0 ? 1 : dtz[child] + 1;
+                    if (previous[child] == LOSS) {
+                        bestWin = Math.min(bestWin, plies);
+                    }
+                    if (previous[child] == WIN) {
+                        longestLoss = Math.max(longestLoss, plies);
+                    } else {
+                        allLose = false;
+                    }
+                }
+                if (bestWin != Integer.MAX_VALUE) {
+                    status[index] = WIN;
+                    dtz[index] = (short) bestWin;
+                    changed = true;
+                } else if (allLose) {
+                    status[index] = LOSS;
+                    dtz[index] = (short) longestLoss;
+                    changed = true;
+                }
+            }
+            System.arraycopy(status, 0, previous, 0, size);
+        }
+
+        byte[] table = new byte[size];
+        for (int index = 0; index < size; index++) {
+            table[index] = (byte) switch (status[index]) {
+                case WIN -> checkDtz(dtz[index]);
+                case LOSS -> Tablebase.LOSS_OFFSET + checkDtz(dtz[index]);
+                case INVALID -> Tablebase.INVALID;
+                default -> 0;
+            };
+        }
+        return table;
+    }
+
+    /**
+     * @return the square of each piece, in the order of the table's index, and the side to move
+     */
+    private static int decode(int index, int[] squares) {
+        for (int i = squares.length - 1; i >= 0; i--) {
+            squares[i] = index & 63;
+            index >>>= 6;
+        }
+        return index;
+    }
+
+    private static boolean isValid(int[] squares, int[] pieces) {
+        for (int i = 0; i < squares.length; i++) {
+            int rank = squares[i] >> 3;
+            if (Position.typeOf(pieces[i]) == Position.PAWN && (rank == 0 || rank == 7)) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (squares[i] == squares[j]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up a move into another table, which was built earlier
+     */
+    private byte leave(Position child, long childKey) {
+        if (child.pieceCount() == 2) {
+            return LEAVES_TO_DRAW;
+        }
+        byte[] table = finished.get(childKey);
+        boolean flip = false;
+        if (table == null) {
+            table = finished.get(Tablebase.flipKey(childKey));
+            flip = true;
+        }
+        if (table == null) {
+            throw new IllegalStateException("Missing table " + Tablebase.signature(childKey));
+        }
+        Tablebase.Result result = Tablebase.decode(table[Tablebase.index(child, flip)] & 0xFF);
+        return switch (result.wdl()) {
+            case LOSS -> LEAVES_TO_LOSS;
+            case DRAW -> LEAVES_TO_DRAW;
+            //Moving into a lost position blocks nothing; any other move can still be better
+            case WIN -> 0;
+        };
+    }
+
+    private static int checkDtz(int dtz) {
+        if (dtz >= Tablebase.LOSS_OFFSET - 1) {
+            throw new IllegalStateException("DTZ " + dtz + " doesn't fit in a table byte");
+        }
+        return dtz;
+    }
+
+    private void write(Path file, int pieces, byte[] table) throws IOException {
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(Tablebase.MAGIC);
+                out.writeInt(Tablebase.VERSION);
+                out.writeInt(pieces);
+                out.writeInt(0);
+                out.write(table);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
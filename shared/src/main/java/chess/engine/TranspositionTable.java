@@ -0,0 +1,218 @@
+package chess.engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size hash table of search results, backed by a single long[] so it costs no objects per
+ * entry and can be shared by every search thread without locks.
+ * <p>
+ * Each entry is two longs: the data (move, score, depth, bound and search generation packed
+ * together) and the position key XORed with that data. A reader only trusts an entry if XORing
+ * the two back together gives its own key, so a write torn by another thread, or a slot that
+ * now belongs to a different position, just reads as a miss. Entries sit in buckets of two and
+ * the {@link Replacement} policy picks which one a new result overwrites.
+ */
+public final class TranspositionTable {
+
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_UPPER = 3;
+
+    public static final int DEFAULT_MEGABYTES = 16;
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_ENTRIES = 2;
+    private static final int BUCKET_LONGS = ENTRY_LONGS * BUCKET_ENTRIES;
+
+    public enum Replacement {
+        /**
+         * Always store the newest result, over the shallower entry of the bucket
+         */
+        ALWAYS,
+        /**
+         * Keep deeper results from the current search; a new result only replaces an entry that
+         * is empty, left over from an earlier search, or no deeper than itself
+         */
+        DEPTH_PREFERRED
+    }
+
+    private final long[] table;
+    private final int bucketMask;
+    private final Replacement replacement;
+    private volatile int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder overwrites = new LongAdder();
+
+    public TranspositionTable() {
+        this(DEFAULT_MEGABYTES, Replacement.DEPTH_PREFERRED);
+    }
+
+    /**
+     * @param megabytes memory to use, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(int megabytes, Replacement replacement) {
+        long bytes = Math.max(1, megabytes) * 1024L * 1024L;
+        long buckets = Long.highestOneBit(bytes / (BUCKET_LONGS * Long.BYTES));
+        if (buckets * BUCKET_LONGS > Integer.MAX_VALUE - 8) {
+            buckets = Integer.highestOneBit((Integer.MAX_VALUE - 8) / BUCKET_LONGS);
+        }
+        table = new long[(int) buckets * BUCKET_LONGS];
+        bucketMask = (int) buckets - 1;
+        this.replacement = replacement;
+    }
+
+    /**
+     * @return the packed entry for the position, or 0 if the table has nothing for it
+     */
+    public long probe(long key) {
+        probes.increment();
+        int bucket = bucketIndex(key);
+        boolean occupied = false;
+        for (int slot = bucket; slot < bucket + BUCKET_LONGS; slot += ENTRY_LONGS) {
+            long data = table[slot + 1];
+            if (data == 0) {
+                continue;
+            }
+            if ((table[slot] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+            occupied = true;
+        }
+        if (occupied) {
+            collisions.increment();
+        }
+        return 0;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        long data = pack(move, score, depth, bound, generation);
+        int bucket = bucketIndex(key);
+        int target = -1;
+        int shallowest = -1;
+        int shallowestDepth = Integer.MAX_VALUE;
+        for (int slot = bucket; slot < bucket + BUCKET_LONGS; slot += ENTRY_LONGS) {
+            long stored = table[slot + 1];
+            if (stored == 0 || (table[slot] ^ stored) == key) {
+                target = slot;
+                break;
+            }
+            //Entries from earlier searches count as shallower than anything from this one
+            int storedDepth = generation(stored) == generation ? depth(stored) : -1;
+            if (storedDepth < shallowestDepth) {
+                shallowestDepth = storedDepth;
+                shallowest = slot;
+            }
+        }
+        if (target < 0) {
+            if (replacement == Replacement.DEPTH_PREFERRED && shallowestDepth > depth) {
+                return;
+            }
+            target = shallowest;
+            overwrites.increment();
+        }
+        stores.increment();
+        table[target] = key ^ data;
+        table[target + 1] = data;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier ones become the first to go
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0x3F;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0);
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+        stores.reset();
+        overwrites.reset();
+    }
+
+    private int bucketIndex(long key) {
+        //The low bits pick the bucket; the XOR check compares the full key
+        return ((int) (key ^ key >>> 32) & bucketMask) * BUCKET_LONGS;
+    }
+
+    //Data layout: move in bits 0-16, score + 32768 in 17-32, depth in 33-40, bound in 41-42, generation in 43-48
+    private static long pack(int move, int score, int depth, int bound, int generation) {
+        return (move & 0x1FFFFL) | (long) (score + 32768 & 0xFFFF) << 17 | (long) (depth & 0xFF) << 33
+                | (long) bound << 41 | (long) generation << 43;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x1FFFF);
+    }
+
+    public static int score(long data) {
+        return (int) (data >>> 17 & 0xFFFF) - 32768;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 33 & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 41 & 0x3);
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> 43 & 0x3F);
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return probes that found their bucket holding only other positions
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return stores that pushed out a different position's entry
+     */
+    public long getOverwrites() {
+        return overwrites.sum();
+    }
+
+    public int getEntryCount() {
+        return table.length / ENTRY_LONGS;
+    }
+
+    public Replacement getReplacement() {
+        return replacement;
+    }
+
+    /**
+     * @return roughly how full the table is with entries from the current search, in permille
+     */
+    public int hashfull() {
+        int sampled = Math.min(1000, getEntryCount());
+        int used = 0;
+        for (int entry = 0; entry < sampled; entry++) {
+            long data = table[entry * ENTRY_LONGS + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+}
@@ -0,0 +1,38 @@
+package chess.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for hashing positions. A position's key is the XOR of the keys for every piece on
+ * its square, the side to move, the castling rights and the en passant file, so making a move
+ * only has to XOR in what changed. The seed is fixed so keys are the same on every run, which
+ * lets stored hashes (opening books, saved analysis) stay valid across restarts.
+ */
+public final class Zobrist {
+
+    static final long[] PIECE_SQUARE = new long[16 * 64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EN_PASSANT_FILE = new long[8];
+    static final long SIDE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0FFEEL);
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            PIECE_SQUARE[i] = random.nextLong();
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    static long piece(int piece, int square) {
+        return PIECE_SQUARE[piece << 6 | square];
+    }
+}
@@ -27,6 +27,14 @@ public class CastleCalculator {
         }
     }
 
+    public Boolean getCastleBool(ChessGame.TeamColor color, int place) {
+        if (color == ChessGame.TeamColor.WHITE) {
+            return whiteCastling[place];
+        } else {
+            return blackCastling[place];
+        }
+    }
+
     public void checkCastling(ChessBoard board, ChessPosition startPos, Collection<ChessMove> validMoves) {
         ChessGame.TeamColor color = board.getPiece(startPos).getTeamColor();
         Boolean[] castling;
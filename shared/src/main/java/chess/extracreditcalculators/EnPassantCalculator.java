@@ -17,6 +17,10 @@ public class EnPassantCalculator {
         this.lastMove = lastMove;
     }
 
+    public ChessMove getLastMove() {
+        return lastMove;
+    }
+
     public void checkEnPassant(ChessBoard board, ChessPosition startPosition, Collection<ChessMove> validMoves) {
         if (lastMove == null) {
             return;
@@ -0,0 +1,36 @@
+package chess.notation;
+
+import chess.ChessGame;
+import chess.engine.Position;
+
+/**
+ * Forsyth-Edwards Notation for a single position, built on the engine's {@link Position}
+ */
+public final class Fen {
+
+    private Fen() {
+    }
+
+    /**
+     * The game doesn't keep a halfmove clock, so that field is always 0. The move number comes
+     * from the game's history.
+     */
+    public static String encode(ChessGame game) {
+        String fen = Position.fromGame(game).toFen();
+        int fullmoveNumber = game.getPly() / 2 + 1;
+        return fen.substring(0, fen.lastIndexOf(' ', fen.lastIndexOf(' ') - 1)) + " 0 " + fullmoveNumber;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the FEN can't be read
+     */
+    public static ChessGame decode(String fen) {
+        try {
+            return Position.fromFen(fen).toGame();
+        } catch (IllegalArgumentException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Bad FEN: " + fen, ex);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package chess.notation;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.engine.Move;
+import chess.engine.MoveResult;
+import chess.engine.Position;
+import model.GameData;
+
+import java.util.List;
+
+/**
+ * Portable Game Notation: writing a game out with its moves in SAN, and playing a game read by
+ * {@link PgnReader} back into a {@link ChessGame}
+ */
+public final class Pgn {
+
+    //Export format keeps movetext lines under 80 characters
+    private static final int LINE_LENGTH = 79;
+    //The engine position that reads the SAN keeps a fixed length history
+    public static final int MAX_PLIES = Position.MAX_HISTORY - 1;
+
+    private Pgn() {
+    }
+
+    /**
+     * @return the game with the seven standard tags, its moves and its result. A game that ended
+     * any way other than checkmate or stalemate, such as by resignation, is written as {@code *}
+     * since the game doesn't record who won.
+     */
+    public static String export(GameData game) {
+        List<ChessMove> history = game.game().getMoveHistory();
+        Position position = Position.startPosition();
+        int[] legalMoves = new int[Position.MAX_MOVES];
+        StringBuilder movetext = new StringBuilder(history.size() * 7 + 16);
+        int lineStart = 0;
+        MoveResult last = null;
+        for (int ply = 0; ply < history.size(); ply++) {
+            int legalCount = position.generateLegalMoves(legalMoves);
+            int move = Move.NONE;
+            for (int i = 0; i < legalCount && move == Move.NONE; i++) {
+                if (Move.toChessMove(legalMoves[i]).equals(history.get(ply))) {
+                    move = legalMoves[i];
+                }
+            }
+            if (move == Move.NONE) {
+                throw new IllegalStateException("Move " + (ply + 1) + " of game " + game.gameID() + " isn't legal");
+            }
+            last = MoveResult.play(position, move, legalMoves, legalCount, null);
+            String text = ply % 2 == 0 ? (ply / 2 + 1) + ". " + last.san() : last.san();
+            lineStart = appendWrapped(movetext, lineStart, text);
+        }
+        String result = result(game.game(), last);
+        appendWrapped(movetext, lineStart, result);
+
+        StringBuilder pgn = new StringBuilder(movetext.length() + 200);
+        appendTag(pgn, "Event", game.gameName());
+        appendTag(pgn, "Site", "?");
+        appendTag(pgn, "Date", "????.??.??");
+        appendTag(pgn, "Round", "-");
+        appendTag(pgn, "White", game.whiteUsername());
+        appendTag(pgn, "Black", game.blackUsername());
+        appendTag(pgn, "Result", result);
+        return pgn.append('\n').append(movetext).append("\n\n").toString();
+    }
+
+    /**
+     * Plays a game's moves from the starting position, each one checked by {@link ChessGame#makeMove}
+     *
+     * @return the game after its last move, over if the PGN gave a result
+     * @throws InvalidMoveException naming the first move that can't be played, or if the game is
+     *                              longer than {@link #MAX_PLIES}
+     */
+    public static ChessGame replay(PgnGame pgnGame) throws InvalidMoveException {
+        String setUp = pgnGame.tag("FEN");
+        if (setUp != null && !setUp.equals(Position.START_FEN)) {
+            throw new InvalidMoveException("Games from a set-up position aren't supported");
+        }
+        ChessGame game = new ChessGame();
+        //The engine's copy of the board reads the SAN, which the game has no way to do
+        Position position = Position.startPosition();
+        int[] legalMoves = new int[Position.MAX_MOVES];
+        List<String> moves = pgnGame.moves();
+        if (moves.size() > MAX_PLIES) {
+            throw new InvalidMoveException("Games over " + MAX_PLIES + " moves long aren't supported");
+        }
+        for (int ply = 0; ply < moves.size(); ply++) {
+            if (game.isGameOver()) {
+                throw new InvalidMoveException("Move " + (ply + 1) + " (" + moves.get(ply) + ") comes after the game ended");
+            }
+            int legalCount = position.generateLegalMoves(legalMoves);
+            int move = San.parse(moves.get(ply), position, legalMoves, legalCount);
+            if (move == Move.NONE) {
+                throw new InvalidMoveException("Move " + (ply + 1) + " (" + moves.get(ply) + ") isn't legal");
+            }
+            game.makeMove(Move.toChessMove(move));
+            position.makeMove(move);
+        }
+        if (pgnGame.isFinished()) {
+            game.setIsGameOver(true);
+        }
+        return game;
+    }
+
+    private static String result(ChessGame game, MoveResult last) {
+        if (!game.isGameOver() || last == null) {
+            return "*";
+        }
+        return switch (last.status()) {
+            case CHECKMATE -> game.getTeamTurn() == ChessGame.TeamColor.WHITE ? "0-1" : "1-0";
+            case STALEMATE -> "1/2-1/2";
+            default -> "*";
+        };
+    }
+
+    /**
+     * @return where the current line starts
+     */
+    private static int appendWrapped(StringBuilder movetext, int lineStart, String text) {
+        if (movetext.length() > lineStart) {
+            if (movetext.length() - lineStart + 1 + text.length() > LINE_LENGTH) {
+                movetext.append('\n');
+                lineStart = movetext.length();
+            } else {
+                movetext.append(' ');
+            }
+        }
+        movetext.append(text);
+        return lineStart;
+    }
+
+    private static void appendTag(StringBuilder pgn, String name, String value) {
+        String escaped = value == null ? "?" : value.replace("\\", "\\\\").replace("\"", "\\\"");
+        pgn.append('[').append(name).append(" \"").append(escaped).append("\"]\n");
+    }
+}
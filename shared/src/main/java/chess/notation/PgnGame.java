@@ -0,0 +1,22 @@
+package chess.notation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game as read from a PGN file, before its moves have been checked
+ *
+ * @param tags   the tag pairs in the order they were written
+ * @param moves  the main line in SAN, without move numbers, comments or variations
+ * @param result {@code 1-0}, {@code 0-1}, {@code 1/2-1/2}, or {@code *} for unfinished or unknown
+ */
+public record PgnGame(Map<String, String> tags, List<String> moves, String result) {
+
+    public String tag(String name) {
+        return tags.get(name);
+    }
+
+    public boolean isFinished() {
+        return !result.equals("*");
+    }
+}
@@ -0,0 +1,195 @@
+package chess.notation;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the games in a PGN file one at a time, straight off the stream. Only the game being read
+ * is held in memory, and comments and variations are skipped without being kept, so an archive
+ * of any size can be read in the same space.
+ */
+public class PgnReader implements Closeable {
+
+    //Longer tokens and tag values are cut off, so a corrupt file can't make one grow without bound
+    private static final int MAX_TOKEN_LENGTH = 256;
+    private static final int MAX_TAG_LENGTH = 1024;
+    //Moves past this many are read but not kept, so a game missing its result can't run on into the
+    //rest of the archive in memory. One more than a game can have is kept, so it's still rejected
+    private static final int MAX_MOVES = Pgn.MAX_PLIES + 1;
+
+    private final Reader reader;
+    private int pushedBack = -1;
+    private long gamesRead;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 1 << 16);
+    }
+
+    /**
+     * @return the next game, or null at the end of the file
+     */
+    public PgnGame next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+        String result = null;
+        StringBuilder token = new StringBuilder(16);
+        while (result == null) {
+            int c = read();
+            if (c == -1) {
+                break;
+            }
+            switch (c) {
+                case '[' -> {
+                    //Tags after moves start the next game, which this one didn't end with a result
+                    if (!moves.isEmpty()) {
+                        pushedBack = c;
+                        result = "*";
+                    } else {
+                        readTag(tags);
+                    }
+                }
+                case '{' -> skipPast('}');
+                case ';' -> skipPast('\n');
+                case '(' -> skipVariation();
+                default -> {
+                    if (Character.isWhitespace(c) || c == ')' || c == ']' || c == '}') {
+                        continue;
+                    }
+                    token.setLength(0);
+                    readToken(c, token);
+                    String text = token.toString();
+                    if (isResult(text)) {
+                        result = text;
+                    } else if (text.charAt(0) != '$') {
+                        String move = stripMoveNumber(text);
+                        if (!move.isEmpty() && moves.size() < MAX_MOVES) {
+                            moves.add(move);
+                        }
+                    }
+                }
+            }
+        }
+        if (tags.isEmpty() && moves.isEmpty() && result == null) {
+            return null;
+        }
+        gamesRead++;
+        return new PgnGame(tags, moves, result == null ? "*" : result);
+    }
+
+    public long getGamesRead() {
+        return gamesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (pushedBack >= 0) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void readToken(int first, StringBuilder token) throws IOException {
+        int c = first;
+        while (c != -1 && !Character.isWhitespace(c) && "[]{}();".indexOf(c) < 0) {
+            if (token.length() < MAX_TOKEN_LENGTH) {
+                token.append((char) c);
+            }
+            c = read();
+        }
+        if (c != -1 && !Character.isWhitespace(c)) {
+            pushedBack = c;
+        }
+    }
+
+    //[Name "value"], with \" and \\ escaped inside the value
+    private void readTag(Map<String, String> tags) throws IOException {
+        StringBuilder name = new StringBuilder(16);
+        int c = read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = read();
+        }
+        while (c != -1 && !Character.isWhitespace(c) && c != '"' && c != ']') {
+            if (name.length() < MAX_TOKEN_LENGTH) {
+                name.append((char) c);
+            }
+            c = read();
+        }
+        while (c != -1 && c != '"' && c != ']') {
+            c = read();
+        }
+        StringBuilder value = new StringBuilder(32);
+        if (c == '"') {
+            c = read();
+            while (c != -1 && c != '"' && c != '\n') {
+                if (c == '\\') {
+                    c = read();
+                }
+                if (c != -1 && value.length() < MAX_TAG_LENGTH) {
+                    value.append((char) c);
+                }
+                c = read();
+            }
+            if (c != ']') {
+                skipPast(']');
+            }
+        }
+        if (!name.isEmpty()) {
+            tags.put(name.toString(), value.toString());
+        }
+    }
+
+    private void skipPast(int end) throws IOException {
+        int c = read();
+        while (c != -1 && c != end) {
+            c = read();
+        }
+    }
+
+    //Variations can nest and hold comments with parentheses in them
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            switch (c) {
+                case -1 -> depth = 0;
+                case '(' -> depth++;
+                case ')' -> depth--;
+                case '{' -> skipPast('}');
+                case ';' -> skipPast('\n');
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    //"12.", "12..." and "12.e4" all number a move
+    private static String stripMoveNumber(String token) {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == token.length() || token.charAt(i) != '.') {
+            return i == token.length() ? "" : token;
+        }
+        while (i < token.length() && token.charAt(i) == '.') {
+            i++;
+        }
+        return token.substring(i);
+    }
+}
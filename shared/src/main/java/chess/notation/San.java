@@ -0,0 +1,100 @@
+package chess.notation;
+
+import chess.engine.Move;
+import chess.engine.MoveResult;
+import chess.engine.Position;
+
+/**
+ * Reads moves in standard algebraic notation. Writing them is {@link MoveResult#san()}'s job,
+ * since that's worked out while the move is played.
+ */
+public final class San {
+
+    private static final String PIECE_LETTERS = " PNBRQK";
+
+    private San() {
+    }
+
+    /**
+     * Finds the legal move some SAN text means. Check marks and annotations such as {@code !?}
+     * are ignored, and castling may be written with zeros as well as with letters.
+     *
+     * @return the move, or {@link Move#NONE} if no legal move matches or more than one does
+     */
+    public static int parse(String san, Position position, int[] legalMoves, int legalCount) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        String text = san.substring(0, end).replace('0', 'O');
+        if (text.equals("O-O") || text.equals("O-O-O")) {
+            boolean kingside = text.length() == 3;
+            for (int i = 0; i < legalCount; i++) {
+                int move = legalMoves[i];
+                if (Move.flag(move) == Move.FLAG_CASTLE && (Move.to(move) > Move.from(move)) == kingside) {
+                    return move;
+                }
+            }
+            return Move.NONE;
+        }
+
+        int type = Position.PAWN;
+        int start = 0;
+        if (!text.isEmpty() && "NBRQK".indexOf(text.charAt(0)) >= 0) {
+            type = PIECE_LETTERS.indexOf(text.charAt(0));
+            start = 1;
+        }
+        int promotion = 0;
+        int equals = text.indexOf('=');
+        if (equals >= 0 && equals == text.length() - 2) {
+            promotion = PIECE_LETTERS.indexOf(text.charAt(equals + 1));
+            text = text.substring(0, equals);
+        } else if (type == Position.PAWN && text.length() > 2 && "NBRQ".indexOf(text.charAt(text.length() - 1)) >= 0) {
+            //Some writers leave out the = sign
+            promotion = PIECE_LETTERS.indexOf(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - 1);
+        }
+        if (promotion < 0 || text.length() - start < 2) {
+            return Move.NONE;
+        }
+        int to = square(text.charAt(text.length() - 2), text.charAt(text.length() - 1));
+        if (to < 0) {
+            return Move.NONE;
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < text.length() - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return Move.NONE;
+            }
+        }
+
+        int found = Move.NONE;
+        for (int i = 0; i < legalCount; i++) {
+            int move = legalMoves[i];
+            int from = Move.from(move);
+            if (Move.to(move) != to || Move.promotion(move) != promotion
+                    || Position.typeOf(position.pieceAt(from)) != type
+                    || fromFile >= 0 && from % 8 != fromFile || fromRank >= 0 && from / 8 != fromRank) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                return Move.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    private static int square(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+        return (rank - '1') * 8 + file - 'a';
+    }
+}
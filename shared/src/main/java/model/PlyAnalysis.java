@@ -0,0 +1,30 @@
+package model;
+
+/**
+ * The engine's verdict on one position of a stored game.
+ *
+ * @param ply      position number, 0 being the start of the game; the move judged is the one played from here
+ * @param score    engine score in centipawns from White's point of view
+ * @param bestMove the engine's move here in {@link chess.engine.Move} form, or 0 when the game is over
+ * @param loss     centipawns the move actually played gave away against the engine's best, from the mover's side
+ */
+public record PlyAnalysis(int ply, int score, int bestMove, int loss, Judgement judgement) {
+
+    public enum Judgement {
+        NONE,
+        INACCURACY,
+        MISTAKE,
+        BLUNDER;
+
+        public static Judgement of(int loss) {
+            if (loss >= 300) {
+                return BLUNDER;
+            } else if (loss >= 100) {
+                return MISTAKE;
+            } else if (loss >= 50) {
+                return INACCURACY;
+            }
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package requests;
+
+/**
+ * @param format {@code pgn} for the whole game or {@code fen} for its current position
+ */
+public record ExportGameRequest(String authToken, int gameID, String format) {
+}
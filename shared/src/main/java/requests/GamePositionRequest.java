@@ -0,0 +1,7 @@
+package requests;
+
+/**
+ * @param ply moves into the game to look at, or null for the current position
+ */
+public record GamePositionRequest(String authToken, int gameID, Integer ply) {
+}
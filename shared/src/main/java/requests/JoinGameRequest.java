@@ -2,5 +2,12 @@ package requests;
 
 import chess.ChessGame;
 
-public record JoinGameRequest(String authToken, ChessGame.TeamColor playerColor, int gameID) {
+/**
+ * @param botOpponent fill the other seat with the server's bot, which needs that seat to be empty
+ */
+public record JoinGameRequest(String authToken, ChessGame.TeamColor playerColor, int gameID, boolean botOpponent) {
+
+    public JoinGameRequest(String authToken, ChessGame.TeamColor playerColor, int gameID) {
+        this(authToken, playerColor, gameID, false);
+    }
 }
@@ -0,0 +1,10 @@
+package results;
+
+import chess.ChessGame;
+
+/**
+ * @param plies moves made in the whole game
+ * @param game  the game as it stood after {@code ply} moves
+ */
+public record GamePositionResult(int gameID, int ply, int plies, ChessGame game) {
+}
@@ -0,0 +1,11 @@
+package results;
+
+import java.util.List;
+
+/**
+ * @param imported games saved
+ * @param skipped  games that couldn't be played through and weren't saved
+ * @param errors   why the first few skipped games were skipped
+ */
+public record ImportGamesResult(int imported, int skipped, List<String> errors) {
+}
@@ -0,0 +1,317 @@
+package websocket;
+
+import chess.*;
+import model.GameData;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.PlyRangeCommand;
+import websocket.commands.ResumeCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary framing for WebSocket traffic, used by clients that connect with
+ * ?protocol=binary. Every frame starts with a one byte header naming the command or
+ * message type, followed by that type's fields:
+ * <ul>
+ *     <li>commands: gameID (int, -1 for none), authToken (string), then a 2 byte move for MAKE_MOVE,
+ *     the 2 byte last seen ply for RESUME, or the 2 byte first and last plies for GET_PLIES</li>
+ *     <li>LOAD_GAME: gameID, white, black and game name, then the game state and a 2 byte ply count</li>
+ *     <li>MOVES: gameID, the 2 byte ply the moves start from, a game over byte, then a count and
+ *     that many moves</li>
+ *     <li>LOBBY: the event byte, then for SNAPSHOT a count and that many games, each like
+ *     LOAD_GAME's game data, or otherwise the gameID, game name, a color byte (-1 for none) and username</li>
+ *     <li>REPLAY: gameID, the 2 byte ply the range starts from, the 2 byte number of moves in the
+ *     game, the game state at the start of the range, then a count and that many moves</li>
+ *     <li>ERROR and NOTIFICATION: the message text</li>
+ * </ul>
+ * Counts are 4 byte ints, so a list is never cut short however long it gets, and a frame must
+ * end where its last field does.
+ * Strings are a presence byte followed by modified UTF-8. A move packs the start square
+ * into bits 0-5, the end square into bits 6-11 and the promotion piece into bits 12-14.
+ * The game state is a {@link PackedState}.
+ */
+public final class BinaryCodec {
+
+    private static final int COMMAND_HEADER = 0x00;
+    private static final int MESSAGE_HEADER = 0x40;
+    private static final int NO_MOVE = 0;
+    private static final int MOVE_BYTES = 2;
+    //The gameID, three absent strings and no game state
+    private static final int MIN_GAME_DATA_BYTES = 8;
+    public static final int BOARD_BYTES = PackedState.BOARD_BYTES;
+
+    private static final UserGameCommand.CommandType[] COMMAND_TYPES = UserGameCommand.CommandType.values();
+    private static final ServerMessage.ServerMessageType[] MESSAGE_TYPES = ServerMessage.ServerMessageType.values();
+    private static final LobbyMessage.Event[] LOBBY_EVENTS = LobbyMessage.Event.values();
+
+    private BinaryCodec() {
+    }
+
+    public static byte[] encodeCommand(UserGameCommand command) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(COMMAND_HEADER | command.getCommandType().ordinal());
+            out.writeInt(command.getGameID() == null ? -1 : command.getGameID());
+            writeString(out, command.getAuthToken());
+            if (command instanceof MakeMoveCommand makeMoveCommand) {
+                out.writeShort(encodeMove(makeMoveCommand.getMove()));
+            } else if (command instanceof ResumeCommand resumeCommand) {
+                out.writeShort(resumeCommand.getLastPly());
+            } else if (command instanceof PlyRangeCommand plyRangeCommand) {
+                out.writeShort(plyRangeCommand.getFromPly());
+                out.writeShort(plyRangeCommand.getToPly());
+            }
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            //Writing to a byte array can't fail
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public static UserGameCommand decodeCommand(byte[] data, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        int header = in.readUnsignedByte();
+        int type = header - COMMAND_HEADER;
+        if (type < 0 || type >= COMMAND_TYPES.length) {
+            throw new IOException("Unknown command header " + header);
+        }
+        int gameID = in.readInt();
+        String authToken = readString(in);
+        UserGameCommand.CommandType commandType = COMMAND_TYPES[type];
+        UserGameCommand command;
+        if (commandType == UserGameCommand.CommandType.MAKE_MOVE) {
+            command = new MakeMoveCommand(authToken, gameID, readMove(in));
+        } else if (commandType == UserGameCommand.CommandType.RESUME) {
+            command = new ResumeCommand(authToken, gameID, in.readUnsignedShort());
+        } else if (commandType == UserGameCommand.CommandType.GET_PLIES) {
+            command = new PlyRangeCommand(authToken, gameID, in.readUnsignedShort(), in.readUnsignedShort());
+        } else {
+            command = new UserGameCommand(commandType, authToken, gameID == -1 ? null : gameID);
+        }
+        requireEnd(in);
+        return command;
+    }
+
+    /**
+     * @return the encoded message, or null if the message type has no binary layout and has
+     * to be sent as JSON instead
+     */
+    public static byte[] encodeMessage(ServerMessage message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(MESSAGE_HEADER | message.getServerMessageType().ordinal());
+            switch (message) {
+                case LoadGameMessage loadGame -> {
+                    writeGameData(out, loadGame.getGame());
+                    out.writeShort(loadGame.getPly());
+                }
+                case MovesMessage moves -> {
+                    out.writeInt(moves.getGameID());
+                    out.writeShort(moves.getFromPly());
+                    out.writeBoolean(moves.isGameOver());
+                    out.writeInt(moves.getMoves().size());
+                    for (ChessMove move : moves.getMoves()) {
+                        out.writeShort(encodeMove(move));
+                    }
+                }
+                case LobbyMessage lobby -> writeLobby(out, lobby);
+                case ReplayMessage replay -> {
+                    out.writeInt(replay.getGameID());
+                    out.writeShort(replay.getFromPly());
+                    out.writeShort(replay.getPlies());
+                    out.write(PackedState.pack(replay.getGame()));
+                    out.writeInt(replay.getMoves().size());
+                    for (ChessMove move : replay.getMoves()) {
+                        out.writeShort(encodeMove(move));
+                    }
+                }
+                case ErrorMessage error -> writeString(out, error.getErrorMessage());
+                case NotificationMessage notification -> writeString(out, notification.getMessage());
+                default -> {
+                    return null;
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public static ServerMessage decodeMessage(byte[] data, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        int header = in.readUnsignedByte();
+        int type = header - MESSAGE_HEADER;
+        if (type < 0 || type >= MESSAGE_TYPES.length) {
+            throw new IOException("Unknown message header " + header);
+        }
+        ServerMessage message = switch (MESSAGE_TYPES[type]) {
+            case LOAD_GAME -> new LoadGameMessage(readGameData(in), in.readUnsignedShort());
+            case MOVES -> readMoves(in);
+            case LOBBY -> readLobby(in);
+            case REPLAY -> readReplay(in);
+            case ERROR -> new ErrorMessage(readString(in));
+            case NOTIFICATION -> new NotificationMessage(readString(in));
+            default -> throw new IOException("No binary layout for " + MESSAGE_TYPES[type]);
+        };
+        requireEnd(in);
+        return message;
+    }
+
+    //Bytes left over mean the frame wasn't laid out the way we read it, so what we read can't be trusted
+    private static void requireEnd(DataInputStream in) throws IOException {
+        if (in.available() > 0) {
+            throw new IOException(in.available() + " unread bytes at the end of the frame");
+        }
+    }
+
+    //A count the rest of the frame can't hold is a bad frame, and mustn't size an allocation
+    private static int readCount(DataInputStream in, int minItemBytes) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available() / minItemBytes) {
+            throw new IOException("Count " + count + " is more than the frame holds");
+        }
+        return count;
+    }
+
+    public static int encodeMove(ChessMove move) {
+        return move == null ? NO_MOVE : move.pack();
+    }
+
+    public static ChessMove decodeMove(int encoded) {
+        return encoded == NO_MOVE ? null : ChessMove.unpack(encoded);
+    }
+
+    //Bits that don't make a move or a piece come from a bad frame, not a bug, so they're reported like a short one
+    private static ChessMove readMove(DataInputStream in) throws IOException {
+        try {
+            return decodeMove(in.readUnsignedShort());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    private static ChessGame readState(DataInputStream in) throws IOException {
+        byte[] packed = new byte[PackedState.BYTES];
+        in.readFully(packed);
+        try {
+            return PackedState.unpack(packed, 0);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Packs the board into 32 bytes, as {@link PackedState#packBoard} does
+     */
+    public static byte[] encodeBoard(ChessBoard board) {
+        byte[] packed = new byte[BOARD_BYTES];
+        PackedState.packBoard(board, packed, 0);
+        return packed;
+    }
+
+    public static ChessBoard decodeBoard(byte[] packed) {
+        return PackedState.unpackBoard(packed, 0);
+    }
+
+    private static void writeGameData(DataOutputStream out, GameData gameData) throws IOException {
+        out.writeInt(gameData.gameID());
+        writeString(out, gameData.whiteUsername());
+        writeString(out, gameData.blackUsername());
+        writeString(out, gameData.gameName());
+        ChessGame game = gameData.game();
+        out.writeBoolean(game != null);
+        if (game == null) {
+            return;
+        }
+        out.write(PackedState.pack(game));
+    }
+
+    private static GameData readGameData(DataInputStream in) throws IOException {
+        int gameID = in.readInt();
+        String white = readString(in);
+        String black = readString(in);
+        String gameName = readString(in);
+        if (!in.readBoolean()) {
+            return new GameData(gameID, white, black, gameName, null);
+        }
+        return new GameData(gameID, white, black, gameName, readState(in));
+    }
+
+    private static MovesMessage readMoves(DataInputStream in) throws IOException {
+        int gameID = in.readInt();
+        int fromPly = in.readUnsignedShort();
+        boolean gameOver = in.readBoolean();
+        int count = readCount(in, MOVE_BYTES);
+        List<ChessMove> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(readMove(in));
+        }
+        return new MovesMessage(gameID, fromPly, moves, gameOver);
+    }
+
+    private static ReplayMessage readReplay(DataInputStream in) throws IOException {
+        int gameID = in.readInt();
+        int fromPly = in.readUnsignedShort();
+        int plies = in.readUnsignedShort();
+        ChessGame game = readState(in);
+        int count = readCount(in, MOVE_BYTES);
+        List<ChessMove> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(readMove(in));
+        }
+        return new ReplayMessage(gameID, fromPly, plies, game, moves);
+    }
+
+    private static void writeLobby(DataOutputStream out, LobbyMessage lobby) throws IOException {
+        out.writeByte(lobby.getEvent().ordinal());
+        if (lobby.getEvent() == LobbyMessage.Event.SNAPSHOT) {
+            out.writeInt(lobby.getGames().size());
+            for (GameData game : lobby.getGames()) {
+                writeGameData(out, game);
+            }
+            return;
+        }
+        out.writeInt(lobby.getGameID());
+        writeString(out, lobby.getGameName());
+        out.writeByte(lobby.getColor() == null ? -1 : lobby.getColor().ordinal());
+        writeString(out, lobby.getUsername());
+    }
+
+    private static LobbyMessage readLobby(DataInputStream in) throws IOException {
+        int event = in.readUnsignedByte();
+        if (event >= LOBBY_EVENTS.length) {
+            throw new IOException("Unknown lobby event " + event);
+        }
+        if (LOBBY_EVENTS[event] == LobbyMessage.Event.SNAPSHOT) {
+            int count = readCount(in, MIN_GAME_DATA_BYTES);
+            List<GameData> games = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                games.add(readGameData(in));
+            }
+            return LobbyMessage.snapshot(games);
+        }
+        int gameID = in.readInt();
+        String gameName = readString(in);
+        int color = in.readByte();
+        String username = readString(in);
+        return new LobbyMessage(LOBBY_EVENTS[event], gameID, gameName,
+                color < 0 ? null : ChessGame.TeamColor.values()[color], username, null);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
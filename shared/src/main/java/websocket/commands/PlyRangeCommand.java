@@ -0,0 +1,28 @@
+package websocket.commands;
+
+/**
+ * Asks for part of a game's history, such as for an observer stepping back through the moves.
+ * It doesn't join the game, and the answer only goes to the client that asked.
+ */
+public class PlyRangeCommand extends UserGameCommand {
+    private int fromPly;
+    private int toPly;
+
+    /**
+     * @param fromPly the ply to send the board at
+     * @param toPly   the ply to send moves up to, no more than the moves made so far
+     */
+    public PlyRangeCommand(String authToken, int gameID, int fromPly, int toPly) {
+        super(CommandType.GET_PLIES, authToken, gameID);
+        this.fromPly = fromPly;
+        this.toPly = toPly;
+    }
+
+    public int getFromPly() {
+        return fromPly;
+    }
+
+    public int getToPly() {
+        return toPly;
+    }
+}
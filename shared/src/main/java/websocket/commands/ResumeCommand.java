@@ -0,0 +1,21 @@
+package websocket.commands;
+
+/**
+ * Sent by a client that lost its connection, instead of CONNECT, to rejoin a game and be sent
+ * only the moves it missed
+ */
+public class ResumeCommand extends UserGameCommand {
+    private int lastPly;
+
+    /**
+     * @param lastPly moves the client had seen before it lost the connection
+     */
+    public ResumeCommand(String authToken, int gameID, int lastPly) {
+        super(CommandType.RESUME, authToken, gameID);
+        this.lastPly = lastPly;
+    }
+
+    public int getLastPly() {
+        return lastPly;
+    }
+}
@@ -24,7 +24,11 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        RESUME,
+        SUBSCRIBE_LOBBY,
+        UNSUBSCRIBE_LOBBY,
+        GET_PLIES
     }
 
     public CommandType getCommandType() {
@@ -5,13 +5,24 @@ import model.GameData;
 public class LoadGameMessage extends ServerMessage {
 
     private GameData game;
+    //Moves made so far, which a client sends back to resume after losing its connection
+    private int ply;
 
     public LoadGameMessage(GameData game) {
+        this(game, game.game() == null ? 0 : game.game().getPly());
+    }
+
+    public LoadGameMessage(GameData game, int ply) {
         super(ServerMessageType.LOAD_GAME);
         this.game = game;
+        this.ply = ply;
     }
 
     public GameData getGame() {
         return game;
     }
+
+    public int getPly() {
+        return ply;
+    }
 }
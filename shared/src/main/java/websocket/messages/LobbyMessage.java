@@ -0,0 +1,87 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import model.GameData;
+
+import java.util.List;
+
+/**
+ * A change to the list of games, pushed to sessions subscribed to the lobby so they needn't keep
+ * asking for the whole list. A subscription starts with a snapshot of every game that isn't over;
+ * after that each message only carries the fields its event needs.
+ */
+public class LobbyMessage extends ServerMessage {
+
+    public enum Event {
+        SNAPSHOT,
+        GAME_CREATED,
+        SEAT_TAKEN,
+        SEAT_FREED,
+        GAME_FINISHED
+    }
+
+    private Event event;
+    private int gameID;
+    private String gameName;
+    private ChessGame.TeamColor color;
+    private String username;
+    private List<GameData> games;
+
+    public LobbyMessage(Event event, int gameID, String gameName, ChessGame.TeamColor color, String username,
+                        List<GameData> games) {
+        super(ServerMessageType.LOBBY);
+        this.event = event;
+        this.gameID = gameID;
+        this.gameName = gameName;
+        this.color = color;
+        this.username = username;
+        this.games = games;
+    }
+
+    /**
+     * @param games every game that isn't over, without their boards
+     */
+    public static LobbyMessage snapshot(List<GameData> games) {
+        return new LobbyMessage(Event.SNAPSHOT, 0, null, null, null, games);
+    }
+
+    public static LobbyMessage gameCreated(int gameID, String gameName) {
+        return new LobbyMessage(Event.GAME_CREATED, gameID, gameName, null, null, null);
+    }
+
+    public static LobbyMessage seatTaken(int gameID, ChessGame.TeamColor color, String username) {
+        return new LobbyMessage(Event.SEAT_TAKEN, gameID, null, color, username, null);
+    }
+
+    public static LobbyMessage seatFreed(int gameID, ChessGame.TeamColor color) {
+        return new LobbyMessage(Event.SEAT_FREED, gameID, null, color, null, null);
+    }
+
+    public static LobbyMessage gameFinished(int gameID) {
+        return new LobbyMessage(Event.GAME_FINISHED, gameID, null, null, null, null);
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public ChessGame.TeamColor getColor() {
+        return color;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public List<GameData> getGames() {
+        return games;
+    }
+}
@@ -0,0 +1,44 @@
+package websocket.messages;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * The moves a resuming client missed, to be played on top of the game it already has
+ */
+public class MovesMessage extends ServerMessage {
+
+    private int gameID;
+    private int fromPly;
+    private List<ChessMove> moves;
+    private boolean gameOver;
+
+    /**
+     * @param fromPly  moves made before the first of these, which the client already has
+     * @param gameOver whether the game has ended, which a resignation does without a move
+     */
+    public MovesMessage(int gameID, int fromPly, List<ChessMove> moves, boolean gameOver) {
+        super(ServerMessageType.MOVES);
+        this.gameID = gameID;
+        this.fromPly = fromPly;
+        this.moves = moves;
+        this.gameOver = gameOver;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    public int getFromPly() {
+        return fromPly;
+    }
+
+    public List<ChessMove> getMoves() {
+        return moves;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
@@ -0,0 +1,53 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * The answer to a {@link websocket.commands.PlyRangeCommand}: the board at the start of the range
+ * and the moves after it, to step through without asking again. It's a look back, so it doesn't
+ * replace the game the client is following.
+ */
+public class ReplayMessage extends ServerMessage {
+
+    private int gameID;
+    private int fromPly;
+    private int plies;
+    private ChessGame game;
+    private List<ChessMove> moves;
+
+    /**
+     * @param plies moves made in the game so far
+     * @param game  the game as it stood at {@code fromPly}
+     */
+    public ReplayMessage(int gameID, int fromPly, int plies, ChessGame game, List<ChessMove> moves) {
+        super(ServerMessageType.REPLAY);
+        this.gameID = gameID;
+        this.fromPly = fromPly;
+        this.plies = plies;
+        this.game = game;
+        this.moves = moves;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    public int getFromPly() {
+        return fromPly;
+    }
+
+    public int getPlies() {
+        return plies;
+    }
+
+    public ChessGame getGame() {
+        return game;
+    }
+
+    public List<ChessMove> getMoves() {
+        return moves;
+    }
+}
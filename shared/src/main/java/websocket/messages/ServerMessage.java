@@ -14,7 +14,10 @@ public class ServerMessage {
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        MOVES,
+        LOBBY,
+        REPLAY
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -0,0 +1,88 @@
+package chess;
+
+import chess.engine.Move;
+import chess.engine.Position;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChessGameHistoryTests {
+
+    //Plays a fixed but varied line of legal moves, long enough to cross a few snapshots
+    private static List<ChessMove> playLine(ChessGame game, int plies) throws InvalidMoveException {
+        Position position = Position.startPosition();
+        int[] legalMoves = new int[Position.MAX_MOVES];
+        List<ChessMove> played = new ArrayList<>();
+        for (int ply = 0; ply < plies; ply++) {
+            int legalCount = position.generateLegalMoves(legalMoves);
+            if (legalCount == 0) {
+                break;
+            }
+            int move = legalMoves[(ply * 7 + 3) % legalCount];
+            game.makeMove(Move.toChessMove(move));
+            position.makeMove(move);
+            played.add(Move.toChessMove(move));
+        }
+        return played;
+    }
+
+    private static ChessGame replay(List<ChessMove> moves) throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (ChessMove move : moves) {
+            game.makeMove(move);
+        }
+        return game;
+    }
+
+    @Test
+    public void historyKeepsEveryMove() throws Exception {
+        ChessGame game = new ChessGame();
+        List<ChessMove> played = playLine(game, 50);
+        Assertions.assertEquals(played.size(), game.getPly());
+        Assertions.assertEquals(played, game.getMoveHistory());
+        Assertions.assertEquals(played.get(played.size() - 1), game.getLastMove());
+    }
+
+    @Test
+    public void atPlyMatchesReplay() throws Exception {
+        ChessGame game = new ChessGame();
+        List<ChessMove> played = playLine(game, 50);
+        for (int ply = 0; ply <= played.size(); ply++) {
+            ChessGame seeked = game.atPly(ply);
+            ChessGame replayed = replay(played.subList(0, ply));
+            Assertions.assertEquals(replayed, seeked, "Game differs at ply " + ply);
+            Assertions.assertEquals(played.subList(0, ply), seeked.getMoveHistory());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.atPly(played.size() + 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.atPly(-1));
+    }
+
+    @Test
+    public void seekedGameKeepsPlaying() throws Exception {
+        ChessGame game = new ChessGame();
+        List<ChessMove> played = playLine(game, 40);
+        //Carrying on from a past ply has to take the same snapshots as playing straight through
+        ChessGame seeked = game.atPly(20);
+        for (ChessMove move : played.subList(20, played.size())) {
+            seeked.makeMove(move);
+        }
+        Assertions.assertEquals(game, seeked);
+        Assertions.assertEquals(game.atPly(33), seeked.atPly(33));
+        //The original isn't touched by moves made on the copy
+        Assertions.assertEquals(played.size(), game.getPly());
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        ChessGame game = new ChessGame();
+        List<ChessMove> played = playLine(game, 40);
+        Gson gson = new Gson();
+        ChessGame decoded = gson.fromJson(gson.toJson(game), ChessGame.class);
+        Assertions.assertEquals(game, decoded);
+        Assertions.assertEquals(played, decoded.getMoveHistory());
+        Assertions.assertEquals(replay(played.subList(0, 17)), decoded.atPly(17));
+    }
+}
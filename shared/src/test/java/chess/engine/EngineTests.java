@@ -0,0 +1,121 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EngineTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static long perft(Position position, int depth) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(moves, 0, false);
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            if (!position.makeMove(moves[i])) {
+                continue;
+            }
+            leaves += depth == 1 ? 1 : perft(position, depth - 1);
+            position.unmakeMove(moves[i]);
+        }
+        return leaves;
+    }
+
+    @Test
+    public void perftStartPosition() {
+        Position position = Position.startPosition();
+        Assertions.assertEquals(20, perft(position, 1));
+        Assertions.assertEquals(400, perft(position, 2));
+        Assertions.assertEquals(8902, perft(position, 3));
+        Assertions.assertEquals(197281, perft(position, 4));
+        Assertions.assertEquals(Position.START_FEN, position.toFen());
+    }
+
+    @Test
+    public void perftTrickyPositions() {
+        Assertions.assertEquals(97862, perft(Position.fromFen(KIWIPETE), 3));
+        Assertions.assertEquals(43238, perft(Position.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"), 4));
+        Assertions.assertEquals(9467,
+                perft(Position.fromFen("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"), 3));
+        Assertions.assertEquals(62379,
+                perft(Position.fromFen("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"), 3));
+    }
+
+    @Test
+    public void incrementalKeyMatchesFreshKey() {
+        Position position = Position.fromFen(KIWIPETE);
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            Assertions.assertEquals(Position.fromFen(position.toFen()).key(), position.key(), Move.toString(moves[i]));
+            position.unmakeMove(moves[i]);
+        }
+        Assertions.assertEquals(Position.fromFen(KIWIPETE).key(), position.key());
+    }
+
+    @Test
+    public void findsMateInOne() {
+        SearchResult result = new Engine().search(Position.fromFen("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"),
+                SearchLimits.depth(4));
+        Assertions.assertEquals("a1a8", Move.toString(result.move()));
+        Assertions.assertEquals(1, result.mateIn());
+    }
+
+    @Test
+    public void winsHangingQueen() {
+        SearchResult result = new Engine().search(Position.fromFen("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1"),
+                SearchLimits.depth(3));
+        Assertions.assertEquals("d1d5", Move.toString(result.move()));
+    }
+
+    @Test
+    public void bestMoveIsLegalInGame() {
+        ChessGame game = new ChessGame();
+        SearchResult result = new Engine().bestMove(game, 200);
+        ChessMove move = result.chessMove();
+        Assertions.assertNotNull(move);
+        Assertions.assertTrue(result.depth() >= 1);
+        Assertions.assertTrue(game.validMoves(move.getStartPosition()).contains(move));
+    }
+
+    @Test
+    public void positionFromGameKeepsEnPassant() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 1), new ChessPosition(6, 1), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        Position position = Position.fromGame(game);
+        Assertions.assertEquals("rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 1", position.toFen());
+        Assertions.assertNotEquals(Move.NONE,
+                position.findMove(new ChessMove(new ChessPosition(5, 5), new ChessPosition(6, 4), null)));
+    }
+
+    @Test
+    public void parallelSearchAgreesWithSingleThread() {
+        try (Engine engine = new Engine(new TranspositionTable(), 4)) {
+            SearchResult mate = engine.search(Position.fromFen("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"),
+                    SearchLimits.depth(4));
+            Assertions.assertEquals("a1a8", Move.toString(mate.move()));
+
+            SearchResult queen = engine.search(Position.fromFen("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1"),
+                    SearchLimits.depth(5));
+            Assertions.assertEquals("d1d5", Move.toString(queen.move()));
+            Assertions.assertEquals(5, queen.depth());
+        }
+    }
+
+    @Test
+    public void parallelSearchStopsHelpersWithMainThread() {
+        try (Engine engine = new Engine(new TranspositionTable(), 3)) {
+            SearchResult result = engine.search(Position.fromFen(KIWIPETE), SearchLimits.time(300));
+            Assertions.assertNotEquals(Move.NONE, result.move());
+            Assertions.assertTrue(result.elapsedNanos() < 2_000_000_000L);
+            Assertions.assertEquals(3, engine.getThreads());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package chess.engine;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MoveResultTests {
+
+    private static MoveResult play(String fen, String from, String to, ChessPiece.PieceType promotion) {
+        Position position = Position.fromFen(fen);
+        int[] legalMoves = new int[Position.MAX_MOVES];
+        int legalCount = position.generateLegalMoves(legalMoves);
+        int move = position.findMove(new ChessMove(square(from), square(to), promotion));
+        Assertions.assertNotEquals(Move.NONE, move, from + to + " should be legal");
+        return MoveResult.play(position, move, legalMoves, legalCount, null);
+    }
+
+    private static ChessPosition square(String name) {
+        return new ChessPosition(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+
+    @Test
+    public void quietMoves() {
+        MoveResult knight = play(Position.START_FEN, "g1", "f3", null);
+        Assertions.assertEquals("Nf3", knight.san());
+        Assertions.assertEquals("Ng1-f3", knight.longAlgebraic());
+        Assertions.assertFalse(knight.capture());
+        Assertions.assertEquals(GameStatus.ONGOING, knight.status());
+
+        Assertions.assertEquals("e4", play(Position.START_FEN, "e2", "e4", null).san());
+    }
+
+    @Test
+    public void capturesAndEnPassant() {
+        MoveResult capture = play("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2", "e4", "d5", null);
+        Assertions.assertEquals("exd5", capture.san());
+        Assertions.assertEquals("e4xd5", capture.longAlgebraic());
+        Assertions.assertTrue(capture.capture());
+
+        MoveResult enPassant = play("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3", "e5", "f6", null);
+        Assertions.assertEquals("exf6", enPassant.san());
+        Assertions.assertTrue(enPassant.capture());
+    }
+
+    @Test
+    public void disambiguation() {
+        //Knights on b1 and f1 can both reach d2
+        Assertions.assertEquals("Nbd2", play("4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1", "b1", "d2", null).san());
+        //Rooks on a1 and a5 share a file, so the rank tells them apart
+        Assertions.assertEquals("R1a3", play("4k3/8/8/R7/8/8/8/R3K3 w - - 0 1", "a1", "a3", null).san());
+        //Queens on e4 and h1 can reach e1 too, one sharing h4's rank and the other its file
+        Assertions.assertEquals("Qh4e1", play("8/8/k7/8/4Q2Q/8/8/K6Q w - - 0 1", "h4", "e1", null).san());
+    }
+
+    @Test
+    public void castlingPromotionAndStatus() {
+        MoveResult castle = play("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "e1", "g1", null);
+        Assertions.assertEquals("O-O", castle.san());
+        Assertions.assertEquals("O-O-O", play("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "e1", "c1", null).san());
+
+        MoveResult promotion = play("8/4P3/8/8/8/8/k7/4K3 w - - 0 1", "e7", "e8", ChessPiece.PieceType.QUEEN);
+        Assertions.assertEquals("e8=Q", promotion.san());
+
+        MoveResult check = play("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1", "a1", "a8", null);
+        Assertions.assertEquals("Ra8+", check.san());
+        Assertions.assertTrue(check.isCheck());
+        Assertions.assertFalse(check.endsGame());
+
+        //Fool's mate
+        MoveResult mate = play("rnbqkbnr/pppp1ppp/8/4p3/6P1/5P2/PPPPP2P/RNBQKBNR b KQkq - 0 2", "d8", "h4", null);
+        Assertions.assertEquals("Qh4#", mate.san());
+        Assertions.assertTrue(mate.isCheckmate());
+        Assertions.assertTrue(mate.endsGame());
+
+        MoveResult stalemate = play("k7/8/1Q6/8/8/8/8/4K3 w - - 0 1", "b6", "c7", null);
+        Assertions.assertEquals(GameStatus.STALEMATE, stalemate.status());
+        Assertions.assertEquals("Qc7", stalemate.san());
+    }
+}
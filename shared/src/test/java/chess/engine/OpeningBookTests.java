@@ -0,0 +1,88 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class OpeningBookTests {
+
+    private static OpeningBook book;
+
+    @BeforeAll
+    public static void buildBook(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("book.bin");
+        int positions = OpeningBookBuilder.build(file, 2);
+        book = OpeningBook.open(file);
+        Assertions.assertEquals(positions, book.size());
+        Assertions.assertEquals(2, book.getFullPlies());
+    }
+
+    @Test
+    public void startPositionHasBookMoves() {
+        OpeningBook.Entry entry = book.lookup(Position.startPosition());
+        Assertions.assertNotNull(entry);
+        Assertions.assertEquals(20, entry.legalMoves().length);
+        Assertions.assertEquals(GameStatus.ONGOING, entry.status());
+        Assertions.assertTrue(entry.bookMoves().length > 1);
+        int bookMove = entry.pickBookMove();
+        Assertions.assertTrue(Arrays.stream(entry.legalMoves()).anyMatch(move -> move == bookMove));
+    }
+
+    @Test
+    public void fullTreeMatchesMoveGenerator() {
+        Position position = Position.startPosition();
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            OpeningBook.Entry entry = book.lookup(position);
+            Assertions.assertNotNull(entry, Move.toString(moves[i]));
+            int[] replies = new int[Position.MAX_MOVES];
+            int replyCount = position.generateLegalMoves(replies);
+            Assertions.assertArrayEquals(Arrays.copyOf(replies, replyCount), entry.legalMoves());
+            position.unmakeMove(moves[i]);
+        }
+    }
+
+    @Test
+    public void bookLineFoundFromChessGame() throws Exception {
+        ChessGame game = new ChessGame();
+        for (String moveText : OpeningBookBuilder.LINES[0].split(" ")) {
+            OpeningBook.Entry entry = book.lookup(Position.fromGame(game));
+            Assertions.assertNotNull(entry, moveText);
+            int move = Arrays.stream(entry.bookMoves()).filter(bookMove -> Move.toString(bookMove).equals(moveText))
+                    .findFirst().orElseThrow();
+            ChessMove chessMove = Move.toChessMove(move);
+            Assertions.assertTrue(entry.isLegal(chessMove));
+            Assertions.assertEquals(new HashSet<>(game.validMoves(chessMove.getStartPosition())),
+                    new HashSet<>(entry.movesFrom(Move.from(move))));
+            game.makeMove(chessMove);
+        }
+        Assertions.assertNotNull(book.lookup(Position.fromGame(game)));
+    }
+
+    @Test
+    public void unknownPositionMisses() {
+        Position position = Position.fromFen("8/8/8/4k3/8/8/8/4K2R w K - 0 1");
+        Assertions.assertNull(book.lookup(position));
+        Assertions.assertFalse(book.contains(position.key()));
+    }
+
+    @Test
+    public void engineOpensFromBook() {
+        try (Engine engine = new Engine(new TranspositionTable(1, TranspositionTable.Replacement.DEPTH_PREFERRED), 1, book)) {
+            SearchResult result = engine.chooseMove(Position.startPosition(), SearchLimits.depth(4));
+            Assertions.assertEquals(0, result.nodes());
+            int[] bookMoves = book.lookup(Position.startPosition()).bookMoves();
+            Assertions.assertTrue(Arrays.stream(bookMoves).anyMatch(move -> move == result.move()));
+        }
+    }
+}
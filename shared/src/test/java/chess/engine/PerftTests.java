@@ -0,0 +1,54 @@
+package chess.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+
+public class PerftTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String EN_PASSANT = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+
+    @Test
+    public void parallelCountMatchesKnownTotals() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Perft.Result start = new Perft(pool, 4).count(Position.startPosition(), 4);
+            Assertions.assertEquals(197281, start.leaves());
+            Assertions.assertEquals(20, start.divides().size());
+            Assertions.assertEquals(start.leaves(), start.divides().stream().mapToLong(Perft.Divide::leaves).sum());
+
+            Perft cached = new Perft(pool, 1);
+            Assertions.assertEquals(97862, cached.count(Position.fromFen(KIWIPETE), 3).leaves());
+            //The second count is answered mostly from the cache and must not change
+            Assertions.assertEquals(97862, cached.count(Position.fromFen(KIWIPETE), 3).leaves());
+            Assertions.assertEquals(43238, new Perft(pool, 0).count(Position.fromFen(EN_PASSANT), 4).leaves());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void chessGameMatchesEngine() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Perft perft = new Perft(pool, 0);
+            for (String fen : new String[]{KIWIPETE, EN_PASSANT}) {
+                Position position = Position.fromFen(fen);
+                Assertions.assertEquals(new HashSet<>(perft.count(position, 2).divides()),
+                        new HashSet<>(perft.countGame(position.toGame(), 2).divides()), fen);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void toGameRoundTrips() {
+        for (String fen : new String[]{KIWIPETE, EN_PASSANT, "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w Kq d6 0 1"}) {
+            Assertions.assertEquals(fen, Position.fromGame(Position.fromFen(fen).toGame()).toFen());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package chess.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TablebaseTests {
+
+    private static Path directory;
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    public static void generateTables(@TempDir Path tempDirectory) throws IOException {
+        directory = tempDirectory;
+        List<String> written = TablebaseGenerator.generate(directory, "KQvK", "KPvK");
+        Assertions.assertEquals(List.of("KQvK", "KNvK", "KBvK", "KRvK", "KPvK"), written);
+        tablebase = Tablebase.open(directory, 4);
+        Assertions.assertEquals(5, tablebase.getTableCount());
+    }
+
+    @Test
+    public void matesAndStalemates() {
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Wdl.LOSS, 0),
+                tablebase.probe(Position.fromFen("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1")));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Wdl.DRAW, 0),
+                tablebase.probe(Position.fromFen("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1")));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Wdl.WIN, 1),
+                tablebase.probe(Position.fromFen("7k/8/6K1/8/8/8/8/5Q2 w - - 0 1")));
+    }
+
+    @Test
+    public void otherSideUsesFlippedTable() {
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Wdl.WIN, 1),
+                tablebase.probe(Position.fromFen("5q2/8/8/8/8/6k1/8/7K b - - 0 1")));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Wdl.DRAW, 0),
+                tablebase.probe(Position.fromFen("8/8/8/8/8/5k2/7b/7K w - - 0 1")));
+    }
+
+    @Test
+    public void longestWinsMatchKnownResults() throws IOException {
+        //Queen against king mates in at most 10 moves, rook against king in at most 16
+        Assertions.assertEquals(19, longestWin("KQvK"));
+        Assertions.assertEquals(31, longestWin("KRvK"));
+    }
+
+    @Test
+    public void pawnEndings() {
+        Assertions.assertEquals(Tablebase.Wdl.LOSS,
+                tablebase.probe(Position.fromFen("4k3/8/4K3/4P3/8/8/8/8 b - - 0 1")).wdl());
+        Assertions.assertEquals(Tablebase.Wdl.DRAW,
+                tablebase.probe(Position.fromFen("k7/8/K7/P7/8/8/8/8 w - - 0 1")).wdl());
+    }
+
+    @Test
+    public void bestMoveMates() {
+        Position position = Position.fromFen("7k/8/6K1/8/8/8/8/5Q2 w - - 0 1");
+        int move = tablebase.bestMove(position);
+        position.makeMove(move);
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Wdl.LOSS, 0), tablebase.probe(position));
+    }
+
+    @Test
+    public void uncoveredPositionsMiss() {
+        Assertions.assertNull(tablebase.probe(Position.startPosition()));
+        Assertions.assertNull(tablebase.probe(Position.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 0 1")));
+        Assertions.assertFalse(tablebase.covers(Position.fromFen("4k3/8/8/8/8/8/8/3QK2R w - - 0 1")));
+        Assertions.assertEquals(Tablebase.Wdl.DRAW, tablebase.probe(Position.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1")).wdl());
+    }
+
+    @Test
+    public void engineUsesTablebase() {
+        try (Engine engine = new Engine(new TranspositionTable(1, TranspositionTable.Replacement.DEPTH_PREFERRED),
+                1, null, tablebase)) {
+            SearchResult result = engine.chooseMove(Position.fromFen("7k/8/6K1/8/8/8/8/5Q2 w - - 0 1"),
+                    SearchLimits.depth(6));
+            Assertions.assertEquals(0, result.nodes());
+            Assertions.assertEquals(Tablebase.WIN_SCORE - 1, result.score());
+            //A capture into a covered ending is scored from the table inside the search
+            SearchResult capture = engine.search(Position.fromFen("7k/8/8/3r4/8/8/8/3Q2K1 w - - 0 1"),
+                    SearchLimits.depth(3));
+            Assertions.assertEquals("d1d5", Move.toString(capture.move()));
+            Assertions.assertTrue(capture.score() > Tablebase.WIN_SCORE - Search.MAX_PLY);
+        }
+    }
+
+    private static int longestWin(String signature) throws IOException {
+        byte[] bytes = Files.readAllBytes(directory.resolve(signature + Tablebase.EXTENSION));
+        int longest = 0;
+        for (int i = Tablebase.HEADER_BYTES; i < bytes.length; i++) {
+            int value = bytes[i] & 0xFF;
+            if (value < Tablebase.LOSS_OFFSET) {
+                longest = Math.max(longest, value);
+            }
+        }
+        return longest;
+    }
+}
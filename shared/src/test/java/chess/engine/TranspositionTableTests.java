@@ -0,0 +1,101 @@
+package chess.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TranspositionTableTests {
+
+    //Keys that only differ above the bucket bits all land in the same bucket of a 1MB table
+    private static final long KEY = 0x1234_5678_0000_0042L;
+
+    @Test
+    public void storedEntryComesBack() {
+        TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.DEPTH_PREFERRED);
+        int move = Move.of(12, 28, 0, Move.FLAG_DOUBLE_PUSH);
+        table.store(KEY, move, -Search.MATE + 3, 7, TranspositionTable.BOUND_LOWER);
+
+        long entry = table.probe(KEY);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(-Search.MATE + 3, TranspositionTable.score(entry));
+        Assertions.assertEquals(7, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.bound(entry));
+        Assertions.assertEquals(0, table.probe(KEY ^ 1L << 20));
+        Assertions.assertEquals(2, table.getProbes());
+        Assertions.assertEquals(1, table.getHits());
+        Assertions.assertEquals(1, table.getCollisions());
+    }
+
+    @Test
+    public void depthPreferredKeepsDeeperEntries() {
+        TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.DEPTH_PREFERRED);
+        table.store(KEY, Move.of(1, 2), 10, 8, TranspositionTable.BOUND_EXACT);
+        table.store(KEY ^ 1L << 20, Move.of(3, 4), 20, 6, TranspositionTable.BOUND_EXACT);
+        table.store(KEY ^ 1L << 21, Move.of(5, 6), 30, 2, TranspositionTable.BOUND_EXACT);
+        Assertions.assertNotEquals(0, table.probe(KEY));
+        Assertions.assertNotEquals(0, table.probe(KEY ^ 1L << 20));
+        Assertions.assertEquals(0, table.probe(KEY ^ 1L << 21));
+
+        //Once a new search starts the old entries are fair game
+        table.newSearch();
+        table.store(KEY ^ 1L << 21, Move.of(5, 6), 30, 2, TranspositionTable.BOUND_EXACT);
+        Assertions.assertNotEquals(0, table.probe(KEY ^ 1L << 21));
+        Assertions.assertEquals(1, table.getOverwrites());
+    }
+
+    @Test
+    public void alwaysReplacesShallowestEntry() {
+        TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS);
+        table.store(KEY, Move.of(1, 2), 10, 8, TranspositionTable.BOUND_EXACT);
+        table.store(KEY ^ 1L << 20, Move.of(3, 4), 20, 6, TranspositionTable.BOUND_EXACT);
+        table.store(KEY ^ 1L << 21, Move.of(5, 6), 30, 2, TranspositionTable.BOUND_EXACT);
+        Assertions.assertNotEquals(0, table.probe(KEY));
+        Assertions.assertEquals(0, table.probe(KEY ^ 1L << 20));
+        Assertions.assertEquals(30, TranspositionTable.score(table.probe(KEY ^ 1L << 21)));
+    }
+
+    @Test
+    public void concurrentWritersNeverProduceMismatchedEntries() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS);
+        AtomicInteger mismatches = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < 200_000; i++) {
+                    //A small key space forces threads to fight over the same buckets
+                    long key = random.nextInt(4096) * 0x9E37_79B9_7F4A_7C15L;
+                    int expected = (int) (key >>> 47);
+                    if (random.nextBoolean()) {
+                        table.store(key, expected, expected - 30000, expected & 0x7F, TranspositionTable.BOUND_EXACT);
+                    } else {
+                        long entry = table.probe(key);
+                        if (entry != 0 && TranspositionTable.move(entry) != expected) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(0, mismatches.get());
+        Assertions.assertTrue(table.getHits() > 0);
+    }
+
+    @Test
+    public void searchReusesTableAcrossCalls() {
+        Engine engine = new Engine(new TranspositionTable(1, TranspositionTable.Replacement.DEPTH_PREFERRED));
+        Position position = Position.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        SearchResult first = engine.search(position, SearchLimits.depth(5));
+        SearchResult second = engine.search(position, SearchLimits.depth(5));
+        Assertions.assertTrue(second.nodes() < first.nodes());
+        Assertions.assertTrue(engine.getTable().getHits() > 0);
+        Assertions.assertTrue(engine.getTable().hashfull() > 0);
+    }
+}
@@ -0,0 +1,133 @@
+package chess.notation;
+
+import chess.ChessGame;
+import chess.InvalidMoveException;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PgnTests {
+
+    private static final String ARCHIVE = """
+            [Event "Casual \\"blitz\\""]
+            [White "Alice"]
+            [Black "Bob"]
+            [Result "0-1"]
+
+            1. f3 {a weak move} e5 2. g4 (2. e4 Nc6 (2... d5) 3. d4) 2... Qh4# $1 0-1
+
+            [Event "Unfinished"]
+
+            1.e4 e5 2.Nf3 ; the rest was never played
+            Nc6 *
+            1. d4 d5 2. c4
+            """;
+
+    private static List<PgnGame> readAll(String pgn) throws IOException {
+        try (PgnReader reader = new PgnReader(new StringReader(pgn))) {
+            List<PgnGame> games = new ArrayList<>();
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                games.add(game);
+            }
+            return games;
+        }
+    }
+
+    @Test
+    public void readsTagsMovesAndResults() throws IOException {
+        List<PgnGame> games = readAll(ARCHIVE);
+        Assertions.assertEquals(3, games.size());
+
+        PgnGame first = games.get(0);
+        Assertions.assertEquals("Casual \"blitz\"", first.tag("Event"));
+        Assertions.assertEquals("Alice", first.tag("White"));
+        //Comments, variations and annotations aren't moves of the game
+        Assertions.assertEquals(List.of("f3", "e5", "g4", "Qh4#"), first.moves());
+        Assertions.assertEquals("0-1", first.result());
+
+        Assertions.assertEquals(List.of("e4", "e5", "Nf3", "Nc6"), games.get(1).moves());
+        Assertions.assertFalse(games.get(1).isFinished());
+        //A game without tags or a result still counts
+        Assertions.assertEquals(List.of("d4", "d5", "c4"), games.get(2).moves());
+    }
+
+    @Test
+    public void replayChecksMoves() throws Exception {
+        ChessGame mated = Pgn.replay(readAll(ARCHIVE).getFirst());
+        Assertions.assertTrue(mated.isGameOver());
+        Assertions.assertTrue(mated.isInCheckmate(ChessGame.TeamColor.WHITE));
+        Assertions.assertEquals(4, mated.getMoveHistory().size());
+
+        PgnGame illegal = readAll("1. e4 e5 2. Ke3 *").getFirst();
+        InvalidMoveException ex = Assertions.assertThrows(InvalidMoveException.class, () -> Pgn.replay(illegal));
+        Assertions.assertTrue(ex.getMessage().contains("Ke3"));
+        //Both knights can reach d2, so this move is ambiguous
+        PgnGame ambiguous = readAll("1. d4 d5 2. Nf3 Nf6 3. Nd2 *").getFirst();
+        Assertions.assertThrows(InvalidMoveException.class, () -> Pgn.replay(ambiguous));
+    }
+
+    //Knight shuffles, legal for as long as they go on
+    private static String shuffles(int plies) {
+        String[] cycle = {"Nf3", "Nf6", "Ng1", "Ng8"};
+        StringBuilder pgn = new StringBuilder(plies * 6);
+        for (int ply = 0; ply < plies; ply++) {
+            pgn.append(ply % 2 == 0 ? (ply / 2 + 1) + ". " : "").append(cycle[ply % 4]).append(' ');
+        }
+        return pgn.toString();
+    }
+
+    @Test
+    public void overLongGameRejected() throws Exception {
+        ChessGame longest = Pgn.replay(readAll(shuffles(Pgn.MAX_PLIES) + "*").getFirst());
+        Assertions.assertEquals(Pgn.MAX_PLIES, longest.getPly());
+
+        InvalidMoveException ex = Assertions.assertThrows(InvalidMoveException.class,
+                () -> Pgn.replay(readAll(shuffles(4400) + "*").getFirst()));
+        Assertions.assertTrue(ex.getMessage().contains(String.valueOf(Pgn.MAX_PLIES)));
+    }
+
+    //A game missing its result runs on until the next tag, but only so many of its moves are kept
+    @Test
+    public void movesPerGameCapped() throws Exception {
+        List<PgnGame> games = readAll(shuffles(3 * Pgn.MAX_PLIES) + "\n[Event \"Next\"]\n\n1. e4 *");
+        Assertions.assertEquals(2, games.size());
+        Assertions.assertEquals(Pgn.MAX_PLIES + 1, games.getFirst().moves().size());
+        Assertions.assertThrows(InvalidMoveException.class, () -> Pgn.replay(games.getFirst()));
+        Assertions.assertEquals(List.of("e4"), games.get(1).moves());
+    }
+
+    @Test
+    public void exportReadsBack() throws Exception {
+        PgnGame original = readAll("1. e4 d5 2. exd5 Qxd5 3. Nc3 Qa5 4. d4 c6 5. Nf3 Nf6 6. Bc4 Bf5 "
+                + "7. O-O e6 8. Re1 Nbd7 9. d5 cxd5 10. Bxd5 O-O-O *").getFirst();
+        ChessGame game = Pgn.replay(original);
+        String pgn = Pgn.export(new GameData(7, "white", null, "Scandinavian", game));
+
+        Assertions.assertTrue(pgn.startsWith("[Event \"Scandinavian\"]\n"));
+        Assertions.assertTrue(pgn.contains("[Black \"?\"]\n"));
+        for (String line : pgn.split("\n")) {
+            Assertions.assertTrue(line.length() < 80, line);
+        }
+        PgnGame exported = readAll(pgn).getFirst();
+        Assertions.assertEquals(original.moves(), exported.moves());
+        Assertions.assertEquals("*", exported.result());
+        Assertions.assertEquals(game.getMoveHistory(), Pgn.replay(exported).getMoveHistory());
+    }
+
+    @Test
+    public void fenRoundTrip() throws Exception {
+        ChessGame game = Pgn.replay(readAll("1. e4 c5 2. Nf3 *").getFirst());
+        String fen = Fen.encode(game);
+        Assertions.assertEquals("rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 0 2", fen);
+        ChessGame decoded = Fen.decode(fen);
+        Assertions.assertEquals(game.getBoard(), decoded.getBoard());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, decoded.getTeamTurn());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("not a fen"));
+    }
+}
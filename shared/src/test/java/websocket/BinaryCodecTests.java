@@ -0,0 +1,188 @@
+package websocket;
+
+import chess.*;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.PlyRangeCommand;
+import websocket.commands.ResumeCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.LobbyMessage;
+import websocket.messages.MovesMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ReplayMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BinaryCodecTests {
+
+    @Test
+    public void moveRoundTrip() {
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT);
+        ChessMove quiet = new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 8), null);
+        Assertions.assertEquals(promotion, BinaryCodec.decodeMove(BinaryCodec.encodeMove(promotion)));
+        Assertions.assertEquals(quiet, BinaryCodec.decodeMove(BinaryCodec.encodeMove(quiet)));
+        Assertions.assertTrue(BinaryCodec.encodeMove(promotion) <= 0xFFFF);
+        Assertions.assertNull(BinaryCodec.decodeMove(BinaryCodec.encodeMove(null)));
+    }
+
+    @Test
+    public void commandRoundTrip() throws Exception {
+        UserGameCommand connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 101);
+        MakeMoveCommand move = new MakeMoveCommand("token", 101,
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+
+        byte[] connectBytes = BinaryCodec.encodeCommand(connect);
+        Assertions.assertEquals(connect, BinaryCodec.decodeCommand(connectBytes, 0, connectBytes.length));
+
+        byte[] moveBytes = BinaryCodec.encodeCommand(move);
+        UserGameCommand decoded = BinaryCodec.decodeCommand(moveBytes, 0, moveBytes.length);
+        Assertions.assertInstanceOf(MakeMoveCommand.class, decoded);
+        Assertions.assertEquals(move.getMove(), ((MakeMoveCommand) decoded).getMove());
+    }
+
+    @Test
+    public void loadGameRoundTrip() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 1), new ChessPosition(6, 1), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        GameData gameData = new GameData(101, "white", null, "game", game);
+
+        byte[] bytes = BinaryCodec.encodeMessage(new LoadGameMessage(gameData));
+        LoadGameMessage decoded = (LoadGameMessage) BinaryCodec.decodeMessage(bytes, 0, bytes.length);
+        Assertions.assertEquals(gameData, decoded.getGame());
+        Assertions.assertEquals(4, decoded.getPly());
+        //The last move has to survive so the en passant capture is still offered
+        Assertions.assertTrue(decoded.getGame().game().validMoves(new ChessPosition(5, 5))
+                .contains(new ChessMove(new ChessPosition(5, 5), new ChessPosition(6, 4), null)));
+        Assertions.assertTrue(bytes.length < 64, "Encoded game was " + bytes.length + " bytes");
+    }
+
+    @Test
+    public void resumeRoundTrip() throws Exception {
+        byte[] resumeBytes = BinaryCodec.encodeCommand(new ResumeCommand("token", 101, 37));
+        ResumeCommand resume = (ResumeCommand) BinaryCodec.decodeCommand(resumeBytes, 0, resumeBytes.length);
+        Assertions.assertEquals(UserGameCommand.CommandType.RESUME, resume.getCommandType());
+        Assertions.assertEquals(37, resume.getLastPly());
+
+        List<ChessMove> missed = List.of(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null),
+                new ChessMove(new ChessPosition(2, 1), new ChessPosition(1, 1), ChessPiece.PieceType.QUEEN));
+        byte[] movesBytes = BinaryCodec.encodeMessage(new MovesMessage(101, 37, missed, true));
+        MovesMessage moves = (MovesMessage) BinaryCodec.decodeMessage(movesBytes, 0, movesBytes.length);
+        Assertions.assertEquals(101, moves.getGameID());
+        Assertions.assertEquals(37, moves.getFromPly());
+        Assertions.assertEquals(missed, moves.getMoves());
+        Assertions.assertTrue(moves.isGameOver());
+    }
+
+    @Test
+    public void replayRoundTrip() throws Exception {
+        byte[] rangeBytes = BinaryCodec.encodeCommand(new PlyRangeCommand("token", 101, 3, 9));
+        PlyRangeCommand range = (PlyRangeCommand) BinaryCodec.decodeCommand(rangeBytes, 0, rangeBytes.length);
+        Assertions.assertEquals(UserGameCommand.CommandType.GET_PLIES, range.getCommandType());
+        Assertions.assertEquals(3, range.getFromPly());
+        Assertions.assertEquals(9, range.getToPly());
+
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        ChessMove reply = new ChessMove(new ChessPosition(7, 3), new ChessPosition(5, 3), null);
+        byte[] bytes = BinaryCodec.encodeMessage(new ReplayMessage(101, 1, 2, game, List.of(reply)));
+        ReplayMessage replay = (ReplayMessage) BinaryCodec.decodeMessage(bytes, 0, bytes.length);
+        Assertions.assertEquals(101, replay.getGameID());
+        Assertions.assertEquals(1, replay.getFromPly());
+        Assertions.assertEquals(2, replay.getPlies());
+        Assertions.assertEquals(game, replay.getGame());
+        Assertions.assertEquals(List.of(reply), replay.getMoves());
+    }
+
+    @Test
+    public void lobbyRoundTrip() throws Exception {
+        List<GameData> games = List.of(new GameData(101, "white", null, "first", null),
+                new GameData(102, null, null, "second", null));
+        byte[] snapshotBytes = BinaryCodec.encodeMessage(LobbyMessage.snapshot(games));
+        LobbyMessage snapshot = (LobbyMessage) BinaryCodec.decodeMessage(snapshotBytes, 0, snapshotBytes.length);
+        Assertions.assertEquals(LobbyMessage.Event.SNAPSHOT, snapshot.getEvent());
+        Assertions.assertEquals(games, snapshot.getGames());
+
+        byte[] seatBytes = BinaryCodec.encodeMessage(LobbyMessage.seatTaken(102, ChessGame.TeamColor.BLACK, "black"));
+        LobbyMessage seat = (LobbyMessage) BinaryCodec.decodeMessage(seatBytes, 0, seatBytes.length);
+        Assertions.assertEquals(LobbyMessage.Event.SEAT_TAKEN, seat.getEvent());
+        Assertions.assertEquals(102, seat.getGameID());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, seat.getColor());
+        Assertions.assertEquals("black", seat.getUsername());
+        Assertions.assertTrue(seatBytes.length <= 16, "Encoded seat change was " + seatBytes.length + " bytes");
+
+        byte[] freedBytes = BinaryCodec.encodeMessage(LobbyMessage.seatFreed(102, ChessGame.TeamColor.WHITE));
+        Assertions.assertNull(((LobbyMessage) BinaryCodec.decodeMessage(freedBytes, 0, freedBytes.length)).getUsername());
+    }
+
+    @Test
+    public void textMessagesRoundTrip() throws Exception {
+        byte[] error = BinaryCodec.encodeMessage(new ErrorMessage("Error: not your turn"));
+        byte[] notification = BinaryCodec.encodeMessage(new NotificationMessage("white moved e2 to e4"));
+        Assertions.assertEquals("Error: not your turn",
+                ((ErrorMessage) BinaryCodec.decodeMessage(error, 0, error.length)).getErrorMessage());
+        Assertions.assertEquals("white moved e2 to e4",
+                ((NotificationMessage) BinaryCodec.decodeMessage(notification, 0, notification.length)).getMessage());
+    }
+
+    @Test
+    public void malformedFrameFails() {
+        byte[] move = BinaryCodec.encodeCommand(new MakeMoveCommand("token", 101,
+                new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 2), ChessPiece.PieceType.QUEEN)));
+        //Promotion bits 7 name no piece type
+        move[move.length - 2] |= 0x70;
+        Assertions.assertThrows(java.io.IOException.class, () -> BinaryCodec.decodeCommand(move, 0, move.length));
+
+        byte[] load = BinaryCodec.encodeMessage(new LoadGameMessage(new GameData(101, null, null, null, new ChessGame())));
+        //Header, gameID, three absent strings and the game's presence byte come before the flags and board
+        int board = 1 + 4 + 3 + 1 + 1;
+        load[board] = 0x77;
+        Assertions.assertThrows(java.io.IOException.class, () -> BinaryCodec.decodeMessage(load, 0, load.length));
+    }
+
+    @Test
+    public void truncatedFrameFails() {
+        byte[] bytes = BinaryCodec.encodeCommand(new UserGameCommand(UserGameCommand.CommandType.LEAVE, "token", 101));
+        Assertions.assertThrows(java.io.IOException.class, () -> BinaryCodec.decodeCommand(bytes, 0, bytes.length - 2));
+    }
+
+    @Test
+    public void largeSnapshotRoundTrip() throws Exception {
+        List<GameData> games = new ArrayList<>();
+        for (int i = 1; i <= 70_000; i++) {
+            games.add(new GameData(i, null, null, "game " + i, null));
+        }
+        byte[] bytes = BinaryCodec.encodeMessage(LobbyMessage.snapshot(games));
+        LobbyMessage snapshot = (LobbyMessage) BinaryCodec.decodeMessage(bytes, 0, bytes.length);
+        Assertions.assertEquals(70_000, snapshot.getGames().size());
+        Assertions.assertEquals(games, snapshot.getGames());
+    }
+
+    @Test
+    public void trailingBytesFail() {
+        byte[] bytes = BinaryCodec.encodeCommand(new UserGameCommand(UserGameCommand.CommandType.LEAVE, "token", 101));
+        byte[] padded = Arrays.copyOf(bytes, bytes.length + 2);
+        Assertions.assertThrows(java.io.IOException.class, () -> BinaryCodec.decodeCommand(padded, 0, padded.length));
+
+        byte[] moves = BinaryCodec.encodeMessage(new MovesMessage(101, 0,
+                List.of(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null)), false));
+        byte[] longer = Arrays.copyOf(moves, moves.length + 1);
+        Assertions.assertThrows(java.io.IOException.class, () -> BinaryCodec.decodeMessage(longer, 0, longer.length));
+    }
+
+    @Test
+    public void countBeyondFrameFails() {
+        byte[] moves = BinaryCodec.encodeMessage(new MovesMessage(101, 0, List.of(), false));
+        //The count is the last field, and claims far more moves than follow it
+        moves[moves.length - 4] = 0x7F;
+        Assertions.assertThrows(java.io.IOException.class, () -> BinaryCodec.decodeMessage(moves, 0, moves.length));
+    }
+}